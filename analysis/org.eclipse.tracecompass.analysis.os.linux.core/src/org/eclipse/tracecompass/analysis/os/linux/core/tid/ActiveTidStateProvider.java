@@ -65,6 +65,12 @@ class ActiveTidStateProvider extends AbstractTmfStateProvider {
         return new ActiveTidStateProvider(getTrace(), fLayout);
     }
 
+    @Override
+    public boolean isTimeSliceable() {
+        /* The TID of a CPU is only set from the sched_switch events */
+        return true;
+    }
+
     @Override
     protected void eventHandle(@NonNull ITmfEvent event) {
         Integer cpu = TmfTraceUtils.resolveIntEventAspectOfClassForEvent(event.getTrace(), TmfCpuAspect.class, event);
@@ -14,6 +14,7 @@ import java.util.List;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.os.linux.core.kernel.StateValues;
 import org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel.Attributes;
+import org.eclipse.tracecompass.statesystem.core.AttributePathTemplate;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
@@ -33,6 +34,16 @@ import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
  */
 public final class KernelEventHandlerUtils {
 
+    /*
+     * Templates of the attributes that are looked up for most events, whose
+     * quarks are cached by the state system
+     */
+    private static final AttributePathTemplate CPU_TEMPLATE = new AttributePathTemplate(new String[] { Attributes.CPUS });
+    private static final AttributePathTemplate IRQS_TEMPLATE = new AttributePathTemplate(new String[] { Attributes.CPUS }, Attributes.IRQS);
+    private static final AttributePathTemplate SOFT_IRQS_TEMPLATE = new AttributePathTemplate(new String[] { Attributes.CPUS }, Attributes.SOFT_IRQS);
+    private static final AttributePathTemplate THREAD_TEMPLATE = new AttributePathTemplate(new String[] { Attributes.THREADS });
+    private static final AttributePathTemplate THREAD_SYSTEM_CALL_TEMPLATE = new AttributePathTemplate(new String[] { Attributes.THREADS }, Attributes.SYSTEM_CALL);
+
     private KernelEventHandlerUtils() {
     }
 
@@ -64,7 +75,7 @@ public final class KernelEventHandlerUtils {
      * @return the current CPU quark -1 for not set
      */
     public static int getCurrentCPUNode(Integer cpuNumber, ITmfStateSystemBuilder ss) {
-        return ss.getQuarkRelativeAndAdd(getNodeCPUs(ss), cpuNumber.toString());
+        return ss.getQuarkAbsoluteAndAdd(CPU_TEMPLATE, cpuNumber.intValue());
     }
 
     /**
@@ -99,7 +110,27 @@ public final class KernelEventHandlerUtils {
         int quark = ss.getQuarkRelativeAndAdd(getCurrentCPUNode(cpuNumber, ss), Attributes.CURRENT_THREAD);
         ITmfStateValue value = ss.queryOngoingState(quark);
         int thread = value.isNull() ? -1 : value.unboxInt();
-        return ss.getQuarkRelativeAndAdd(getNodeThreads(ss), Attributes.buildThreadAttributeName(thread, cpuNumber));
+        return getThreadNode(thread, cpuNumber, ss);
+    }
+
+    /**
+     * Get the node of a thread
+     *
+     * @param threadId
+     *            The thread ID
+     * @param cpuNumber
+     *            The cpu number, used for the thread 0 which has one node per
+     *            CPU
+     * @param ss
+     *            the state system
+     * @return the thread node quark
+     */
+    public static int getThreadNode(int threadId, Integer cpuNumber, ITmfStateSystemBuilder ss) {
+        if (threadId != 0) {
+            /* The name of the other threads is their thread ID */
+            return ss.getQuarkAbsoluteAndAdd(THREAD_TEMPLATE, threadId);
+        }
+        return ss.getQuarkRelativeAndAdd(getNodeThreads(ss), Attributes.buildThreadAttributeName(threadId, cpuNumber));
     }
 
     /**
@@ -149,7 +180,7 @@ public final class KernelEventHandlerUtils {
      * @return the IRQ node quark
      */
     public static int getNodeIRQs(int cpuNumber, ITmfStateSystemBuilder ss) {
-        return ss.getQuarkAbsoluteAndAdd(Attributes.CPUS, Integer.toString(cpuNumber), Attributes.IRQS);
+        return ss.getQuarkAbsoluteAndAdd(IRQS_TEMPLATE, cpuNumber);
     }
 
     /**
@@ -173,7 +204,7 @@ public final class KernelEventHandlerUtils {
      * @return the Soft IRQ node quark
      */
     public static int getNodeSoftIRQs(int cpuNumber, ITmfStateSystemBuilder ss) {
-        return ss.getQuarkAbsoluteAndAdd(Attributes.CPUS, Integer.toString(cpuNumber), Attributes.SOFT_IRQS);
+        return ss.getQuarkAbsoluteAndAdd(SOFT_IRQS_TEMPLATE, cpuNumber);
     }
 
     /**
@@ -273,7 +304,7 @@ public final class KernelEventHandlerUtils {
         if (tid == 0) {
             return StateValues.CPU_STATUS_IDLE_VALUE;
         }
-        int threadSystemCallQuark = ssb.getQuarkAbsoluteAndAdd(Attributes.THREADS, Integer.toString(tid), Attributes.SYSTEM_CALL);
+        int threadSystemCallQuark = ssb.getQuarkAbsoluteAndAdd(THREAD_SYSTEM_CALL_TEMPLATE, tid);
         return (ssb.queryOngoingState(threadSystemCallQuark).isNull() ?
                 StateValues.CPU_STATUS_RUN_USERMODE_VALUE :
                 StateValues.CPU_STATUS_RUN_SYSCALL_VALUE);
@@ -16,8 +16,6 @@ import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEven
 import org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel.Attributes;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
-import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
-import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 
@@ -50,7 +48,6 @@ public class PiSetprioHandler extends KernelEventHandler {
 
         /* Set the current prio for the new process */
         int quark = ss.getQuarkRelativeAndAdd(updateThreadNode, Attributes.PRIO);
-        ITmfStateValue value = TmfStateValue.newValueInt(prio);
-        ss.modifyAttribute(KernelEventHandlerUtils.getTimestamp(event), value, quark);
+        ss.modifyAttribute(KernelEventHandlerUtils.getTimestamp(event), prio.intValue(), quark);
     }
 }
@@ -63,13 +63,12 @@ public class ProcessForkHandler extends KernelEventHandler {
 
         /* Assign the PPID to the new process */
         int quark = ss.getQuarkRelativeAndAdd(childTidNode, Attributes.PPID);
-        ITmfStateValue value = TmfStateValue.newValueInt(parentTid);
         long timestamp = KernelEventHandlerUtils.getTimestamp(event);
-        ss.modifyAttribute(timestamp, value, quark);
+        ss.modifyAttribute(timestamp, parentTid.intValue(), quark);
 
         /* Set the new process' exec_name */
         quark = ss.getQuarkRelativeAndAdd(childTidNode, Attributes.EXEC_NAME);
-        value = TmfStateValue.newValueString(childProcessName);
+        ITmfStateValue value = TmfStateValue.newValueString(childProcessName);
         ss.modifyAttribute(timestamp, value, quark);
 
         /* Set the new process' status */
@@ -56,13 +56,8 @@ public class SchedSwitchHandler extends KernelEventHandler {
         Integer nextTid = ((Long) content.getField(getLayout().fieldNextTid()).getValue()).intValue();
         Integer nextPrio = ((Long) content.getField(getLayout().fieldNextPrio()).getValue()).intValue();
 
-        /* Will never return null since "cpu" is null checked */
-        String formerThreadAttributeName = Attributes.buildThreadAttributeName(prevTid, cpu);
-        String currenThreadAttributeName = Attributes.buildThreadAttributeName(nextTid, cpu);
-
-        int nodeThreads = KernelEventHandlerUtils.getNodeThreads(ss);
-        int formerThreadNode = ss.getQuarkRelativeAndAdd(nodeThreads, formerThreadAttributeName);
-        int newCurrentThreadNode = ss.getQuarkRelativeAndAdd(nodeThreads, currenThreadAttributeName);
+        int formerThreadNode = KernelEventHandlerUtils.getThreadNode(prevTid, cpu, ss);
+        int newCurrentThreadNode = KernelEventHandlerUtils.getThreadNode(nextTid, cpu, ss);
 
         long timestamp = KernelEventHandlerUtils.getTimestamp(event);
         /* Set the status of the process that got scheduled out. */
@@ -158,18 +153,14 @@ public class SchedSwitchHandler extends KernelEventHandler {
 
     private static void setCpuProcess(ITmfStateSystemBuilder ss, Integer nextTid, long timestamp, int currentCPUNode) throws AttributeNotFoundException {
         int quark;
-        ITmfStateValue value;
         quark = ss.getQuarkRelativeAndAdd(currentCPUNode, Attributes.CURRENT_THREAD);
-        value = TmfStateValue.newValueInt(nextTid);
-        ss.modifyAttribute(timestamp, value, quark);
+        ss.modifyAttribute(timestamp, nextTid.intValue(), quark);
     }
 
     private static void setProcessPrio(ITmfStateSystemBuilder ss, Integer prio, Integer threadNode, long timestamp) throws AttributeNotFoundException {
         int quark;
-        ITmfStateValue value;
         quark = ss.getQuarkRelativeAndAdd(threadNode, Attributes.PRIO);
-        value = TmfStateValue.newValueInt(prio);
-        ss.modifyAttribute(timestamp, value, quark);
+        ss.modifyAttribute(timestamp, prio.intValue(), quark);
     }
 
     private static void setProcessExecName(ITmfStateSystemBuilder ss, String processName, Integer threadNode, long timestamp) throws AttributeNotFoundException {
@@ -17,7 +17,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
@@ -32,8 +34,11 @@ import org.eclipse.tracecompass.segmentstore.core.ISegment;
 import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
 import org.eclipse.tracecompass.tmf.core.analysis.IAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventType;
 import org.eclipse.tracecompass.tmf.core.segment.ISegmentAspect;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceWithPreDefinedEvents;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
@@ -87,6 +92,32 @@ public class SystemCallLatencyAnalysis extends AbstractSegmentStoreAnalysisEvent
         return new SyscallLatencyAnalysisRequest(syscalls);
     }
 
+    /**
+     * Get the names of the system call entry and exit events of the traces,
+     * so that the other events can be skipped when the traces are read.
+     *
+     * @return The names of the events, or null if the events of one of the
+     *         traces are not known in advance
+     */
+    private static @Nullable Set<String> getSyscallEventTypes(ITmfTrace trace) {
+        Set<String> eventTypes = new HashSet<>();
+        for (ITmfTrace child : TmfTraceManager.getTraceSet(trace)) {
+            if (!(child instanceof IKernelTrace) || !(child instanceof ITmfTraceWithPreDefinedEvents)) {
+                return null;
+            }
+            IKernelAnalysisEventLayout layout = ((IKernelTrace) child).getKernelEventLayout();
+            for (ITmfEventType eventType : ((ITmfTraceWithPreDefinedEvents) child).getContainedEventTypes()) {
+                String eventName = eventType.getName();
+                if (eventName.startsWith(layout.eventSyscallEntryPrefix()) ||
+                        eventName.startsWith(layout.eventCompatSyscallEntryPrefix()) ||
+                        eventName.startsWith(layout.eventSyscallExitPrefix())) {
+                    eventTypes.add(eventName);
+                }
+            }
+        }
+        return eventTypes;
+    }
+
     @Override
     protected Object[] readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException {
         return checkNotNull((Object[]) ois.readObject());
@@ -97,9 +128,18 @@ public class SystemCallLatencyAnalysis extends AbstractSegmentStoreAnalysisEvent
         private final Map<Integer, SystemCall.InitialInfo> fOngoingSystemCalls = new HashMap<>();
         private @Nullable IKernelAnalysisEventLayout fLayout;
         private final IProgressMonitor fMonitor = new NullProgressMonitor();
+        private final @Nullable Set<String> fEventTypes;
 
         public SyscallLatencyAnalysisRequest(ISegmentStore<ISegment> syscalls) {
             super(syscalls);
+            ITmfTrace trace = getTrace();
+            fEventTypes = (trace == null ? null : getSyscallEventTypes(trace));
+        }
+
+        @Override
+        public @Nullable Set<String> getEventTypes() {
+            /* The trace readers can skip all the other events */
+            return fEventTypes;
         }
 
         @Override
@@ -9,6 +9,7 @@
 
 package org.eclipse.tracecompass.analysis.timing.core.tests.segmentstore.statistics;
 
+import java.util.Arrays;
 import java.util.Collection;
 
 import org.eclipse.jdt.annotation.NonNull;
@@ -92,4 +93,18 @@ public class OfflineStatisticsCalculator {
         }
         return Math.sqrt(totalVariance);
     }
+
+    /**
+     * Get a percentile, using the nearest-rank method
+     *
+     * @param percentile
+     *            the percentile, between 0 and 100
+     * @return the length of the segment of that rank
+     */
+    public long getPercentile(double percentile) {
+        long[] lengths = fSs.stream().mapToLong(ISegment::getLength).toArray();
+        Arrays.sort(lengths);
+        int rank = (int) Math.ceil(percentile / 100.0 * lengths.length);
+        return lengths[Math.max(0, Math.min(rank, lengths.length) - 1)];
+    }
 }
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.analysis.timing.core.tests.segmentstore.statistics;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.analysis.timing.core.segmentstore.statistics.SegmentStatisticsSummaryTree;
+import org.eclipse.tracecompass.analysis.timing.core.segmentstore.statistics.SegmentStoreStatistics;
+import org.eclipse.tracecompass.segmentstore.core.BasicSegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+import org.eclipse.tracecompass.segmentstore.core.treemap.TreeMapStore;
+import org.junit.Test;
+
+/**
+ * Test the time range queries of the {@link SegmentStatisticsSummaryTree},
+ * against the statistics of the segments starting in the range.
+ */
+public class SegmentStatisticsSummaryTreeTest {
+
+    private static final int NB_SEGMENTS = 100000;
+    private static final int NB_QUERIES = 200;
+    private static final long DURATION = 1000000000L;
+
+    private static final double ERROR = 0.000001;
+
+    private final Random fRandom = new Random(1234);
+    private final ISegmentStore<@NonNull ISegment> fStore = new TreeMapStore<>();
+    private final List<@NonNull ISegment> fSegments = new ArrayList<>();
+
+    private void createSegments() {
+        for (int i = 0; i < NB_SEGMENTS; i++) {
+            /* Some segments before 0, and many with the same start time */
+            long start = (fRandom.nextInt(10) == 0 ? 42 : (long) (fRandom.nextDouble() * DURATION) - 1000);
+            ISegment segment = new BasicSegment(start, start + fRandom.nextInt(1000000));
+            if (fStore.add(segment)) {
+                fSegments.add(segment);
+            }
+        }
+    }
+
+    private void checkRange(SegmentStatisticsSummaryTree tree, long start, long end) {
+        SegmentStoreStatistics expected = new SegmentStoreStatistics();
+        for (ISegment segment : fSegments) {
+            if (segment.getStart() >= start && segment.getStart() <= end) {
+                expected.update(segment);
+            }
+        }
+        SegmentStoreStatistics actual = tree.getStatistics(fStore, start, end);
+        String range = "[" + start + ", " + end + "] ";
+        assertEquals(range + "Count", expected.getNbSegments(), actual.getNbSegments());
+        if (expected.getNbSegments() > 0) {
+            assertEquals(range + "Average", expected.getAverage(), actual.getAverage(), ERROR * expected.getAverage());
+            assertEquals(range + "Min", expected.getMin(), actual.getMin());
+            assertEquals(range + "Max", expected.getMax(), actual.getMax());
+        }
+        if (expected.getNbSegments() > 2) {
+            assertEquals(range + "Standard Deviation", expected.getStdDev(), actual.getStdDev(), ERROR * expected.getStdDev());
+        }
+    }
+
+    private void checkRandomRanges(SegmentStatisticsSummaryTree tree) {
+        checkRange(tree, Long.MIN_VALUE, Long.MAX_VALUE);
+        checkRange(tree, 42, 42);
+        checkRange(tree, 0, DURATION);
+        checkRange(tree, DURATION, 0);
+        for (int i = 0; i < NB_QUERIES; i++) {
+            long start = (long) (fRandom.nextDouble() * DURATION * 1.2) - DURATION / 10;
+            /* Short and long ranges */
+            long length = (i % 2 == 0 ? fRandom.nextInt(100000) : (long) (fRandom.nextDouble() * DURATION));
+            checkRange(tree, start, start + length);
+        }
+    }
+
+    /**
+     * Test the ranges of a summary updated with each segment
+     */
+    @Test
+    public void testUpdate() {
+        createSegments();
+        SegmentStatisticsSummaryTree tree = new SegmentStatisticsSummaryTree();
+        for (ISegment segment : fSegments) {
+            tree.update(segment);
+        }
+        checkRandomRanges(tree);
+    }
+
+    /**
+     * Test the ranges of a summary merged from the summaries of parts of the
+     * segments
+     */
+    @Test
+    public void testMerge() {
+        createSegments();
+        SegmentStatisticsSummaryTree tree = new SegmentStatisticsSummaryTree();
+        int from = 0;
+        int size = 1;
+        while (from < fSegments.size()) {
+            SegmentStatisticsSummaryTree part = new SegmentStatisticsSummaryTree();
+            int to = Math.min(fSegments.size(), from + size);
+            for (ISegment segment : fSegments.subList(from, to)) {
+                part.update(segment);
+            }
+            tree.merge(part);
+            from = to;
+            size *= 2;
+        }
+        checkRandomRanges(tree);
+    }
+
+    /**
+     * Test an empty summary
+     */
+    @Test
+    public void testEmpty() {
+        SegmentStatisticsSummaryTree tree = new SegmentStatisticsSummaryTree();
+        checkRange(tree, Long.MIN_VALUE, Long.MAX_VALUE);
+        checkRange(tree, 0, 10);
+    }
+}
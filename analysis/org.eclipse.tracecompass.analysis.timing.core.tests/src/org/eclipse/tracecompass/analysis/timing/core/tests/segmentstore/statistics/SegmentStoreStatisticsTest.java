@@ -10,6 +10,7 @@
 package org.eclipse.tracecompass.analysis.timing.core.tests.segmentstore.statistics;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -39,6 +40,8 @@ public class SegmentStoreStatisticsTest {
 
     private static final double NO_ERROR = 0.0;
     private static final double ERROR = 0.000001;
+    private static final double PERCENTILE_ERROR = 0.01;
+    private static final double[] PERCENTILES = { 0, 50, 90, 99, 99.9, 100 };
 
     private static void testOnlineVsOffline(List<@NonNull BasicSegment> fixture) {
         SegmentStoreStatistics sss = getSegStoreStat(fixture);
@@ -49,6 +52,10 @@ public class SegmentStoreStatisticsTest {
         assertEquals("Max", osc.getMax(), sss.getMax());
         assertEquals("Min Segment", osc.getMin(), sss.getMinSegment().getLength());
         assertEquals("Max Segment", osc.getMax(), sss.getMaxSegment().getLength());
+        for (double percentile : PERCENTILES) {
+            long expected = osc.getPercentile(percentile);
+            assertEquals("Percentile " + percentile, expected, sss.getPercentile(percentile), expected * PERCENTILE_ERROR);
+        }
     }
 
     /**
@@ -154,6 +161,56 @@ public class SegmentStoreStatisticsTest {
         testOnlineVsOffline(fixture);
     }
 
+    /**
+     * Test merging the statistics of parts of the segments, which should give
+     * the same results as updating the statistics with all the segments
+     */
+    @Test
+    public void mergeTest() {
+        Random rnd = new Random();
+        rnd.setSeed(1234);
+        List<@NonNull BasicSegment> fixture = new ArrayList<>();
+        for (int i = 1; i <= MEDIUM_AMOUNT_OF_SEGMENTS * 100; i++) {
+            int start = Math.abs(rnd.nextInt(100000000));
+            final int delta = Math.abs(rnd.nextInt(1000));
+            int end = start + delta * delta;
+            fixture.add(createDummySegment(start, end));
+        }
+        SegmentStoreStatistics expected = getSegStoreStat(fixture);
+
+        SegmentStoreStatistics merged = new SegmentStoreStatistics();
+        /* Parts of various sizes, including empty ones */
+        int from = 0;
+        int size = 0;
+        while (from < fixture.size()) {
+            int to = Math.min(fixture.size(), from + size);
+            merged.merge(getSegStoreStat(fixture.subList(from, to)));
+            from = to;
+            size = size * 2 + 1;
+        }
+        assertEquals("Count", expected.getNbSegments(), merged.getNbSegments());
+        assertEquals("Average", expected.getAverage(), merged.getAverage(), ERROR);
+        assertEquals("Standard Deviation", expected.getStdDev(), merged.getStdDev(), ERROR);
+        assertEquals("Min Segment", expected.getMinSegment(), merged.getMinSegment());
+        assertEquals("Max Segment", expected.getMaxSegment(), merged.getMaxSegment());
+        for (double percentile : PERCENTILES) {
+            assertEquals("Percentile " + percentile, expected.getPercentile(percentile), merged.getPercentile(percentile), NO_ERROR);
+        }
+        testOnlineVsOffline(fixture);
+    }
+
+    /**
+     * Test the percentiles of empty statistics
+     */
+    @Test
+    public void emptyPercentileTest() {
+        SegmentStoreStatistics sss = new SegmentStoreStatistics();
+        assertTrue(Double.isNaN(sss.getPercentile(50)));
+        sss.merge(new SegmentStoreStatistics());
+        assertTrue(Double.isNaN(sss.getPercentile(50)));
+        assertEquals(0, sss.getNbSegments());
+    }
+
     private static @NonNull BasicSegment createDummySegment(int start, int end) {
         return new BasicSegment(start, end);
     }
@@ -15,6 +15,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNull;
@@ -141,6 +142,30 @@ public class ArrayListStoreTest {
         }
     }
 
+    /**
+     * Test adding elements while iterating: the iterator returns the elements
+     * added after its last element, and every element only once.
+     */
+    @Test
+    public void testIterationWhileAdding() {
+        Iterator<@NonNull ISegment> iterator = fSegmentStore.iterator();
+        assertEquals(SEGMENT_2_6, iterator.next());
+        assertEquals(SEGMENT_4_6, iterator.next());
+
+        /* Before, equal to and after the last returned element */
+        ISegment segment_1_3 = new BasicSegment(1, 3);
+        ISegment segment_4_6 = new BasicSegment(4, 6);
+        ISegment segment_5_7 = new BasicSegment(5, 7);
+        fSegmentStore.add(segment_1_3);
+        fSegmentStore.add(segment_4_6);
+        fSegmentStore.add(segment_5_7);
+
+        List<ISegment> rest = Lists.newArrayList(iterator);
+        assertEquals(Arrays.asList(segment_4_6, SEGMENT_4_8, segment_5_7, SEGMENT_6_8, SEGMENT_10_14), rest);
+        assertFalse(iterator.hasNext());
+        assertEquals(SEGMENTS.size() + 3, Iterables.size(fSegmentStore));
+    }
+
     /**
      * Test the iteration order when the elements are not inserted in sorted
      * order.
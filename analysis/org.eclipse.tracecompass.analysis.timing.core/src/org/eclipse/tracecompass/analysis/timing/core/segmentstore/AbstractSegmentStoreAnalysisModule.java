@@ -12,7 +12,6 @@ import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -23,9 +22,10 @@ import java.util.List;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.ListenerList;
 import org.eclipse.jdt.annotation.Nullable;
-import org.eclipse.tracecompass.internal.analysis.timing.core.store.ArrayListStore;
 import org.eclipse.tracecompass.segmentstore.core.ISegment;
 import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+import org.eclipse.tracecompass.segmentstore.core.columnar.ColumnarStore;
+import org.eclipse.tracecompass.segmentstore.core.historytree.HistoryTreeSegmentStore;
 import org.eclipse.tracecompass.tmf.core.analysis.TmfAbstractAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
 import org.eclipse.tracecompass.tmf.core.segment.ISegmentAspect;
@@ -47,9 +47,26 @@ public abstract class AbstractSegmentStoreAnalysisModule extends TmfAbstractAnal
 
     private @Nullable ISegmentStore<ISegment> fSegmentStore;
 
+    /*
+     * The store being built, which sends the new segments to the listeners.
+     * It is set and read while holding the lock of the listener list, so that
+     * a listener is either added before the build starts or caught up with it.
+     */
+    private @Nullable ProgressSegmentStore fStoreInProgress;
+
     @Override
     public void addListener(IAnalysisProgressListener listener) {
-        fListeners.add(listener);
+        synchronized (fListeners) {
+            ProgressSegmentStore storeInProgress = fStoreInProgress;
+            if (storeInProgress == null) {
+                fListeners.add(listener);
+                return;
+            }
+            synchronized (storeInProgress) {
+                storeInProgress.catchUp(listener);
+                fListeners.add(listener);
+            }
+        }
     }
 
     @Override
@@ -78,7 +95,8 @@ public abstract class AbstractSegmentStoreAnalysisModule extends TmfAbstractAnal
     }
 
     /**
-     * Returns the file name for storing segment store
+     * Returns the file name for storing segment store. The segments are then
+     * kept on disk in a {@link HistoryTreeSegmentStore} instead of in memory.
      *
      * @return segment store fine name, or null if you don't want a file
      */
@@ -87,11 +105,13 @@ public abstract class AbstractSegmentStoreAnalysisModule extends TmfAbstractAnal
     }
 
     /**
-     * Read an object from the ObjectInputStream.
+     * Read an array of segments from the ObjectInputStream. This is used to
+     * read the nodes of the segment store's file, so the classes of the
+     * segments must be visible from the implementation of this method.
      *
      * @param ois
      *            the ObjectInputStream to used
-     * @return the read object
+     * @return the read array of segments
      * @throws ClassNotFoundException
      *             - Class of a serialized object cannot be found.
      * @throws IOException
@@ -137,29 +157,27 @@ public abstract class AbstractSegmentStoreAnalysisModule extends TmfAbstractAnal
         ITmfTrace trace = checkNotNull(getTrace());
 
         final @Nullable String dataFileName = getDataFileName();
+        @Nullable Path file = null;
         if (dataFileName != null) {
             /* See if the data file already exists on disk */
             String dir = TmfTraceManager.getSupplementaryFileDir(trace);
-            final Path file = Paths.get(dir, dataFileName);
+            file = Paths.get(dir, dataFileName);
 
             if (Files.exists(file)) {
-                /* Attempt to read the existing file */
-                try (ObjectInputStream ois = new ObjectInputStream(Files.newInputStream(file))) {
-                    Object[] segmentArray = readObject(ois);
-                    final ISegmentStore<ISegment> store = new ArrayListStore<>();
-                    for (Object element : segmentArray) {
-                        if (element instanceof ISegment) {
-                            ISegment segment = (ISegment) element;
-                            store.add(segment);
-                        }
-                    }
+                /*
+                 * Attempt to open the existing file. Its segments will only be
+                 * read when they are queried.
+                 */
+                try {
+                    final ISegmentStore<ISegment> store = HistoryTreeSegmentStore.open(file, this::readObject);
                     fSegmentStore = store;
                     sendUpdate(store);
                     return true;
-                } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                } catch (IOException e) {
                     /*
-                     * We did not manage to read the file successfully, we will
-                     * just fall-through to rebuild a new one.
+                     * We did not manage to read the file successfully (it may
+                     * be incomplete, or from an older version), we will just
+                     * fall-through to rebuild a new one.
                      */
                     try {
                         Files.delete(file);
@@ -169,20 +187,42 @@ public abstract class AbstractSegmentStoreAnalysisModule extends TmfAbstractAnal
             }
         }
 
-        ISegmentStore<ISegment> segmentStore = new ArrayListStore<>();
-        boolean completed = buildAnalysisSegments(segmentStore, monitor);
+        ISegmentStore<ISegment> segmentStore = createSegmentStore(file);
+        ProgressSegmentStore storeInProgress = new ProgressSegmentStore(this, segmentStore);
+        synchronized (fListeners) {
+            fStoreInProgress = storeInProgress;
+        }
+        boolean completed;
+        try {
+            completed = buildAnalysisSegments(storeInProgress, monitor);
+            storeInProgress.finish();
+        } finally {
+            synchronized (fListeners) {
+                fStoreInProgress = null;
+            }
+        }
         if (!completed) {
+            segmentStore.close(true);
             return false;
         }
+
+        /* Write what remains of the segment store to disk for future usage */
+        segmentStore.close(false);
         fSegmentStore = segmentStore;
 
-        if (dataFileName != null) {
-            String dir = TmfTraceManager.getSupplementaryFileDir(trace);
-            final Path file = Paths.get(dir, dataFileName);
+        sendUpdate(segmentStore);
+
+        return true;
+    }
 
-            /* Serialize the collections to disk for future usage */
-            try (ObjectOutputStream oos = new ObjectOutputStream(Files.newOutputStream(file))) {
-                oos.writeObject(segmentStore.toArray());
+    /**
+     * Create the segment store to fill. It is kept in the given file if
+     * possible, otherwise in memory, in a {@link ColumnarStore}.
+     */
+    private ISegmentStore<ISegment> createSegmentStore(@Nullable Path file) {
+        if (file != null) {
+            try {
+                return new HistoryTreeSegmentStore<>(file, this::readObject);
             } catch (IOException e) {
                 /*
                  * Didn't work, oh well. We will just re-read the trace next
@@ -190,10 +230,7 @@ public abstract class AbstractSegmentStoreAnalysisModule extends TmfAbstractAnal
                  */
             }
         }
-
-        sendUpdate(segmentStore);
-
-        return true;
+        return new ColumnarStore<>();
     }
 
     /**
@@ -8,6 +8,8 @@
  *******************************************************************************/
 package org.eclipse.tracecompass.analysis.timing.core.segmentstore;
 
+import java.util.Collection;
+
 import org.eclipse.tracecompass.segmentstore.core.ISegment;
 import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
 
@@ -30,4 +32,23 @@ public interface IAnalysisProgressListener {
      */
     void onComplete(ISegmentStoreProvider segmentProvider, ISegmentStore<ISegment> data);
 
+    /**
+     * Called with the new segments while the segment store is being built,
+     * before {@link #onComplete}. A listener added while the store is being
+     * built first receives the segments that were already added to it, so
+     * that each segment is received exactly once. A store that was read back
+     * from disk is only sent to {@link #onComplete}.
+     *
+     * The segments are sent from the thread building the store, so
+     * implementations should return quickly.
+     *
+     * @param segmentProvider
+     *            analysis that is running
+     * @param segments
+     *            the segments added since the last call
+     */
+    default void onSegmentsAdded(ISegmentStoreProvider segmentProvider, Collection<ISegment> segments) {
+        /* Only the complete segment store is needed by default */
+    }
+
 }
@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.tracecompass.analysis.timing.core.segmentstore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+
+import com.google.common.collect.ForwardingCollection;
+
+/**
+ * Segment store wrapping the store being built by a segment store analysis. It
+ * sends the segments added to it to the listeners of the analysis, in batches,
+ * through {@link IAnalysisProgressListener#onSegmentsAdded}.
+ *
+ * The segments are sent from the thread adding them. The methods sending
+ * segments are synchronized on this object.
+ */
+final class ProgressSegmentStore extends ForwardingCollection<ISegment> implements ISegmentStore<ISegment> {
+
+    /* Send the segments when there are that many of them... */
+    private static final int BATCH_SIZE = 10000;
+    /* ...or when the oldest one was added that long ago */
+    private static final long MAX_DELAY = TimeUnit.SECONDS.toNanos(1);
+
+    private final AbstractSegmentStoreAnalysisModule fModule;
+    private final ISegmentStore<ISegment> fStore;
+
+    private List<ISegment> fPending = new ArrayList<>();
+    private long fFirstPendingTime;
+    private boolean fFinished = false;
+
+    /**
+     * Constructor
+     *
+     * @param module
+     *            The analysis building the store, whose listeners get the
+     *            segments
+     * @param store
+     *            The store being built
+     */
+    public ProgressSegmentStore(AbstractSegmentStoreAnalysisModule module, ISegmentStore<ISegment> store) {
+        fModule = module;
+        fStore = store;
+    }
+
+    @Override
+    protected Collection<ISegment> delegate() {
+        return fStore;
+    }
+
+    @Override
+    public synchronized boolean add(@Nullable ISegment element) {
+        if (!fStore.add(element)) {
+            return false;
+        }
+        if (element == null || fFinished) {
+            return true;
+        }
+        long time = System.nanoTime();
+        if (fPending.isEmpty()) {
+            fFirstPendingTime = time;
+        }
+        fPending.add(element);
+        if (fPending.size() >= BATCH_SIZE || time - fFirstPendingTime >= MAX_DELAY) {
+            flush();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean addAll(@Nullable Collection<? extends ISegment> collection) {
+        if (collection == null) {
+            throw new IllegalArgumentException();
+        }
+        return standardAddAll(collection);
+    }
+
+    @Override
+    public Iterable<ISegment> getIntersectingElements(long position) {
+        return fStore.getIntersectingElements(position);
+    }
+
+    @Override
+    public Iterable<ISegment> getIntersectingElements(long start, long end) {
+        return fStore.getIntersectingElements(start, end);
+    }
+
+    @Override
+    public Iterable<ISegment> getIntersectingElements(long start, long end, Comparator<ISegment> order) {
+        return fStore.getIntersectingElements(start, end, order);
+    }
+
+    @Override
+    public void dispose() {
+        fStore.dispose();
+    }
+
+    @Override
+    public void close(boolean deleteFiles) {
+        fStore.close(deleteFiles);
+    }
+
+    /**
+     * Send the segments that were not sent yet to the listeners
+     */
+    public synchronized void flush() {
+        if (fPending.isEmpty()) {
+            return;
+        }
+        Collection<ISegment> segments = Collections.unmodifiableList(fPending);
+        fPending = new ArrayList<>();
+        for (IAnalysisProgressListener listener : fModule.getListeners()) {
+            listener.onSegmentsAdded(fModule, segments);
+        }
+    }
+
+    /**
+     * Send the remaining segments to the listeners, and stop sending segments
+     * to them.
+     */
+    public synchronized void finish() {
+        flush();
+        fFinished = true;
+    }
+
+    /**
+     * Send all the segments already added to the store to a new listener, so
+     * that it can then be added to the other listeners. It should be added
+     * while holding the lock of this object, so that it does not miss or
+     * receive twice the segments added in the meantime.
+     *
+     * @param listener
+     *            The new listener
+     */
+    public synchronized void catchUp(IAnalysisProgressListener listener) {
+        if (fFinished) {
+            return;
+        }
+        flush();
+        List<ISegment> segments = new ArrayList<>();
+        for (ISegment segment : fStore) {
+            segments.add(segment);
+            if (segments.size() == BATCH_SIZE) {
+                listener.onSegmentsAdded(fModule, Collections.unmodifiableList(segments));
+                segments = new ArrayList<>();
+            }
+        }
+        if (!segments.isEmpty()) {
+            listener.onSegmentsAdded(fModule, Collections.unmodifiableList(segments));
+        }
+    }
+}
@@ -10,12 +10,22 @@ package org.eclipse.tracecompass.analysis.timing.core.segmentstore.statistics;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.analysis.timing.core.segmentstore.IAnalysisProgressListener;
 import org.eclipse.tracecompass.analysis.timing.core.segmentstore.ISegmentStoreProvider;
 import org.eclipse.tracecompass.segmentstore.core.ISegment;
 import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
@@ -33,11 +43,20 @@ import com.google.common.collect.ImmutableList;
  */
 public abstract class AbstractSegmentStatisticsAnalysis extends TmfAbstractAnalysisModule {
 
+    /* Number of segments processed by each task */
+    private static final int CHUNK_SIZE = 1 << 16;
+
     private @Nullable IAnalysisModule fSegmentStoreProviderModule;
 
-    private @Nullable SegmentStoreStatistics fTotalStats;
+    private volatile @Nullable SegmentStoreStatistics fTotalStats;
+
+    private volatile @Nullable Map<String, SegmentStoreStatistics> fPerSegmentTypeStats;
+
+    /* Statistics of the segments received while the store is being built */
+    private volatile @Nullable IncrementalStatistics fInProgress;
 
-    private @Nullable Map<String, SegmentStoreStatistics> fPerSegmentTypeStats;
+    /* Summary of the total statistics per time range, and its segment store */
+    private volatile @Nullable RangeSummary fRangeSummary;
 
     @Override
     protected Iterable<IAnalysisModule> getDependentAnalyses() {
@@ -59,66 +78,218 @@ public abstract class AbstractSegmentStatisticsAnalysis extends TmfAbstractAnaly
         if (!(segmentStoreProviderModule instanceof ISegmentStoreProvider) || (trace == null)) {
             return false;
         }
-        segmentStoreProviderModule.waitForCompletion();
-
-        ISegmentStore<ISegment> segStore = ((ISegmentStoreProvider) segmentStoreProviderModule).getSegmentStore();
-
-        if (segStore != null) {
+        ISegmentStoreProvider provider = (ISegmentStoreProvider) segmentStoreProviderModule;
 
-            boolean result = calculateTotalManual(segStore, monitor);
-
-            if (!result) {
-                return false;
+        /*
+         * Fold in the segments as they are added to the store, so that partial
+         * statistics are available while it is being built
+         */
+        IncrementalStatistics listener = new IncrementalStatistics(monitor);
+        fInProgress = listener;
+        try {
+            provider.addListener(listener);
+            try {
+                segmentStoreProviderModule.waitForCompletion();
+            } finally {
+                provider.removeListener(listener);
             }
 
-            result = calculateTotalPerType(segStore, monitor);
-            if (!result) {
+            ISegmentStore<ISegment> segStore = provider.getSegmentStore();
+            if (segStore == null) {
+                fTotalStats = null;
+                fPerSegmentTypeStats = null;
+                fRangeSummary = null;
+                return true;
+            }
+            if (monitor.isCanceled()) {
                 return false;
             }
+            if (listener.getNbSegments() == segStore.size()) {
+                /*
+                 * All the segments were received, the statistics are complete
+                 * and the listener does not modify them anymore
+                 */
+                StatisticsChunk statistics = listener.getStatistics();
+                fTotalStats = statistics.fTotal;
+                fPerSegmentTypeStats = statistics.fPerType;
+                fRangeSummary = new RangeSummary(statistics.fSummaryTree, segStore);
+                return true;
+            }
+            /*
+             * The store was read back from disk, or was already partly built
+             * when this analysis started
+             */
+            return calculateStatistics(segStore, monitor);
+        } finally {
+            fInProgress = null;
         }
-        return true;
     }
 
-    private boolean calculateTotalManual(ISegmentStore<ISegment> store, IProgressMonitor monitor) {
-        SegmentStoreStatistics total = new SegmentStoreStatistics();
+    /**
+     * Compute the total and per type statistics in a single pass. The main
+     * thread reads the store, while the segments it has read are processed
+     * in chunks on the common fork/join pool. The statistics of the chunks are
+     * then merged in the order of the store.
+     */
+    private boolean calculateStatistics(ISegmentStore<ISegment> store, IProgressMonitor monitor) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        /* Bound the number of segments read but not processed yet */
+        int maxPendingChunks = 2 * pool.getParallelism();
+        Deque<ForkJoinTask<StatisticsChunk>> pendingChunks = new ArrayDeque<>();
+        StatisticsChunk result = new StatisticsChunk();
+
+        List<ISegment> segments = new ArrayList<>(CHUNK_SIZE);
         Iterator<ISegment> iter = store.iterator();
         while (iter.hasNext()) {
             if (monitor.isCanceled()) {
+                pendingChunks.forEach(chunk -> chunk.cancel(false));
                 return false;
             }
-            ISegment segment = iter.next();
-            total.update(checkNotNull(segment));
+            segments.add(checkNotNull(iter.next()));
+            if (segments.size() == CHUNK_SIZE || !iter.hasNext()) {
+                List<ISegment> chunkSegments = segments;
+                pendingChunks.add(pool.submit(() -> computeChunk(chunkSegments, monitor)));
+                segments = new ArrayList<>(CHUNK_SIZE);
+                if (pendingChunks.size() > maxPendingChunks) {
+                    result.merge(checkNotNull(pendingChunks.removeFirst().join()));
+                }
+            }
+        }
+        for (ForkJoinTask<StatisticsChunk> chunk : pendingChunks) {
+            result.merge(checkNotNull(chunk.join()));
+        }
+        if (monitor.isCanceled()) {
+            return false;
         }
-        fTotalStats = total;
+        fTotalStats = result.fTotal;
+        fPerSegmentTypeStats = result.fPerType;
+        fRangeSummary = new RangeSummary(result.fSummaryTree, store);
         return true;
     }
 
-    private boolean calculateTotalPerType(ISegmentStore<ISegment> store, IProgressMonitor monitor) {
-        Map<String, SegmentStoreStatistics> perSegmentTypeStats = new HashMap<>();
-
-        Iterator<ISegment> iter = store.iterator();
-        while (iter.hasNext()) {
+    private StatisticsChunk computeChunk(Collection<ISegment> segments, IProgressMonitor monitor) {
+        StatisticsChunk chunk = new StatisticsChunk();
+        for (ISegment segment : segments) {
             if (monitor.isCanceled()) {
-                return false;
+                break;
             }
-            ISegment segment = iter.next();
+            chunk.fTotal.update(segment);
+            chunk.fSummaryTree.update(segment);
             String segmentType = getSegmentType(segment);
             if (segmentType != null) {
-                SegmentStoreStatistics values = perSegmentTypeStats.get(segmentType);
+                SegmentStoreStatistics values = chunk.fPerType.get(segmentType);
                 if (values == null) {
                     values = new SegmentStoreStatistics();
+                    chunk.fPerType.put(segmentType, values);
                 }
                 values.update(segment);
-                perSegmentTypeStats.put(segmentType, values);
             }
         }
-        fPerSegmentTypeStats = perSegmentTypeStats;
-        return true;
+        return chunk;
+    }
+
+    private static SegmentStoreStatistics copyOf(SegmentStoreStatistics stats) {
+        SegmentStoreStatistics copy = new SegmentStoreStatistics();
+        copy.merge(stats);
+        return copy;
+    }
+
+    /**
+     * Listener of the segment store provider, updating the statistics with
+     * the new segments while the store is being built. The statistics are
+     * only copied when they are read before the analysis completes, so that
+     * the statistics returned are never modified.
+     */
+    private final class IncrementalStatistics implements IAnalysisProgressListener {
+
+        private final IProgressMonitor fMonitor;
+        private final StatisticsChunk fStatistics = new StatisticsChunk();
+
+        public IncrementalStatistics(IProgressMonitor monitor) {
+            fMonitor = monitor;
+        }
+
+        public synchronized long getNbSegments() {
+            return fStatistics.fTotal.getNbSegments();
+        }
+
+        public synchronized StatisticsChunk getStatistics() {
+            return fStatistics;
+        }
+
+        public synchronized @Nullable SegmentStoreStatistics copyTotal() {
+            if (fStatistics.fTotal.getNbSegments() == 0) {
+                return null;
+            }
+            return copyOf(fStatistics.fTotal);
+        }
+
+        public synchronized @Nullable Map<String, SegmentStoreStatistics> copyPerType() {
+            if (fStatistics.fTotal.getNbSegments() == 0) {
+                return null;
+            }
+            Map<String, SegmentStoreStatistics> perType = new HashMap<>();
+            for (Entry<String, SegmentStoreStatistics> entry : fStatistics.fPerType.entrySet()) {
+                perType.put(entry.getKey(), copyOf(entry.getValue()));
+            }
+            return Collections.unmodifiableMap(perType);
+        }
+
+        @Override
+        public synchronized void onSegmentsAdded(ISegmentStoreProvider segmentProvider, Collection<ISegment> segments) {
+            if (fMonitor.isCanceled()) {
+                return;
+            }
+            fStatistics.merge(computeChunk(segments, fMonitor));
+        }
+
+        @Override
+        public void onComplete(ISegmentStoreProvider segmentProvider, ISegmentStore<ISegment> data) {
+            /* The statistics are checked once the provider is completed */
+        }
+    }
+
+    /**
+     * The total and per type statistics of a part of the segment store
+     */
+    private static final class StatisticsChunk {
+        private final SegmentStoreStatistics fTotal = new SegmentStoreStatistics();
+        private final Map<String, SegmentStoreStatistics> fPerType = new HashMap<>();
+        private final SegmentStatisticsSummaryTree fSummaryTree = new SegmentStatisticsSummaryTree();
+
+        public void merge(StatisticsChunk other) {
+            fTotal.merge(other.fTotal);
+            fSummaryTree.merge(other.fSummaryTree);
+            for (Entry<String, SegmentStoreStatistics> entry : other.fPerType.entrySet()) {
+                SegmentStoreStatistics values = fPerType.get(entry.getKey());
+                if (values == null) {
+                    fPerType.put(entry.getKey(), entry.getValue());
+                } else {
+                    values.merge(entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * The summary tree of the total statistics, with the store it summarizes
+     */
+    private static final class RangeSummary {
+        private final SegmentStatisticsSummaryTree fTree;
+        private final ISegmentStore<ISegment> fStore;
+
+        public RangeSummary(SegmentStatisticsSummaryTree tree, ISegmentStore<ISegment> store) {
+            fTree = tree;
+            fStore = store;
+        }
     }
 
     /**
      * Get the type of a segment. Statistics per type will use this type as a
      * key
+     * <p>
+     * The segments are processed in parallel, so this method may be called by
+     * several threads at the same time.
      *
      * @param segment
      *            the segment for which to get the type
@@ -146,6 +317,11 @@ public abstract class AbstractSegmentStatisticsAnalysis extends TmfAbstractAnaly
      * @return the total statistics
      */
     public @Nullable SegmentStoreStatistics getTotalStats() {
+        IncrementalStatistics inProgress = fInProgress;
+        if (inProgress != null) {
+            /* Partial statistics, while the segment store is being built */
+            return inProgress.copyTotal();
+        }
         return fTotalStats;
     }
 
@@ -155,7 +331,33 @@ public abstract class AbstractSegmentStatisticsAnalysis extends TmfAbstractAnaly
      * @return the per syscall statistics
      */
     public @Nullable Map<String, SegmentStoreStatistics> getPerSegmentTypeStats() {
+        IncrementalStatistics inProgress = fInProgress;
+        if (inProgress != null) {
+            return inProgress.copyPerType();
+        }
         return fPerSegmentTypeStats;
     }
 
+    /**
+     * The total statistics of the segments starting in a time range. They are
+     * computed from a summary of the statistics per time range, so only the
+     * segments at the ends of the range are read. The percentiles are not
+     * available in these statistics.
+     *
+     * @param start
+     *            the start of the time range
+     * @param end
+     *            the end of the time range, inclusive
+     * @return the statistics of the segments starting in the time range, or
+     *         null if the analysis is not completed
+     * @since 2.0
+     */
+    public @Nullable SegmentStoreStatistics getTotalStatsForRange(long start, long end) {
+        RangeSummary summary = fRangeSummary;
+        if (summary == null) {
+            return null;
+        }
+        return summary.fTree.getStatistics(summary.fStore, start, end);
+    }
+
 }
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.tracecompass.analysis.timing.core.segmentstore.statistics;
+
+/**
+ * Histogram of non-negative long values, used to estimate their percentiles.
+ *
+ * The buckets have a width of 1 for the small values, then each power of two
+ * is divided in the same number of buckets, so that all the values keep the
+ * same number of significant bits. The estimated percentiles are then within
+ * 1% of the actual values, whatever the range of values, and the histogram of
+ * a set of values cannot use more than a few thousand buckets.
+ *
+ * Only the range of buckets between the lowest and highest values seen is
+ * allocated, and two histograms can be merged, for example when computing the
+ * histograms of different parts of a data set in parallel.
+ */
+final class LogarithmicHistogram {
+
+    /* Number of significant bits kept for each value */
+    private static final int PRECISION_BITS = 7;
+
+    /* Values lower than this one have their own bucket */
+    private static final int EXACT_VALUES = 1 << PRECISION_BITS;
+
+    /* Number of buckets for each power of two above the exact values */
+    private static final int BUCKETS_PER_POWER = EXACT_VALUES / 2;
+
+    private static final int MAX_INDEX = getIndex(Long.MAX_VALUE);
+
+    /* Counts of the buckets from fOffset to fOffset + fCounts.length - 1 */
+    private long[] fCounts = new long[0];
+    private int fOffset = 0;
+    private long fTotal = 0;
+
+    /**
+     * Add a value to the histogram
+     *
+     * @param value
+     *            The value, negative values are counted as 0
+     */
+    public void add(long value) {
+        int index = getIndex(Math.max(value, 0));
+        ensureRange(index, index);
+        fCounts[index - fOffset]++;
+        fTotal++;
+    }
+
+    /**
+     * Add the values of another histogram to this one
+     *
+     * @param other
+     *            The histogram to merge into this one, it is not modified
+     */
+    public void merge(LogarithmicHistogram other) {
+        if (other.fTotal == 0) {
+            return;
+        }
+        long[] counts = other.fCounts;
+        ensureRange(other.fOffset, other.fOffset + counts.length - 1);
+        int shift = other.fOffset - fOffset;
+        for (int i = 0; i < counts.length; i++) {
+            fCounts[i + shift] += counts[i];
+        }
+        fTotal += other.fTotal;
+    }
+
+    /**
+     * Get the number of values in the histogram
+     *
+     * @return The number of values
+     */
+    public long getTotal() {
+        return fTotal;
+    }
+
+    /**
+     * Estimate a percentile of the values, using the nearest-rank method. The
+     * value returned is the middle of the bucket of the value of that rank.
+     *
+     * @param percentile
+     *            The percentile, between 0 and 100
+     * @return The estimated value of that percentile, or NaN if the histogram
+     *         is empty
+     */
+    public double getPercentile(double percentile) {
+        if (fTotal == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) Math.ceil(percentile / 100.0 * fTotal);
+        rank = Math.max(1, Math.min(rank, fTotal));
+        long seen = 0;
+        for (int i = 0; i < fCounts.length; i++) {
+            seen += fCounts[i];
+            if (seen >= rank) {
+                int index = i + fOffset;
+                return getLowerBound(index) + (getWidth(index) - 1) / 2.0;
+            }
+        }
+        /* Not reachable, the counts add up to the total */
+        return Double.NaN;
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    private static int getIndex(long value) {
+        if (value < EXACT_VALUES) {
+            return (int) value;
+        }
+        /* Shift the value so that only its significant bits remain */
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - (PRECISION_BITS - 1);
+        return shift * BUCKETS_PER_POWER + (int) (value >>> shift);
+    }
+
+    private static long getLowerBound(int index) {
+        if (index < EXACT_VALUES) {
+            return index;
+        }
+        int shift = index / BUCKETS_PER_POWER - 1;
+        long significand = index - shift * BUCKETS_PER_POWER;
+        return significand << shift;
+    }
+
+    private static long getWidth(int index) {
+        if (index < EXACT_VALUES) {
+            return 1;
+        }
+        return 1L << (index / BUCKETS_PER_POWER - 1);
+    }
+
+    /**
+     * Grow the counts array so that it covers the buckets from low to high.
+     * The array grows by at least its current size, to amortize the copies.
+     */
+    private void ensureRange(int low, int high) {
+        int length = fCounts.length;
+        if (length == 0) {
+            fOffset = Math.max(0, low - BUCKETS_PER_POWER);
+            fCounts = new long[Math.min(MAX_INDEX + 1, Math.max(high + BUCKETS_PER_POWER, fOffset + EXACT_VALUES)) - fOffset];
+            return;
+        }
+        int end = fOffset + length;
+        if (low >= fOffset && high < end) {
+            return;
+        }
+        int newOffset = fOffset;
+        int newEnd = end;
+        if (low < fOffset) {
+            newOffset = Math.max(0, Math.min(low, fOffset - length));
+        }
+        if (high >= end) {
+            newEnd = Math.min(MAX_INDEX + 1, Math.max(high + 1, end + length));
+        }
+        long[] counts = new long[newEnd - newOffset];
+        System.arraycopy(fCounts, 0, counts, fOffset - newOffset, length);
+        fCounts = counts;
+        fOffset = newOffset;
+    }
+}
@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.tracecompass.analysis.timing.core.segmentstore.statistics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+
+/**
+ * Summary of the statistics of a segment store per time range, to get the
+ * statistics of the segments starting in any time range without reading all
+ * of them.
+ *
+ * The segments are summarized in buckets of equal duration, according to their
+ * start times. The duration of the buckets is a power of two, which doubles
+ * whenever there are too many buckets, so that the summary stays small
+ * whatever the duration of the trace. The statistics of the buckets are then
+ * summarized at several resolutions, each bucket of a level summarizing
+ * {@value #FANOUT} buckets of the level below. A range query combines a
+ * logarithmic number of summaries, and only reads the segments of the buckets
+ * at the ends of the range, which are partly covered by the range.
+ *
+ * Summaries can be merged, so they can be computed in parallel on different
+ * parts of the segment store.
+ *
+ * @since 2.0
+ */
+public class SegmentStatisticsSummaryTree {
+
+    /* Maximum number of buckets, before doubling their duration */
+    private static final int MAX_BUCKETS = 1 << 14;
+
+    /* Number of summaries summarized by a summary of the next level */
+    private static final int FANOUT = 16;
+
+    /* Duration of the buckets */
+    private long fBucketDuration = 1;
+
+    /* Statistics of the segments starting in each bucket, by bucket index */
+    private Map<Long, SegmentStoreStatistics> fBuckets = new HashMap<>();
+
+    /* The sorted buckets and their summaries, computed when first queried */
+    private @Nullable Levels fLevels = null;
+
+    /**
+     * Add a segment to the summary
+     *
+     * @param segment
+     *            The segment to add
+     */
+    public synchronized void update(ISegment segment) {
+        long index = Math.floorDiv(segment.getStart(), fBucketDuration);
+        SegmentStoreStatistics bucket = fBuckets.get(index);
+        if (bucket == null) {
+            bucket = new SegmentStoreStatistics(false);
+            fBuckets.put(index, bucket);
+        }
+        bucket.update(segment);
+        fLevels = null;
+        while (fBuckets.size() > MAX_BUCKETS) {
+            doubleBucketDuration();
+        }
+    }
+
+    /**
+     * Merge another summary into this one. The other summary must not be
+     * modified anymore after this.
+     *
+     * @param other
+     *            The summary to merge
+     */
+    public synchronized void merge(SegmentStatisticsSummaryTree other) {
+        synchronized (other) {
+            while (other.fBucketDuration > fBucketDuration) {
+                doubleBucketDuration();
+            }
+            while (other.fBucketDuration < fBucketDuration) {
+                other.doubleBucketDuration();
+            }
+            for (Entry<Long, SegmentStoreStatistics> entry : other.fBuckets.entrySet()) {
+                SegmentStoreStatistics bucket = fBuckets.get(entry.getKey());
+                if (bucket == null) {
+                    fBuckets.put(entry.getKey(), entry.getValue());
+                } else {
+                    bucket.merge(entry.getValue());
+                }
+            }
+        }
+        fLevels = null;
+        while (fBuckets.size() > MAX_BUCKETS) {
+            doubleBucketDuration();
+        }
+    }
+
+    /**
+     * Get the statistics of the segments starting in a time range. The
+     * percentiles are not available in these statistics.
+     *
+     * @param store
+     *            The segment store that was summarized, to read the segments
+     *            of the buckets partly covered by the range
+     * @param start
+     *            The start of the range
+     * @param end
+     *            The end of the range, inclusive
+     * @return The statistics of the segments starting in the range
+     */
+    public synchronized SegmentStoreStatistics getStatistics(ISegmentStore<? extends ISegment> store, long start, long end) {
+        SegmentStoreStatistics result = new SegmentStoreStatistics(false);
+        if (start > end) {
+            return result;
+        }
+        long duration = fBucketDuration;
+
+        /* Indexes of the first and last buckets fully in the range */
+        long first = Math.floorDiv(start, duration);
+        boolean partialFirst = (Math.floorMod(start, duration) != 0);
+        if (partialFirst) {
+            first++;
+        }
+        long last = Math.floorDiv(end, duration);
+        boolean partialLast = (Math.floorMod(end, duration) != duration - 1);
+        if (partialLast) {
+            last--;
+        }
+        if (first > last) {
+            addSegments(result, store, start, end);
+            return result;
+        }
+
+        Levels levels = getLevels();
+        int from = insertionPoint(levels.fIndexes, first, false);
+        int to = insertionPoint(levels.fIndexes, last, true);
+        if (partialFirst) {
+            addSegments(result, store, start, first * duration - 1);
+        }
+        addSummaries(result, levels.fSummaries, 0, from, to);
+        if (partialLast) {
+            addSegments(result, store, (last + 1) * duration, end);
+        }
+        return result;
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    private void doubleBucketDuration() {
+        Map<Long, SegmentStoreStatistics> buckets = new HashMap<>();
+        for (Entry<Long, SegmentStoreStatistics> entry : fBuckets.entrySet()) {
+            /* The shift rounds towards negative infinity, like floorDiv */
+            long index = entry.getKey() >> 1;
+            SegmentStoreStatistics bucket = buckets.get(index);
+            if (bucket == null) {
+                buckets.put(index, entry.getValue());
+            } else {
+                bucket.merge(entry.getValue());
+            }
+        }
+        fBuckets = buckets;
+        fBucketDuration *= 2;
+        fLevels = null;
+    }
+
+    private Levels getLevels() {
+        Levels levels = fLevels;
+        if (levels == null) {
+            levels = new Levels(fBuckets);
+            fLevels = levels;
+        }
+        return levels;
+    }
+
+    private static void addSegments(SegmentStoreStatistics result, ISegmentStore<? extends ISegment> store, long start, long end) {
+        if (start > end) {
+            return;
+        }
+        for (ISegment segment : store.getIntersectingElements(start, end)) {
+            if (segment.getStart() >= start) {
+                result.update(segment);
+            }
+        }
+    }
+
+    /**
+     * Add the summaries from index 'from' (inclusive) to 'to' (exclusive) of
+     * a level, using the summaries of the upper levels for the parts that
+     * they fully cover.
+     */
+    private static void addSummaries(SegmentStoreStatistics result, List<SegmentStoreStatistics[]> summaries, int level, int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        SegmentStoreStatistics[] current = summaries.get(level);
+        if (level + 1 < summaries.size()) {
+            int upperFrom = (from + FANOUT - 1) / FANOUT;
+            int upperTo = to / FANOUT;
+            if (upperFrom < upperTo) {
+                for (int i = from; i < upperFrom * FANOUT; i++) {
+                    result.merge(current[i]);
+                }
+                addSummaries(result, summaries, level + 1, upperFrom, upperTo);
+                for (int i = upperTo * FANOUT; i < to; i++) {
+                    result.merge(current[i]);
+                }
+                return;
+            }
+        }
+        for (int i = from; i < to; i++) {
+            result.merge(current[i]);
+        }
+    }
+
+    /**
+     * Position of a value in a sorted array of distinct values, or where it
+     * would be inserted. If the value is found, the position after it is
+     * returned if 'after' is true.
+     */
+    private static int insertionPoint(long[] array, long value, boolean after) {
+        int position = Arrays.binarySearch(array, value);
+        if (position < 0) {
+            return -position - 1;
+        }
+        return (after ? position + 1 : position);
+    }
+
+    /**
+     * The buckets sorted by index, and the summaries of all the levels
+     */
+    private static final class Levels {
+        private final long[] fIndexes;
+        private final List<SegmentStoreStatistics[]> fSummaries = new ArrayList<>();
+
+        public Levels(Map<Long, SegmentStoreStatistics> buckets) {
+            fIndexes = buckets.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+            SegmentStoreStatistics[] level = new SegmentStoreStatistics[fIndexes.length];
+            for (int i = 0; i < fIndexes.length; i++) {
+                level[i] = buckets.get(fIndexes[i]);
+            }
+            fSummaries.add(level);
+            while (level.length > FANOUT) {
+                SegmentStoreStatistics[] upper = new SegmentStoreStatistics[(level.length + FANOUT - 1) / FANOUT];
+                for (int i = 0; i < upper.length; i++) {
+                    SegmentStoreStatistics summary = new SegmentStoreStatistics(false);
+                    for (int j = i * FANOUT; j < Math.min(level.length, (i + 1) * FANOUT); j++) {
+                        summary.merge(level[j]);
+                    }
+                    upper[i] = summary;
+                }
+                fSummaries.add(upper);
+                level = upper;
+            }
+        }
+    }
+}
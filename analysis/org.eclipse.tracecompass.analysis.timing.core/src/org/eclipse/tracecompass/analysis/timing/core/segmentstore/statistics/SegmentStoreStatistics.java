@@ -11,11 +11,17 @@
  *******************************************************************************/
 package org.eclipse.tracecompass.analysis.timing.core.segmentstore.statistics;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.segmentstore.core.BasicSegment;
 import org.eclipse.tracecompass.segmentstore.core.ISegment;
 
 /**
- * Class to calculate simple segment store statistics (min, max, average)
+ * Class to calculate simple segment store statistics (min, max, average,
+ * standard deviation and percentiles).
+ *
+ * The statistics of different sets of segments can be merged, so that the
+ * statistics of a large segment store can be computed in parallel, one part of
+ * the store at a time.
  *
  * @author Bernd Hufmann
  */
@@ -25,11 +31,25 @@ public class SegmentStoreStatistics {
     private long fNbSegments;
     private double fAverage;
     private double fVariance;
+    /* Null if the percentiles are not computed */
+    private @Nullable LogarithmicHistogram fHistogram;
 
     /**
      * Constructor
      */
     public SegmentStoreStatistics() {
+        this(true);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param percentiles
+     *            Whether to keep the histogram needed to estimate the
+     *            percentiles. Statistics without it are much smaller.
+     */
+    SegmentStoreStatistics(boolean percentiles) {
+        fHistogram = (percentiles ? new LogarithmicHistogram() : null);
         fMin = new BasicSegment(0, Long.MAX_VALUE);
         fMax = new BasicSegment(Long.MIN_VALUE, 0);
         fNbSegments = 0;
@@ -104,6 +124,29 @@ public class SegmentStoreStatistics {
         return fNbSegments > 2 ? Math.sqrt(fVariance / (fNbSegments - 1)) : Double.NaN;
     }
 
+    /**
+     * Estimates a percentile of the segment lengths. The estimate is within 1%
+     * of the actual value, and within the minimum and maximum lengths.
+     *
+     * @param percentile
+     *            the percentile to estimate, between 0 and 100, for example 50
+     *            for the median or 99.9 for the 99.9th percentile
+     * @return the estimated percentile, will return NaN if there are no
+     *         segments, or if the percentiles were not computed
+     * @since 2.0
+     */
+    public double getPercentile(double percentile) {
+        LogarithmicHistogram histogram = fHistogram;
+        if (histogram == null) {
+            return Double.NaN;
+        }
+        double value = histogram.getPercentile(percentile);
+        if (Double.isNaN(value)) {
+            return value;
+        }
+        return Math.max(getMin(), Math.min(getMax(), value));
+    }
+
     /**
      * Update the statistics based on a given segment
      * <p>
@@ -129,5 +172,46 @@ public class SegmentStoreStatistics {
         double delta = value - fAverage;
         fAverage += delta / fNbSegments;
         fVariance += delta * (value - fAverage);
+        LogarithmicHistogram histogram = fHistogram;
+        if (histogram != null) {
+            histogram.add(value);
+        }
+    }
+
+    /**
+     * Merge the statistics of other segments into these ones. The result is
+     * the same as if the segments of the other statistics had been given to
+     * {@link #update} after the segments of these statistics. If the other
+     * statistics do not have percentiles, these ones will not have them
+     * anymore.
+     *
+     * @param other
+     *            the statistics to merge, they are not modified
+     * @since 2.0
+     */
+    public void merge(SegmentStoreStatistics other) {
+        long otherNbSegments = other.fNbSegments;
+        if (otherNbSegments == 0) {
+            return;
+        }
+        fMin = getMin() <= other.getMin() ? fMin : other.fMin;
+        fMax = getMax() >= other.getMax() ? fMax : other.fMax;
+
+        /*
+         * Combine the means and sums of squared differences of both sets, see
+         * the parallel algorithm of the same Wikipedia article as getStdDev()
+         */
+        long nbSegments = fNbSegments + otherNbSegments;
+        double delta = other.fAverage - fAverage;
+        fAverage += delta * otherNbSegments / nbSegments;
+        fVariance += other.fVariance + delta * delta * fNbSegments * otherNbSegments / nbSegments;
+        fNbSegments = nbSegments;
+        LogarithmicHistogram histogram = fHistogram;
+        LogarithmicHistogram otherHistogram = other.fHistogram;
+        if (histogram != null && otherHistogram != null) {
+            histogram.merge(otherHistogram);
+        } else {
+            fHistogram = null;
+        }
     }
 }
@@ -17,6 +17,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
@@ -25,8 +26,7 @@ import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.segmentstore.core.ISegment;
 import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
-
-import com.google.common.collect.ImmutableList;
+import org.eclipse.tracecompass.segmentstore.core.SegmentComparators;
 
 /**
  * Implementation of an {@link ISegmentStore} using one in-memory
@@ -64,7 +64,8 @@ public class ArrayListStore<@NonNull E extends ISegment> implements ISegmentStor
 
     private final List<E> fStore = new ArrayList<>();
 
-    private @Nullable transient Iterable<E> fLastSnapshot = null;
+    /* Incremented by each modification, under the write lock */
+    private int fVersion = 0;
 
     /**
      * Constructor
@@ -90,12 +91,7 @@ public class ArrayListStore<@NonNull E extends ISegment> implements ISegmentStor
     public Iterator<E> iterator() {
         fLock.readLock().lock();
         try {
-            Iterable<E> lastSnapshot = fLastSnapshot;
-            if (lastSnapshot == null) {
-                lastSnapshot = ImmutableList.copyOf(fStore);
-                fLastSnapshot = lastSnapshot;
-            }
-            return checkNotNull(lastSnapshot.iterator());
+            return new StoreIterator(fVersion);
         } finally {
             fLock.readLock().unlock();
         }
@@ -109,6 +105,7 @@ public class ArrayListStore<@NonNull E extends ISegment> implements ISegmentStor
 
         fLock.writeLock().lock();
         try {
+            fVersion++;
             fStore.add(val);
             // Go backwards to "sift up" like a priority queue
             for (int i = size() - 1; i > 0 && COMPARATOR.compare(val, fStore.get(i - 1)) < 0; i--) {
@@ -209,6 +206,7 @@ public class ArrayListStore<@NonNull E extends ISegment> implements ISegmentStor
     public void clear() {
         fLock.writeLock().lock();
         try {
+            fVersion++;
             fStore.clear();
         } finally {
             fLock.writeLock().unlock();
@@ -243,13 +241,113 @@ public class ArrayListStore<@NonNull E extends ISegment> implements ISegmentStor
         }
     }
 
+    @Override
+    public Iterable<E> getIntersectingElements(long start, long end, Comparator<ISegment> order) {
+        if (order == SegmentComparators.INTERVAL_START_COMPARATOR) {
+            /* The intersection queries already return the elements in that order */
+            return getIntersectingElements(start, end);
+        }
+        return ISegmentStore.super.getIntersectingElements(start, end, order);
+    }
+
     @Override
     public void dispose() {
         fLock.writeLock().lock();
         try {
+            fVersion++;
             fStore.clear();
         } finally {
             fLock.writeLock().unlock();
         }
     }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the index of the element that comes after an element of the store.
+     * The read lock must be held.
+     *
+     * @return The index after the element, or after the elements that compare
+     *         equal to it if it is not in the store anymore
+     */
+    private int indexAfter(E element) {
+        /* Binary search of the first element that is greater */
+        int low = 0;
+        int high = fStore.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (COMPARATOR.compare(fStore.get(mid), element) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        /*
+         * The equal elements are kept in the order they were added, so the
+         * ones added after this element come after it.
+         */
+        for (int i = low - 1; i >= 0 && COMPARATOR.compare(fStore.get(i), element) == 0; i--) {
+            if (fStore.get(i) == element) {
+                return i + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Iterator over the sorted list of the store, without copying it. When
+     * segments are added during the iteration, the iterator finds back the
+     * last element it returned, so it returns the elements added after it,
+     * and does not return the same element twice.
+     */
+    private final class StoreIterator implements Iterator<E> {
+
+        private int fIteratorVersion;
+        private int fNextIndex = 0;
+        private @Nullable E fLast = null;
+
+        public StoreIterator(int version) {
+            fIteratorVersion = version;
+        }
+
+        /* The read lock must be held */
+        private void update() {
+            if (fIteratorVersion != fVersion) {
+                fIteratorVersion = fVersion;
+                E last = fLast;
+                if (last != null) {
+                    fNextIndex = indexAfter(last);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            fLock.readLock().lock();
+            try {
+                update();
+                return fNextIndex < fStore.size();
+            } finally {
+                fLock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public E next() {
+            fLock.readLock().lock();
+            try {
+                update();
+                if (fNextIndex >= fStore.size()) {
+                    throw new NoSuchElementException();
+                }
+                E element = checkNotNull(fStore.get(fNextIndex++));
+                fLast = element;
+                return element;
+            } finally {
+                fLock.readLock().unlock();
+            }
+        }
+    }
 }
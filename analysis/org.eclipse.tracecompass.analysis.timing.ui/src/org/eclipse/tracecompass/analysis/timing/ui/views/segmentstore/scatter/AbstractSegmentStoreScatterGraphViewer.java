@@ -62,6 +62,8 @@ import org.swtchart.ISeriesSet;
 import org.swtchart.LineStyle;
 import org.swtchart.Range;
 
+import com.google.common.collect.Lists;
+
 /**
  * Displays the segment store provider data in a scatter graph
  *
@@ -109,10 +111,9 @@ public abstract class AbstractSegmentStoreScatterGraphViewer extends TmfCommonXL
             final long endTime = fCurrentRange.getEndTime().getValue();
             fPixelStart = startTime;
             fPixelSize = (endTime - startTime) / MAX_POINTS;
-            final Iterable<ISegment> intersectingElements = segStore.getIntersectingElements(startTime, endTime);
+            final Iterable<ISegment> intersectingElements = segStore.getIntersectingElements(startTime, endTime, SegmentComparators.INTERVAL_START_COMPARATOR);
 
-            final List<ISegment> list = convertIterableToList(intersectingElements, statusMonitor);
-            final List<ISegment> displayData = (!list.isEmpty()) ? compactList(startTime, list, statusMonitor) : list;
+            final List<ISegment> displayData = compactList(startTime, intersectingElements, statusMonitor);
 
             setWindowRange(startTimeInNanos, endTimeInNanos);
             redraw(statusMonitor, startTime, endTime, displayData);
@@ -135,20 +136,17 @@ public abstract class AbstractSegmentStoreScatterGraphViewer extends TmfCommonXL
             });
         }
 
-        private List<ISegment> compactList(final long startTime, final List<ISegment> listToCompact, final IProgressMonitor statusMonitor) {
+        private List<ISegment> compactList(final long startTime, final Iterable<ISegment> iterableToCompact, final IProgressMonitor statusMonitor) {
             List<ISegment> displayData = new ArrayList<>();
-            ISegment last = listToCompact.get(0);
-            if (last.getStart() >= startTime) {
-                displayData.add(last);
-            }
-            for (ISegment next : listToCompact) {
+            @Nullable ISegment last = null;
+            for (ISegment next : iterableToCompact) {
                 if (next.getStart() < startTime) {
                     continue;
                 }
                 if (statusMonitor.isCanceled()) {
                     return Collections.EMPTY_LIST;
                 }
-                if (!overlaps(last, next)) {
+                if (last == null || !overlaps(last, next)) {
                     displayData.add(next);
                     last = next;
                 }
@@ -156,18 +154,6 @@ public abstract class AbstractSegmentStoreScatterGraphViewer extends TmfCommonXL
             return displayData;
         }
 
-        private List<ISegment> convertIterableToList(final Iterable<ISegment> iterable, final IProgressMonitor statusMonitor) {
-            final List<ISegment> list = new ArrayList<>();
-            for (ISegment seg : iterable) {
-                if (statusMonitor.isCanceled()) {
-                    return Collections.EMPTY_LIST;
-                }
-                list.add(seg);
-            }
-            Collections.sort(list, SegmentComparators.INTERVAL_START_COMPARATOR);
-            return list;
-        }
-
         private boolean overlaps(ISegment last, ISegment next) {
             long timePerPix = fPixelSize;
             final long start = last.getStart();
@@ -290,12 +276,7 @@ public abstract class AbstractSegmentStoreScatterGraphViewer extends TmfCommonXL
             }
             fDisplayData = Collections.EMPTY_LIST;
         } else {
-            Collection<ISegment> elements = (Collection<ISegment>) dataInput.getIntersectingElements(currentStart, currentEnd);
-            // getIntersectingElements can return an unsorted iterable, make
-            // sure our collection is sorted
-            ArrayList<ISegment> list = new ArrayList<>(elements);
-            Collections.sort(list, SegmentComparators.INTERVAL_START_COMPARATOR);
-            fDisplayData = list;
+            fDisplayData = Lists.newArrayList(dataInput.getIntersectingElements(currentStart, currentEnd, SegmentComparators.INTERVAL_START_COMPARATOR));
         }
         setWindowRange(currentStart, currentEnd);
         updateRange(currentRange);
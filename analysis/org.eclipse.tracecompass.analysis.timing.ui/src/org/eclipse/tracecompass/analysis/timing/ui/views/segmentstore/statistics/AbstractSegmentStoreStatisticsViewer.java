@@ -65,9 +65,16 @@ public abstract class AbstractSegmentStoreStatisticsViewer extends AbstractTmfTr
             checkNotNull(Messages.SegmentStoreStatistics_MaxLabel),
             checkNotNull(Messages.SegmentStoreStatistics_AverageLabel),
             checkNotNull(Messages.SegmentStoreStatisticsViewer_StandardDeviation),
-            checkNotNull(Messages.SegmentStoreStatisticsViewer_Count)
+            checkNotNull(Messages.SegmentStoreStatisticsViewer_Count),
+            checkNotNull(Messages.SegmentStoreStatisticsViewer_Median),
+            checkNotNull(Messages.SegmentStoreStatisticsViewer_Percentile99),
+            checkNotNull(Messages.SegmentStoreStatisticsViewer_Percentile999)
     };
 
+    /* Percentiles of the columns following the count column */
+    private static final double[] PERCENTILES = new double[] { 50, 99, 99.9 };
+    private static final int FIRST_PERCENTILE_COLUMN = 6;
+
     /**
      * Constructor
      *
@@ -119,6 +126,8 @@ public abstract class AbstractSegmentStoreStatisticsViewer extends AbstractTmfTr
                         value = String.valueOf(toFormattedString(entry.getEntry().getStdDev()));
                     } else if (columnIndex == 5) {
                         value = String.valueOf(entry.getEntry().getNbSegments());
+                    } else if (columnIndex >= FIRST_PERCENTILE_COLUMN && columnIndex < FIRST_PERCENTILE_COLUMN + PERCENTILES.length) {
+                        value = toFormattedString(entry.getEntry().getPercentile(PERCENTILES[columnIndex - FIRST_PERCENTILE_COLUMN]));
                     }
                 }
             }
@@ -254,6 +263,26 @@ public abstract class AbstractSegmentStoreStatisticsViewer extends AbstractTmfTr
                     }
                 });
                 columns.add(column);
+                for (int i = 0; i < PERCENTILES.length; i++) {
+                    final double percentile = PERCENTILES[i];
+                    column = new TmfTreeColumnData(COLUMN_NAMES[FIRST_PERCENTILE_COLUMN + i]);
+                    column.setAlignment(SWT.RIGHT);
+                    column.setComparator(new ViewerComparator() {
+                        @Override
+                        public int compare(@Nullable Viewer viewer, @Nullable Object e1, @Nullable Object e2) {
+                            if ((e1 == null) || (e2 == null)) {
+                                return 0;
+                            }
+
+                            SegmentStoreStatisticsEntry n1 = (SegmentStoreStatisticsEntry) e1;
+                            SegmentStoreStatisticsEntry n2 = (SegmentStoreStatisticsEntry) e2;
+
+                            return Double.compare(n1.getEntry().getPercentile(percentile), n2.getEntry().getPercentile(percentile));
+
+                        }
+                    });
+                    columns.add(column);
+                }
                 column = new TmfTreeColumnData(""); //$NON-NLS-1$
                 columns.add(column);
                 return columns;
@@ -34,6 +34,12 @@ public class Messages extends NLS {
     public static String SegmentStoreStatisticsViewer_Count;
     /** Name of average column */
     public static String SegmentStoreStatisticsViewer_StandardDeviation;
+    /** Name of median column */
+    public static String SegmentStoreStatisticsViewer_Median;
+    /** Name of 99th percentile column */
+    public static String SegmentStoreStatisticsViewer_Percentile99;
+    /** Name of 99.9th percentile column */
+    public static String SegmentStoreStatisticsViewer_Percentile999;
     /** Menu item for go to minimum duration */
     public static String SegmentStoreStatisticsViewer_GotoMinAction;
     /** Menu item for go to maximum duration */
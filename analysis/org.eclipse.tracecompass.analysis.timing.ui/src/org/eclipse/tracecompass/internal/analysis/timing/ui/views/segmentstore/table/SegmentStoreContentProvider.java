@@ -71,7 +71,14 @@ public class SegmentStoreContentProvider implements ISortingLazyContentProvider
     @Override
     public void inputChanged(@Nullable Viewer viewer, @Nullable Object oldInput, @Nullable Object newInput) {
         fTableViewer = (TableViewer) viewer;
-        if (newInput instanceof Collection<?> || newInput instanceof ISegmentStore) {
+        if (newInput instanceof ISegmentStore) {
+            @SuppressWarnings("unchecked")
+            ISegmentStore<@NonNull ISegment> segmentStore = (ISegmentStore<@NonNull ISegment>) newInput;
+            /* Let the store provide its elements in order when it can */
+            Comparator<ISegment> comparator = fComparator;
+            Iterable<@NonNull ISegment> segments = (comparator == null ? segmentStore : segmentStore.sortedBy(comparator));
+            fSegmentArray = checkNotNullContents(Iterables.toArray(segments, ISegment.class));
+        } else if (newInput instanceof Collection<?>) {
             @SuppressWarnings("unchecked")
             Collection<ISegment> segmentStore = (Collection<@NonNull ISegment>) newInput;
             ISegment[] array = Iterables.toArray(segmentStore, ISegment.class);
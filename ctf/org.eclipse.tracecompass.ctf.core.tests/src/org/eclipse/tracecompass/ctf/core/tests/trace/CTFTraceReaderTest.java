@@ -16,7 +16,14 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.CTFStrings;
+import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
 import org.eclipse.tracecompass.ctf.core.tests.shared.CtfTestTraceUtils;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
@@ -298,6 +305,109 @@ public class CTFTraceReaderTest {
         assertTrue(result);
     }
 
+    /**
+     * Test reading a trace whose stream files were indexed in parallel before
+     * creating the reader. The events must be the same as when the packets are
+     * indexed as they are read.
+     *
+     * @throws CTFException
+     *             error
+     */
+    @Test
+    public void testIndexStreamInputs() throws CTFException {
+        CTFTrace trace = CtfTestTraceUtils.getTrace(testTrace);
+        trace.indexStreamInputs(new NullProgressMonitor());
+        try (CTFTraceReader reader = new CTFTraceReader(trace)) {
+            long count = 0;
+            while (fixture.hasMoreEvents()) {
+                IEventDefinition expected = fixture.getCurrentEventDef();
+                IEventDefinition actual = reader.getCurrentEventDef();
+                assertNotNull(actual);
+                assertEquals(expected.getTimestamp(), actual.getTimestamp());
+                assertEquals(expected.getDeclaration().getName(), actual.getDeclaration().getName());
+                fixture.advance();
+                reader.advance();
+                count++;
+            }
+            assertFalse(reader.hasMoreEvents());
+            assertTrue(count > 0);
+        }
+    }
+
+    /**
+     * Test that the reader with an event filter reads the same events as the
+     * reader without filter, minus the rejected ones
+     *
+     * @throws CTFException
+     *             error
+     */
+    @Test
+    public void testEventFilter() throws CTFException {
+        Predicate<IEventDeclaration> filter = declaration -> declaration.getName().startsWith("sched_");
+        List<String> expected = new ArrayList<>();
+        while (fixture.hasMoreEvents()) {
+            IEventDefinition event = fixture.getCurrentEventDef();
+            if (filter.test(event.getDeclaration())) {
+                expected.add(event.getTimestamp() + " " + event.getDeclaration().getName());
+            }
+            fixture.advance();
+        }
+        assertFalse(expected.isEmpty());
+
+        try (CTFTraceReader reader = new CTFTraceReader(CtfTestTraceUtils.getTrace(testTrace))) {
+            assertTrue(reader.setEventFilter(filter));
+            List<String> actual = new ArrayList<>();
+            while (reader.hasMoreEvents()) {
+                IEventDefinition event = reader.getCurrentEventDef();
+                actual.add(event.getTimestamp() + " " + event.getDeclaration().getName());
+                reader.advance();
+            }
+            assertEquals(expected, actual);
+
+            /* Seek in the middle of the trace, and remove the filter */
+            String middle = expected.get(expected.size() / 2);
+            long timestamp = Long.parseLong(middle.substring(0, middle.indexOf(' ')));
+            assertTrue(reader.seek(timestamp));
+            assertEquals(timestamp, reader.getCurrentEventDef().getTimestamp());
+            assertTrue(filter.test(reader.getCurrentEventDef().getDeclaration()));
+            assertTrue(reader.setEventFilter(null));
+            assertEquals(timestamp, reader.getCurrentEventDef().getTimestamp());
+        }
+    }
+
+    /**
+     * Test that the lost events come back when a filter rejecting them is
+     * removed
+     *
+     * @throws CTFException
+     *             error
+     */
+    @Test
+    public void testRemoveEventFilterLostEvents() throws CTFException {
+        CTFTrace trace = CtfTestTraceUtils.getTrace(CtfTestTrace.HELLO_LOST);
+        List<String> expected = new ArrayList<>();
+        try (CTFTraceReader reader = new CTFTraceReader(trace)) {
+            while (reader.hasMoreEvents()) {
+                IEventDefinition event = reader.getCurrentEventDef();
+                expected.add(event.getTimestamp() + " " + event.getDeclaration().getName());
+                reader.advance();
+            }
+        }
+        assertTrue(expected.stream().anyMatch(event -> event.endsWith(CTFStrings.LOST_EVENT_NAME)));
+
+        try (CTFTraceReader reader = new CTFTraceReader(trace)) {
+            assertTrue(reader.setEventFilter(declaration -> !declaration.getName().equals(CTFStrings.LOST_EVENT_NAME)));
+            assertTrue(reader.setEventFilter(null));
+            List<String> actual = new ArrayList<>();
+            while (reader.hasMoreEvents()) {
+                IEventDefinition event = reader.getCurrentEventDef();
+                actual.add(event.getTimestamp() + " " + event.getDeclaration().getName());
+                reader.advance();
+            }
+            assertEquals(expected, actual);
+        }
+    }
+
     /**
      * @return
      */
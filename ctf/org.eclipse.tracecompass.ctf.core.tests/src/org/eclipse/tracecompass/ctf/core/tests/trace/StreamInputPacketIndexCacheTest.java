@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.tracecompass.ctf.core.CTFStrings;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndex;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexCache;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexEntry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Test the cache files of the packet indexes written and read by
+ * {@link StreamInputPacketIndexCache}
+ */
+public class StreamInputPacketIndexCacheTest {
+
+    private static final int PACKET_SIZE_BYTES = 4096;
+    private static final int NB_PACKETS = 100;
+
+    private File fTraceDirectory;
+    private File fStreamFile;
+    private File fCacheFile;
+    private final List<ICTFPacketDescriptor> fPackets = new ArrayList<>();
+    private final StreamInputPacketIndex fIndex = new StreamInputPacketIndex();
+
+    /**
+     * Create a stream file and the index of its packets
+     *
+     * @throws IOException
+     *             Fails the test
+     */
+    @Before
+    public void setUp() throws IOException {
+        fTraceDirectory = Files.createTempDirectory("cache-test").toFile();
+        fStreamFile = new File(fTraceDirectory, "channel0_0");
+        Files.write(fStreamFile.toPath(), new byte[NB_PACKETS * PACKET_SIZE_BYTES]);
+        fCacheFile = StreamInputPacketIndexCache.getCacheFile(new File(fTraceDirectory, "cache"), fStreamFile);
+
+        long fileSize = fStreamFile.length();
+        ICTFPacketDescriptor firstPacket = new StreamInputPacketIndexEntry(0, fileSize);
+        long lostSoFar = 0;
+        for (int i = 0; i < NB_PACKETS; i++) {
+            ImmutableMap.Builder<String, Object> attributes = ImmutableMap.builder();
+            attributes.put(CTFStrings.TIMESTAMP_BEGIN, 1000L * i);
+            attributes.put(CTFStrings.TIMESTAMP_END, 1000L * i + 500);
+            attributes.put(CTFStrings.CONTENT_SIZE, 8L * (PACKET_SIZE_BYTES - i));
+            attributes.put(CTFStrings.PACKET_SIZE, 8L * PACKET_SIZE_BYTES);
+            attributes.put(CTFStrings.EVENTS_DISCARDED, lostSoFar + i % 3);
+            attributes.put("name", "stream");
+            attributes.put("ratio", 0.5);
+            attributes.put("mode", new AbstractMap.SimpleImmutableEntry<>("overwrite", 1L));
+            ICTFPacketDescriptor packet = new StreamInputPacketIndexEntry(8L * PACKET_SIZE_BYTES * i, attributes.build(), fileSize, lostSoFar, firstPacket);
+            lostSoFar += packet.getLostEvents();
+            assertTrue(fIndex.append(packet));
+            fPackets.add(packet);
+        }
+    }
+
+    /**
+     * Delete the trace directory
+     */
+    @After
+    public void tearDown() {
+        fCacheFile.delete();
+        fCacheFile.getParentFile().delete();
+        fStreamFile.delete();
+        fTraceDirectory.delete();
+    }
+
+    /**
+     * Test writing the index and reading it back
+     *
+     * @throws IOException
+     *             Fails the test
+     */
+    @Test
+    public void testReadWrite() throws IOException {
+        StreamInputPacketIndexCache.write(fCacheFile, fStreamFile, fIndex);
+        StreamInputPacketIndex index = new StreamInputPacketIndex();
+        assertTrue(StreamInputPacketIndexCache.read(fCacheFile, fStreamFile, index));
+        assertEquals(NB_PACKETS, index.size());
+        for (int i = 0; i < NB_PACKETS; i++) {
+            assertPacketEquals(fPackets.get(i), index.getElement(i));
+        }
+        assertEquals(fIndex.getTotalLostEvents(), index.getTotalLostEvents());
+        assertEquals(NB_PACKETS / 2, index.search(1000L * (NB_PACKETS / 2) + 100));
+
+        /* The index does not change if it already has all the packets */
+        assertFalse(StreamInputPacketIndexCache.read(fCacheFile, fStreamFile, index));
+    }
+
+    /**
+     * Test that the cache is not used once the stream file changed
+     *
+     * @throws IOException
+     *             Fails the test
+     */
+    @Test
+    public void testObsoleteCache() throws IOException {
+        StreamInputPacketIndexCache.write(fCacheFile, fStreamFile, fIndex);
+        Files.write(fStreamFile.toPath(), new byte[(NB_PACKETS + 1) * PACKET_SIZE_BYTES]);
+        StreamInputPacketIndex index = new StreamInputPacketIndex();
+        assertFalse(StreamInputPacketIndexCache.read(fCacheFile, fStreamFile, index));
+        assertTrue(index.isEmpty());
+    }
+
+    /**
+     * Test that a truncated cache file is rejected
+     *
+     * @throws IOException
+     *             Expected
+     */
+    @Test(expected = IOException.class)
+    public void testTruncatedCache() throws IOException {
+        StreamInputPacketIndexCache.write(fCacheFile, fStreamFile, fIndex);
+        byte[] bytes = Files.readAllBytes(fCacheFile.toPath());
+        Files.write(fCacheFile.toPath(), Arrays.copyOf(bytes, bytes.length / 2));
+        StreamInputPacketIndexCache.read(fCacheFile, fStreamFile, new StreamInputPacketIndex());
+    }
+
+    /**
+     * Test that a cache file with huge numbers of layouts or of attributes is
+     * rejected, instead of allocating them
+     *
+     * @throws IOException
+     *             Fails the test
+     */
+    @Test
+    public void testHugeCounts() throws IOException {
+        StreamInputPacketIndexCache.write(fCacheFile, fStreamFile, fIndex);
+        byte[] bytes = Files.readAllBytes(fCacheFile.toPath());
+        /* The header, then the size and the number of values of the index */
+        int nbLayoutsOffset = 2 * Integer.BYTES + 2 * Long.BYTES + 2 * Integer.BYTES;
+        /* The first layout has an empty target, its number of names follows */
+        assertEquals(1, bytes[nbLayoutsOffset + Integer.BYTES]);
+        int nbNamesOffset = nbLayoutsOffset + Integer.BYTES + Byte.BYTES + Integer.BYTES;
+        for (int offset : new int[] { nbLayoutsOffset, nbNamesOffset }) {
+            byte[] corrupt = bytes.clone();
+            ByteBuffer.wrap(corrupt).putInt(offset, Integer.MAX_VALUE);
+            Files.write(fCacheFile.toPath(), corrupt);
+            try {
+                StreamInputPacketIndexCache.read(fCacheFile, fStreamFile, new StreamInputPacketIndex());
+                fail("offset " + offset);
+            } catch (IOException e) {
+                /* Expected */
+            }
+        }
+    }
+
+    private static void assertPacketEquals(ICTFPacketDescriptor expected, ICTFPacketDescriptor actual) {
+        assertEquals(expected.getOffsetBits(), actual.getOffsetBits());
+        assertEquals(expected.getPacketSizeBits(), actual.getPacketSizeBits());
+        assertEquals(expected.getContentSizeBits(), actual.getContentSizeBits());
+        assertEquals(expected.getTimestampBegin(), actual.getTimestampBegin());
+        assertEquals(expected.getTimestampEnd(), actual.getTimestampEnd());
+        assertEquals(expected.getLostEvents(), actual.getLostEvents());
+        assertEquals(expected.getPayloadStartBits(), actual.getPayloadStartBits());
+        assertEquals(expected.getTarget(), actual.getTarget());
+        assertEquals(expected.getTargetId(), actual.getTargetId());
+        assertEquals(new ArrayList<>(expected.getAttributes().entrySet()), new ArrayList<>(actual.getAttributes().entrySet()));
+    }
+}
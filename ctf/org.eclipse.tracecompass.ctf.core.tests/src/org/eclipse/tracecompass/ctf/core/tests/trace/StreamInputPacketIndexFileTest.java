@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexFile;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexFile.Entry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the reading of the LTTng packet index files by
+ * {@link StreamInputPacketIndexFile}
+ */
+public class StreamInputPacketIndexFileTest {
+
+    private static final int CTF_INDEX_MAGIC = 0xC1F1DCC1;
+    private static final int PACKET_SIZE_BYTES = 4096;
+    private static final int NB_PACKETS = 10;
+
+    private File fTraceDirectory;
+    private File fStreamFile;
+    private File fIndexFile;
+
+    /**
+     * Create a trace directory with a stream file and its index directory
+     *
+     * @throws IOException
+     *             Fails the test
+     */
+    @Before
+    public void setUp() throws IOException {
+        fTraceDirectory = Files.createTempDirectory("index-test").toFile();
+        fStreamFile = new File(fTraceDirectory, "channel0_0");
+        fIndexFile = new File(new File(fTraceDirectory, "index"), "channel0_0.idx");
+        fIndexFile.getParentFile().mkdir();
+    }
+
+    /**
+     * Delete the trace directory
+     */
+    @After
+    public void tearDown() {
+        fIndexFile.delete();
+        fIndexFile.getParentFile().delete();
+        fStreamFile.delete();
+        fTraceDirectory.delete();
+    }
+
+    /**
+     * Test finding the index file of a stream file
+     *
+     * @throws IOException
+     *             Fails the test
+     */
+    @Test
+    public void testGetIndexFile() throws IOException {
+        assertNull(StreamInputPacketIndexFile.getIndexFile(fStreamFile));
+        writeIndex(9 * Long.BYTES, NB_PACKETS, -1);
+        assertEquals(fIndexFile, StreamInputPacketIndexFile.getIndexFile(fStreamFile));
+    }
+
+    /**
+     * Test reading the entries of version 1.1, that cover the whole stream
+     * file
+     *
+     * @throws IOException
+     *             Fails the test
+     */
+    @Test
+    public void testRead() throws IOException {
+        writeIndex(9 * Long.BYTES, NB_PACKETS, -1);
+        List<Entry> entries = StreamInputPacketIndexFile.read(fIndexFile, NB_PACKETS * PACKET_SIZE_BYTES);
+        assertEquals(NB_PACKETS, entries.size());
+        for (int i = 0; i < NB_PACKETS; i++) {
+            Entry entry = entries.get(i);
+            assertEquals(i * PACKET_SIZE_BYTES, entry.getOffsetBytes());
+            assertEquals(PACKET_SIZE_BYTES * Byte.SIZE, entry.getPacketSizeBits());
+            assertEquals(PACKET_SIZE_BYTES * Byte.SIZE - i, entry.getContentSizeBits());
+            assertEquals(1000 * i, entry.getTimestampBegin());
+            assertEquals(1000 * i + 999, entry.getTimestampEnd());
+            assertEquals(i / 2, entry.getEventsDiscarded());
+            assertEquals(3, entry.getStreamId());
+            assertEquals(Long.valueOf(i), entry.getPacketSeqNum());
+        }
+    }
+
+    /**
+     * Test reading the entries of version 1.0, and of a later version with
+     * more fields
+     *
+     * @throws IOException
+     *             Fails the test
+     */
+    @Test
+    public void testEntrySizes() throws IOException {
+        writeIndex(7 * Long.BYTES, NB_PACKETS, -1);
+        List<Entry> entries = StreamInputPacketIndexFile.read(fIndexFile, NB_PACKETS * PACKET_SIZE_BYTES);
+        assertEquals(NB_PACKETS, entries.size());
+        assertNull(entries.get(1).getPacketSeqNum());
+        assertEquals(1000, entries.get(1).getTimestampBegin());
+
+        writeIndex(11 * Long.BYTES, NB_PACKETS, -1);
+        entries = StreamInputPacketIndexFile.read(fIndexFile, NB_PACKETS * PACKET_SIZE_BYTES);
+        assertEquals(NB_PACKETS, entries.size());
+        assertNotNull(entries.get(1).getPacketSeqNum());
+        assertEquals(1000, entries.get(1).getTimestampBegin());
+    }
+
+    /**
+     * Test that only the entries before an invalid entry, or before the end of
+     * the stream file, are read
+     *
+     * @throws IOException
+     *             Fails the test
+     */
+    @Test
+    public void testValidation() throws IOException {
+        /* A stream file that is shorter than the index */
+        writeIndex(9 * Long.BYTES, NB_PACKETS, -1);
+        assertEquals(4, StreamInputPacketIndexFile.read(fIndexFile, 4 * PACKET_SIZE_BYTES + 10).size());
+
+        /* An entry at the wrong offset */
+        writeIndex(9 * Long.BYTES, NB_PACKETS, 6);
+        assertEquals(6, StreamInputPacketIndexFile.read(fIndexFile, NB_PACKETS * PACKET_SIZE_BYTES).size());
+    }
+
+    /**
+     * Test that a file that is not an index file is rejected
+     *
+     * @throws IOException
+     *             Expected
+     */
+    @Test(expected = IOException.class)
+    public void testWrongMagic() throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(fIndexFile))) {
+            out.writeInt(0xC1FC1FC1);
+            out.writeInt(1);
+            out.writeInt(1);
+            out.writeInt(9 * Long.BYTES);
+        }
+        StreamInputPacketIndexFile.read(fIndexFile, NB_PACKETS * PACKET_SIZE_BYTES);
+    }
+
+    /**
+     * Test that an index file with a huge entry size is rejected, instead of
+     * allocating its entries
+     *
+     * @throws IOException
+     *             Expected
+     */
+    @Test(expected = IOException.class)
+    public void testHugeEntrySize() throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(fIndexFile))) {
+            out.writeInt(CTF_INDEX_MAGIC);
+            out.writeInt(1);
+            out.writeInt(1);
+            out.writeInt(Integer.MAX_VALUE);
+        }
+        StreamInputPacketIndexFile.read(fIndexFile, NB_PACKETS * PACKET_SIZE_BYTES);
+    }
+
+    /**
+     * Write an index file, with packets of the same size
+     *
+     * @param entrySize
+     *            The size of the entries, in bytes
+     * @param nbPackets
+     *            The number of packets
+     * @param wrongOffset
+     *            The index of a packet to write at a wrong offset, or -1
+     */
+    private void writeIndex(int entrySize, int nbPackets, int wrongOffset) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(fIndexFile))) {
+            out.writeInt(CTF_INDEX_MAGIC);
+            out.writeInt(1);
+            out.writeInt(1);
+            out.writeInt(entrySize);
+            for (int i = 0; i < nbPackets; i++) {
+                long[] fields = new long[entrySize / Long.BYTES];
+                fields[0] = (long) i * PACKET_SIZE_BYTES + (i == wrongOffset ? 1 : 0);
+                fields[1] = PACKET_SIZE_BYTES * Byte.SIZE;
+                fields[2] = PACKET_SIZE_BYTES * Byte.SIZE - i;
+                fields[3] = 1000 * i;
+                fields[4] = 1000 * i + 999;
+                fields[5] = i / 2;
+                fields[6] = 3;
+                if (fields.length > 8) {
+                    /* Stream instance ID and packet sequence number */
+                    fields[7] = 0;
+                    fields[8] = i;
+                }
+                for (long field : fields) {
+                    out.writeLong(field);
+                }
+            }
+        }
+    }
+}
@@ -18,11 +18,14 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.CTFStrings;
 import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
 import org.eclipse.tracecompass.ctf.core.event.scope.IDefinitionScope;
 import org.eclipse.tracecompass.ctf.core.event.scope.ILexicalScope;
@@ -32,11 +35,19 @@ import org.eclipse.tracecompass.ctf.core.event.types.Definition;
 import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDefinition;
+import org.eclipse.tracecompass.internal.ctf.core.Activator;
 import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.StructDeclarationFlattener;
 import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndex;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexCache;
 import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexEntry;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexFile;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexFile.Entry;
 import org.eclipse.tracecompass.internal.ctf.core.trace.Utils;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMap.Builder;
+
 /**
  * <b><u>StreamInput</u></b>
  * <p>
@@ -51,6 +62,8 @@ public class CTFStreamInput implements IDefinitionScope {
 
     private static final int MAP_SIZE = 4096;
 
+    private static final String PACKET_SEQ_NUM = "packet_seq_num"; //$NON-NLS-1$
+
     /**
      * The associated Stream
      */
@@ -196,16 +209,155 @@ public class CTFStreamInput implements IDefinitionScope {
     }
 
     /**
-     * Create the index for this trace file.
+     * Create the index for this trace file. If there is an LTTng index file
+     * for this stream, its packets are added to the index without reading
+     * their headers. The packets that are not in the index file are indexed
+     * from the stream file as they are read, by {@link #addPacketHeaderIndex()}.
      */
-    public void setupIndex() {
+    public synchronized void setupIndex() {
+        if (!fIndex.isEmpty()) {
+            return;
+        }
+        File indexFile = StreamInputPacketIndexFile.getIndexFile(fFile);
+        if (indexFile == null) {
+            return;
+        }
+        try {
+            List<Entry> entries = StreamInputPacketIndexFile.read(indexFile, fFile.length());
+            if (!entries.isEmpty()) {
+                addIndexFileEntries(entries);
+            }
+        } catch (IOException | CTFException e) {
+            /* The packets will be indexed from the stream file */
+            Activator.log("Cannot use the index file " + indexFile, e); //$NON-NLS-1$
+        }
+    }
 
-        /*
-         * The BitBuffer to extract data from the StreamInput
-         */
-        BitBuffer bitBuffer = new BitBuffer();
-        bitBuffer.setByteOrder(getStream().getTrace().getByteOrder());
+    /**
+     * Read the packet index of this stream file from a cache file written by
+     * {@link #writeIndexCache(File)}. The cache is only used if the stream file
+     * did not change since it was written, and if it has more packets than the
+     * index.
+     *
+     * @param cacheFile
+     *            The cache file
+     * @return true if the index was read from the cache file
+     * @since 2.0
+     */
+    public synchronized boolean readIndexCache(File cacheFile) {
+        try {
+            if (!StreamInputPacketIndexCache.read(cacheFile, fFile, fIndex)) {
+                return false;
+            }
+        } catch (IOException e) {
+            /* The packets will be indexed from the stream file */
+            Activator.log("Cannot use the packet index cache file " + cacheFile, e); //$NON-NLS-1$
+            return false;
+        }
+        fLostSoFar = fIndex.getTotalLostEvents();
+        setTimestampEnd(fIndex.lastElement().getTimestampEnd());
+        return true;
+    }
 
+    /**
+     * Write the packet index of this stream file to a cache file, to be read
+     * by {@link #readIndexCache(File)} when the trace is opened again.
+     *
+     * @param cacheFile
+     *            The cache file
+     * @throws IOException
+     *             If the cache file cannot be written
+     * @since 2.0
+     */
+    public synchronized void writeIndexCache(File cacheFile) throws IOException {
+        StreamInputPacketIndexCache.write(cacheFile, fFile, fIndex);
+    }
+
+    /**
+     * Add the packets of the index file to the index. The first packet is
+     * read from the stream file, to validate the index file against it and to
+     * get the packet context fields that are not in the index file. The index
+     * file is only used if these fields are the same for all the packets,
+     * like the CPU ID, and if the packet headers are of fixed size, so that
+     * the payload of all the packets starts at the same position.
+     */
+    private void addIndexFileEntries(List<Entry> entries) throws CTFException {
+        ICTFPacketDescriptor firstPacket = createPacketIndexEntry(0);
+        fIndex.append(firstPacket);
+
+        if (!StructDeclarationFlattener.isFixedSize(fTracePacketHeaderDecl) ||
+                !StructDeclarationFlattener.isFixedSize(fStreamPacketContextDecl)) {
+            return;
+        }
+        Map<String, Object> firstAttributes = firstPacket.getAttributes();
+        Entry firstEntry = entries.get(0);
+        if (firstEntry.getPacketSizeBits() != firstPacket.getPacketSizeBits() ||
+                !firstAttributes.equals(getAttributes(firstEntry, firstAttributes))) {
+            return;
+        }
+
+        long fileSizeBytes = fFile.length();
+        for (Entry entry : entries.subList(1, entries.size())) {
+            if (getStream().isIdSet() && entry.getStreamId() != getStream().getId()) {
+                return;
+            }
+            Map<String, Object> attributes = getAttributes(entry, firstAttributes);
+            if (attributes == null) {
+                return;
+            }
+            ICTFPacketDescriptor packet = new StreamInputPacketIndexEntry(entry.getOffsetBytes() * Byte.SIZE, attributes, fileSizeBytes, fLostSoFar, firstPacket);
+            if (!fIndex.append(packet)) {
+                return;
+            }
+            fLostSoFar = packet.getLostEvents() + fLostSoFar;
+            setTimestampEnd(packet.getTimestampEnd());
+        }
+    }
+
+    /**
+     * Get the packet context fields of an entry of the index file. The fields
+     * that are not in the index file must be the CPU ID, which is the same for
+     * all the packets of the stream.
+     *
+     * @return The fields, or null if some fields are not in the index file
+     */
+    private static @Nullable Map<String, Object> getAttributes(Entry entry, Map<String, Object> firstAttributes) {
+        Builder<String, Object> builder = ImmutableMap.builder();
+        for (Map.Entry<String, Object> attribute : firstAttributes.entrySet()) {
+            String field = attribute.getKey();
+            Object value;
+            switch (field) {
+            case CTFStrings.PACKET_SIZE:
+                value = entry.getPacketSizeBits();
+                break;
+            case CTFStrings.CONTENT_SIZE:
+                value = entry.getContentSizeBits();
+                break;
+            case CTFStrings.TIMESTAMP_BEGIN:
+                value = entry.getTimestampBegin();
+                break;
+            case CTFStrings.TIMESTAMP_END:
+                value = entry.getTimestampEnd();
+                break;
+            case CTFStrings.EVENTS_DISCARDED:
+                value = entry.getEventsDiscarded();
+                break;
+            case PACKET_SEQ_NUM:
+                value = entry.getPacketSeqNum();
+                break;
+            case CTFStrings.CPU_ID:
+                value = attribute.getValue();
+                break;
+            default:
+                value = null;
+                break;
+            }
+            if (value == null) {
+                return null;
+            }
+            builder.put(field, value);
+        }
+        return builder.build();
     }
 
     /**
@@ -218,7 +370,7 @@ public class CTFStreamInput implements IDefinitionScope {
      * @throws CTFException
      *             If there was a problem reading the packed header
      */
-    public boolean addPacketHeaderIndex() throws CTFException {
+    public synchronized boolean addPacketHeaderIndex() throws CTFException {
         long currentPosBits = 0L;
         if (!fIndex.isEmpty()) {
             ICTFPacketDescriptor pos = fIndex.lastElement();
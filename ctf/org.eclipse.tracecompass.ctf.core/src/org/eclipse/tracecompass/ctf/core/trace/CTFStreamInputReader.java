@@ -18,7 +18,9 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
 import java.util.List;
+import java.util.function.Predicate;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
@@ -31,6 +33,7 @@ import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
 import org.eclipse.tracecompass.internal.ctf.core.Activator;
 import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
+import org.eclipse.tracecompass.internal.ctf.core.event.LostEventDeclaration;
 import org.eclipse.tracecompass.internal.ctf.core.trace.CTFPacketReader;
 import org.eclipse.tracecompass.internal.ctf.core.trace.NullPacketReader;
 
@@ -82,6 +85,14 @@ public class CTFStreamInputReader implements AutoCloseable {
      */
     private boolean fLive = false;
 
+    /**
+     * The filter on the event declarations, and the IDs of the declarations
+     * it accepts
+     */
+    private @Nullable Predicate<IEventDeclaration> fEventFilter = null;
+    private @Nullable BitSet fAcceptedEvents = null;
+    private int fNbFilteredDeclarations = 0;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -140,7 +151,12 @@ public class CTFStreamInputReader implements AutoCloseable {
             bitBuffer.position(packet.getPayloadStartBits());
             IDeclaration eventHeaderDeclaration = getStreamInput().getStream().getEventHeaderDeclaration();
             CTFTrace trace = getStreamInput().getStream().getTrace();
-            ctfPacketReader = new CTFPacketReader(bitBuffer, packet, getEventDeclarations(), eventHeaderDeclaration, getStreamEventContextDecl(), trace.getPacketHeaderDef(), trace);
+            CTFPacketReader packetReader = new CTFPacketReader(bitBuffer, packet, getEventDeclarations(), eventHeaderDeclaration, getStreamEventContextDecl(), trace.getPacketHeaderDef(), trace);
+            Predicate<IEventDeclaration> eventFilter = fEventFilter;
+            if (eventFilter != null) {
+                packetReader.setEventFilter(getAcceptedEvents(eventFilter), eventFilter.test(LostEventDeclaration.INSTANCE));
+            }
+            ctfPacketReader = packetReader;
         }
         return ctfPacketReader;
     }
@@ -275,6 +291,54 @@ public class CTFStreamInputReader implements AutoCloseable {
         return fLive;
     }
 
+    /**
+     * Only read the events whose declaration is accepted by a filter. The
+     * other events are skipped while reading the packets, without creating
+     * their definitions when their declarations allow it. If the current event
+     * is rejected by the filter, the reader moves to the next accepted event.
+     *
+     * @param eventFilter
+     *            The filter on the event declarations, or null to read all the
+     *            events
+     * @throws CTFException
+     *             if an error occurs
+     * @since 2.0
+     */
+    public void setEventFilter(@Nullable Predicate<IEventDeclaration> eventFilter) throws CTFException {
+        fEventFilter = eventFilter;
+        fAcceptedEvents = null;
+        IPacketReader packetReader = fPacketReader;
+        if (packetReader instanceof CTFPacketReader) {
+            ((CTFPacketReader) packetReader).setEventFilter(eventFilter == null ? null : getAcceptedEvents(eventFilter),
+                    eventFilter == null || eventFilter.test(LostEventDeclaration.INSTANCE));
+        }
+        IEventDefinition currentEvent = fCurrentEvent;
+        if (eventFilter != null && currentEvent != null && !eventFilter.test(currentEvent.getDeclaration())) {
+            readNextEvent();
+        }
+    }
+
+    /**
+     * Get the IDs of the event declarations accepted by the filter. They are
+     * computed again when new declarations are added to the stream.
+     */
+    private BitSet getAcceptedEvents(Predicate<IEventDeclaration> eventFilter) {
+        List<@Nullable IEventDeclaration> declarations = getEventDeclarations();
+        BitSet acceptedEvents = fAcceptedEvents;
+        if (acceptedEvents == null || fNbFilteredDeclarations != declarations.size()) {
+            acceptedEvents = new BitSet(declarations.size());
+            for (int i = 0; i < declarations.size(); i++) {
+                IEventDeclaration declaration = declarations.get(i);
+                if (declaration != null && eventFilter.test(declaration)) {
+                    acceptedEvents.set(i);
+                }
+            }
+            fAcceptedEvents = acceptedEvents;
+            fNbFilteredDeclarations = declarations.size();
+        }
+        return acceptedEvents;
+    }
+
     /**
      * Get the event context of the stream
      *
@@ -296,28 +360,43 @@ public class CTFStreamInputReader implements AutoCloseable {
      */
     public CTFResponse readNextEvent() throws CTFException {
 
-        /*
-         * Change packet if needed
-         */
-        if (!fPacketReader.hasMoreEvents()) {
-            final ICTFPacketDescriptor prevPacket = fPacketReader.getCurrentPacket();
-            if (prevPacket != null || fLive) {
-                goToNextPacket();
+        while (true) {
+            /*
+             * Change packet if needed
+             */
+            if (!fPacketReader.hasMoreEvents()) {
+                final ICTFPacketDescriptor prevPacket = fPacketReader.getCurrentPacket();
+                if (prevPacket != null || fLive) {
+                    goToNextPacket();
+                }
+
             }
 
-        }
+            if (!fPacketReader.hasMoreEvents()) {
+                break;
+            }
 
-        /*
-         * If an event is available, read it.
-         */
-        if (fPacketReader.hasMoreEvents()) {
-            setCurrentEvent(fPacketReader.readNextEvent());
-            return CTFResponse.OK;
+            /*
+             * If an event is available, read it. With an event filter, the
+             * packet may only contain rejected events, then try the next one.
+             */
+            if (skipRejectedEvents()) {
+                setCurrentEvent(fPacketReader.readNextEvent());
+                return CTFResponse.OK;
+            }
         }
         this.setCurrentEvent(null);
         return fLive ? CTFResponse.WAIT : CTFResponse.FINISH;
     }
 
+    private boolean skipRejectedEvents() throws CTFException {
+        IPacketReader packetReader = fPacketReader;
+        if (fEventFilter != null && packetReader instanceof CTFPacketReader) {
+            return ((CTFPacketReader) packetReader).skipRejectedEvents();
+        }
+        return true;
+    }
+
     /**
      * Change the current packet of the packet reader to the next one.
      *
@@ -23,16 +23,20 @@ import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.CTFStrings;
 import org.eclipse.tracecompass.ctf.core.event.CTFClock;
@@ -51,6 +55,7 @@ import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
 import org.eclipse.tracecompass.internal.ctf.core.event.metadata.MetadataStrings;
 import org.eclipse.tracecompass.internal.ctf.core.event.metadata.ParseException;
 import org.eclipse.tracecompass.internal.ctf.core.trace.CTFStream;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputIndexer;
 import org.eclipse.tracecompass.internal.ctf.core.trace.Utils;
 
 import com.google.common.collect.ImmutableMap;
@@ -442,6 +447,45 @@ public class CTFTrace implements IDefinitionScope {
         s.setupIndex();
     }
 
+    /**
+     * Index all the packets of the stream files of this trace, instead of
+     * indexing them as they are read. The stream files are indexed in
+     * parallel, one task per stream file, on a pool of at most as many threads
+     * as there are processors. This blocks until the index is built or the
+     * monitor is cancelled.
+     *
+     * @param monitor
+     *            The progress monitor, which advances by one unit of work per
+     *            stream file
+     * @since 2.0
+     */
+    public void indexStreamInputs(IProgressMonitor monitor) {
+        indexStreamInputs(null, monitor);
+    }
+
+    /**
+     * Index all the packets of the stream files of this trace, like
+     * {@link #indexStreamInputs(IProgressMonitor)}, using cache files of the
+     * packet indexes. The index of a stream file is read from its cache file
+     * if the stream file did not change since the cache file was written, and
+     * the cache file is written if the stream file had to be indexed.
+     *
+     * @param cacheDirectory
+     *            The directory of the cache files, which is created if needed,
+     *            or null to not use cache files
+     * @param monitor
+     *            The progress monitor, which advances by one unit of work per
+     *            stream file
+     * @since 2.0
+     */
+    public void indexStreamInputs(@Nullable File cacheDirectory, IProgressMonitor monitor) {
+        List<CTFStreamInput> inputs = new ArrayList<>();
+        for (ICTFStream stream : getStreams()) {
+            inputs.addAll(stream.getStreamInputs());
+        }
+        StreamInputIndexer.index(inputs, cacheDirectory, monitor);
+    }
+
     /**
      * Tries to open the given file, reads the first packet header of the file
      * and check its validity. This will add a file to a stream as a streaminput
@@ -517,7 +561,9 @@ public class CTFTrace implements IDefinitionScope {
          * Create the stream input and add a reference to the streamInput in the
          * stream.
          */
-        ctfStream.addInput(new CTFStreamInput(ctfStream, streamFile));
+        CTFStreamInput streamInput = new CTFStreamInput(ctfStream, streamFile);
+        streamInput.setupIndex();
+        ctfStream.addInput(streamInput);
         return ctfStream;
     }
 
@@ -22,6 +22,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.function.Predicate;
 
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
@@ -81,6 +82,12 @@ public class CTFTraceReader implements AutoCloseable {
      */
     private boolean fClosed = false;
 
+    /**
+     * Filter on the event declarations given to the trace file readers, null
+     * to read all the events
+     */
+    private Predicate<IEventDeclaration> fEventFilter = null;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -249,6 +256,7 @@ public class CTFTraceReader implements AutoCloseable {
                 try (CTFStreamInputReader streamInputReader = new CTFStreamInputReader(checkNotNull(streamInput))) {
                     if (!fStreamInputReaders.contains(streamInputReader)) {
                         CTFStreamInputReader streamInputReaderToAdd = new CTFStreamInputReader(checkNotNull(streamInput));
+                        streamInputReaderToAdd.setEventFilter(fEventFilter);
                         streamInputReaderToAdd.readNextEvent();
                         fStreamInputReaders.add(streamInputReaderToAdd);
                         readers.add(streamInputReaderToAdd);
@@ -440,6 +448,50 @@ public class CTFTraceReader implements AutoCloseable {
         return hasMoreEvents();
     }
 
+    /**
+     * Only read the events whose declaration is accepted by a filter. The
+     * trace file readers skip the other events without creating their
+     * definitions when possible. The current events rejected by the filter
+     * are skipped too, the events before the current position that were
+     * skipped by a previous filter are only read again after a seek.
+     *
+     * @param eventFilter
+     *            The filter on the event declarations, or null to read all the
+     *            events
+     * @return true if there are events left to read
+     * @throws CTFException
+     *             if an error occurs
+     * @since 2.0
+     */
+    public boolean setEventFilter(Predicate<IEventDeclaration> eventFilter) throws CTFException {
+        if (eventFilter == fEventFilter) {
+            return hasMoreEvents();
+        }
+        fEventFilter = eventFilter;
+        /*
+         * The current events of the trace file readers may change, so they
+         * are put back in the priority queue.
+         */
+        fPrio.clear();
+        for (CTFStreamInputReader streamInputReader : fStreamInputReaders) {
+            streamInputReader.setEventFilter(eventFilter);
+            if (streamInputReader.getCurrentEvent() != null) {
+                fPrio.add(streamInputReader);
+            }
+        }
+        return hasMoreEvents();
+    }
+
+    /**
+     * Gets the filter on the event declarations
+     *
+     * @return The filter, or null if all the events are read
+     * @since 2.0
+     */
+    public Predicate<IEventDeclaration> getEventFilter() {
+        return fEventFilter;
+    }
+
     /**
      * Gets the stream with the oldest event
      *
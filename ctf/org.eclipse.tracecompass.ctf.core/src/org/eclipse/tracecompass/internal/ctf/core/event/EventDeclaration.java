@@ -33,6 +33,7 @@ import org.eclipse.tracecompass.ctf.core.trace.CTFIOException;
 import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInputReader;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.DeclarationSkipper;
 import org.eclipse.tracecompass.internal.ctf.core.event.types.composite.EventHeaderDefinition;
 import org.eclipse.tracecompass.internal.ctf.core.trace.CTFStream;
 
@@ -76,6 +77,9 @@ public class EventDeclaration implements IEventDeclaration {
 
     private int fId = (int) UNSET_EVENT_ID;
 
+    /** If the context and fields of the events can be skipped, lazily set */
+    private @Nullable Boolean fSkippable = null;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -129,6 +133,54 @@ public class EventDeclaration implements IEventDeclaration {
                 packetDescriptor);
     }
 
+    /**
+     * Check if an event of this declaration can be skipped with
+     * {@link #skip}. This is the case when none of its fields depend on the
+     * value of another field and when its timestamp is in the event header.
+     *
+     * @param streamEventContextDecl
+     *            The stream event context declaration
+     * @param eventHeaderDef
+     *            The event header definition of the event
+     * @return If the event can be skipped without creating its definition
+     */
+    public boolean canSkip(@Nullable StructDeclaration streamEventContextDecl, @Nullable ICompositeDefinition eventHeaderDef) {
+        if (!(eventHeaderDef instanceof EventHeaderDefinition) &&
+                !(eventHeaderDef instanceof StructDefinition && ((StructDefinition) eventHeaderDef).lookupDefinition(CTFStrings.TIMESTAMP) instanceof IntegerDefinition)) {
+            return false;
+        }
+        Boolean skippable = fSkippable;
+        if (skippable == null) {
+            skippable = DeclarationSkipper.canSkip(fContext) && DeclarationSkipper.canSkip(fFields);
+            fSkippable = skippable;
+        }
+        return skippable && DeclarationSkipper.canSkip(streamEventContextDecl);
+    }
+
+    /**
+     * Move the input past an event of this declaration without creating its
+     * definition. The event header must already be read and
+     * {@link #canSkip} must return true.
+     *
+     * @param streamEventContextDecl
+     *            The stream event context declaration
+     * @param eventHeaderDef
+     *            The event header definition of the event
+     * @param input
+     *            the bitbuffer input source
+     * @param prevTimestamp
+     *            The timestamp of the previous event
+     * @return The timestamp of the skipped event
+     * @throws CTFException
+     *             If the event goes past the end of the input
+     */
+    public long skip(@Nullable StructDeclaration streamEventContextDecl, @Nullable ICompositeDefinition eventHeaderDef, @NonNull BitBuffer input, long prevTimestamp) throws CTFException {
+        DeclarationSkipper.skip(streamEventContextDecl, input);
+        DeclarationSkipper.skip(fContext, input);
+        DeclarationSkipper.skip(fFields, input);
+        return calculateTimestamp(eventHeaderDef, prevTimestamp, null, null);
+    }
+
     private static long calculateTimestamp(@Nullable ICompositeDefinition eventHeaderDef, long prevTimestamp, StructDefinition eventPayload, StructDefinition eventContext) throws CTFIOException {
         long timestamp = 0;
         Definition def = null;
@@ -207,6 +259,7 @@ public class EventDeclaration implements IEventDeclaration {
      */
     public void setContext(StructDeclaration context) {
         fContext = context;
+        fSkippable = null;
     }
 
     /**
@@ -217,6 +270,7 @@ public class EventDeclaration implements IEventDeclaration {
      */
     public void setFields(StructDeclaration fields) {
         fFields = fields;
+        fSkippable = null;
     }
 
     @Override
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.event.types;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.types.EnumDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.FloatDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+import org.eclipse.tracecompass.ctf.core.trace.CTFIOException;
+
+/**
+ * Moves a bit buffer past the data of a declaration without creating its
+ * definition. Only the declarations whose size does not depend on the value
+ * of other fields can be skipped, which excludes the variants and sequences.
+ * Strings are skipped by looking for their terminating null character.
+ */
+public final class DeclarationSkipper {
+
+    private static final int BITS_PER_BYTE = 8;
+
+    private DeclarationSkipper() {}
+
+    /**
+     * Check if the data of a declaration can be skipped
+     *
+     * @param declaration
+     *            The declaration, can be null if there is no such field
+     * @return If {@link #skip} can be called for this declaration
+     */
+    public static boolean canSkip(@Nullable IDeclaration declaration) {
+        if (declaration == null || declaration instanceof IntegerDeclaration || declaration instanceof FloatDeclaration ||
+                declaration instanceof EnumDeclaration || declaration instanceof StringDeclaration) {
+            return true;
+        }
+        if (declaration instanceof ArrayDeclaration) {
+            return canSkip(((ArrayDeclaration) declaration).getElementType());
+        }
+        if (declaration instanceof StructDeclaration) {
+            StructDeclaration struct = (StructDeclaration) declaration;
+            for (String field : struct.getFieldsList()) {
+                if (!canSkip(struct.getField(field))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Skip the data of a declaration, following the same alignment rules as
+     * the definitions read by the declaration. The declaration must be one for
+     * which {@link #canSkip} returns true.
+     *
+     * @param declaration
+     *            The declaration, can be null if there is no such field
+     * @param input
+     *            The bit buffer, positioned at the start of the data
+     * @throws CTFException
+     *             If the data goes past the end of the buffer
+     */
+    public static void skip(@Nullable IDeclaration declaration, @NonNull BitBuffer input) throws CTFException {
+        if (declaration == null) {
+            return;
+        }
+        align(input, declaration.getAlignment());
+        if (declaration instanceof IntegerDeclaration) {
+            skipBits(input, ((IntegerDeclaration) declaration).getLength());
+        } else if (declaration instanceof EnumDeclaration) {
+            IntegerDeclaration container = ((EnumDeclaration) declaration).getContainerType();
+            align(input, container.getAlignment());
+            skipBits(input, container.getLength());
+        } else if (declaration instanceof FloatDeclaration) {
+            FloatDeclaration floatDeclaration = (FloatDeclaration) declaration;
+            int length = floatDeclaration.getExponent() + floatDeclaration.getMantissa();
+            if (length == Integer.SIZE || length == Long.SIZE) {
+                skipBits(input, length);
+            }
+        } else if (declaration instanceof StringDeclaration) {
+            while (input.get(BITS_PER_BYTE, false) != 0) {
+                /* Read until the null character */
+            }
+        } else if (declaration instanceof ArrayDeclaration) {
+            ArrayDeclaration array = (ArrayDeclaration) declaration;
+            if (array.isAlignedBytes()) {
+                skipBits(input, (long) array.getLength() * BITS_PER_BYTE);
+            } else {
+                for (int i = 0; i < array.getLength(); i++) {
+                    skip(array.getElementType(), input);
+                }
+            }
+        } else if (declaration instanceof StructDeclaration) {
+            StructDeclaration struct = (StructDeclaration) declaration;
+            for (String field : struct.getFieldsList()) {
+                skip(struct.getField(field), input);
+            }
+        } else {
+            throw new CTFIOException("Cannot skip a declaration of variable size: " + declaration); //$NON-NLS-1$
+        }
+    }
+
+    private static void align(BitBuffer input, long alignment) throws CTFException {
+        long mask = alignment - 1;
+        long pos = input.position();
+        if ((pos & mask) != 0) {
+            input.position((pos + mask) & ~mask);
+        }
+    }
+
+    private static void skipBits(BitBuffer input, long length) throws CTFException {
+        input.position(input.position() + length);
+    }
+}
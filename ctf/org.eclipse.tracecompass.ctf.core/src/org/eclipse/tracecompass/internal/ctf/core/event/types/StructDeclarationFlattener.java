@@ -46,6 +46,18 @@ public final class StructDeclarationFlattener {
         return sd;
     }
 
+    /**
+     * Check if a struct is of fixed size, which means that it contains only
+     * fixed-size elements, and can be flattened.
+     *
+     * @param sd
+     *            The struct
+     * @return If the struct is of fixed size
+     */
+    public static boolean isFixedSize(@NonNull StructDeclaration sd) {
+        return canBeFlattened(sd);
+    }
+
     /**
      * Check if this struct is fixed size
      *
@@ -12,6 +12,7 @@
 
 package org.eclipse.tracecompass.internal.ctf.core.trace;
 
+import java.util.BitSet;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
@@ -64,6 +65,8 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
     private final ICTFPacketDescriptor fPacketContext;
     private final List<@Nullable IEventDeclaration> fDeclarations;
     private boolean fHasLost;
+    /* If the lost event of the packet was already returned */
+    private boolean fLostRead;
     private long fLastTimestamp;
     private @Nullable final IDeclaration fStreamEventHeaderDecl;
 
@@ -75,6 +78,13 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
 
     private @Nullable ICompositeDefinition fEventHeader;
 
+    private @Nullable BitSet fAcceptedEvents;
+
+    /* Header of the next event, already read by skipRejectedEvents() */
+    private boolean fHeaderRead;
+    private long fHeaderPosition;
+    private int fHeaderEventID;
+
     /**
      * Constructor
      *
@@ -114,22 +124,105 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
 
     @Override
     public boolean hasMoreEvents() {
-        return fHasLost || (fInput.position() < fPacketContext.getContentSizeBits());
+        return fHeaderRead || fHasLost || (fInput.position() < fPacketContext.getContentSizeBits());
+    }
+
+    /**
+     * Only return the events whose declaration ID is in a set. The other
+     * events are skipped by {@link #skipRejectedEvents()}, without creating
+     * their definitions when their declarations allow it.
+     *
+     * @param acceptedEvents
+     *            The IDs of the event declarations to read, or null to read
+     *            all the events
+     * @param acceptLostEvents
+     *            If the lost event of the packet should be read
+     */
+    public void setEventFilter(@Nullable BitSet acceptedEvents, boolean acceptLostEvents) {
+        fAcceptedEvents = acceptedEvents;
+        fHasLost = (fPacketContext.getLostEvents() != 0 && !fLostRead && (acceptedEvents == null || acceptLostEvents));
+    }
+
+    /**
+     * Skip the events rejected by the event filter, up to the next accepted
+     * event.
+     *
+     * @return If there is an accepted event left to read in this packet
+     * @throws CTFException
+     *             If the packet could not be read
+     */
+    public boolean skipRejectedEvents() throws CTFException {
+        BitSet acceptedEvents = fAcceptedEvents;
+        if (acceptedEvents == null || fHeaderRead) {
+            return hasMoreEvents();
+        }
+        while (fInput.position() < fPacketContext.getContentSizeBits()) {
+            final long posStart = fInput.position();
+            int eventID = readEventHeader();
+            if (eventID >= 0 && acceptedEvents.get(eventID)) {
+                /* Keep the header for readNextEvent() */
+                fHeaderRead = true;
+                fHeaderPosition = posStart;
+                fHeaderEventID = eventID;
+                return true;
+            }
+            EventDeclaration declaration = getEventDeclaration(eventID);
+            if (declaration.canSkip(fStreamContext, fEventHeader)) {
+                fLastTimestamp = declaration.skip(fStreamContext, fEventHeader, fInput, fLastTimestamp);
+            } else {
+                fLastTimestamp = declaration.createDefinition(fStreamContext, fPacketContext, fTracePacketHeader, fEventHeader, fInput, fLastTimestamp).getTimestamp();
+            }
+            if (posStart == fInput.position()) {
+                throw new CTFIOException("Empty event not allowed, event: " + declaration.getName()); //$NON-NLS-1$
+            }
+        }
+        return fHasLost;
     }
 
     @Override
     public EventDefinition readNextEvent() throws CTFException {
-        int eventID = (int) IEventDeclaration.UNSET_EVENT_ID;
-        final long posStart = fInput.position();
+        final long posStart;
+        final int eventID;
+        if (fHeaderRead) {
+            fHeaderRead = false;
+            posStart = fHeaderPosition;
+            eventID = fHeaderEventID;
+        } else {
+            posStart = fInput.position();
+            /*
+             * Return the Lost Event after all other events in this packet. We
+             * need to check if the bytebuffer is at the beginning too.
+             */
+            if (fHasLost && (posStart >= fPacketContext.getContentSizeBits())) {
+                fHasLost = false;
+                fLostRead = true;
+                return createLostEvent(fPacketContext);
+            }
+            eventID = readEventHeader();
+        }
+
+        EventDeclaration declaration = getEventDeclaration(eventID);
+        EventDefinition eventDef = declaration.createDefinition(fStreamContext, fPacketContext, fTracePacketHeader, fEventHeader, fInput, fLastTimestamp);
+        fLastTimestamp = eventDef.getTimestamp();
         /*
-         * Return the Lost Event after all other events in this packet. We need
-         * to check if the bytebuffer is at the beginning too.
+         * Set the event timestamp using the timestamp calculated by
+         * updateTimestamp.
          */
-        if (fHasLost && (posStart >= fPacketContext.getContentSizeBits())) {
-            fHasLost = false;
-            return createLostEvent(fPacketContext);
+
+        if (posStart == fInput.position()) {
+            throw new CTFIOException("Empty event not allowed, event: " + eventDef.getDeclaration().getName()); //$NON-NLS-1$
         }
 
+        return eventDef;
+    }
+
+    /**
+     * Read the stream event header of the next event
+     *
+     * @return The ID of the event declaration
+     */
+    private int readEventHeader() throws CTFException {
+        int eventID = (int) IEventDeclaration.UNSET_EVENT_ID;
         fEventHeader = null;
         /* Read the stream event header. */
         final IDeclaration streamEventHeaderDecl = fStreamEventHeaderDecl;
@@ -174,24 +267,16 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
         if (eventID == IEventDeclaration.UNSET_EVENT_ID && fDeclarations.size() == 1) {
             eventID = 0;
         }
+        return eventID;
+    }
+
+    private EventDeclaration getEventDeclaration(int eventID) throws CTFIOException {
         /* Get the right event definition using the event id. */
         IEventDeclaration eventDeclaration = fDeclarations.get(eventID);
         if (!(eventDeclaration instanceof EventDeclaration)) {
             throw new CTFIOException("Incorrect event id : " + eventID); //$NON-NLS-1$
         }
-        EventDeclaration declaration = (EventDeclaration) eventDeclaration;
-        EventDefinition eventDef = declaration.createDefinition(fStreamContext, fPacketContext, fTracePacketHeader, fEventHeader, fInput, fLastTimestamp);
-        fLastTimestamp = eventDef.getTimestamp();
-        /*
-         * Set the event timestamp using the timestamp calculated by
-         * updateTimestamp.
-         */
-
-        if (posStart == fInput.position()) {
-            throw new CTFIOException("Empty event not allowed, event: " + eventDef.getDeclaration().getName()); //$NON-NLS-1$
-        }
-
-        return eventDef;
+        return (EventDeclaration) eventDeclaration;
     }
 
     private EventDefinition createLostEvent(final ICTFPacketDescriptor currentPacket) {
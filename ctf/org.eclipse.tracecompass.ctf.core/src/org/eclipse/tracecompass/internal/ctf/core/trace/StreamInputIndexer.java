@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInput;
+import org.eclipse.tracecompass.internal.ctf.core.Activator;
+
+/**
+ * Builds the packet indexes of the stream inputs of a trace in parallel. The
+ * stream files are independent, so each one is indexed by its own task, on a
+ * pool of at most as many threads as there are processors.
+ */
+@NonNullByDefault
+public final class StreamInputIndexer {
+
+    /** Delay between two checks of the cancellation of the monitor */
+    private static final long POLL_DELAY_MS = 100;
+
+    private StreamInputIndexer() {
+    }
+
+    /**
+     * Index all the packets of stream inputs. This blocks until they are all
+     * indexed or the monitor is cancelled, and in both cases until the
+     * indexing threads are stopped. A stream input that cannot be
+     * indexed completely keeps the packets indexed so far, the others will be
+     * indexed as they are read.
+     *
+     * If there is a cache directory, the index of each stream input is first
+     * read from its cache file, if it is valid, and the cache file is written
+     * again if packets had to be indexed from the stream file.
+     *
+     * @param inputs
+     *            The stream inputs to index
+     * @param cacheDirectory
+     *            The directory of the cache files of the packet indexes, or
+     *            null to not use cache files
+     * @param monitor
+     *            The progress monitor, which advances by one unit of work per
+     *            stream input
+     */
+    public static void index(Collection<CTFStreamInput> inputs, @Nullable File cacheDirectory, IProgressMonitor monitor) {
+        if (inputs.isEmpty()) {
+            return;
+        }
+        int nbThreads = Math.min(Runtime.getRuntime().availableProcessors(), inputs.size());
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        monitor.beginTask(Messages.StreamInputIndexer_Indexing, inputs.size());
+        try {
+            CompletionService<@Nullable Void> completionService = new ExecutorCompletionService<>(executor);
+            for (CTFStreamInput input : inputs) {
+                completionService.submit(() -> {
+                    indexStreamInput(input, cacheDirectory);
+                    return null;
+                });
+            }
+
+            int remaining = inputs.size();
+            while (remaining > 0) {
+                if (monitor.isCanceled()) {
+                    return;
+                }
+                Future<@Nullable Void> future = completionService.poll(POLL_DELAY_MS, TimeUnit.MILLISECONDS);
+                if (future != null) {
+                    future.get();
+                    monitor.worked(1);
+                    remaining--;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Activator.logError("Error indexing the stream inputs", e); //$NON-NLS-1$
+        } finally {
+            executor.shutdownNow();
+            awaitTermination(executor);
+            monitor.done();
+        }
+    }
+
+    /**
+     * Wait for the indexing tasks to stop, so that the stream inputs are no
+     * longer read when this returns. They check for the interruption between
+     * two packets. The interrupted status of the caller is kept.
+     */
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = Thread.interrupted();
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(POLL_DELAY_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void indexStreamInput(CTFStreamInput input, @Nullable File cacheDirectory) {
+        File cacheFile = (cacheDirectory == null ? null : StreamInputPacketIndexCache.getCacheFile(cacheDirectory, input.getFile()));
+        boolean changed = (cacheFile == null || !input.readIndexCache(cacheFile));
+        try {
+            while (!Thread.currentThread().isInterrupted() && input.addPacketHeaderIndex()) {
+                changed = true;
+            }
+        } catch (CTFException e) {
+            /* The reader of the stream will report the error */
+            Activator.log("Cannot index the stream file " + input.getFilename(), e); //$NON-NLS-1$
+            return;
+        }
+        if (cacheFile != null && changed && !Thread.currentThread().isInterrupted()) {
+            try {
+                input.writeIndexCache(cacheFile);
+            } catch (IOException e) {
+                Activator.log("Cannot write the packet index cache file " + cacheFile, e); //$NON-NLS-1$
+            }
+        }
+    }
+}
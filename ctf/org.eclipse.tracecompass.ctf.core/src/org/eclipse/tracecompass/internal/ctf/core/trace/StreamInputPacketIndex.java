@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2014 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -16,36 +16,81 @@ package org.eclipse.tracecompass.internal.ctf.core.trace;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
-import java.io.Serializable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.TreeSet;
+import java.util.Map;
+import java.util.Objects;
 
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
 import org.eclipse.tracecompass.internal.ctf.core.Activator;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMap.Builder;
+
 /**
  * <b><u>StreamInputPacketIndex</u></b>
  * <p>
  * This is a data structure containing entries, you may append to this and read
- * it. It is not thread safe.
+ * it. The methods are synchronized, so that the index can be built by one
+ * thread while it is read by others.
+ * <p>
+ * The packets are not kept as {@link ICTFPacketDescriptor} objects, but in
+ * columns of primitive arrays, one value of each column per packet. The
+ * packet context attributes are split in the same way: the integer values go
+ * in a column, and the names and the other values, which are the same for all
+ * the packets of a stream, are shared by the packets in a {@link Layout}. The
+ * descriptors returned by {@link #getElement(int)} are views built on demand.
  */
 public class StreamInputPacketIndex {
 
+    private static final int INITIAL_CAPACITY = 16;
+
+    /* Types of the attribute values in the serialized layouts */
+    private static final byte TYPE_LONG = 0;
+    private static final byte TYPE_DOUBLE = 1;
+    private static final byte TYPE_STRING = 2;
+    private static final byte TYPE_ENUM = 3;
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
 
-    /**
-     * Entries of the index. They are sorted by increasing begin timestamp.
-     * index builder.
+    /** Number of packets in the index */
+    private int fSize = 0;
+
+    /*
+     * The columns of the packets. They are sorted by increasing begin
+     * timestamp.
      */
-    private final List<ICTFPacketDescriptor> fEntries = new ArrayList<>();
+    private long[] fOffsetBits = new long[INITIAL_CAPACITY];
+    private long[] fPacketSizeBits = new long[INITIAL_CAPACITY];
+    private long[] fContentSizeBits = new long[INITIAL_CAPACITY];
+    private long[] fTimestampBegin = new long[INITIAL_CAPACITY];
+    private long[] fTimestampEnd = new long[INITIAL_CAPACITY];
+    private long[] fLostEvents = new long[INITIAL_CAPACITY];
+    private long[] fPayloadStartBits = new long[INITIAL_CAPACITY];
+    private long[] fTargetId = new long[INITIAL_CAPACITY];
+    private int[] fLayoutIds = new int[INITIAL_CAPACITY];
+    private int[] fValuesStart = new int[INITIAL_CAPACITY];
+
+    /** The integer attribute values of all the packets, one after the other */
+    private long[] fValues = new long[INITIAL_CAPACITY];
+    private int fNbValues = 0;
+
+    /** The distinct layouts of the packets, by ID */
+    private final List<Layout> fLayouts = new ArrayList<>();
+    private final Map<Layout, Integer> fLayoutIdsByLayout = new HashMap<>();
 
     // ------------------------------------------------------------------------
     // Operations
@@ -58,8 +103,8 @@ public class StreamInputPacketIndex {
      *
      * @return the number of elements in this data structure
      */
-    public int size() {
-        return fEntries.size();
+    public synchronized int size() {
+        return fSize;
     }
 
     /**
@@ -67,8 +112,8 @@ public class StreamInputPacketIndex {
      *
      * @return {@code true} if this data structure contains no elements
      */
-    public boolean isEmpty() {
-        return fEntries.isEmpty();
+    public synchronized boolean isEmpty() {
+        return fSize == 0;
     }
 
     /**
@@ -91,23 +136,44 @@ public class StreamInputPacketIndex {
      * @return {@code true} (as specified by {@link Collection#add})
      */
     public synchronized boolean append(@NonNull ICTFPacketDescriptor entry) {
-        ICTFPacketDescriptor entryToAdd = entry;
+        long timestampEnd = entry.getTimestampEnd();
         /* Validate consistent entry. */
-        if (entryToAdd.getTimestampBegin() > entryToAdd.getTimestampEnd()) {
-            Activator.log(IStatus.WARNING, "Packet at offset " + entryToAdd.getOffsetBytes() + //$NON-NLS-1$
+        if (entry.getTimestampBegin() > timestampEnd) {
+            Activator.log(IStatus.WARNING, "Packet at offset " + entry.getOffsetBytes() + //$NON-NLS-1$
                           " begin timestamp is after end timestamp"); //$NON-NLS-1$
-            entryToAdd = new StreamInputPacketIndexEntry(entryToAdd, Long.MAX_VALUE);
+            timestampEnd = Long.MAX_VALUE;
         }
 
         /*
          * Validate entries are inserted in monotonic increasing timestamp
          * order.
          */
-        if (!fEntries.isEmpty() && (entryToAdd.getTimestampBegin() < lastElement().getTimestampBegin())) {
+        if (fSize > 0 && (entry.getTimestampBegin() < fTimestampBegin[fSize - 1])) {
             return false;
         }
 
-        fEntries.add(entryToAdd);
+        ensureCapacity(fSize + 1);
+        Map<String, Object> attributes = entry.getAttributes();
+        int start = fNbValues;
+        int layoutId = getLayoutId(new Layout(attributes, entry.getTarget()));
+        for (Object value : attributes.values()) {
+            if (value instanceof Long) {
+                addValue((Long) value);
+            }
+        }
+
+        int i = fSize;
+        fOffsetBits[i] = entry.getOffsetBits();
+        fPacketSizeBits[i] = entry.getPacketSizeBits();
+        fContentSizeBits[i] = entry.getContentSizeBits();
+        fTimestampBegin[i] = entry.getTimestampBegin();
+        fTimestampEnd[i] = timestampEnd;
+        fLostEvents[i] = entry.getLostEvents();
+        fPayloadStartBits[i] = entry.getPayloadStartBits();
+        fTargetId[i] = entry.getTargetId();
+        fLayoutIds[i] = layoutId;
+        fValuesStart[i] = start;
+        fSize++;
         return true;
     }
 
@@ -119,19 +185,30 @@ public class StreamInputPacketIndex {
      *            The timestamp to look for.
      * @return The index of the desired packet
      */
-    public int search(final long timestamp) {
+    public synchronized int search(final long timestamp) {
         /*
-         * Search using binary search.
-         *
-         * As the entries in fEntries are IndexEntries, the key to search for
-         * needs to be one too. We are looking for a timestamp though, so we use
-         * the dataOffset which is a long and use it as a timestamp holder.
+         * Binary search of a packet that includes the timestamp, or else of the
+         * insertion point of the timestamp among the begin timestamps.
          */
-        int index = Collections.binarySearch(fEntries, new StreamInputPacketIndexEntry(timestamp, 0), new FindTimestamp());
-        if (index < 0) {
-            index = -index - 1;
+        int low = 0;
+        int high = fSize - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp;
+            if (timestamp >= fTimestampBegin[mid] && timestamp <= fTimestampEnd[mid]) {
+                cmp = 0;
+            } else {
+                cmp = Long.compare(fTimestampBegin[mid], timestamp);
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
         }
-        return index;
+        return low;
     }
 
     /**
@@ -139,8 +216,8 @@ public class StreamInputPacketIndex {
      *
      * @return the last element in the index
      */
-    public ICTFPacketDescriptor lastElement() {
-        return fEntries.get(fEntries.size() - 1);
+    public synchronized ICTFPacketDescriptor lastElement() {
+        return getElement(fSize - 1);
     }
 
     /**
@@ -153,8 +230,27 @@ public class StreamInputPacketIndex {
      *             if the index is out of range (
      *             {@code index < 0 || index >= size()})
      */
-    public ICTFPacketDescriptor getElement(int index) {
-        return fEntries.get(index);
+    public synchronized ICTFPacketDescriptor getElement(int index) {
+        if (index < 0 || index >= fSize) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + fSize); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        Layout layout = fLayouts.get(fLayoutIds[index]);
+        int start = fValuesStart[index];
+        long[] values = Arrays.copyOfRange(fValues, start, start + layout.fNbValues);
+        return new IndexedPacketDescriptor(this, index, layout, values);
+    }
+
+    /**
+     * Get the number of events lost in all the packets of the index
+     *
+     * @return the total number of lost events
+     */
+    public synchronized long getTotalLostEvents() {
+        long lostEvents = 0;
+        for (int i = 0; i < fSize; i++) {
+            lostEvents += fLostEvents[i];
+        }
+        return lostEvents;
     }
 
     /**
@@ -180,71 +276,431 @@ public class StreamInputPacketIndex {
      *             not permit null elements (
      *             <a href="Collection.html#optional-restrictions">optional</a>)
      */
-    public int indexOf(ICTFPacketDescriptor element) {
-        int indexOf = -1;
-        if (element != null) {
-            indexOf = Collections.binarySearch(fEntries, element, new MonotonicComparator());
+    public synchronized int indexOf(ICTFPacketDescriptor element) {
+        if (element == null) {
+            return -1;
         }
-        return (indexOf < 0) ? -1 : indexOf;
+        /* Binary search by begin timestamp, then by end timestamp */
+        int low = 0;
+        int high = fSize - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Long.compare(fTimestampBegin[mid], element.getTimestampBegin());
+            if (cmp == 0) {
+                cmp = Long.compare(fTimestampEnd[mid], element.getTimestampEnd());
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
     }
 
+    // ------------------------------------------------------------------------
+    // Serialization
+    // ------------------------------------------------------------------------
+
     /**
-     * Ordering comparator for entering entries into a data structure sorted by
-     * timestamp.
+     * Write the index, column by column
+     *
+     * @param out
+     *            The output stream
+     * @throws IOException
+     *             If the stream cannot be written, or if the attributes of
+     *             the packets are of a type that cannot be serialized
      */
-    private static class MonotonicComparator implements Comparator<ICTFPacketDescriptor>, Serializable {
-        /**
-         * For {@link Serializable}, that way if we migrate to a {@link TreeSet}
-         * the comparator is serializable too.
-         */
-        private static final long serialVersionUID = -5693064068367242076L;
+    synchronized void write(DataOutputStream out) throws IOException {
+        out.writeInt(fSize);
+        out.writeInt(fNbValues);
+        out.writeInt(fLayouts.size());
+        for (Layout layout : fLayouts) {
+            layout.write(out);
+        }
+        for (long[] column : getLongColumns()) {
+            for (int i = 0; i < fSize; i++) {
+                out.writeLong(column[i]);
+            }
+        }
+        for (int i = 0; i < fSize; i++) {
+            out.writeInt(fLayoutIds[i]);
+        }
+        for (int i = 0; i < fNbValues; i++) {
+            out.writeLong(fValues[i]);
+        }
+    }
 
-        @Override
-        public int compare(ICTFPacketDescriptor left, ICTFPacketDescriptor right) {
-            if (left.getTimestampBegin() > right.getTimestampBegin()) {
-                return 1;
+    /**
+     * Read an index written by {@link #write(DataOutputStream)}, and replace
+     * the content of this index with it if it has more packets
+     *
+     * @param buffer
+     *            The buffer to read, positioned at the start of the index
+     * @return true if the content of this index was replaced
+     * @throws IOException
+     *             If the buffer does not contain a valid index
+     */
+    synchronized boolean read(ByteBuffer buffer) throws IOException {
+        int size = buffer.getInt();
+        int nbValues = buffer.getInt();
+        int nbLayouts = buffer.getInt();
+        /* A layout has at least its target flag and its number of names */
+        if (size < 0 || nbValues < 0 || nbLayouts < 0 ||
+                nbLayouts > buffer.remaining() / (Byte.BYTES + Integer.BYTES)) {
+            throw new IOException("Invalid packet index sizes"); //$NON-NLS-1$
+        }
+        if (size <= fSize) {
+            return false;
+        }
+        List<Layout> layouts = new ArrayList<>();
+        for (int i = 0; i < nbLayouts; i++) {
+            layouts.add(Layout.read(buffer));
+        }
+        long[][] currentColumns = getLongColumns();
+        if ((long) size * (currentColumns.length * Long.BYTES + Integer.BYTES) + (long) nbValues * Long.BYTES > buffer.remaining()) {
+            throw new IOException("Truncated packet index"); //$NON-NLS-1$
+        }
+
+        int capacity = Math.max(size, INITIAL_CAPACITY);
+        long[][] columns = new long[currentColumns.length][];
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = new long[capacity];
+            buffer.asLongBuffer().get(columns[c], 0, size);
+            buffer.position(buffer.position() + size * Long.BYTES);
+        }
+        int[] layoutIds = new int[capacity];
+        buffer.asIntBuffer().get(layoutIds, 0, size);
+        buffer.position(buffer.position() + size * Integer.BYTES);
+        long[] values = new long[Math.max(nbValues, INITIAL_CAPACITY)];
+        buffer.asLongBuffer().get(values, 0, nbValues);
+        buffer.position(buffer.position() + nbValues * Long.BYTES);
+
+        /* Validate the layouts, and compute where the values of each packet start */
+        int[] valuesStart = new int[capacity];
+        int start = 0;
+        for (int i = 0; i < size; i++) {
+            if (layoutIds[i] < 0 || layoutIds[i] >= nbLayouts) {
+                throw new IOException("Invalid packet layout"); //$NON-NLS-1$
+            }
+            valuesStart[i] = start;
+            start += layouts.get(layoutIds[i]).fNbValues;
+        }
+        if (start != nbValues) {
+            throw new IOException("Invalid number of packet attribute values"); //$NON-NLS-1$
+        }
+
+        fSize = size;
+        fOffsetBits = columns[0];
+        fPacketSizeBits = columns[1];
+        fContentSizeBits = columns[2];
+        fTimestampBegin = columns[3];
+        fTimestampEnd = columns[4];
+        fLostEvents = columns[5];
+        fPayloadStartBits = columns[6];
+        fTargetId = columns[7];
+        fLayoutIds = layoutIds;
+        fValuesStart = valuesStart;
+        fValues = values;
+        fNbValues = nbValues;
+        fLayouts.clear();
+        fLayoutIdsByLayout.clear();
+        for (Layout layout : layouts) {
+            fLayoutIdsByLayout.put(layout, fLayouts.size());
+            fLayouts.add(layout);
+        }
+        return true;
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    /** The long columns, in the order in which they are serialized */
+    private long[][] getLongColumns() {
+        return new long[][] { fOffsetBits, fPacketSizeBits, fContentSizeBits,
+                fTimestampBegin, fTimestampEnd, fLostEvents, fPayloadStartBits, fTargetId };
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= fOffsetBits.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, fOffsetBits.length * 2);
+        fOffsetBits = Arrays.copyOf(fOffsetBits, newCapacity);
+        fPacketSizeBits = Arrays.copyOf(fPacketSizeBits, newCapacity);
+        fContentSizeBits = Arrays.copyOf(fContentSizeBits, newCapacity);
+        fTimestampBegin = Arrays.copyOf(fTimestampBegin, newCapacity);
+        fTimestampEnd = Arrays.copyOf(fTimestampEnd, newCapacity);
+        fLostEvents = Arrays.copyOf(fLostEvents, newCapacity);
+        fPayloadStartBits = Arrays.copyOf(fPayloadStartBits, newCapacity);
+        fTargetId = Arrays.copyOf(fTargetId, newCapacity);
+        fLayoutIds = Arrays.copyOf(fLayoutIds, newCapacity);
+        fValuesStart = Arrays.copyOf(fValuesStart, newCapacity);
+    }
+
+    private void addValue(long value) {
+        if (fNbValues == fValues.length) {
+            fValues = Arrays.copyOf(fValues, fValues.length * 2);
+        }
+        fValues[fNbValues++] = value;
+    }
+
+    private int getLayoutId(Layout layout) {
+        Integer id = fLayoutIdsByLayout.get(layout);
+        if (id != null) {
+            return id;
+        }
+        int newId = fLayouts.size();
+        fLayouts.add(layout);
+        fLayoutIdsByLayout.put(layout, newId);
+        return newId;
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Invalid string length"); //$NON-NLS-1$
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The part of the packets that is the same for all the packets of a
+     * stream: the target, and the names of the packet context attributes and
+     * their values, except the integer ones, which are in the values column.
+     */
+    private static final class Layout {
+
+        private final @Nullable String fTarget;
+        private final String[] fNames;
+        /** The values of the attributes, null for the integer ones */
+        private final @Nullable Object[] fConstants;
+        private final int fNbValues;
+
+        private Layout(@Nullable String target, String[] names, @Nullable Object[] constants) {
+            fTarget = target;
+            fNames = names;
+            fConstants = constants;
+            int nbValues = 0;
+            for (Object constant : constants) {
+                if (constant == null) {
+                    nbValues++;
+                }
+            }
+            fNbValues = nbValues;
+        }
+
+        public Layout(Map<String, Object> attributes, @Nullable String target) {
+            this(target, attributes.keySet().toArray(new String[attributes.size()]),
+                    attributes.values().stream().map(value -> (value instanceof Long ? null : value)).toArray());
+        }
+
+        public @NonNull Map<String, Object> getAttributes(long[] values) {
+            Builder<String, Object> builder = ImmutableMap.builder();
+            int v = 0;
+            for (int i = 0; i < fNames.length; i++) {
+                Object constant = fConstants[i];
+                builder.put(fNames[i], constant == null ? Long.valueOf(values[v++]) : constant);
+            }
+            return checkNotNull(builder.build());
+        }
+
+        public void write(DataOutputStream out) throws IOException {
+            String target = fTarget;
+            out.writeBoolean(target != null);
+            if (target != null) {
+                writeString(out, target);
             }
-            if (left.getTimestampBegin() < right.getTimestampBegin()) {
-                return -1;
+            out.writeInt(fNames.length);
+            for (int i = 0; i < fNames.length; i++) {
+                writeString(out, fNames[i]);
+                Object constant = fConstants[i];
+                if (constant == null) {
+                    out.writeByte(TYPE_LONG);
+                } else if (constant instanceof Double) {
+                    out.writeByte(TYPE_DOUBLE);
+                    out.writeDouble((Double) constant);
+                } else if (constant instanceof String) {
+                    out.writeByte(TYPE_STRING);
+                    writeString(out, (String) constant);
+                } else if (constant instanceof Map.Entry &&
+                        ((Map.Entry<?, ?>) constant).getKey() instanceof String &&
+                        ((Map.Entry<?, ?>) constant).getValue() instanceof Long) {
+                    Map.Entry<?, ?> entry = (Map.Entry<?, ?>) constant;
+                    out.writeByte(TYPE_ENUM);
+                    writeString(out, (String) entry.getKey());
+                    out.writeLong((Long) entry.getValue());
+                } else {
+                    throw new IOException("Unsupported packet attribute type: " + constant.getClass()); //$NON-NLS-1$
+                }
             }
-            if (left.getTimestampEnd() > right.getTimestampEnd()) {
-                return 1;
+        }
+
+        public static Layout read(ByteBuffer buffer) throws IOException {
+            String target = (buffer.get() != 0 ? readString(buffer) : null);
+            int nbNames = buffer.getInt();
+            /* A name has at least its length and its type */
+            if (nbNames < 0 || nbNames > buffer.remaining() / (Integer.BYTES + Byte.BYTES)) {
+                throw new IOException("Invalid number of packet attributes"); //$NON-NLS-1$
             }
-            if (left.getTimestampEnd() < right.getTimestampEnd()) {
-                return -1;
+            String[] names = new String[nbNames];
+            Object[] constants = new Object[nbNames];
+            for (int i = 0; i < nbNames; i++) {
+                names[i] = readString(buffer);
+                byte type = buffer.get();
+                switch (type) {
+                case TYPE_LONG:
+                    constants[i] = null;
+                    break;
+                case TYPE_DOUBLE:
+                    constants[i] = buffer.getDouble();
+                    break;
+                case TYPE_STRING:
+                    constants[i] = readString(buffer);
+                    break;
+                case TYPE_ENUM:
+                    String string = readString(buffer);
+                    constants[i] = new AbstractMap.SimpleImmutableEntry<>(string, buffer.getLong());
+                    break;
+                default:
+                    throw new IOException("Invalid packet attribute type: " + type); //$NON-NLS-1$
+                }
             }
-            return 0;
+            return new Layout(target, names, constants);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(fNames) + Arrays.hashCode(fConstants);
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Layout)) {
+                return false;
+            }
+            Layout other = (Layout) obj;
+            return Objects.equals(fTarget, other.fTarget) &&
+                    Arrays.equals(fNames, other.fNames) &&
+                    Arrays.equals(fConstants, other.fConstants);
         }
     }
 
     /**
-     * Used for search, assumes that the second argument in the comparison is
-     * always the key
+     * A view of a packet of the index. The attributes are only built if they
+     * are requested.
      */
-    private static class FindTimestamp implements Comparator<ICTFPacketDescriptor>, Serializable {
+    private static final class IndexedPacketDescriptor implements ICTFPacketDescriptor {
 
-        /**
-         * UID
-         */
-        private static final long serialVersionUID = 7235997205945550341L;
+        private final long fOffsetBits;
+        private final long fPacketSizeBits;
+        private final long fContentSizeBits;
+        private final long fTimestampBegin;
+        private final long fTimestampEnd;
+        private final long fLostEvents;
+        private final long fPayloadStartBits;
+        private final long fTargetId;
+        private final Layout fLayout;
+        private final long[] fValues;
+        private @Nullable Map<String, Object> fAttributes = null;
+
+        public IndexedPacketDescriptor(StreamInputPacketIndex index, int i, Layout layout, long[] values) {
+            fOffsetBits = index.fOffsetBits[i];
+            fPacketSizeBits = index.fPacketSizeBits[i];
+            fContentSizeBits = index.fContentSizeBits[i];
+            fTimestampBegin = index.fTimestampBegin[i];
+            fTimestampEnd = index.fTimestampEnd[i];
+            fLostEvents = index.fLostEvents[i];
+            fPayloadStartBits = index.fPayloadStartBits[i];
+            fTargetId = index.fTargetId[i];
+            fLayout = layout;
+            fValues = values;
+        }
+
+        @Override
+        public boolean includes(long ts) {
+            return (ts >= fTimestampBegin) && (ts <= fTimestampEnd);
+        }
+
+        @Override
+        public long getOffsetBits() {
+            return fOffsetBits;
+        }
+
+        @Override
+        public long getPacketSizeBits() {
+            return fPacketSizeBits;
+        }
+
+        @Override
+        public long getContentSizeBits() {
+            return fContentSizeBits;
+        }
+
+        @Override
+        public long getTimestampBegin() {
+            return fTimestampBegin;
+        }
+
+        @Override
+        public long getTimestampEnd() {
+            return fTimestampEnd;
+        }
+
+        @Override
+        public long getLostEvents() {
+            return fLostEvents;
+        }
 
         @Override
-        public int compare(ICTFPacketDescriptor value, ICTFPacketDescriptor key) {
-            /*
-             * It is assumed that the second packet descriptor is the key, a
-             * wrapped timestamp in a PacketDescriptor. So we need to extract
-             * the timestamp. Then we have 3 choices, the if the timestamp is in
-             * the interval, we return 0 or found. If the timestamp is before or
-             * after, we just need to compare it to a value in the segment (like
-             * start) to know if it is greater or lesser to the current packet.
-             */
-            long ts = key.getOffsetBits();
-            if (value.includes(ts)) {
-                return 0;
+        public @NonNull Map<String, Object> getAttributes() {
+            Map<String, Object> attributes = fAttributes;
+            if (attributes == null) {
+                attributes = fLayout.getAttributes(fValues);
+                fAttributes = attributes;
             }
-            return Long.compare(value.getTimestampBegin(), ts);
+            return attributes;
         }
 
-    }
+        @Override
+        public String getTarget() {
+            return fLayout.fTarget;
+        }
 
+        @Override
+        public long getTargetId() {
+            return fTargetId;
+        }
+
+        @Override
+        public long getOffsetBytes() {
+            return fOffsetBits / Byte.SIZE;
+        }
+
+        @Override
+        public long getPayloadStartBits() {
+            return fPayloadStartBits;
+        }
+
+        @Override
+        public String toString() {
+            return "StreamInputPacketIndexEntry [offsetBits=" + fOffsetBits //$NON-NLS-1$
+                    + ", timestampBegin=" + fTimestampBegin + ", timestampEnd=" //$NON-NLS-1$ //$NON-NLS-2$
+                    + fTimestampEnd + "]"; //$NON-NLS-1$
+        }
+    }
 }
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.trace;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
+
+/**
+ * Cache file of the packet index of a stream file, so that the packet headers
+ * do not have to be read again when the trace is reopened. The file contains a
+ * header, to check that the stream file did not change since the cache was
+ * written, followed by the columns of the {@link StreamInputPacketIndex}. It
+ * is memory-mapped to be read (except on Windows, see
+ * {@link SafeMappedByteBuffer}), and the columns are copied to the index in
+ * bulk.
+ */
+@NonNullByDefault
+public final class StreamInputPacketIndexCache {
+
+    private static final int MAGIC = 0xC7F1DCCA;
+    private static final int VERSION = 1;
+    private static final String CACHE_EXTENSION = ".packets"; //$NON-NLS-1$
+
+    private StreamInputPacketIndexCache() {
+    }
+
+    /**
+     * Get the cache file of a stream file
+     *
+     * @param directory
+     *            The directory of the cache files of the trace
+     * @param streamFile
+     *            The stream file
+     * @return The cache file, which may not exist
+     */
+    public static File getCacheFile(File directory, File streamFile) {
+        return new File(directory, streamFile.getName() + CACHE_EXTENSION);
+    }
+
+    /**
+     * Read a cache file into an index. The index is only replaced if the cache
+     * is of the stream file as it is now, and if it has more packets than the
+     * index.
+     *
+     * @param cacheFile
+     *            The cache file
+     * @param streamFile
+     *            The stream file of the index
+     * @param index
+     *            The index to replace
+     * @return true if the index was replaced
+     * @throws IOException
+     *             If the cache file cannot be read or is invalid
+     */
+    public static boolean read(File cacheFile, File streamFile, StreamInputPacketIndex index) throws IOException {
+        if (!cacheFile.isFile()) {
+            return false;
+        }
+        try (FileChannel fc = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = SafeMappedByteBuffer.map(fc, MapMode.READ_ONLY, 0, fc.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Unsupported packet index cache file"); //$NON-NLS-1$
+            }
+            if (buffer.getLong() != streamFile.length() || buffer.getLong() != streamFile.lastModified()) {
+                /* The stream file changed, the cache is obsolete */
+                return false;
+            }
+            return index.read(buffer);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Truncated packet index cache file", e); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Write the index of a stream file to a cache file. The file is written
+     * next to the cache file then renamed, so that a partial file is never
+     * read.
+     *
+     * @param cacheFile
+     *            The cache file
+     * @param streamFile
+     *            The stream file of the index
+     * @param index
+     *            The index to write
+     * @throws IOException
+     *             If the cache file cannot be written
+     */
+    public static void write(File cacheFile, File streamFile, StreamInputPacketIndex index) throws IOException {
+        File directory = cacheFile.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create the directory " + directory); //$NON-NLS-1$
+        }
+        File tempFile = new File(cacheFile.getPath() + ".tmp"); //$NON-NLS-1$
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(streamFile.length());
+            out.writeLong(streamFile.lastModified());
+            index.write(out);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile.toPath());
+            throw e;
+        }
+        Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
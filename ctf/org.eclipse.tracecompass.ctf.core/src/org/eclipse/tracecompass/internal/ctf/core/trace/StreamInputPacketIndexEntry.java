@@ -173,6 +173,39 @@ public class StreamInputPacketIndexEntry implements ICTFPacketDescriptor {
         fLostEvents = computeLostEvents(lostSoFar);
     }
 
+    /**
+     * Constructor for the packets read from an index file rather than from the
+     * stream file. The header of another packet of the same stream must have
+     * been read, and the packet headers must be of fixed size: the payload
+     * start and the target are the ones of that packet.
+     *
+     * @param dataOffsetBits
+     *            offset in the file for the start of data in bits
+     * @param attributes
+     *            the values of the packet context fields
+     * @param fileSizeBytes
+     *            number of bytes in a file
+     * @param lostSoFar
+     *            number of lost events so far
+     * @param readPacket
+     *            a packet of the same stream that was read from the file
+     */
+    public StreamInputPacketIndexEntry(long dataOffsetBits, @NonNull Map<String, Object> attributes, long fileSizeBytes, long lostSoFar, ICTFPacketDescriptor readPacket) {
+        fEndPacketHeaderBits = readPacket.getPayloadStartBits();
+        fAttributes = attributes;
+        fContentSizeBits = computeContentSize(fileSizeBytes);
+        fPacketSizeBits = computePacketSize(fileSizeBytes);
+        fTimestampBegin = computeTsBegin();
+        fTimestampEnd = computeTsEnd();
+        fOffsetBits = dataOffsetBits;
+        fOffsetBytes = dataOffsetBits / Byte.SIZE;
+
+        // LTTng Specific
+        fTarget = readPacket.getTarget();
+        fTargetID = readPacket.getTargetId();
+        fLostEvents = computeLostEvents(lostSoFar);
+    }
+
     /**
      * Copy constructor that updates the timestamp end
      *
@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.trace;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Reader of the packet index files that LTTng writes next to the stream files
+ * of a trace, in the "index" sub-directory. For each packet of the stream, the
+ * index contains its offset and sizes, and the values of the packet context
+ * fields that are needed to index it, so that the packet headers do not have
+ * to be read one by one when opening the trace.
+ *
+ * The index file starts with a header of 4 32-bit integers: the magic number,
+ * the major and minor versions and the size of the entries. Then the entries
+ * follow, as 64-bit integers. All the values are big-endian.
+ */
+@NonNullByDefault
+public final class StreamInputPacketIndexFile {
+
+    private static final int CTF_INDEX_MAGIC = 0xC1F1DCC1;
+    private static final int CTF_INDEX_MAJOR = 1;
+    private static final String INDEX_DIRECTORY = "index"; //$NON-NLS-1$
+    private static final String INDEX_EXTENSION = ".idx"; //$NON-NLS-1$
+
+    /** Size of the entries of version 1.0, up to the stream ID */
+    private static final int ENTRY_SIZE_1_0 = 7 * Long.BYTES;
+    /** Size of the entries of version 1.1, up to the packet sequence number */
+    private static final int ENTRY_SIZE_1_1 = 9 * Long.BYTES;
+    /** Maximum size of the entries, the later minor versions add a few fields */
+    private static final int MAX_ENTRY_SIZE = 1024;
+
+    /**
+     * An entry of the index file, for one packet
+     */
+    public static final class Entry {
+        private final long fOffsetBytes;
+        private final long fPacketSizeBits;
+        private final long fContentSizeBits;
+        private final long fTimestampBegin;
+        private final long fTimestampEnd;
+        private final long fEventsDiscarded;
+        private final long fStreamId;
+        private final @Nullable Long fPacketSeqNum;
+
+        private Entry(long offsetBytes, long packetSizeBits, long contentSizeBits, long timestampBegin,
+                long timestampEnd, long eventsDiscarded, long streamId, @Nullable Long packetSeqNum) {
+            fOffsetBytes = offsetBytes;
+            fPacketSizeBits = packetSizeBits;
+            fContentSizeBits = contentSizeBits;
+            fTimestampBegin = timestampBegin;
+            fTimestampEnd = timestampEnd;
+            fEventsDiscarded = eventsDiscarded;
+            fStreamId = streamId;
+            fPacketSeqNum = packetSeqNum;
+        }
+
+        /**
+         * @return The offset of the packet in the stream file, in bytes
+         */
+        public long getOffsetBytes() {
+            return fOffsetBytes;
+        }
+
+        /**
+         * @return The size of the packet, in bits
+         */
+        public long getPacketSizeBits() {
+            return fPacketSizeBits;
+        }
+
+        /**
+         * @return The size of the content of the packet, in bits
+         */
+        public long getContentSizeBits() {
+            return fContentSizeBits;
+        }
+
+        /**
+         * @return The begin timestamp of the packet, in clock cycles
+         */
+        public long getTimestampBegin() {
+            return fTimestampBegin;
+        }
+
+        /**
+         * @return The end timestamp of the packet, in clock cycles
+         */
+        public long getTimestampEnd() {
+            return fTimestampEnd;
+        }
+
+        /**
+         * @return The number of events discarded in the stream so far
+         */
+        public long getEventsDiscarded() {
+            return fEventsDiscarded;
+        }
+
+        /**
+         * @return The ID of the stream of the packet
+         */
+        public long getStreamId() {
+            return fStreamId;
+        }
+
+        /**
+         * @return The sequence number of the packet, or null for index files
+         *         of version 1.0
+         */
+        public @Nullable Long getPacketSeqNum() {
+            return fPacketSeqNum;
+        }
+    }
+
+    private StreamInputPacketIndexFile() {
+    }
+
+    /**
+     * Get the index file of a stream file, if there is one
+     *
+     * @param streamFile
+     *            The stream file
+     * @return The index file, or null if the stream has no index
+     */
+    public static @Nullable File getIndexFile(File streamFile) {
+        File indexFile = new File(new File(streamFile.getParentFile(), INDEX_DIRECTORY), streamFile.getName() + INDEX_EXTENSION);
+        return indexFile.isFile() ? indexFile : null;
+    }
+
+    /**
+     * Read the entries of an index file, and validate them against the size of
+     * the stream file. The packets of the entries must follow each other from
+     * the start of the stream file, and fit in it. Only the valid entries
+     * before the first invalid one are returned, so an index that is still
+     * being written, or that is truncated, gives the packets it has.
+     *
+     * @param indexFile
+     *            The index file
+     * @param streamFileSizeBytes
+     *            The size of the stream file, in bytes
+     * @return The valid entries, in order
+     * @throws IOException
+     *             If the file cannot be read, or if its header is not the
+     *             header of a supported index file
+     */
+    public static List<Entry> read(File indexFile, long streamFileSizeBytes) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != CTF_INDEX_MAGIC) {
+                throw new IOException("Wrong index file magic number"); //$NON-NLS-1$
+            }
+            int major = in.readInt();
+            /* The minor versions only add fields at the end of the entries */
+            in.readInt();
+            int entrySize = in.readInt();
+            if (major != CTF_INDEX_MAJOR || entrySize < ENTRY_SIZE_1_0 || entrySize > MAX_ENTRY_SIZE) {
+                throw new IOException("Unsupported index file version or entry size"); //$NON-NLS-1$
+            }
+
+            long expectedOffset = 0;
+            while (expectedOffset < streamFileSizeBytes) {
+                Entry entry;
+                try {
+                    entry = readEntry(in, entrySize);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (!isValid(entry, expectedOffset, streamFileSizeBytes)) {
+                    break;
+                }
+                entries.add(entry);
+                expectedOffset += entry.getPacketSizeBits() / Byte.SIZE;
+            }
+        }
+        return entries;
+    }
+
+    private static Entry readEntry(DataInputStream in, int entrySize) throws IOException {
+        long offsetBytes = in.readLong();
+        long packetSizeBits = in.readLong();
+        long contentSizeBits = in.readLong();
+        long timestampBegin = in.readLong();
+        long timestampEnd = in.readLong();
+        long eventsDiscarded = in.readLong();
+        long streamId = in.readLong();
+        Long packetSeqNum = null;
+        int remaining = entrySize - ENTRY_SIZE_1_0;
+        if (entrySize >= ENTRY_SIZE_1_1) {
+            /* Skip the stream instance ID */
+            in.readLong();
+            packetSeqNum = in.readLong();
+            remaining = entrySize - ENTRY_SIZE_1_1;
+        }
+        /* Skip the fields of later minor versions */
+        while (remaining > 0) {
+            int skipped = in.skipBytes(remaining);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            remaining -= skipped;
+        }
+        return new Entry(offsetBytes, packetSizeBits, contentSizeBits, timestampBegin,
+                timestampEnd, eventsDiscarded, streamId, packetSeqNum);
+    }
+
+    private static boolean isValid(Entry entry, long expectedOffset, long streamFileSizeBytes) {
+        long packetSizeBits = entry.getPacketSizeBits();
+        return entry.getOffsetBytes() == expectedOffset &&
+                packetSizeBits > 0 &&
+                packetSizeBits % Byte.SIZE == 0 &&
+                entry.getContentSizeBits() >= 0 &&
+                entry.getContentSizeBits() <= packetSizeBits &&
+                packetSizeBits / Byte.SIZE <= streamFileSizeBytes - expectedOffset;
+    }
+}
@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.ctf.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
+import org.eclipse.tracecompass.tmf.ctf.core.context.CtfTmfContext;
+import org.eclipse.tracecompass.tmf.ctf.core.tests.shared.CtfTmfTestTraceUtils;
+import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Tests of the event requests that only want some event types, which are
+ * skipped by the CTF trace readers.
+ */
+public class CtfTmfEventTypeFilterTest {
+
+    private static final @NonNull CtfTestTrace TEST_TRACE1 = CtfTestTrace.KERNEL;
+    private static final @NonNull CtfTestTrace TEST_TRACE2 = CtfTestTrace.TRACE2;
+    private static final @NonNull Set<String> EVENT_TYPES = ImmutableSet.of("sched_switch", "timer_init");
+
+    private CtfTmfTrace fTrace1;
+    private CtfTmfTrace fTrace2;
+
+    /**
+     * Initialize the traces
+     */
+    @Before
+    public void setUp() {
+        fTrace1 = CtfTmfTestTraceUtils.getTrace(TEST_TRACE1);
+        fTrace2 = CtfTmfTestTraceUtils.getTrace(TEST_TRACE2);
+    }
+
+    /**
+     * Dispose the traces
+     */
+    @After
+    public void tearDown() {
+        CtfTmfTestTraceUtils.dispose(TEST_TRACE1);
+        CtfTmfTestTraceUtils.dispose(TEST_TRACE2);
+    }
+
+    /**
+     * Test that a request on a trace only gets and counts the events of its
+     * types, and gets all of them
+     */
+    @Test
+    public void testTraceRequest() {
+        validateRequests(fTrace1);
+    }
+
+    /**
+     * Test that a request on an experiment only gets and counts the events of
+     * its types, and gets all of them
+     */
+    @Test
+    public void testExperimentRequest() {
+        TmfExperiment experiment = createExperiment();
+        try {
+            validateRequests(experiment);
+        } finally {
+            experiment.dispose();
+        }
+    }
+
+    /**
+     * Test applying the filter to a context of a trace
+     */
+    @Test
+    public void testTraceContext() {
+        ITmfContext context = fTrace1.seekEvent(0L);
+        assertEquals(0, context.getRank());
+        assertTrue(fTrace1.setEventTypeFilter(context, EVENT_TYPES));
+        /* The ranks of the context do not count the skipped events */
+        assertEquals(ITmfContext.UNKNOWN_RANK, context.getRank());
+        assertNotNull(((CtfTmfContext) context).getEventFilter());
+        /* The filter can only be applied once */
+        assertFalse(fTrace1.setEventTypeFilter(context, ImmutableSet.of("sched_wakeup")));
+
+        int nbEvents = 0;
+        ITmfEvent event = fTrace1.getNext(context);
+        while (event != null && nbEvents < 1000) {
+            assertTrue(event.getName(), EVENT_TYPES.contains(event.getName()));
+            assertEquals(ITmfContext.UNKNOWN_RANK, context.getRank());
+            nbEvents++;
+            event = fTrace1.getNext(context);
+        }
+        assertEquals(1000, nbEvents);
+        context.dispose();
+    }
+
+    /**
+     * Test applying the filter to a context of an experiment, whose current
+     * events are replaced by events of the wanted types
+     */
+    @Test
+    public void testExperimentContext() {
+        TmfExperiment experiment = createExperiment();
+        try {
+            ITmfContext context = experiment.seekEvent(0L);
+            assertTrue(experiment.setEventTypeFilter(context, EVENT_TYPES));
+
+            List<String> events = new ArrayList<>();
+            ITmfEvent event = experiment.getNext(context);
+            while (event != null && events.size() < 1000) {
+                assertTrue(event.getName(), EVENT_TYPES.contains(event.getName()));
+                events.add(event.getName());
+                event = experiment.getNext(context);
+            }
+            assertEquals(1000, events.size());
+            context.dispose();
+        } finally {
+            experiment.dispose();
+        }
+    }
+
+    private TmfExperiment createExperiment() {
+        ITmfTrace[] traces = { fTrace1, fTrace2 };
+        return new TmfExperiment(ITmfEvent.class, "EventTypeFilterExperiment", traces, 1000, null);
+    }
+
+    private static void validateRequests(ITmfTrace trace) {
+        TypeCountRequest allEvents = new TypeCountRequest(null);
+        sendRequest(trace, allEvents);
+        TypeCountRequest filtered = new TypeCountRequest(EVENT_TYPES);
+        sendRequest(trace, filtered);
+
+        List<String> expected = allEvents.getEvents();
+        List<String> actual = filtered.getEvents();
+        assertFalse(expected.isEmpty());
+        assertTrue(allEvents.getNbOthers() > 0);
+        assertEquals(0, filtered.getNbOthers());
+        /* Events with the same timestamp may come in another order */
+        expected.sort(null);
+        actual.sort(null);
+        assertEquals(expected, actual);
+
+        /* The events of other types are not counted */
+        assertEquals(expected.size() + allEvents.getNbOthers(), allEvents.getNbRead());
+        assertEquals(actual.size(), filtered.getNbRead());
+    }
+
+    private static void sendRequest(ITmfTrace trace, ITmfEventRequest request) {
+        trace.sendRequest(request);
+        try {
+            request.waitForCompletion();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        assertTrue(request.isCompleted());
+        assertFalse(request.isCancelled());
+    }
+
+    /**
+     * Request keeping the timestamps and names of the events it gets that are
+     * of the tested types, and counting the other ones
+     */
+    private static class TypeCountRequest extends TmfEventRequest {
+
+        private final @Nullable Set<String> fEventTypes;
+        private final List<String> fEvents = new ArrayList<>();
+        private long fNbOthers = 0;
+
+        public TypeCountRequest(@Nullable Set<String> eventTypes) {
+            super(ITmfEvent.class, TmfTimeRange.ETERNITY, 0, ITmfEventRequest.ALL_DATA, ExecutionType.FOREGROUND);
+            fEventTypes = eventTypes;
+        }
+
+        @Override
+        public @Nullable Set<String> getEventTypes() {
+            return fEventTypes;
+        }
+
+        @Override
+        public void handleData(ITmfEvent event) {
+            super.handleData(event);
+            if (EVENT_TYPES.contains(event.getName())) {
+                fEvents.add(event.getTimestamp().getValue() + " " + event.getName());
+            } else {
+                fNbOthers++;
+            }
+        }
+
+        public List<String> getEvents() {
+            return fEvents;
+        }
+
+        public long getNbOthers() {
+            return fNbOthers;
+        }
+    }
+}
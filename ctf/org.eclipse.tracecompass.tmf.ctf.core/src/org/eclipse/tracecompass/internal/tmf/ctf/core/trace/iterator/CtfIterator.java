@@ -16,8 +16,11 @@ package org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator;
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 import static org.eclipse.tracecompass.common.core.NonNullUtils.equalsNullable;
 
+import java.util.function.Predicate;
+
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
 import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInputReader;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
@@ -270,6 +273,34 @@ public class CtfIterator extends CTFTraceReader
         return ret;
     }
 
+    /**
+     * The index of the location counts the events accepted by the filter, so
+     * it is only kept when the iterator was reading all the events and was at
+     * the first event of its timestamp. Otherwise the location is invalid
+     * until the next seek.
+     */
+    @Override
+    public synchronized boolean setEventFilter(Predicate<IEventDeclaration> eventFilter) {
+        Predicate<IEventDeclaration> previousFilter = getEventFilter();
+        if (eventFilter == previousFilter) {
+            return hasMoreEvents();
+        }
+        boolean ret = false;
+        try {
+            ret = super.setEventFilter(eventFilter);
+        } catch (CTFException e) {
+            Activator.getDefault().logError(e.getMessage(), e);
+        }
+        /* The current event may have changed */
+        fPreviousLocation = null;
+        if (ret && previousFilter == null && fCurLocation.getLocationInfo().getIndex() == 0) {
+            fCurLocation = new CtfLocation(getCurrentTimestamp(), 0L);
+        } else {
+            fCurLocation = NULL_LOCATION;
+        }
+        return ret;
+    }
+
     // ------------------------------------------------------------------------
     // ITmfContext
     // ------------------------------------------------------------------------
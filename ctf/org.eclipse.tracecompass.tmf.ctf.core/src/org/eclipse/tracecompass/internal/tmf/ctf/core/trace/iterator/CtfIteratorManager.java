@@ -111,6 +111,8 @@ public class CtfIteratorManager {
                      */
                     iter = replaceRandomElement(context);
                 }
+                /* The iterator may have been used with another filter */
+                iter.setEventFilter(context.getEventFilter());
                 if (context.getLocation() != null) {
                     final CtfLocationInfo location = (CtfLocationInfo) context.getLocation().getLocationInfo();
                     iter.seek(location);
@@ -13,6 +13,10 @@
 
 package org.eclipse.tracecompass.tmf.ctf.core.context;
 
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
 import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator.CtfIterator;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
@@ -36,6 +40,8 @@ public class CtfTmfContext implements ITmfContext {
 
     private final CtfTmfTrace fTrace;
 
+    private Predicate<IEventDeclaration> fEventFilter = null;
+
     // -------------------------------------------
     // Constructor
     // -------------------------------------------
@@ -177,6 +183,46 @@ public class CtfTmfContext implements ITmfContext {
         return getIterator().seek(location);
     }
 
+    /**
+     * Only read the events of the given types with this context. The other
+     * events are skipped by the trace reader. Since the index of a location
+     * only counts the events that are read, this is only possible when the
+     * context is at the first event of its timestamp, like after a seek by
+     * timestamp. The rank of the context is unknown afterwards.
+     *
+     * @param eventTypes
+     *            The names of the event types to read
+     * @return true if the filter is applied, false if the context is not at a
+     *         location where it can be applied
+     * @since 2.0
+     */
+    public synchronized boolean setEventTypeFilter(Set<String> eventTypes) {
+        CtfLocation location = fCurLocation;
+        if (fEventFilter != null || location == null || location.getLocationInfo().getIndex() != 0 ||
+                location.getLocationInfo().equals(CtfLocation.INVALID_LOCATION)) {
+            return false;
+        }
+        fEventFilter = declaration -> eventTypes.contains(declaration.getName());
+        CtfIterator iterator = getIterator();
+        iterator.setEventFilter(fEventFilter);
+        if (iterator.getLocation().getLocationInfo().equals(CtfLocation.INVALID_LOCATION)) {
+            iterator.seek(location.getLocationInfo());
+        }
+        fCurLocation = iterator.getLocation();
+        fCurRank = ITmfContext.UNKNOWN_RANK;
+        return true;
+    }
+
+    /**
+     * Get the filter on the event declarations read with this context
+     *
+     * @return The filter, or null if all the events are read
+     * @since 2.0
+     */
+    public Predicate<IEventDeclaration> getEventFilter() {
+        return fEventFilter;
+    }
+
     // -------------------------------------------
     // Private helpers
     // -------------------------------------------
@@ -16,6 +16,7 @@ package org.eclipse.tracecompass.tmf.ctf.core.trace;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.io.File;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -30,9 +31,12 @@ import java.util.Set;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.osgi.util.NLS;
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.CTFClock;
 import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
@@ -53,8 +57,10 @@ import org.eclipse.tracecompass.tmf.core.project.model.ITmfPropertiesProvider;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceWithEventTypeFilter;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceWithPreDefinedEvents;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.core.trace.TraceValidationStatus;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfPersistentlyIndexable;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfTraceIndexer;
@@ -83,7 +89,7 @@ import com.google.common.collect.ImmutableSet;
  */
 public class CtfTmfTrace extends TmfTrace
         implements ITmfPropertiesProvider, ITmfPersistentlyIndexable,
-        ITmfTraceWithPreDefinedEvents {
+        ITmfTraceWithPreDefinedEvents, ITmfTraceWithEventTypeFilter {
 
     // -------------------------------------------
     // Constants
@@ -120,6 +126,9 @@ public class CtfTmfTrace extends TmfTrace
     private static final int CONFIDENCE = 10;
     private static final int MIN_CONFIDENCE = 1;
 
+    /** Sub-directory of the supplementary folder for the packet index cache files */
+    private static final String PACKET_INDEX_DIRECTORY = "packet_index"; //$NON-NLS-1$
+
     // -------------------------------------------
     // Fields
     // -------------------------------------------
@@ -134,6 +143,9 @@ public class CtfTmfTrace extends TmfTrace
     /** Reference to the CTF Trace */
     private CTFTrace fTrace;
 
+    /** Job indexing the packets of the stream files in the background */
+    private Job fPacketIndexJob;
+
     // -------------------------------------------
     // Constructor
     // -------------------------------------------
@@ -188,6 +200,8 @@ public class CtfTmfTrace extends TmfTrace
 
         try {
             this.fTrace = new CTFTrace(path);
+            fPacketIndexJob = createPacketIndexJob(fTrace);
+            fPacketIndexJob.schedule();
             CtfTmfContext ctx;
             /* Set the start and (current) end times for this trace */
             ctx = (CtfTmfContext) seekEvent(0L);
@@ -230,15 +244,18 @@ public class CtfTmfTrace extends TmfTrace
                         }
                         content.addAll(streamContextNames);
 
-                        if (!content.isEmpty()) {
-                            ITmfEventField contentTree = new TmfEventField(
-                                    ITmfEventField.ROOT_FIELD_ID,
-                                    null,
-                                    content.toArray(new ITmfEventField[content.size()]));
-
-                            ctfTmfEventType = new CtfTmfEventType(checkNotNull(ied.getName()), contentTree);
-                            fContainedEventTypes.put(ctfTmfEventType.getName(), ctfTmfEventType);
-                        }
+                        /*
+                         * Register the event types without fields too, so
+                         * that the event type filters built from the contained
+                         * event types do not skip their events
+                         */
+                        ITmfEventField contentTree = new TmfEventField(
+                                ITmfEventField.ROOT_FIELD_ID,
+                                null,
+                                content.toArray(new ITmfEventField[content.size()]));
+
+                        ctfTmfEventType = new CtfTmfEventType(checkNotNull(ied.getName()), contentTree);
+                        fContainedEventTypes.put(ctfTmfEventType.getName(), ctfTmfEventType);
                     }
                 }
             }
@@ -253,8 +270,36 @@ public class CtfTmfTrace extends TmfTrace
         }
     }
 
+    /**
+     * Create the job indexing the packets of all the stream files in
+     * parallel, with cache files of the packet indexes in the supplementary
+     * folder. It runs in the background so that the trace can be opened and
+     * read in the meantime, the readers indexing the packets they reach
+     * first.
+     */
+    private Job createPacketIndexJob(CTFTrace trace) {
+        File packetIndexDirectory = new File(TmfTraceManager.getSupplementaryFileDir(this) + PACKET_INDEX_DIRECTORY);
+        return new Job(NLS.bind(Messages.CtfTmfTrace_IndexingPackets, getName())) {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                trace.indexStreamInputs(packetIndexDirectory, monitor);
+                return (monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS);
+            }
+        };
+    }
+
     @Override
     public synchronized void dispose() {
+        Job packetIndexJob = fPacketIndexJob;
+        if (packetIndexJob != null) {
+            packetIndexJob.cancel();
+            try {
+                packetIndexJob.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            fPacketIndexJob = null;
+        }
         fIteratorManager.dispose();
         if (fTrace != null) {
             fTrace = null;
@@ -418,6 +463,20 @@ public class CtfTmfTrace extends TmfTrace
         return event;
     }
 
+    /**
+     * The CTF trace reader skips the events of other types after reading their
+     * header, without creating their fields when their declarations allow it.
+     *
+     * @since 2.0
+     */
+    @Override
+    public boolean setEventTypeFilter(ITmfContext context, Set<String> eventTypes) {
+        if (fTrace == null || !(context instanceof CtfTmfContext)) {
+            return false;
+        }
+        return ((CtfTmfContext) context).setEventTypeFilter(eventTypes);
+    }
+
     /**
      * Ctf traces have a clock with a unique uuid that will be used to identify
      * the host. Traces with the same clock uuid will be known to have been made
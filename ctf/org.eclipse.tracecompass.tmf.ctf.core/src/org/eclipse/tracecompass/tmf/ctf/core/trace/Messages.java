@@ -31,6 +31,9 @@ public class Messages extends NLS {
     /** Major version number not set */
     public static String CtfTmfTrace_MajorNotSet;
 
+    /** Name of the job indexing the packets of the trace */
+    public static String CtfTmfTrace_IndexingPackets;
+
     /** Reading error */
     public static String CtfTmfTrace_ReadingError;
 
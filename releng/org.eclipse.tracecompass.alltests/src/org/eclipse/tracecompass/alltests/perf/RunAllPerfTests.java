@@ -34,8 +34,11 @@ import org.junit.runners.Suite;
     org.eclipse.tracecompass.pcap.core.tests.perf.trace.PcapReadBenchmark.class,
     org.eclipse.tracecompass.pcap.core.tests.perf.trace.PcapSeekBenchmark.class,
 
+    org.eclipse.tracecompass.statesystem.core.tests.perf.historytree.ConcurrentQueryBenchmark.class,
     org.eclipse.tracecompass.statesystem.core.tests.perf.historytree.HistoryTreeBackendBenchmark.class,
+    org.eclipse.tracecompass.statesystem.core.tests.perf.historytree.HistoryTreeLayoutBenchmark.class,
 
+    org.eclipse.tracecompass.tmf.core.tests.perf.experiment.ExperimentMergeBenchmark.class,
     org.eclipse.tracecompass.tmf.core.tests.perf.synchronization.TimestampTransformBenchmark.class,
 
     org.eclipse.tracecompass.tmf.ctf.core.tests.perf.experiment.ExperimentBenchmark.class
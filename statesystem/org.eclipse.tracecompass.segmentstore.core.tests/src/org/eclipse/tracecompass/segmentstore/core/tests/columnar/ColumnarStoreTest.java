@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.segmentstore.core.tests.columnar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.segmentstore.core.BasicSegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+import org.eclipse.tracecompass.segmentstore.core.SegmentComparators;
+import org.eclipse.tracecompass.segmentstore.core.columnar.ColumnarStore;
+import org.eclipse.tracecompass.segmentstore.core.tests.AbstractTestSegmentStore;
+import org.junit.Test;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+
+/**
+ * Unit tests for the ColumnarStore
+ */
+public class ColumnarStoreTest extends AbstractTestSegmentStore {
+
+    @Override
+    protected ISegmentStore<@NonNull ISegment> createSegmentStore() {
+        return new ColumnarStore<>();
+    }
+
+    /**
+     * Try adding duplicate elements, they should all be kept
+     */
+    @Test
+    public void testDuplicateElements() {
+        for (ISegment segment : SEGMENTS) {
+            boolean ret = fSegmentStore.add(new BasicSegment(segment.getStart(), segment.getEnd()));
+            assertTrue(ret);
+        }
+        assertEquals(2 * SEGMENTS.size(), fSegmentStore.size());
+        assertEquals(2, Iterables.size(fSegmentStore.getIntersectingElements(11)));
+    }
+
+    /**
+     * Test that queries and iterators keep working on the segments that were
+     * there when they were created, while new segments are added.
+     */
+    @Test
+    public void testAddWhileIterating() {
+        Iterable<ISegment> intersecting = fSegmentStore.getIntersectingElements(1, 15);
+        int count = 0;
+        for (ISegment segment : fSegmentStore) {
+            fSegmentStore.add(new BasicSegment(segment.getStart() + 1, segment.getEnd() + 1));
+            count++;
+        }
+        assertEquals(SEGMENTS.size(), count);
+        assertEquals(SEGMENTS.size(), Iterables.size(intersecting));
+        assertEquals(2 * SEGMENTS.size(), Iterables.size(fSegmentStore));
+    }
+
+    /**
+     * Compare the intersection queries with a linear search, on many random
+     * segments of various lengths, inserted in several batches.
+     */
+    @Test
+    public void testRandomIntersections() {
+        Random random = new Random(42);
+        ISegmentStore<@NonNull ISegment> store = createSegmentStore();
+        List<ISegment> segments = new ArrayList<>();
+        for (int batch = 0; batch < 5; batch++) {
+            for (int i = 0; i < 2000; i++) {
+                long start = random.nextInt(100000);
+                long length = (random.nextInt(10) == 0 ? random.nextInt(20000) : random.nextInt(100));
+                ISegment segment = new BasicSegment(start, start + length);
+                store.add(segment);
+                segments.add(segment);
+            }
+            for (int query = 0; query < 50; query++) {
+                long start = random.nextInt(110000) - 5000;
+                long end = start + random.nextInt(1000);
+
+                List<ISegment> expected = new ArrayList<>();
+                for (ISegment segment : segments) {
+                    if (segment.getStart() <= end && segment.getEnd() >= start) {
+                        expected.add(segment);
+                    }
+                }
+                List<ISegment> actual = Lists.newArrayList(store.getIntersectingElements(start, end));
+                assertEquals(expected.size(), actual.size());
+                assertTrue(actual.containsAll(expected));
+
+                /* Results come in the order of their start times */
+                for (int i = 1; i < actual.size(); i++) {
+                    assertTrue(actual.get(i - 1).getStart() <= actual.get(i).getStart());
+                }
+            }
+        }
+        store.dispose();
+    }
+
+    /**
+     * Query the store after each small batch of segments, so that the
+     * segments are spread over several runs, and check that iterating, the
+     * arrays and the lookups see all the segments in order.
+     */
+    @Test
+    public void testInterleavedAddsAndQueries() {
+        Random random = new Random(7);
+        ISegmentStore<@NonNull ISegment> store = createSegmentStore();
+        List<ISegment> segments = new ArrayList<>();
+        for (int batch = 0; batch < 200; batch++) {
+            int batchSize = 1 + random.nextInt(50);
+            for (int i = 0; i < batchSize; i++) {
+                long start = random.nextInt(10000);
+                ISegment segment = new BasicSegment(start, start + random.nextInt(100));
+                store.add(segment);
+                segments.add(segment);
+            }
+            ISegment last = segments.get(segments.size() - 1);
+            assertTrue(store.contains(last));
+            assertEquals(segments.size(), Iterables.size(store.getIntersectingElements(Long.MIN_VALUE, Long.MAX_VALUE)));
+        }
+        assertFalse(store.contains(new BasicSegment(-1, -1)));
+
+        List<ISegment> expected = new ArrayList<>(segments);
+        expected.sort(SegmentComparators.INTERVAL_START_COMPARATOR.thenComparing(SegmentComparators.INTERVAL_END_COMPARATOR));
+        /* Query enough times without adds for the runs to be compacted */
+        for (int query = 0; query < 20; query++) {
+            List<ISegment> actual = Lists.newArrayList(store);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getStart(), actual.get(i).getStart());
+                assertEquals(expected.get(i).getEnd(), actual.get(i).getEnd());
+            }
+            assertEquals(expected.size(), store.toArray().length);
+        }
+        assertTrue(store.containsAll(segments));
+        store.dispose();
+    }
+}
@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.segmentstore.core.tests.historytree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.segmentstore.core.BasicSegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+import org.eclipse.tracecompass.segmentstore.core.SegmentComparators;
+import org.eclipse.tracecompass.segmentstore.core.historytree.HistoryTreeSegmentStore;
+import org.eclipse.tracecompass.segmentstore.core.tests.AbstractTestSegmentStore;
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+
+/**
+ * Unit tests for the HistoryTreeSegmentStore
+ */
+public class HistoryTreeSegmentStoreTest extends AbstractTestSegmentStore {
+
+    /* Small nodes, so that the test segments span several of them */
+    private static final int NODE_CAPACITY = 2;
+    private static final int CACHE_SIZE = 2;
+
+    private final List<Path> fFiles = new ArrayList<>();
+
+    @Override
+    protected ISegmentStore<@NonNull ISegment> createSegmentStore() {
+        try {
+            return new HistoryTreeSegmentStore<>(createFile(), NODE_CAPACITY, CACHE_SIZE, ois -> (Object[]) ois.readObject());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Path createFile() throws IOException {
+        Path file = Files.createTempFile("HistoryTreeSegmentStoreTest", ".ht");
+        fFiles.add(file);
+        return file;
+    }
+
+    /**
+     * Delete the files of the segment stores
+     *
+     * @throws IOException
+     *             If a file cannot be deleted
+     */
+    @After
+    public void deleteFiles() throws IOException {
+        for (Path file : fFiles) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Try adding duplicate elements, they should all be kept
+     */
+    @Test
+    public void testDuplicateElements() {
+        for (ISegment segment : SEGMENTS) {
+            boolean ret = fSegmentStore.add(new BasicSegment(segment.getStart(), segment.getEnd()));
+            assertTrue(ret);
+        }
+        assertEquals(2 * SEGMENTS.size(), fSegmentStore.size());
+        assertEquals(2, Iterables.size(fSegmentStore.getIntersectingElements(11)));
+    }
+
+    /**
+     * Test that a completed store can be re-opened from its file, and that the
+     * re-opened store is read-only
+     *
+     * @throws IOException
+     *             If the file cannot be opened
+     */
+    @Test
+    public void testReopen() throws IOException {
+        Path file = fFiles.get(0);
+        fSegmentStore.close(false);
+        fSegmentStore.dispose();
+
+        ISegmentStore<@NonNull ISegment> store = HistoryTreeSegmentStore.open(file);
+        /* The segments were read back from the file, compare their values */
+        assertEquals(SEGMENTS.size(), store.size());
+        assertEquals(SEGMENTS.toString(), Lists.newArrayList(store).toString());
+        assertEquals(Lists.newArrayList(SEGMENT_2_6, SEGMENT_4_6, SEGMENT_4_8, SEGMENT_6_8).toString(),
+                Lists.newArrayList(store.getIntersectingElements(6)).toString());
+        try {
+            store.add(SEGMENT_2_6);
+            fail();
+        } catch (IllegalStateException e) {
+            /* Expected */
+        }
+        store.dispose();
+    }
+
+    /**
+     * Test that a completed store can be re-opened from a file that is not
+     * writable, and that it cannot be cleared
+     *
+     * @throws IOException
+     *             If the file cannot be opened
+     */
+    @Test
+    public void testReopenReadOnlyFile() throws IOException {
+        Path file = fFiles.get(0);
+        fSegmentStore.close(false);
+        fSegmentStore.dispose();
+        assertTrue(file.toFile().setWritable(false));
+
+        ISegmentStore<@NonNull ISegment> store = HistoryTreeSegmentStore.open(file);
+        assertEquals(SEGMENTS.toString(), Lists.newArrayList(store).toString());
+        try {
+            store.clear();
+            fail();
+        } catch (UnsupportedOperationException e) {
+            /* Expected */
+        }
+        assertEquals(SEGMENTS.size(), store.size());
+        store.dispose();
+        assertTrue(file.toFile().setWritable(true));
+    }
+
+    /**
+     * Test that a store that was not completed cannot be re-opened
+     */
+    @Test
+    public void testReopenIncomplete() {
+        Path file = fFiles.get(0);
+        fSegmentStore.dispose();
+        try {
+            HistoryTreeSegmentStore.open(file);
+            fail();
+        } catch (IOException e) {
+            /* Expected */
+        }
+    }
+
+    /**
+     * Test that closing a store with deleteFiles removes its file
+     */
+    @Test
+    public void testCloseDeleteFiles() {
+        Path file = fFiles.get(0);
+        fSegmentStore.close(true);
+        assertEquals(0, fSegmentStore.size());
+        assertTrue(!Files.exists(file));
+    }
+
+    /**
+     * Compare the intersection queries with a linear search, on many random
+     * segments of various lengths, before and after re-opening the store.
+     *
+     * @throws IOException
+     *             If the store cannot be created or re-opened
+     */
+    @Test
+    public void testRandomIntersections() throws IOException {
+        Random random = new Random(42);
+        Path file = createFile();
+        ISegmentStore<@NonNull ISegment> store = new HistoryTreeSegmentStore<>(file, 64, 4, ois -> (Object[]) ois.readObject());
+        List<ISegment> segments = new ArrayList<>();
+        long time = 0;
+        for (int i = 0; i < 10000; i++) {
+            /* Segments are mostly added in the order of their end times */
+            time += random.nextInt(10);
+            long length = (random.nextInt(10) == 0 ? random.nextInt(20000) : random.nextInt(100));
+            ISegment segment = new BasicSegment(Math.max(0, time - length), time);
+            store.add(segment);
+            segments.add(segment);
+        }
+        checkRandomIntersections(random, store, segments, time);
+
+        store.close(false);
+        store.dispose();
+        store = HistoryTreeSegmentStore.open(file);
+        assertEquals(segments.size(), store.size());
+        checkRandomIntersections(random, store, segments, time);
+        store.dispose();
+    }
+
+    /**
+     * Compare the intersection queries with a linear search, on segments
+     * added in the reverse order of their start times, which each start
+     * before all the segments of the nodes being filled.
+     *
+     * @throws IOException
+     *             If the store cannot be created or re-opened
+     */
+    @Test
+    public void testReverseOrder() throws IOException {
+        Random random = new Random(7);
+        Path file = createFile();
+        ISegmentStore<@NonNull ISegment> store = new HistoryTreeSegmentStore<>(file, 16, 4, ois -> (Object[]) ois.readObject());
+        List<ISegment> segments = new ArrayList<>();
+        long time = 100000;
+        for (int i = 0; i < 5000; i++) {
+            time -= random.nextInt(10) + 1;
+            ISegment segment = new BasicSegment(time, time + random.nextInt(100));
+            store.add(segment);
+            segments.add(segment);
+        }
+        checkRandomIntersections(random, store, segments, 100000);
+
+        store.close(false);
+        store.dispose();
+        store = HistoryTreeSegmentStore.open(file);
+        assertEquals(segments.size(), store.size());
+        checkRandomIntersections(random, store, segments, 100000);
+        store.dispose();
+    }
+
+    private static void checkRandomIntersections(Random random, ISegmentStore<@NonNull ISegment> store, List<ISegment> segments, long maxTime) {
+        for (int query = 0; query < 50; query++) {
+            long start = random.nextInt((int) maxTime + 10000) - 5000;
+            long end = start + random.nextInt(1000);
+
+            /*
+             * The segments may have been read back from the file, so compare
+             * their values, in the order of the store
+             */
+            List<ISegment> expected = new ArrayList<>();
+            for (ISegment segment : segments) {
+                if (segment.getStart() <= end && segment.getEnd() >= start) {
+                    expected.add(segment);
+                }
+            }
+            expected.sort(SegmentComparators.INTERVAL_START_COMPARATOR.thenComparing(SegmentComparators.INTERVAL_END_COMPARATOR));
+            List<ISegment> actual = Lists.newArrayList(store.getIntersectingElements(start, end));
+            assertEquals(expected.toString(), actual.toString());
+        }
+    }
+}
@@ -12,7 +12,12 @@
 
 package org.eclipse.tracecompass.segmentstore.core;
 
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * Interface for segment-storing backends.
@@ -54,6 +59,69 @@ public interface ISegmentStore<E extends ISegment> extends Collection<E> {
      */
     Iterable<E> getIntersectingElements(long start, long end);
 
+    /**
+     * Iterate over all the elements of the store, in the given order.
+     *
+     * The returned iterable does not copy the store, and its iterators can be
+     * used while elements are still being added to it. Elements added during
+     * the iteration may or may not be returned.
+     *
+     * @param order
+     *            The order in which to return the elements, typically one of
+     *            the {@link SegmentComparators}
+     * @return The elements of the store, sorted by that order
+     * @see #getIntersectingElements(long, long, Comparator)
+     */
+    default Iterable<E> sortedBy(Comparator<ISegment> order) {
+        return getIntersectingElements(Long.MIN_VALUE, Long.MAX_VALUE, order);
+    }
+
+    /**
+     * Retrieve all elements that inclusively cross the given position, in the
+     * given order.
+     *
+     * @param position
+     *            The target position
+     * @param order
+     *            The order in which to return the elements, typically one of
+     *            the {@link SegmentComparators}
+     * @return The intervals that cross this position, sorted by that order
+     * @see #getIntersectingElements(long, long, Comparator)
+     */
+    default Iterable<E> getIntersectingElements(long position, Comparator<ISegment> order) {
+        return getIntersectingElements(position, position, order);
+    }
+
+    /**
+     * Retrieve all elements that inclusively cross another segment, in the
+     * given order.
+     *
+     * Implementations return the elements lazily for the orders their indexes
+     * can provide, which should at least be
+     * {@link SegmentComparators#INTERVAL_START_COMPARATOR}. For any other
+     * order, the default implementation sorts the references of the matching
+     * elements each time the returned iterable is iterated over.
+     *
+     * @param start
+     *            The target start position
+     * @param end
+     *            The target end position
+     * @param order
+     *            The order in which to return the elements, typically one of
+     *            the {@link SegmentComparators}
+     * @return The elements overlapping with this segment, sorted by that order
+     */
+    default Iterable<E> getIntersectingElements(long start, long end, Comparator<ISegment> order) {
+        return () -> {
+            List<E> list = new ArrayList<>();
+            for (E element : getIntersectingElements(start, end)) {
+                list.add(element);
+            }
+            list.sort(order);
+            return checkNotNull(list.iterator());
+        };
+    }
+
     /**
      * Dispose the data structure and release any system resources associated
      * with it.
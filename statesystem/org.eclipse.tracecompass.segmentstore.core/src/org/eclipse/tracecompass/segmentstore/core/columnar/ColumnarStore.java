@@ -0,0 +1,557 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.segmentstore.core.columnar;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+import org.eclipse.tracecompass.segmentstore.core.SegmentComparators;
+import org.eclipse.tracecompass.segmentstore.core.treemap.TreeMapStore;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+
+/**
+ * Implementation of a {@link ISegmentStore} keeping the segments in arrays
+ * sorted by start time, with the start and end times in primitive columns.
+ *
+ * Intersection queries use an implicit interval tree over those arrays: the
+ * sorted array is seen as a balanced binary search tree, where each node also
+ * knows the greatest end time of its subtree. Queries then only visit the
+ * subtrees that can contain matching segments, and return them lazily, in the
+ * order of their start times.
+ *
+ * Segments are first appended to a pending list, which is sorted into a new
+ * run of arrays at the next query. Like in a log-structured merge tree, a new
+ * run is merged with the previous ones as long as they are not more than twice
+ * its size, so there are only a logarithmic number of runs and a query does
+ * not copy all the segments after each add. Queries merge the results of the
+ * runs, and once segments stop being added, the runs are compacted into one.
+ * Queries and iterators work on the runs as they were when they were called,
+ * so they stay valid while segments are being added.
+ *
+ * The iteration order is the same as the one of the {@link TreeMapStore}.
+ * However, unlike the {@link TreeMapStore}, this store does not look for
+ * duplicate elements, which are all kept.
+ *
+ * Removal operations are not supported.
+ *
+ * @param <E>
+ *            The type of segment held in this store
+ */
+public class ColumnarStore<@NonNull E extends ISegment> implements ISegmentStore<E> {
+
+    private static final Comparator<ISegment> COMPARATOR = Ordering.from(SegmentComparators.INTERVAL_START_COMPARATOR)
+            .compound(SegmentComparators.INTERVAL_END_COMPARATOR)
+            .compound(Ordering.natural());
+
+    /* Number of queries without adds after which the runs are compacted */
+    private static final int COMPACTION_QUERIES = 16;
+
+    private final ReadWriteLock fLock = new ReentrantReadWriteLock(false);
+
+    /*
+     * Runs of sorted and indexed segments, from the oldest and largest to the
+     * newest. The array is replaced when pending segments are merged.
+     */
+    private volatile Columns[] fRuns = new Columns[0];
+
+    /* Segments added since the last merge */
+    private List<E> fPending = new ArrayList<>();
+    private volatile boolean fHasPending = false;
+
+    /* Queries since the last merge, to know when to compact the runs */
+    private final AtomicInteger fQueriesSinceMerge = new AtomicInteger();
+
+    private volatile int fSize = 0;
+
+    // ------------------------------------------------------------------------
+    // Methods from Collection
+    // ------------------------------------------------------------------------
+
+    @Override
+    public Iterator<E> iterator() {
+        return mergeRuns(getRuns(), RunIterator::new);
+    }
+
+    @Override
+    public boolean add(@Nullable E val) {
+        if (val == null) {
+            throw new IllegalArgumentException();
+        }
+
+        fLock.writeLock().lock();
+        try {
+            fPending.add(val);
+            fHasPending = true;
+            fSize++;
+            return true;
+        } finally {
+            fLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return fSize;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return (fSize == 0);
+    }
+
+    @Override
+    public boolean contains(@Nullable Object o) {
+        if (!(o instanceof ISegment)) {
+            return false;
+        }
+        ISegment segment = (ISegment) o;
+        for (Columns columns : getRuns()) {
+            /* Look through the segments with the same start time */
+            for (int i = columns.firstIndexStartingAt(segment.getStart());
+                    i < columns.fSize && columns.fStarts[i] == segment.getStart(); i++) {
+                if (segment.equals(columns.fElements[i])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean containsAll(@Nullable Collection<?> c) {
+        if (c == null) {
+            throw new IllegalArgumentException();
+        }
+        return c.stream().allMatch(this::contains);
+    }
+
+    @Override
+    public Object[] toArray() {
+        Columns[] runs = getRuns();
+        if (runs.length == 1) {
+            return Arrays.copyOf(runs[0].fElements, runs[0].fSize);
+        }
+        return Lists.newArrayList(iterator()).toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return Lists.newArrayList(iterator()).toArray(a);
+    }
+
+    @Override
+    public boolean remove(@Nullable Object o) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean addAll(@Nullable Collection<? extends E> c) {
+        if (c == null) {
+            throw new IllegalArgumentException();
+        }
+
+        fLock.writeLock().lock();
+        try {
+            boolean changed = false;
+            for (E elem : c) {
+                if (this.add(elem)) {
+                    changed = true;
+                }
+            }
+            return changed;
+        } finally {
+            fLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean removeAll(@Nullable Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean retainAll(@Nullable Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        fLock.writeLock().lock();
+        try {
+            fRuns = new Columns[0];
+            fPending = new ArrayList<>();
+            fHasPending = false;
+            fSize = 0;
+        } finally {
+            fLock.writeLock().unlock();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Methods added by ISegmentStore
+    // ------------------------------------------------------------------------
+
+    @Override
+    public Iterable<E> getIntersectingElements(long position) {
+        return getIntersectingElements(position, position);
+    }
+
+    @Override
+    public Iterable<E> getIntersectingElements(long start, long end) {
+        Columns[] runs = getRuns();
+        return () -> mergeRuns(runs, columns -> new IntersectionIterator<>(columns, start, end));
+    }
+
+    @Override
+    public Iterable<E> getIntersectingElements(long start, long end, Comparator<ISegment> order) {
+        if (order == SegmentComparators.INTERVAL_START_COMPARATOR) {
+            /* The intersection queries already return the elements in that order */
+            return getIntersectingElements(start, end);
+        }
+        return ISegmentStore.super.getIntersectingElements(start, end, order);
+    }
+
+    @Override
+    public void dispose() {
+        clear();
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the current runs of sorted columns, after sorting the pending
+     * segments in a new run if needed.
+     */
+    private Columns[] getRuns() {
+        Columns[] runs = fRuns;
+        if (!fHasPending && (runs.length <= 1 || fQueriesSinceMerge.incrementAndGet() < COMPACTION_QUERIES)) {
+            return runs;
+        }
+        fLock.writeLock().lock();
+        try {
+            if (fHasPending) {
+                List<E> pending = fPending;
+                pending.sort(COMPARATOR);
+                fRuns = addRun(fRuns, new Columns(pending.toArray()));
+                fPending = new ArrayList<>();
+                fHasPending = false;
+                fQueriesSinceMerge.set(0);
+            } else if (fRuns.length > 1) {
+                /* No segments were added for a while, compact the runs */
+                Columns compacted = fRuns[0];
+                for (int i = 1; i < fRuns.length; i++) {
+                    compacted = Columns.merge(compacted, fRuns[i]);
+                }
+                fRuns = new Columns[] { compacted };
+            }
+            return fRuns;
+        } finally {
+            fLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add a new run after the existing ones, merging it with the last runs
+     * while they are not more than twice its size, so that each run is more
+     * than twice the size of the next one.
+     */
+    private static Columns[] addRun(Columns[] runs, Columns run) {
+        int count = runs.length;
+        Columns merged = run;
+        while (count > 0 && runs[count - 1].fSize <= 2 * merged.fSize) {
+            merged = Columns.merge(runs[count - 1], merged);
+            count--;
+        }
+        Columns[] newRuns = Arrays.copyOf(runs, count + 1);
+        newRuns[count] = merged;
+        return newRuns;
+    }
+
+    /**
+     * Merge the segments returned by an iterator on each run, in the order of
+     * the comparator.
+     */
+    private static <@NonNull E> Iterator<E> mergeRuns(Columns[] runs, Function<Columns, Iterator<E>> runIterator) {
+        if (runs.length == 1) {
+            return runIterator.apply(runs[0]);
+        }
+        List<Iterator<E>> iterators = new ArrayList<>(runs.length);
+        for (Columns run : runs) {
+            iterators.add(runIterator.apply(run));
+        }
+        return checkNotNull(Iterators.mergeSorted(iterators, COMPARATOR));
+    }
+
+    /**
+     * Immutable sorted arrays of segments, with their implicit interval tree.
+     */
+    private static final class Columns {
+
+        private final int fSize;
+        private final Object[] fElements;
+        private final long[] fStarts;
+        private final long[] fEnds;
+        /* Greatest end time of the subtree of each node of the implicit tree */
+        private final long[] fMaxEnds;
+        /* Level of the root of the implicit tree, -1 if it is empty */
+        private final int fRootLevel;
+
+        private Columns(Object[] sortedElements) {
+            fSize = sortedElements.length;
+            fElements = sortedElements;
+            fStarts = new long[fSize];
+            fEnds = new long[fSize];
+            for (int i = 0; i < fSize; i++) {
+                ISegment segment = (ISegment) sortedElements[i];
+                fStarts[i] = segment.getStart();
+                fEnds[i] = segment.getEnd();
+            }
+            fMaxEnds = new long[fSize];
+            fRootLevel = buildIndex();
+        }
+
+        /**
+         * Merge the segments of two columns. Equal segments of the older
+         * columns come first.
+         */
+        public static Columns merge(Columns older, Columns newer) {
+            Object[] elements = new Object[older.fSize + newer.fSize];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < older.fSize && j < newer.fSize) {
+                if (COMPARATOR.compare((ISegment) older.fElements[i], (ISegment) newer.fElements[j]) <= 0) {
+                    elements[k++] = older.fElements[i++];
+                } else {
+                    elements[k++] = newer.fElements[j++];
+                }
+            }
+            System.arraycopy(older.fElements, i, elements, k, older.fSize - i);
+            System.arraycopy(newer.fElements, j, elements, k + older.fSize - i, newer.fSize - j);
+            return new Columns(elements);
+        }
+
+        /**
+         * Compute the greatest end time of every subtree of the implicit tree.
+         * Nodes at level 0 are at the even indexes, and nodes at level k are at
+         * the indexes whose k lowest bits are set and bit k is not.
+         *
+         * @return The level of the root node
+         */
+        private int buildIndex() {
+            if (fSize == 0) {
+                return -1;
+            }
+            int lastIndex = 0;
+            long lastMax = 0;
+            for (int i = 0; i < fSize; i += 2) {
+                lastIndex = i;
+                lastMax = fEnds[i];
+                fMaxEnds[i] = lastMax;
+            }
+            int level;
+            for (level = 1; (1L << level) <= fSize; level++) {
+                long half = 1L << (level - 1);
+                long step = half << 2;
+                for (long i = (half << 1) - 1; i < fSize; i += step) {
+                    long leftMax = fMaxEnds[(int) (i - half)];
+                    /*
+                     * The right child may be out of the array, then the last
+                     * node we know of at the level below is used instead.
+                     */
+                    long rightMax = (i + half < fSize ? fMaxEnds[(int) (i + half)] : lastMax);
+                    fMaxEnds[(int) i] = Math.max(fEnds[(int) i], Math.max(leftMax, rightMax));
+                }
+                /* Find the ancestor of the last node at this level */
+                lastIndex = (((lastIndex >> level) & 1) != 0 ? lastIndex - (int) half : lastIndex + (int) half);
+                if (lastIndex < fSize && fMaxEnds[lastIndex] > lastMax) {
+                    lastMax = fMaxEnds[lastIndex];
+                }
+            }
+            return level - 1;
+        }
+
+        /**
+         * Get the index of the first segment whose start time is greater than
+         * or equal to the given time.
+         */
+        public int firstIndexStartingAt(long time) {
+            int low = 0;
+            int high = fSize;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (fStarts[mid] < time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <E> E get(int index) {
+            return (E) fElements[index];
+        }
+    }
+
+    /**
+     * Iterator over all the segments of a run.
+     */
+    private static final class RunIterator<@NonNull E> implements Iterator<E> {
+
+        private final Columns fColumns;
+        private int fIndex = 0;
+
+        public RunIterator(Columns columns) {
+            fColumns = columns;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return fIndex < fColumns.fSize;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return fColumns.get(fIndex++);
+        }
+    }
+
+    /**
+     * Lazy depth-first, in-order traversal of the implicit interval tree,
+     * returning the segments that intersect [start, end].
+     */
+    private static final class IntersectionIterator<@NonNull E> implements Iterator<E> {
+
+        /* Subtrees of this size or smaller are scanned linearly */
+        private static final int SCAN_LEVEL = 3;
+
+        private final Columns fColumns;
+        private final long fStart;
+        private final long fEnd;
+
+        /* Stack of the nodes to visit, with their level and left-done flag */
+        private final long[] fStackNodes = new long[2 * Long.SIZE];
+        private final int[] fStackLevels = new int[2 * Long.SIZE];
+        private final boolean[] fStackLeftDone = new boolean[2 * Long.SIZE];
+        private int fTop = 0;
+
+        /* Current linear scan, in [fScanPos, fScanEnd) */
+        private int fScanPos = 0;
+        private int fScanEnd = 0;
+
+        private int fNext = -1;
+
+        public IntersectionIterator(Columns columns, long start, long end) {
+            fColumns = columns;
+            fStart = start;
+            fEnd = end;
+            if (columns.fRootLevel >= 0 && start <= end) {
+                push((1L << columns.fRootLevel) - 1, columns.fRootLevel, false);
+            }
+        }
+
+        private void push(long node, int level, boolean leftDone) {
+            fStackNodes[fTop] = node;
+            fStackLevels[fTop] = level;
+            fStackLeftDone[fTop] = leftDone;
+            fTop++;
+        }
+
+        /**
+         * Find the index of the next intersecting segment, or -1 if there is
+         * none.
+         */
+        private int findNext() {
+            final Columns columns = fColumns;
+            final int size = columns.fSize;
+            while (true) {
+                if (fScanPos < fScanEnd) {
+                    int i = fScanPos++;
+                    if (columns.fStarts[i] > fEnd) {
+                        /* The rest of this subtree starts too late */
+                        fScanEnd = fScanPos;
+                    } else if (columns.fEnds[i] >= fStart) {
+                        return i;
+                    }
+                    continue;
+                }
+                if (fTop == 0) {
+                    return -1;
+                }
+                fTop--;
+                long node = fStackNodes[fTop];
+                int level = fStackLevels[fTop];
+                if (level <= SCAN_LEVEL) {
+                    /* Small subtree, scan it linearly */
+                    long first = node >> level << level;
+                    long last = Math.min(first + (1L << (level + 1)) - 1, size);
+                    fScanPos = (int) Math.min(first, size);
+                    fScanEnd = (int) last;
+                } else if (!fStackLeftDone[fTop]) {
+                    /* Visit the left child first, if it can contain matches */
+                    long left = node - (1L << (level - 1));
+                    push(node, level, true);
+                    if (left >= size || columns.fMaxEnds[(int) left] >= fStart) {
+                        push(left, level - 1, false);
+                    }
+                } else if (node < size && columns.fStarts[(int) node] <= fEnd) {
+                    /* Then the node itself, and its right child */
+                    push(node + (1L << (level - 1)), level - 1, false);
+                    if (columns.fEnds[(int) node] >= fStart) {
+                        return (int) node;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (fNext < 0) {
+                fNext = findNext();
+            }
+            return fNext >= 0;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            E element = fColumns.get(fNext);
+            fNext = -1;
+            return element;
+        }
+    }
+}
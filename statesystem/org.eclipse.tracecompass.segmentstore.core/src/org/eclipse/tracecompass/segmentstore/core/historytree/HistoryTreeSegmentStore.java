@@ -0,0 +1,651 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.segmentstore.core.historytree;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.segmentstore.core.Activator;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+import org.eclipse.tracecompass.segmentstore.core.SegmentComparators;
+import org.eclipse.tracecompass.segmentstore.core.columnar.ColumnarStore;
+import org.eclipse.tracecompass.segmentstore.core.treemap.TreeMapStore;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Implementation of a {@link ISegmentStore} keeping its segments on disk, so
+ * that it can hold more segments than what fits in memory, and be re-opened
+ * without being read completely.
+ *
+ * Like the state system's history tree, the segments are written in nodes of
+ * the file as they are added, each node covering the time range of its
+ * segments. The nodes being filled are partitioned by start time like the
+ * latest branch of the history tree: the first one, the leaf, gets the
+ * segments that start after the segments of the nodes it already wrote, and
+ * each next one gets the segments that start before those of the previous
+ * ones. When a node is full, it is written and the next one at its level only
+ * gets the segments that start after it. Since the segments are mostly added
+ * in the order of their end times, the nodes of a level cover consecutive
+ * time ranges, and a time range query can skip most of them. Only the nodes
+ * being filled and a bounded cache of the recently used nodes are kept in
+ * memory. The time ranges of the nodes are kept in an
+ * interval index, so intersection queries only read the nodes that can
+ * contain matching segments. The nodes are then merged lazily, so the
+ * segments are returned in the same order as in the {@link TreeMapStore}.
+ *
+ * The file is completed by {@link #close(boolean)}, after which the store
+ * becomes read-only. A completed file can then be re-opened with
+ * {@link #open(Path, ISegmentArrayReader)}. Like the {@link ColumnarStore},
+ * this store keeps duplicate elements.
+ *
+ * Removal operations are not supported.
+ *
+ * @param <E>
+ *            The type of segment held in this store
+ */
+public class HistoryTreeSegmentStore<@NonNull E extends ISegment> implements ISegmentStore<E> {
+
+    /** Default maximum number of segments per node */
+    private static final int DEFAULT_NODE_CAPACITY = 1024;
+
+    /** Default number of nodes kept in the cache */
+    private static final int DEFAULT_CACHE_SIZE = 64;
+
+    /** Maximum number of nodes being filled at the same time */
+    private static final int MAX_LEVELS = 16;
+
+    private static final ISegmentArrayReader DEFAULT_READER = ois -> (Object[]) ois.readObject();
+
+    private static final Comparator<ISegment> COMPARATOR = Ordering.from(SegmentComparators.INTERVAL_START_COMPARATOR)
+            .compound(SegmentComparators.INTERVAL_END_COMPARATOR)
+            .compound(Ordering.natural());
+
+    private final ReadWriteLock fLock = new ReentrantReadWriteLock(false);
+
+    private final SegmentHistoryFile fFile;
+    private final ISegmentArrayReader fReader;
+    private final int fNodeCapacity;
+    private final Cache<SegmentNodeInfo, Object[]> fNodeCache;
+
+    /* The nodes written to the file, in order, and indexed by time range */
+    private final List<SegmentNodeInfo> fNodes = new ArrayList<>();
+    private final ColumnarStore<SegmentNodeInfo> fIndex = new ColumnarStore<>();
+
+    /* The nodes being filled, from the leaf to the root */
+    private final List<PendingNode<E>> fPending = new ArrayList<>();
+
+    private volatile long fSize = 0;
+    private volatile boolean fFinished = false;
+    private volatile boolean fDisposed = false;
+
+    /**
+     * Create a new store, with the default node capacity and cache size, for
+     * segments that can be deserialized from this plug-in.
+     *
+     * @param file
+     *            The file in which to store the segments. It will be
+     *            overwritten if it exists.
+     * @throws IOException
+     *             If the file cannot be created
+     */
+    public HistoryTreeSegmentStore(Path file) throws IOException {
+        this(file, DEFAULT_READER);
+    }
+
+    /**
+     * Create a new store, with the default node capacity and cache size
+     *
+     * @param file
+     *            The file in which to store the segments. It will be
+     *            overwritten if it exists.
+     * @param reader
+     *            The reader to deserialize the segments of a node
+     * @throws IOException
+     *             If the file cannot be created
+     */
+    public HistoryTreeSegmentStore(Path file, ISegmentArrayReader reader) throws IOException {
+        this(file, DEFAULT_NODE_CAPACITY, DEFAULT_CACHE_SIZE, reader);
+    }
+
+    /**
+     * Create a new store
+     *
+     * @param file
+     *            The file in which to store the segments. It will be
+     *            overwritten if it exists.
+     * @param nodeCapacity
+     *            The maximum number of segments per node
+     * @param cacheSize
+     *            The maximum number of nodes to keep in memory
+     * @param reader
+     *            The reader to deserialize the segments of a node
+     * @throws IOException
+     *             If the file cannot be created
+     */
+    public HistoryTreeSegmentStore(Path file, int nodeCapacity, int cacheSize, ISegmentArrayReader reader) throws IOException {
+        this(new SegmentHistoryFile(file, checkPositive(nodeCapacity)), cacheSize, reader);
+    }
+
+    private HistoryTreeSegmentStore(SegmentHistoryFile file, int cacheSize, ISegmentArrayReader reader) {
+        fFile = file;
+        fReader = reader;
+        fNodeCapacity = file.getNodeCapacity();
+        fNodeCache = CacheBuilder.newBuilder()
+                .maximumSize(Math.max(1, cacheSize))
+                .build();
+        fPending.add(new PendingNode<>(Long.MIN_VALUE));
+    }
+
+    /**
+     * Open the completed file of a store, for segments that can be
+     * deserialized from this plug-in.
+     *
+     * @param file
+     *            The file of the store
+     * @return The store, with the segments of the file
+     * @throws IOException
+     *             If the file cannot be read, or was not completed
+     */
+    public static <@NonNull E extends ISegment> HistoryTreeSegmentStore<E> open(Path file) throws IOException {
+        return open(file, DEFAULT_READER);
+    }
+
+    /**
+     * Open the completed file of a store. The segments are only read when
+     * they are queried. The file is opened read-only, so the store cannot be
+     * cleared.
+     *
+     * @param file
+     *            The file of the store
+     * @param reader
+     *            The reader to deserialize the segments of a node
+     * @return The store, with the segments of the file
+     * @throws IOException
+     *             If the file cannot be read, or was not completed
+     */
+    public static <@NonNull E extends ISegment> HistoryTreeSegmentStore<E> open(Path file, ISegmentArrayReader reader) throws IOException {
+        SegmentHistoryFile historyFile = new SegmentHistoryFile(file);
+        try {
+            List<SegmentNodeInfo> nodes = historyFile.readIndex();
+            HistoryTreeSegmentStore<E> store = new HistoryTreeSegmentStore<>(historyFile, DEFAULT_CACHE_SIZE, reader);
+            store.fNodes.addAll(nodes);
+            store.fIndex.addAll(nodes);
+            store.fSize = historyFile.getSegmentCount();
+            store.fFinished = true;
+            return store;
+        } catch (IOException e) {
+            historyFile.close(false);
+            throw e;
+        }
+    }
+
+    private static int checkPositive(int nodeCapacity) {
+        if (nodeCapacity <= 0) {
+            throw new IllegalArgumentException("Invalid node capacity: " + nodeCapacity); //$NON-NLS-1$
+        }
+        return nodeCapacity;
+    }
+
+    // ------------------------------------------------------------------------
+    // Methods from Collection
+    // ------------------------------------------------------------------------
+
+    @Override
+    public Iterator<E> iterator() {
+        return getIntersectingElements(Long.MIN_VALUE, Long.MAX_VALUE).iterator();
+    }
+
+    @Override
+    public boolean add(@Nullable E val) {
+        if (val == null) {
+            throw new IllegalArgumentException();
+        }
+
+        fLock.writeLock().lock();
+        try {
+            if (fFinished || fDisposed) {
+                throw new IllegalStateException("The segment store is closed"); //$NON-NLS-1$
+            }
+            /* The root node starts at Long.MIN_VALUE, so a level is found */
+            int level = 0;
+            while (val.getStart() < fPending.get(level).getStart()) {
+                level++;
+            }
+            PendingNode<E> node = fPending.get(level);
+            node.add(val);
+            fSize++;
+            if (node.size() >= fNodeCapacity) {
+                writePendingNode(level);
+            }
+            return true;
+        } finally {
+            fLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(fSize, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return (fSize == 0);
+    }
+
+    @Override
+    public boolean contains(@Nullable Object o) {
+        if (!(o instanceof ISegment)) {
+            return false;
+        }
+        ISegment segment = (ISegment) o;
+        for (E element : getIntersectingElements(segment.getStart(), segment.getEnd())) {
+            if (segment.equals(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean containsAll(@Nullable Collection<?> c) {
+        if (c == null) {
+            throw new IllegalArgumentException();
+        }
+        return c.stream().allMatch(this::contains);
+    }
+
+    @Override
+    public Object[] toArray() {
+        return Lists.newArrayList(iterator()).toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return Lists.newArrayList(iterator()).toArray(a);
+    }
+
+    @Override
+    public boolean remove(@Nullable Object o) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean addAll(@Nullable Collection<? extends E> c) {
+        if (c == null) {
+            throw new IllegalArgumentException();
+        }
+
+        fLock.writeLock().lock();
+        try {
+            boolean changed = false;
+            for (E elem : c) {
+                if (this.add(elem)) {
+                    changed = true;
+                }
+            }
+            return changed;
+        } finally {
+            fLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean removeAll(@Nullable Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean retainAll(@Nullable Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Remove all the segments from the store and its file. A completed store
+     * can then be filled again, unless it was opened from an existing file.
+     */
+    @Override
+    public void clear() {
+        fLock.writeLock().lock();
+        try {
+            if (fDisposed) {
+                return;
+            }
+            if (fFile.isReadOnly()) {
+                throw new UnsupportedOperationException("The segment store was opened read-only"); //$NON-NLS-1$
+            }
+            fFile.reset();
+            clearNodes();
+            fFinished = false;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            fLock.writeLock().unlock();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Methods added by ISegmentStore
+    // ------------------------------------------------------------------------
+
+    @Override
+    public Iterable<E> getIntersectingElements(long position) {
+        return getIntersectingElements(position, position);
+    }
+
+    @Override
+    public Iterable<E> getIntersectingElements(long start, long end) {
+        fLock.readLock().lock();
+        try {
+            /* Take the nodes and the pending segments as they are now */
+            Iterable<SegmentNodeInfo> nodes = fIndex.getIntersectingElements(start, end);
+            List<E> pending = new ArrayList<>();
+            for (PendingNode<E> node : fPending) {
+                pending.addAll(node.getSegments());
+            }
+            return () -> new IntersectionIterator(nodes, pending, start, end);
+        } finally {
+            fLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Iterable<E> getIntersectingElements(long start, long end, Comparator<ISegment> order) {
+        if (order == SegmentComparators.INTERVAL_START_COMPARATOR) {
+            /* The intersection queries already return the elements in that order */
+            return getIntersectingElements(start, end);
+        }
+        return ISegmentStore.super.getIntersectingElements(start, end, order);
+    }
+
+    /**
+     * Close the file and release the segments kept in memory. The file is not
+     * deleted, but if it was not completed, it cannot be opened again.
+     */
+    @Override
+    public void dispose() {
+        fLock.writeLock().lock();
+        try {
+            closeFile(false);
+        } finally {
+            fLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Complete the file of the store, by writing the node being filled and
+     * the index of the nodes. The store then becomes read-only.
+     *
+     * @param deleteFiles
+     *            If true, the store is disposed of and its file is deleted
+     *            instead
+     */
+    @Override
+    public void close(boolean deleteFiles) {
+        fLock.writeLock().lock();
+        try {
+            if (deleteFiles) {
+                closeFile(true);
+                return;
+            }
+            if (fFinished || fDisposed) {
+                return;
+            }
+            for (int level = 0; level < fPending.size(); level++) {
+                writePendingNode(level);
+            }
+            fFile.finish(fNodes, fSize);
+        } catch (IOException e) {
+            /*
+             * The file will not be readable, it will have to be rebuilt. The
+             * segments that were written can still be queried.
+             */
+            Activator.instance().logError("Error closing the segment store file", e); //$NON-NLS-1$
+        } finally {
+            fFinished = true;
+            fLock.writeLock().unlock();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    /**
+     * Write the segments of a node being filled as a new node, and replace it
+     * by a node that only gets the segments that start after them. The write
+     * lock must be held.
+     */
+    private void writePendingNode(int level) {
+        PendingNode<E> pending = fPending.get(level);
+        List<E> segments = pending.getSegments();
+        if (segments.isEmpty()) {
+            return;
+        }
+        segments.sort(COMPARATOR);
+        try {
+            SegmentNodeInfo node = fFile.writeNode(segments);
+            fNodeCache.put(node, segments.toArray());
+            fNodes.add(node);
+            fIndex.add(node);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        boolean isRoot = (level == fPending.size() - 1);
+        if (isRoot && fPending.size() >= MAX_LEVELS) {
+            /* Bound the nodes in memory, the root keeps getting everything */
+            fPending.set(level, new PendingNode<>(Long.MIN_VALUE));
+            return;
+        }
+        fPending.set(level, new PendingNode<>(pending.getMaxStart()));
+        if (isRoot) {
+            fPending.add(new PendingNode<>(Long.MIN_VALUE));
+        }
+    }
+
+    /**
+     * Close the file and release the segments. The write lock must be held.
+     */
+    private void closeFile(boolean deleteFile) {
+        fDisposed = true;
+        try {
+            fFile.close(deleteFile);
+        } catch (IOException e) {
+            Activator.instance().logError("Error closing the segment store file", e); //$NON-NLS-1$
+        }
+        clearNodes();
+    }
+
+    private void clearNodes() {
+        fNodes.clear();
+        fIndex.clear();
+        fNodeCache.invalidateAll();
+        fPending.clear();
+        fPending.add(new PendingNode<>(Long.MIN_VALUE));
+        fSize = 0;
+    }
+
+    private Object[] readNode(SegmentNodeInfo node) {
+        try {
+            return fNodeCache.get(node, () -> fFile.readNode(node, fReader));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new IllegalStateException("Cannot read node of segment history: " + node, e.getCause()); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * The segments of a node being filled, which all start at or after the
+     * start time of the node.
+     */
+    private static final class PendingNode<E extends ISegment> {
+
+        private final long fStart;
+        private final List<E> fSegments = new ArrayList<>();
+        private long fMaxStart;
+
+        public PendingNode(long start) {
+            fStart = start;
+            fMaxStart = start;
+        }
+
+        public void add(E segment) {
+            fSegments.add(segment);
+            fMaxStart = Math.max(fMaxStart, segment.getStart());
+        }
+
+        public long getStart() {
+            return fStart;
+        }
+
+        /**
+         * @return The latest start time of the segments of this node
+         */
+        public long getMaxStart() {
+            return fMaxStart;
+        }
+
+        public int size() {
+            return fSegments.size();
+        }
+
+        public List<E> getSegments() {
+            return fSegments;
+        }
+    }
+
+    /**
+     * Position in the sorted segments of one node, moving over the segments
+     * that intersect the query range.
+     */
+    private static final class NodeCursor {
+
+        private final Object[] fSegments;
+        private final long fStart;
+        private final long fEnd;
+        private int fIndex = -1;
+
+        public NodeCursor(Object[] segments, long start, long end) {
+            fSegments = segments;
+            fStart = start;
+            fEnd = end;
+        }
+
+        /**
+         * Move to the next intersecting segment.
+         *
+         * @return False if there are no more segments
+         */
+        public boolean advance() {
+            while (++fIndex < fSegments.length) {
+                ISegment segment = current();
+                if (segment.getStart() > fEnd) {
+                    /* The next segments start too late too */
+                    fIndex = fSegments.length;
+                    return false;
+                }
+                if (segment.getEnd() >= fStart) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public ISegment current() {
+            return (ISegment) fSegments[fIndex];
+        }
+    }
+
+    /**
+     * Lazy merge of the intersecting segments of the candidate nodes. The
+     * nodes come in the order of their start times, and a node is only read
+     * once the next segment to return could be in it.
+     */
+    private final class IntersectionIterator implements Iterator<E> {
+
+        private final Iterator<SegmentNodeInfo> fNodes;
+        private final long fStart;
+        private final long fEnd;
+        private final PriorityQueue<NodeCursor> fCursors = new PriorityQueue<>(
+                (c1, c2) -> COMPARATOR.compare(c1.current(), c2.current()));
+        private @Nullable SegmentNodeInfo fNextNode;
+
+        public IntersectionIterator(Iterable<SegmentNodeInfo> nodes, List<E> pending, long start, long end) {
+            fNodes = nodes.iterator();
+            fStart = start;
+            fEnd = end;
+            fNextNode = (fNodes.hasNext() ? fNodes.next() : null);
+            if (start <= end) {
+                pending.sort(COMPARATOR);
+                addCursor(pending.toArray());
+            }
+        }
+
+        private void addCursor(Object[] segments) {
+            NodeCursor cursor = new NodeCursor(segments, fStart, fEnd);
+            if (cursor.advance()) {
+                fCursors.add(cursor);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            /*
+             * Read the nodes that may contain a segment that starts before the
+             * first segment of the cursors.
+             */
+            SegmentNodeInfo node = fNextNode;
+            while (node != null) {
+                NodeCursor first = fCursors.peek();
+                if (first != null && first.current().getStart() < node.getStart()) {
+                    break;
+                }
+                addCursor(readNode(node));
+                node = (fNodes.hasNext() ? fNodes.next() : null);
+                fNextNode = node;
+            }
+            return !fCursors.isEmpty();
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            NodeCursor cursor = checkNotNull(fCursors.poll());
+            @SuppressWarnings("unchecked")
+            E element = (E) cursor.current();
+            if (cursor.advance()) {
+                fCursors.add(cursor);
+            }
+            return element;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.segmentstore.core.historytree;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+/**
+ * Reads the array of segments of one node of a
+ * {@link HistoryTreeSegmentStore} from its serialized form.
+ *
+ * The segment classes are resolved by the class loader of the code calling
+ * {@link ObjectInputStream#readObject()}, so implementations of this interface
+ * should be in a place that can see the classes of the segments, typically
+ * the plug-in defining them.
+ */
+@FunctionalInterface
+public interface ISegmentArrayReader {
+
+    /**
+     * Read the array of segments from the stream
+     *
+     * @param ois
+     *            The stream to read from
+     * @return The array of segments
+     * @throws ClassNotFoundException
+     *             If the class of a serialized segment cannot be found
+     * @throws IOException
+     *             If the array cannot be read
+     */
+    Object[] readSegments(ObjectInputStream ois) throws ClassNotFoundException, IOException;
+}
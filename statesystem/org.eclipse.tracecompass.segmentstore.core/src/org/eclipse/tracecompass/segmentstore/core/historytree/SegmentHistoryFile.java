@@ -0,0 +1,320 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.segmentstore.core.historytree;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+
+/**
+ * Reads and writes the file of a {@link HistoryTreeSegmentStore}.
+ *
+ * The file starts with a fixed-size header, followed by the nodes, each one
+ * being an array of segments written with Java serialization. The index of
+ * the nodes is written after the last node when the file is completed, and the
+ * header then tells where it is. A file whose header does not point to an
+ * index was not completed, and cannot be opened.
+ */
+final class SegmentHistoryFile {
+
+    /* "Magic number" for segment history files. */
+    private static final int MAGIC_NUMBER = 0x05E65E60;
+
+    /* File format version. Increment when breaking compatibility. */
+    private static final int FILE_VERSION = 1;
+
+    /*
+     * Header: magic number, version, node capacity, node count (ints), segment
+     * count and index position (longs)
+     */
+    private static final int HEADER_SIZE = 4 * Integer.BYTES + 2 * Long.BYTES;
+
+    /* Index entry: position, size, count, start and end of a node */
+    private static final int INDEX_ENTRY_SIZE = 3 * Long.BYTES + 2 * Integer.BYTES;
+
+    private final Path fPath;
+    private final FileChannel fChannel;
+    private final int fNodeCapacity;
+    private final boolean fReadOnly;
+
+    /* Only used when writing */
+    private long fWritePosition;
+
+    /* Only used when reading a completed file */
+    private final int fNodeCount;
+    private final long fSegmentCount;
+    private final long fIndexPosition;
+
+    /**
+     * Create a new, empty file. An existing file at that location will be
+     * overwritten.
+     *
+     * @param path
+     *            The location of the file
+     * @param nodeCapacity
+     *            The maximum number of segments per node
+     * @throws IOException
+     *             If the file cannot be created
+     */
+    public SegmentHistoryFile(Path path, int nodeCapacity) throws IOException {
+        fPath = path;
+        fChannel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        fNodeCapacity = nodeCapacity;
+        fReadOnly = false;
+        fNodeCount = 0;
+        fSegmentCount = 0;
+        fIndexPosition = 0;
+        reset();
+    }
+
+    /**
+     * Open an existing, completed file. The file is opened read-only.
+     *
+     * @param path
+     *            The location of the file
+     * @throws IOException
+     *             If the file cannot be read, or is not a completed segment
+     *             history file
+     */
+    public SegmentHistoryFile(Path path) throws IOException {
+        fPath = path;
+        fChannel = FileChannel.open(path, StandardOpenOption.READ);
+        fReadOnly = true;
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(buffer, 0);
+            buffer.flip();
+            if (buffer.getInt() != MAGIC_NUMBER) {
+                throw new IOException("Wrong magic number"); //$NON-NLS-1$
+            }
+            if (buffer.getInt() != FILE_VERSION) {
+                throw new IOException("Mismatching segment history file versions"); //$NON-NLS-1$
+            }
+            fNodeCapacity = buffer.getInt();
+            fNodeCount = buffer.getInt();
+            fSegmentCount = buffer.getLong();
+            fIndexPosition = buffer.getLong();
+            if (fIndexPosition < HEADER_SIZE || fNodeCount < 0 ||
+                    fIndexPosition + (long) fNodeCount * INDEX_ENTRY_SIZE != fChannel.size()) {
+                throw new IOException("Segment history file was not completed"); //$NON-NLS-1$
+            }
+            fWritePosition = fIndexPosition;
+        } catch (IOException e) {
+            fChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The maximum number of segments per node
+     */
+    public int getNodeCapacity() {
+        return fNodeCapacity;
+    }
+
+    /**
+     * @return If the file was opened read-only, as an existing completed file
+     */
+    public boolean isReadOnly() {
+        return fReadOnly;
+    }
+
+    /**
+     * @return The number of segments in the file, if it was opened completed
+     */
+    public long getSegmentCount() {
+        return fSegmentCount;
+    }
+
+    /**
+     * Read the index of a file that was opened completed.
+     *
+     * @return The nodes of the file, in the order they were written
+     * @throws IOException
+     *             If the index cannot be read
+     */
+    public List<SegmentNodeInfo> readIndex() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(fNodeCount * INDEX_ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(buffer, fIndexPosition);
+        buffer.flip();
+        List<SegmentNodeInfo> nodes = new ArrayList<>(fNodeCount);
+        for (int i = 0; i < fNodeCount; i++) {
+            long position = buffer.getLong();
+            int sizeOnDisk = buffer.getInt();
+            int count = buffer.getInt();
+            long start = buffer.getLong();
+            long end = buffer.getLong();
+            if (position < HEADER_SIZE || position + sizeOnDisk > fIndexPosition) {
+                throw new IOException("Invalid node in the index: " + position); //$NON-NLS-1$
+            }
+            nodes.add(new SegmentNodeInfo(position, sizeOnDisk, count, start, end));
+        }
+        return nodes;
+    }
+
+    /**
+     * Append a node to the file.
+     *
+     * @param segments
+     *            The segments of the node, sorted by start time. There must be
+     *            at least one.
+     * @return The description of the written node
+     * @throws IOException
+     *             If the node cannot be written
+     */
+    public SegmentNodeInfo writeNode(List<? extends ISegment> segments) throws IOException {
+        long start = Long.MAX_VALUE;
+        long end = Long.MIN_VALUE;
+        for (ISegment segment : segments) {
+            start = Math.min(start, segment.getStart());
+            end = Math.max(end, segment.getEnd());
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(segments.toArray());
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        int sizeOnDisk = buffer.remaining();
+
+        long position = fWritePosition;
+        while (buffer.hasRemaining()) {
+            fChannel.write(buffer, position + buffer.position());
+        }
+        fWritePosition += sizeOnDisk;
+        return new SegmentNodeInfo(position, sizeOnDisk, segments.size(), start, end);
+    }
+
+    /**
+     * Read the segments of a node.
+     *
+     * @param node
+     *            The node to read
+     * @param reader
+     *            The reader deserializing the segments
+     * @return The segments of the node, sorted by start time
+     * @throws IOException
+     *             If the node cannot be read
+     */
+    public Object[] readNode(SegmentNodeInfo node, ISegmentArrayReader reader) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(node.getSizeOnDisk());
+        readFully(buffer, node.getPosition());
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(buffer.array()))) {
+            Object[] segments = reader.readSegments(ois);
+            if (segments.length != node.getCount()) {
+                throw new IOException("Wrong number of segments in node: " + node); //$NON-NLS-1$
+            }
+            for (Object segment : segments) {
+                if (!(segment instanceof ISegment)) {
+                    throw new IOException("Invalid segment in node: " + node); //$NON-NLS-1$
+                }
+            }
+            return segments;
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Complete the file, by writing the index of the nodes and the header
+     * pointing to it.
+     *
+     * @param nodes
+     *            All the nodes of the file, in the order they were written
+     * @param segmentCount
+     *            The total number of segments
+     * @throws IOException
+     *             If the file cannot be written
+     */
+    public void finish(List<SegmentNodeInfo> nodes, long segmentCount) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(nodes.size() * INDEX_ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        for (SegmentNodeInfo node : nodes) {
+            buffer.putLong(node.getPosition());
+            buffer.putInt(node.getSizeOnDisk());
+            buffer.putInt(node.getCount());
+            buffer.putLong(node.getStart());
+            buffer.putLong(node.getEnd());
+        }
+        buffer.flip();
+        long indexPosition = fWritePosition;
+        while (buffer.hasRemaining()) {
+            fChannel.write(buffer, indexPosition + buffer.position());
+        }
+        fChannel.truncate(indexPosition + buffer.limit());
+
+        /* Only write the header once everything else is on disk */
+        fChannel.force(false);
+        writeHeader(nodes.size(), segmentCount, indexPosition);
+        fChannel.force(false);
+    }
+
+    /**
+     * Remove all the nodes from the file, and mark it as not completed.
+     *
+     * @throws IOException
+     *             If the file cannot be written
+     */
+    public void reset() throws IOException {
+        writeHeader(0, 0, 0);
+        fChannel.truncate(HEADER_SIZE);
+        fWritePosition = HEADER_SIZE;
+    }
+
+    /**
+     * Close the file
+     *
+     * @param deleteFile
+     *            Whether to delete the file after closing it
+     * @throws IOException
+     *             If the file cannot be closed or deleted
+     */
+    public void close(boolean deleteFile) throws IOException {
+        fChannel.close();
+        if (deleteFile) {
+            Files.deleteIfExists(fPath);
+        }
+    }
+
+    private void writeHeader(int nodeCount, long segmentCount, long indexPosition) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC_NUMBER);
+        buffer.putInt(FILE_VERSION);
+        buffer.putInt(fNodeCapacity);
+        buffer.putInt(nodeCount);
+        buffer.putLong(segmentCount);
+        buffer.putLong(indexPosition);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            fChannel.write(buffer, buffer.position());
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (fChannel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of segment history file"); //$NON-NLS-1$
+            }
+        }
+    }
+}
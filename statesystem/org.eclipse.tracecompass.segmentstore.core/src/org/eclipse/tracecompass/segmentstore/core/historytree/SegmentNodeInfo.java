@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.segmentstore.core.historytree;
+
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+
+/**
+ * Description of a node of a segment history file: where it is in the file,
+ * and the time range covered by its segments. The node itself is an
+ * {@link ISegment} going from the earliest start to the latest end of its
+ * segments, so that the nodes can be indexed like any other segment.
+ */
+final class SegmentNodeInfo implements ISegment {
+
+    private static final long serialVersionUID = -2843418326170329165L;
+
+    private final long fPosition;
+    private final int fSizeOnDisk;
+    private final int fCount;
+    private final long fStart;
+    private final long fEnd;
+
+    /**
+     * Constructor
+     *
+     * @param position
+     *            Position of the node in the file
+     * @param sizeOnDisk
+     *            Size of the node's data, in bytes
+     * @param count
+     *            Number of segments in the node
+     * @param start
+     *            Earliest start time of the node's segments
+     * @param end
+     *            Latest end time of the node's segments
+     */
+    public SegmentNodeInfo(long position, int sizeOnDisk, int count, long start, long end) {
+        fPosition = position;
+        fSizeOnDisk = sizeOnDisk;
+        fCount = count;
+        fStart = start;
+        fEnd = end;
+    }
+
+    /**
+     * @return The position of the node in the file
+     */
+    public long getPosition() {
+        return fPosition;
+    }
+
+    /**
+     * @return The size of the node's data, in bytes
+     */
+    public int getSizeOnDisk() {
+        return fSizeOnDisk;
+    }
+
+    /**
+     * @return The number of segments in the node
+     */
+    public int getCount() {
+        return fCount;
+    }
+
+    @Override
+    public long getStart() {
+        return fStart;
+    }
+
+    @Override
+    public long getEnd() {
+        return fEnd;
+    }
+
+    @Override
+    public String toString() {
+        /* Only used for debugging, shouldn't be externalized */
+        return String.format("Node @%d [%d, %d], %d segments", //$NON-NLS-1$
+                fPosition, fStart, fEnd, fCount);
+    }
+}
@@ -12,39 +12,42 @@
 
 package org.eclipse.tracecompass.segmentstore.core.treemap;
 
-import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
-
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
-import java.util.TreeMap;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.segmentstore.core.BasicSegment;
 import org.eclipse.tracecompass.segmentstore.core.ISegment;
 import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
 import org.eclipse.tracecompass.segmentstore.core.SegmentComparators;
 
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterables;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Ordering;
-import com.google.common.collect.Sets;
-import com.google.common.collect.TreeMultimap;
 
 /**
- * Implementation of a {@link ISegmentStore} using in-memory {@link TreeMap}'s.
- * This relatively simple implementation holds everything in memory, and as such
- * cannot contain too much data.
+ * Implementation of a {@link ISegmentStore} using in-memory sorted sets, one
+ * sorted by start times and one sorted by end times. This relatively simple
+ * implementation holds everything in memory, and as such cannot contain too
+ * much data.
  *
  * The TreeMapStore itself is Iterable, and its iteration order will be by
  * ascending order of start times. For segments with identical start times, the
  * secondary comparator will be the end time. If even those are equal, it will
  * defer to the segments' natural ordering ({@link ISegment#compareTo}).
  *
- * The store's tree maps will not accept duplicate key-value pairs, which means
- * that if you want several segments with the same start and end times, make
- * sure their compareTo() differentiates them.
+ * The sets are concurrent skip lists, so iterators and queries are computed
+ * lazily, without copying the store, and stay valid while segments are added.
+ * Segments added during an iteration may or may not be returned by it.
+ *
+ * The store's sets will not accept duplicate elements, which means that if you
+ * want several segments with the same start and end times, make sure their
+ * compareTo() differentiates them.
  *
  * Removal operations are not supported.
  *
@@ -55,38 +58,35 @@ import com.google.common.collect.TreeMultimap;
  */
 public class TreeMapStore<@NonNull E extends ISegment> implements ISegmentStore<E> {
 
+    /* Keeps both indexes and the size consistent with each other */
     private final ReadWriteLock fLock = new ReentrantReadWriteLock(false);
 
-    private final TreeMultimap<Long, E> fStartTimesIndex;
-    private final TreeMultimap<Long, E> fEndTimesIndex;
+    private final NavigableSet<ISegment> fStartTimesIndex;
+    private final NavigableSet<ISegment> fEndTimesIndex;
 
     private volatile long fSize;
 
-    private @Nullable transient Iterable<E> fLastSnapshot = null;
-
     /**
      * Constructor
      */
     public TreeMapStore() {
         /*
-         * For the start times index, the "key comparator" will compare the
-         * start times as longs directly. This is the primary comparator for its
-         * tree map.
-         *
-         * The secondary "value" comparator will check the end times first, and
-         * in the event of a tie, defer to the ISegment's Comparable
-         * implementation, a.k.a. its natural ordering.
+         * The start times index compares the start times first. In the event
+         * of a tie, it checks the end times, then defers to the ISegment's
+         * Comparable implementation, a.k.a. its natural ordering.
          *
          * The same is done for the end times index, but swapping the first two
          * comparators instead.
          */
-        fStartTimesIndex = TreeMultimap.create(
-                SegmentComparators.LONG_COMPARATOR,
-                Ordering.from(SegmentComparators.INTERVAL_END_COMPARATOR).compound(Ordering.natural()));
+        fStartTimesIndex = new ConcurrentSkipListSet<>(
+                Ordering.from(SegmentComparators.INTERVAL_START_COMPARATOR)
+                        .compound(SegmentComparators.INTERVAL_END_COMPARATOR)
+                        .compound(Ordering.natural()));
 
-        fEndTimesIndex = TreeMultimap.create(
-                SegmentComparators.LONG_COMPARATOR,
-                Ordering.from(SegmentComparators.INTERVAL_START_COMPARATOR).compound(Ordering.natural()));
+        fEndTimesIndex = new ConcurrentSkipListSet<>(
+                Ordering.from(SegmentComparators.INTERVAL_END_COMPARATOR)
+                        .compound(SegmentComparators.INTERVAL_START_COMPARATOR)
+                        .compound(Ordering.natural()));
 
         fSize = 0;
     }
@@ -97,17 +97,7 @@ public class TreeMapStore<@NonNull E extends ISegment> implements ISegmentStore<
 
     @Override
     public Iterator<E> iterator() {
-        fLock.readLock().lock();
-        try {
-            Iterable<E> lastSnapshot = fLastSnapshot;
-            if (lastSnapshot == null) {
-                lastSnapshot = ImmutableList.copyOf(fStartTimesIndex.values());
-                fLastSnapshot = lastSnapshot;
-            }
-            return checkNotNull(lastSnapshot.iterator());
-        } finally {
-            fLock.readLock().unlock();
-        }
+        return byStart(Long.MIN_VALUE, Long.MAX_VALUE);
     }
 
     @Override
@@ -118,10 +108,9 @@ public class TreeMapStore<@NonNull E extends ISegment> implements ISegmentStore<
 
         fLock.writeLock().lock();
         try {
-            if (fStartTimesIndex.put(Long.valueOf(val.getStart()), val)) {
-                fEndTimesIndex.put(Long.valueOf(val.getEnd()), val);
+            if (fStartTimesIndex.add(val)) {
+                fEndTimesIndex.add(val);
                 fSize++;
-                fLastSnapshot = null;
                 return true;
             }
             return false;
@@ -142,42 +131,28 @@ public class TreeMapStore<@NonNull E extends ISegment> implements ISegmentStore<
 
     @Override
     public boolean contains(@Nullable Object o) {
-        fLock.readLock().lock();
-        try {
-            return fStartTimesIndex.containsValue(o);
-        } finally {
-            fLock.readLock().unlock();
+        if (!(o instanceof ISegment)) {
+            return false;
         }
+        return fStartTimesIndex.contains(o);
     }
 
     @Override
     public boolean containsAll(@Nullable Collection<?> c) {
-        fLock.readLock().lock();
-        try {
-            return fStartTimesIndex.values().containsAll(c);
-        } finally {
-            fLock.readLock().unlock();
+        if (c == null) {
+            throw new IllegalArgumentException();
         }
+        return c.stream().allMatch(this::contains);
     }
 
     @Override
     public Object[] toArray() {
-        fLock.readLock().lock();
-        try {
-            return fStartTimesIndex.values().toArray();
-        } finally {
-            fLock.readLock().unlock();
-        }
+        return fStartTimesIndex.toArray();
     }
 
     @Override
     public <T> T[] toArray(T[] a) {
-        fLock.readLock().lock();
-        try {
-            return fStartTimesIndex.values().toArray(a);
-        } finally {
-            fLock.readLock().unlock();
-        }
+        return fStartTimesIndex.toArray(a);
     }
 
     @Override
@@ -233,41 +208,101 @@ public class TreeMapStore<@NonNull E extends ISegment> implements ISegmentStore<
 
     @Override
     public Iterable<E> getIntersectingElements(long position) {
+        return getIntersectingElements(position, position);
+    }
+
+    @Override
+    public Iterable<E> getIntersectingElements(long start, long end) {
         /*
-         * The intervals intersecting 't' are those whose 1) start time is
-         * *lower* than 't' AND 2) end time is *higher* than 't'.
+         * The elements intersecting [start, end] are those whose 1) start time
+         * is *lower* than 'end' AND 2) end time is *higher* than 'start'. Scan
+         * the index that has the fewest elements on the wrong side of the
+         * range, judging by the time span they cover.
          */
         fLock.readLock().lock();
         try {
-            Iterable<E> matchStarts = Iterables.concat(fStartTimesIndex.asMap().headMap(position, true).values());
-            Iterable<E> matchEnds = Iterables.concat(fEndTimesIndex.asMap().tailMap(position, true).values());
-            return checkNotNull(Sets.intersection(Sets.newHashSet(matchStarts), Sets.newHashSet(matchEnds)));
+            if (!fStartTimesIndex.isEmpty()) {
+                long first = fStartTimesIndex.first().getStart();
+                long last = fEndTimesIndex.last().getEnd();
+                long startsBefore = Math.min(end, last) - first;
+                long endsAfter = last - Math.max(start, first);
+                if (endsAfter < startsBefore) {
+                    return () -> byEnd(start, end);
+                }
+            }
+            return () -> byStart(start, end);
         } finally {
             fLock.readLock().unlock();
         }
     }
 
     @Override
-    public Iterable<E> getIntersectingElements(long start, long end) {
-        fLock.readLock().lock();
-        try {
-            Iterable<E> matchStarts = Iterables.concat(fStartTimesIndex.asMap().headMap(end, true).values());
-            Iterable<E> matchEnds = Iterables.concat(fEndTimesIndex.asMap().tailMap(start, true).values());
-            return checkNotNull(Sets.intersection(Sets.newHashSet(matchStarts), Sets.newHashSet(matchEnds)));
-        } finally {
-            fLock.readLock().unlock();
+    public Iterable<E> getIntersectingElements(long start, long end, Comparator<ISegment> order) {
+        if (order == SegmentComparators.INTERVAL_START_COMPARATOR) {
+            return () -> byStart(start, end);
+        }
+        if (order == SegmentComparators.INTERVAL_END_COMPARATOR) {
+            return () -> byEnd(start, end);
         }
+        return ISegmentStore.super.getIntersectingElements(start, end, order);
     }
 
     @Override
     public void dispose() {
-        fLock.writeLock().lock();
-        try {
-            fStartTimesIndex.clear();
-            fEndTimesIndex.clear();
-            fSize = 0;
-        } finally {
-            fLock.writeLock().unlock();
-        }
+        clear();
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    /**
+     * Lazily iterate over the start times index, which stops at the first
+     * element starting after the end of the range.
+     */
+    private Iterator<E> byStart(long start, long end) {
+        Iterator<ISegment> iter = fStartTimesIndex.iterator();
+        return new AbstractIterator<E>() {
+            @Override
+            protected @Nullable E computeNext() {
+                while (iter.hasNext()) {
+                    ISegment segment = iter.next();
+                    if (segment.getStart() > end) {
+                        break;
+                    }
+                    if (segment.getEnd() >= start) {
+                        return cast(segment);
+                    }
+                }
+                return endOfData();
+            }
+        };
+    }
+
+    /**
+     * Lazily iterate over the end times index, starting at the first element
+     * that ends in the range.
+     */
+    private Iterator<E> byEnd(long start, long end) {
+        /* Start after all the elements ending before 'start' */
+        Iterator<ISegment> iter = fEndTimesIndex.tailSet(new BasicSegment(Long.MIN_VALUE, start), true).iterator();
+        return new AbstractIterator<E>() {
+            @Override
+            protected @Nullable E computeNext() {
+                while (iter.hasNext()) {
+                    ISegment segment = iter.next();
+                    if (segment.getStart() <= end) {
+                        return cast(segment);
+                    }
+                }
+                return endOfData();
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private E cast(ISegment segment) {
+        /* Only elements of type E are added to the indexes */
+        return (E) segment;
     }
 }
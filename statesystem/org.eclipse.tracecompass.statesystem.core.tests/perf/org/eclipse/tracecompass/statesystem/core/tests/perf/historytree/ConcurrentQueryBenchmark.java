@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests.perf.historytree;
+
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.common.core.NonNullUtils;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * This class benchmarks querying a state system from several threads at the
+ * same time. The same number of queries is split between the threads, so the
+ * elapsed time should go down as the number of threads goes up, as long as the
+ * queries do not contend on locks.
+ */
+@RunWith(Parameterized.class)
+public class ConcurrentQueryBenchmark {
+
+    private static final @NonNull String TEST_PREFIX = "org.eclipse.tracecompass#Concurrent Queries#";
+    private static final @NonNull String TEST_SINGLE_QUERY_ID = "Single Queries: ";
+    private static final @NonNull String TEST_FULL_QUERY_ID = "Full Queries: ";
+    private static final @NonNull String ROOT_NODE = "root";
+    private static final int QUEUE_SIZE = 10000;
+    private static final long SEED = 5575784704147L;
+
+    private static final int NB_ATTRIB = 1500;
+    private static final int NB_INTERVALS = 500;
+    private static final int INTERVAL_AVG_TIME = 1000;
+    private static final int SINGLE_QUERY_COUNT = 200000;
+    private static final int FULL_QUERY_COUNT = 2000;
+    private static final int LOOP_COUNT = 10;
+
+    private final String fName;
+    private final int fNbThreads;
+
+    /**
+     * Constructor
+     *
+     * @param name
+     *            The name of the test
+     * @param nbThreads
+     *            The number of threads sending the queries
+     */
+    public ConcurrentQueryBenchmark(String name, int nbThreads) {
+        fName = name;
+        fNbThreads = nbThreads;
+    }
+
+    /**
+     * @return The arrays of parameters
+     */
+    @Parameters(name = "{index}: {0}")
+    public static Iterable<Object[]> getParameters() {
+        return Arrays.asList(new Object[][] {
+                { "1 thread", 1 },
+                { "2 threads", 2 },
+                { "4 threads", 4 },
+                { "8 threads", 8 },
+                { "16 threads", 16 },
+        });
+    }
+
+    @FunctionalInterface
+    private static interface IQueries {
+        void run(Random randomGenerator, int nbQueries) throws Exception;
+    }
+
+    /**
+     * Benchmarks single and full queries sent from several threads
+     */
+    @Test
+    public void testBenchmark() {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pmSingleQuery = perf.createPerformanceMeter(TEST_PREFIX + TEST_SINGLE_QUERY_ID + fName);
+        perf.tagAsSummary(pmSingleQuery, TEST_SINGLE_QUERY_ID + fName, Dimension.ELAPSED_PROCESS);
+
+        PerformanceMeter pmFullQuery = perf.createPerformanceMeter(TEST_PREFIX + TEST_FULL_QUERY_ID + fName);
+        perf.tagAsSummary(pmFullQuery, TEST_FULL_QUERY_ID + fName, Dimension.ELAPSED_PROCESS);
+
+        File file = null;
+        ExecutorService executor = Executors.newFixedThreadPool(fNbThreads);
+        try {
+            file = File.createTempFile("tmpStateSystem", null);
+            ITmfStateSystemBuilder ss = buildStateSystem(NonNullUtils.checkNotNull(file));
+            long totalTime = ss.getCurrentEndTime();
+
+            for (int i = 0; i < LOOP_COUNT; i++) {
+                pmSingleQuery.start();
+                runQueries(executor, SINGLE_QUERY_COUNT, (r, nbQueries) -> {
+                    for (int j = 0; j < nbQueries; j++) {
+                        ss.querySingleState(getNextRandomValue(r, totalTime), r.nextInt(NB_ATTRIB));
+                    }
+                });
+                pmSingleQuery.stop();
+
+                pmFullQuery.start();
+                runQueries(executor, FULL_QUERY_COUNT, (r, nbQueries) -> {
+                    for (int j = 0; j < nbQueries; j++) {
+                        ss.queryFullState(getNextRandomValue(r, totalTime));
+                    }
+                });
+                pmFullQuery.stop();
+            }
+            ss.dispose();
+        } catch (IOException | StateValueTypeException | AttributeNotFoundException | InterruptedException | ExecutionException e) {
+            fail(e.getMessage());
+        } finally {
+            executor.shutdown();
+            if (file != null) {
+                file.delete();
+            }
+        }
+        pmSingleQuery.commit();
+        pmFullQuery.commit();
+    }
+
+    private void runQueries(ExecutorService executor, int nbQueries, IQueries queries) throws InterruptedException, ExecutionException {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < fNbThreads; i++) {
+            Random randomGenerator = new Random(SEED + i);
+            futures.add(executor.submit(() -> {
+                queries.run(randomGenerator, nbQueries / fNbThreads);
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    private static ITmfStateSystemBuilder buildStateSystem(@NonNull File file) throws IOException, StateValueTypeException, AttributeNotFoundException {
+        IStateHistoryBackend backend = StateHistoryBackendFactory.createHistoryTreeBackendNewFile(TEST_PREFIX, file, 1, 1, QUEUE_SIZE);
+        ITmfStateSystemBuilder ss = StateSystemFactory.newStateSystem(backend);
+        Random randomGenerator = new Random(SEED);
+        long totalTime = NB_INTERVALS * INTERVAL_AVG_TIME;
+        int rootQuark = ss.getQuarkAbsoluteAndAdd(ROOT_NODE);
+        /* Next state change of each attribute: { time, quark } */
+        Queue<long[]> changes = new PriorityQueue<>(NB_ATTRIB, (a, b) -> Long.compare(a[0], b[0]));
+        for (int i = 0; i < NB_ATTRIB; i++) {
+            int quark = ss.getQuarkRelativeAndAdd(rootQuark, String.valueOf(i));
+            changes.add(new long[] { getNextRandomValue(randomGenerator, INTERVAL_AVG_TIME), quark });
+        }
+        /* Change the states in time order */
+        while (true) {
+            long[] change = changes.poll();
+            if (change == null) {
+                break;
+            }
+            ss.modifyAttribute(change[0], TmfStateValue.newValueInt(randomGenerator.nextInt(3)), (int) change[1]);
+            change[0] += getNextRandomValue(randomGenerator, 2 * INTERVAL_AVG_TIME);
+            if (change[0] <= totalTime) {
+                changes.add(change);
+            }
+        }
+        ss.closeHistory(totalTime);
+        return ss;
+    }
+
+    /**
+     * Get a next random value between 1 and a boundary.
+     */
+    private static long getNextRandomValue(Random randomGenerator, long limit) {
+        long nextLong = Math.abs(randomGenerator.nextLong());
+        long nextDelta = (nextLong % limit) + 1;
+        return nextDelta;
+    }
+}
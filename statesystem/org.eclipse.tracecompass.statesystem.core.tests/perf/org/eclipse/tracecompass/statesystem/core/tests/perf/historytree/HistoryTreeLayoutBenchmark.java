@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests.perf.historytree;
+
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.common.core.NonNullUtils;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HistoryTreeBackend;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * This class compares the classic and the overlapping layouts of the history
+ * tree, on the same state histories: the time to build them, the size of their
+ * files and the latency of the single, full and range queries.
+ */
+@RunWith(Parameterized.class)
+public class HistoryTreeLayoutBenchmark {
+
+    private static final @NonNull String TEST_PREFIX = "org.eclipse.tracecompass#History Tree Layout#";
+    private static final @NonNull String TEST_BUILDING_ID = "Build: ";
+    private static final @NonNull String TEST_SINGLE_QUERY_ID = "Single Queries: ";
+    private static final @NonNull String TEST_FULL_QUERY_ID = "Full Queries: ";
+    private static final @NonNull String TEST_RANGE_QUERY_ID = "Range Queries: ";
+    private static final @NonNull String ROOT_NODE = "root";
+    private static final int QUEUE_SIZE = 10000;
+    private static final long SEED = 5575784704147L;
+
+    private static final int NB_ATTRIB = 1500;
+    private static final int NB_INTERVALS = 500;
+    private static final int INTERVAL_AVG_TIME = 1000;
+    private static final int SINGLE_QUERY_COUNT = 10000;
+    private static final int FULL_QUERY_COUNT = 100;
+    private static final int RANGE_QUERY_COUNT = 100;
+    private static final int LOOP_COUNT = 10;
+
+    private final String fName;
+    private final boolean fOverlapping;
+    private final int fOutliersPercent;
+
+    /**
+     * Constructor
+     *
+     * @param name
+     *            The name of the test
+     * @param overlapping
+     *            True to use the overlapping layout, false for the classic one
+     * @param outliersPercent
+     *            The percentage of intervals that are much longer than the
+     *            others
+     */
+    public HistoryTreeLayoutBenchmark(String name, boolean overlapping, int outliersPercent) {
+        fName = name;
+        fOverlapping = overlapping;
+        fOutliersPercent = outliersPercent;
+    }
+
+    /**
+     * @return The arrays of parameters
+     */
+    @Parameters(name = "{index}: {0}")
+    public static Iterable<Object[]> getParameters() {
+        return Arrays.asList(new Object[][] {
+                { "Classic layout", false, 0 },
+                { "Overlapping layout", true, 0 },
+                { "Classic layout, 10 percent outliers", false, 10 },
+                { "Overlapping layout, 10 percent outliers", true, 10 },
+        });
+    }
+
+    /**
+     * Benchmarks building and querying the history tree with a layout
+     */
+    @Test
+    public void testBenchmark() {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pmBuild = perf.createPerformanceMeter(TEST_PREFIX + TEST_BUILDING_ID + fName);
+        perf.tagAsSummary(pmBuild, TEST_BUILDING_ID + fName, Dimension.CPU_TIME);
+
+        PerformanceMeter pmSingleQuery = perf.createPerformanceMeter(TEST_PREFIX + TEST_SINGLE_QUERY_ID + fName);
+        perf.tagAsSummary(pmSingleQuery, TEST_SINGLE_QUERY_ID + fName, Dimension.CPU_TIME);
+
+        PerformanceMeter pmFullQuery = perf.createPerformanceMeter(TEST_PREFIX + TEST_FULL_QUERY_ID + fName);
+        perf.tagAsSummary(pmFullQuery, TEST_FULL_QUERY_ID + fName, Dimension.CPU_TIME);
+
+        PerformanceMeter pmRangeQuery = perf.createPerformanceMeter(TEST_PREFIX + TEST_RANGE_QUERY_ID + fName);
+        perf.tagAsSummary(pmRangeQuery, TEST_RANGE_QUERY_ID + fName, Dimension.CPU_TIME);
+
+        long totalTime = NB_INTERVALS * INTERVAL_AVG_TIME;
+        for (int i = 0; i < LOOP_COUNT; i++) {
+            File file = null;
+            try {
+                file = File.createTempFile("tmpStateSystem", null);
+                IStateHistoryBackend backend = (fOverlapping ?
+                        StateHistoryBackendFactory.createOverlappingHistoryTreeBackendNewFile(TEST_PREFIX, NonNullUtils.checkNotNull(file), 1, 1, QUEUE_SIZE) :
+                        StateHistoryBackendFactory.createHistoryTreeBackendNewFile(TEST_PREFIX, NonNullUtils.checkNotNull(file), 1, 1, QUEUE_SIZE));
+                ITmfStateSystemBuilder ss = StateSystemFactory.newStateSystem(backend);
+                Random randomGenerator = new Random(SEED);
+
+                pmBuild.start();
+                buildStateSystem(ss, randomGenerator, totalTime);
+                pmBuild.stop();
+
+                pmSingleQuery.start();
+                for (int j = 0; j < SINGLE_QUERY_COUNT; j++) {
+                    ss.querySingleState(getNextRandomValue(randomGenerator, totalTime), (int) getNextRandomValue(randomGenerator, NB_ATTRIB));
+                }
+                pmSingleQuery.stop();
+
+                pmFullQuery.start();
+                for (int j = 0; j < FULL_QUERY_COUNT; j++) {
+                    ss.queryFullState(getNextRandomValue(randomGenerator, totalTime));
+                }
+                pmFullQuery.stop();
+
+                /* Narrow 2D queries, like the ones of a zoomed-in view */
+                List<@NonNull Integer> quarks = ss.getSubAttributes(ss.getQuarkAbsolute(ROOT_NODE), false);
+                pmRangeQuery.start();
+                for (int j = 0; j < RANGE_QUERY_COUNT; j++) {
+                    long start = getNextRandomValue(randomGenerator, totalTime - INTERVAL_AVG_TIME);
+                    for (ITmfStateInterval interval : backend.query2D(quarks, start, start + INTERVAL_AVG_TIME)) {
+                        interval.getStateValue();
+                    }
+                }
+                pmRangeQuery.stop();
+
+                /* Output some data on the file */
+                if (i == 0 && backend instanceof HistoryTreeBackend) {
+                    HistoryTreeBackend htBackend = (HistoryTreeBackend) backend;
+                    System.out.println(fName + ", history tree file size: " + FileUtils.byteCountToDisplaySize(htBackend.getFileSize()));
+                    System.out.println(fName + ", average node usage: " + htBackend.getAverageNodeUsage());
+                }
+                ss.dispose();
+            } catch (IOException | AttributeNotFoundException | StateSystemDisposedException e) {
+                fail(e.getMessage());
+            } finally {
+                if (file != null) {
+                    file.delete();
+                }
+            }
+        }
+        pmBuild.commit();
+        pmSingleQuery.commit();
+        pmFullQuery.commit();
+        pmRangeQuery.commit();
+    }
+
+    private void buildStateSystem(ITmfStateSystemBuilder ss, Random randomGenerator, long totalTime) {
+        int rootQuark = ss.getQuarkAbsoluteAndAdd(ROOT_NODE);
+        /* Next state change of each attribute: { time, quark } */
+        Queue<long[]> changes = new PriorityQueue<>(NB_ATTRIB, (a, b) -> Long.compare(a[0], b[0]));
+        for (int i = 0; i < NB_ATTRIB; i++) {
+            int quark = ss.getQuarkRelativeAndAdd(rootQuark, String.valueOf(i));
+            changes.add(new long[] { getNextRandomValue(randomGenerator, INTERVAL_AVG_TIME), quark });
+        }
+        /* Change the states in time order */
+        while (true) {
+            long[] change = changes.poll();
+            if (change == null) {
+                break;
+            }
+            ss.modifyAttribute(change[0], TmfStateValue.newValueInt(randomGenerator.nextInt(3)), (int) change[1]);
+            long limit = 2 * INTERVAL_AVG_TIME;
+            if (randomGenerator.nextInt(100) < fOutliersPercent) {
+                /* An outlier, up to 50 times longer than the other intervals */
+                limit *= 50;
+            }
+            change[0] += getNextRandomValue(randomGenerator, limit);
+            if (change[0] <= totalTime) {
+                changes.add(change);
+            }
+        }
+        ss.closeHistory(totalTime);
+    }
+
+    /**
+     * Get a next random value between 1 and a boundary.
+     */
+    private static long getNextRandomValue(Random randomGenerator, long limit) {
+        long nextLong = Math.abs(randomGenerator.nextLong());
+        long nextDelta = (nextLong % limit) + 1;
+        return nextDelta;
+    }
+}
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.statesystem.core.AttributePathTemplate;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link AttributePathTemplate} class, and the resolution of its
+ * quarks by the state system
+ */
+public class AttributePathTemplateTest {
+
+    private static final @NonNull String SSID = "template-test";
+    private static final @NonNull String THREADS = "Threads";
+    private static final @NonNull String SYSTEM_CALL = "System_call";
+
+    private static final AttributePathTemplate THREAD_TEMPLATE = new AttributePathTemplate(new String[] { THREADS });
+    private static final AttributePathTemplate SYSTEM_CALL_TEMPLATE = new AttributePathTemplate(new String[] { THREADS }, SYSTEM_CALL);
+
+    private ITmfStateSystemBuilder fStateSystem;
+
+    /**
+     * Create the state system
+     */
+    @Before
+    public void setUp() {
+        fStateSystem = StateSystemFactory.newStateSystem(StateHistoryBackendFactory.createInMemoryBackend(SSID, 0));
+    }
+
+    /**
+     * Dispose the state system
+     */
+    @After
+    public void tearDown() {
+        fStateSystem.dispose();
+    }
+
+    /**
+     * Test the paths of a template
+     */
+    @Test
+    public void testGetPath() {
+        assertArrayEquals(new String[] { THREADS, "42" }, THREAD_TEMPLATE.getPath(42));
+        assertArrayEquals(new String[] { THREADS, "-1", SYSTEM_CALL }, SYSTEM_CALL_TEMPLATE.getPath(-1));
+        assertArrayEquals(new String[] { THREADS, String.valueOf(Long.MAX_VALUE), SYSTEM_CALL }, SYSTEM_CALL_TEMPLATE.getPath(Long.MAX_VALUE));
+        assertEquals("Threads/<key>/System_call", SYSTEM_CALL_TEMPLATE.toString());
+    }
+
+    /**
+     * Test that the quarks of the templates are the ones of their paths,
+     * whether the attributes were added with the template or with the path
+     *
+     * @throws AttributeNotFoundException
+     *             Fails the test
+     */
+    @Test
+    public void testGetQuark() throws AttributeNotFoundException {
+        ITmfStateSystemBuilder ss = fStateSystem;
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            /* Enough keys to grow the caches, some of them negative */
+            long key = random.nextInt(3000) - 100;
+            if (random.nextBoolean()) {
+                int quark = ss.getQuarkAbsoluteAndAdd(SYSTEM_CALL_TEMPLATE, key);
+                assertEquals(ss.getQuarkAbsolute(THREADS, String.valueOf(key), SYSTEM_CALL), quark);
+                assertEquals(quark, ss.getQuarkAbsoluteAndAdd(SYSTEM_CALL_TEMPLATE, key));
+            } else {
+                int quark = ss.getQuarkAbsoluteAndAdd(THREADS, String.valueOf(key));
+                assertEquals(quark, ss.getQuarkAbsoluteAndAdd(THREAD_TEMPLATE, key));
+                assertEquals(quark, ss.getQuarkAbsoluteAndAdd(THREAD_TEMPLATE, key));
+            }
+        }
+    }
+}
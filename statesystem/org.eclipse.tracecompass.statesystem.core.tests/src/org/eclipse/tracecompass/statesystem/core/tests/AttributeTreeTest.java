@@ -15,10 +15,19 @@ package org.eclipse.tracecompass.statesystem.core.tests;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.tracecompass.internal.statesystem.core.AttributeTree;
 import org.eclipse.tracecompass.internal.statesystem.core.StateSystem;
@@ -123,4 +132,75 @@ public class AttributeTreeTest {
             file.delete();
         }
     }
+
+    /**
+     * Test adding and reading attributes from several threads at the same
+     * time.
+     * <p>
+     * Each path must get a single quark, whichever thread adds it, and the
+     * readers must only see complete attributes.
+     *
+     * @throws InterruptedException
+     *             if the test is interrupted
+     * @throws ExecutionException
+     *             if one of the threads failed
+     */
+    @Test
+    public void testConcurrentAccess() throws InterruptedException, ExecutionException {
+        final int nbThreads = 8;
+        final int nbThreadAttributes = 2000;
+        IStateHistoryBackend backend = StateHistoryBackendFactory.createNullBackend("test");
+        StateSystem ss = new StateSystem(backend);
+        AttributeTree attributeTree = new AttributeTree(ss);
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads * 2);
+        try {
+            List<Future<int[]>> writers = new ArrayList<>();
+            List<Future<?>> readers = new ArrayList<>();
+            for (int i = 0; i < nbThreads; i++) {
+                writers.add(executor.submit(() -> {
+                    /* All the threads add the same paths */
+                    int[] quarks = new int[nbThreadAttributes];
+                    for (int j = 0; j < nbThreadAttributes; j++) {
+                        quarks[j] = attributeTree.getQuarkAndAdd(ITmfStateSystem.ROOT_ATTRIBUTE, THREADS, String.valueOf(j), STATUS);
+                    }
+                    return quarks;
+                }));
+                readers.add(executor.submit(() -> {
+                    int threadsQuark = ITmfStateSystem.INVALID_ATTRIBUTE;
+                    while (threadsQuark == ITmfStateSystem.INVALID_ATTRIBUTE) {
+                        threadsQuark = attributeTree.getQuarkDontAdd(ITmfStateSystem.ROOT_ATTRIBUTE, THREADS);
+                    }
+                    int nbSeen = 0;
+                    while (nbSeen < nbThreadAttributes) {
+                        List<Integer> quarks = attributeTree.getSubAttributes(threadsQuark, true);
+                        for (int quark : quarks) {
+                            assertTrue(quark < attributeTree.getNbAttributes());
+                            attributeTree.getFullAttributeName(quark);
+                        }
+                        nbSeen = attributeTree.getSubAttributes(threadsQuark, false).size();
+                    }
+                }));
+            }
+            int[] expected = writers.get(0).get();
+            for (Future<int[]> writer : writers) {
+                assertArrayEquals(expected, writer.get());
+            }
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            executor.shutdown();
+            ss.dispose();
+        }
+
+        /* 1 "Threads" attribute, then 2 attributes per thread */
+        assertEquals(1 + 2 * nbThreadAttributes, attributeTree.getNbAttributes());
+        Set<Integer> quarks = new HashSet<>();
+        for (int j = 0; j < nbThreadAttributes; j++) {
+            String[] path = new String[] { THREADS, String.valueOf(j), STATUS };
+            int quark = attributeTree.getQuarkDontAdd(ITmfStateSystem.ROOT_ATTRIBUTE, path);
+            assertArrayEquals(path, attributeTree.getFullAttributePathArray(quark));
+            assertTrue(quarks.add(quark));
+        }
+    }
 }
@@ -0,0 +1,262 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSnapshot;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the snapshots of state systems, and resuming the build of a history
+ * from a snapshot.
+ */
+public class StateSnapshotTest {
+
+    private static final @NonNull String SSID = "snapshot-test";
+    private static final long START_TIME = 1000;
+    private static final int NB_CHANGES = 2000;
+    private static final int PROVIDER_VERSION = 0;
+
+    private final List<File> fFiles = new ArrayList<>();
+    private final List<ITmfStateSystemBuilder> fStateSystems = new ArrayList<>();
+    private List<Change> fChanges = new ArrayList<>();
+
+    private static final class Change {
+        private final long fTime;
+        private final String[] fPath;
+        private final @NonNull ITmfStateValue fValue;
+
+        public Change(long time, String[] path, @NonNull ITmfStateValue value) {
+            fTime = time;
+            fPath = path;
+            fValue = value;
+        }
+    }
+
+    /**
+     * Generate the state changes of the test, at increasing times, some of
+     * them at the same time
+     */
+    @Before
+    public void setUp() {
+        Random random = new Random(42);
+        long time = START_TIME;
+        List<Change> changes = new ArrayList<>();
+        for (int i = 0; i < NB_CHANGES; i++) {
+            time += random.nextInt(3);
+            /* The number of attributes grows with time */
+            int nbAttributes = 2 + i / 50;
+            /* The type of the values depends on the last name of the path */
+            int type = random.nextInt(3);
+            String[] path = { "root", String.valueOf(random.nextInt(nbAttributes)), String.valueOf(type) };
+            int value = random.nextInt(4);
+            ITmfStateValue stateValue;
+            if (value == 0) {
+                stateValue = TmfStateValue.nullValue();
+            } else if (type == 0) {
+                stateValue = TmfStateValue.newValueString(String.valueOf(value));
+            } else if (type == 1) {
+                stateValue = TmfStateValue.newValueLong(value);
+            } else {
+                stateValue = TmfStateValue.newValueInt(value);
+            }
+            changes.add(new Change(time, path, stateValue));
+        }
+        fChanges = changes;
+    }
+
+    /**
+     * Dispose the state systems and delete the files
+     */
+    @After
+    public void tearDown() {
+        fStateSystems.forEach(ITmfStateSystemBuilder::dispose);
+        fFiles.forEach(File::delete);
+    }
+
+    /**
+     * Test writing and reading a snapshot
+     *
+     * @throws IOException
+     *             Fails the test
+     */
+    @Test
+    public void testWriteRead() throws IOException {
+        ITmfStateSystemBuilder ss = newStateSystem();
+        applyChanges(ss, 0, NB_CHANGES / 2);
+        StateSnapshot snapshot = StateSnapshot.takeSnapshot(ss);
+
+        assertEquals(START_TIME, snapshot.getStartTime());
+        assertEquals(fChanges.get(NB_CHANGES / 2 - 1).fTime, snapshot.getTime());
+        assertEquals(ss.getNbAttributes(), snapshot.getNbAttributes());
+        for (int quark = 0; quark < ss.getNbAttributes(); quark++) {
+            assertArrayEquals(ss.getFullAttributePathArray(quark), snapshot.getAttributePath(quark));
+            ITmfStateInterval ongoing = snapshot.getOngoingStates().get(quark);
+            assertEquals(quark, ongoing.getAttribute());
+            assertEquals(ss.getOngoingStartTime(quark), ongoing.getStartTime());
+            assertEquals(snapshot.getTime(), ongoing.getEndTime());
+            assertEquals(ss.queryOngoingState(quark), ongoing.getStateValue());
+        }
+
+        StateSnapshot read = writeRead(snapshot);
+        assertEquals(snapshot.getStartTime(), read.getStartTime());
+        assertEquals(snapshot.getTime(), read.getTime());
+        assertEquals(snapshot.getNbAttributes(), read.getNbAttributes());
+        for (int quark = 0; quark < snapshot.getNbAttributes(); quark++) {
+            assertArrayEquals(snapshot.getAttributePath(quark), read.getAttributePath(quark));
+            ITmfStateInterval expected = snapshot.getOngoingStates().get(quark);
+            ITmfStateInterval actual = read.getOngoingStates().get(quark);
+            assertEquals(expected.getStartTime(), actual.getStartTime());
+            assertEquals(expected.getEndTime(), actual.getEndTime());
+            assertEquals(expected.getStateValue(), actual.getStateValue());
+        }
+    }
+
+    /**
+     * Test that reading a snapshot with invalid lengths fails with an
+     * {@link IOException}, instead of allocating them
+     *
+     * @throws IOException
+     *             Fails the test
+     */
+    @Test
+    public void testInvalidLength() throws IOException {
+        ITmfStateSystemBuilder ss = newStateSystem();
+        applyChanges(ss, 0, NB_CHANGES / 2);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            StateSnapshot.takeSnapshot(ss).writeTo(out);
+        }
+        /* The length of the first path follows the header */
+        int pathLengthOffset = Integer.BYTES + 2 * Long.BYTES + Integer.BYTES;
+        for (int length : new int[] { -1, Integer.MAX_VALUE }) {
+            byte[] corrupt = bytes.toByteArray();
+            ByteBuffer.wrap(corrupt).putInt(pathLengthOffset, length);
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(corrupt))) {
+                StateSnapshot.readFrom(in);
+                fail("length " + length);
+            } catch (IOException e) {
+                /* Expected */
+            }
+        }
+    }
+
+    /**
+     * Test that a history resumed from a snapshot is the same as the history
+     * built in one go, when it is stopped between changes at the same time or
+     * at different times
+     *
+     * @throws IOException
+     *             Fails the test
+     * @throws StateSystemDisposedException
+     *             Fails the test
+     */
+    @Test
+    public void testResume() throws IOException, StateSystemDisposedException {
+        ITmfStateSystemBuilder expected = newStateSystem();
+        applyChanges(expected, 0, NB_CHANGES);
+        long endTime = fChanges.get(NB_CHANGES - 1).fTime + 1;
+        expected.closeHistory(endTime);
+
+        for (int stop : new int[] { 1, 17, NB_CHANGES / 3, NB_CHANGES - 1 }) {
+            /* Stop the build like a state provider would, then resume it */
+            File stoppedFile = newFile();
+            ITmfStateSystemBuilder stopped = newStateSystem(stoppedFile);
+            applyChanges(stopped, 0, stop);
+            StateSnapshot snapshot = writeRead(StateSnapshot.takeSnapshot(stopped));
+            stopped.closeHistory(fChanges.get(stop - 1).fTime);
+
+            IStateHistoryBackend previousBackend = StateHistoryBackendFactory.createHistoryTreeBackendExistingFile(SSID, stoppedFile, PROVIDER_VERSION);
+            IStateHistoryBackend backend = StateHistoryBackendFactory.createHistoryTreeBackendNewFile(SSID, newFile(), PROVIDER_VERSION, START_TIME, 0);
+            ITmfStateSystemBuilder resumed = StateSystemFactory.resumeStateSystem(backend, previousBackend, snapshot);
+            previousBackend.dispose();
+            fStateSystems.add(resumed);
+            applyChanges(resumed, stop, NB_CHANGES);
+            resumed.closeHistory(endTime);
+
+            assertEquals(expected.getNbAttributes(), resumed.getNbAttributes());
+            for (long t = START_TIME; t <= endTime; t++) {
+                List<ITmfStateInterval> expectedState = expected.queryFullState(t);
+                List<ITmfStateInterval> actualState = resumed.queryFullState(t);
+                for (int quark = 0; quark < expected.getNbAttributes(); quark++) {
+                    String msg = "stop " + stop + ", time " + t + ", quark " + quark;
+                    ITmfStateInterval expectedInterval = expectedState.get(quark);
+                    ITmfStateInterval actualInterval = actualState.get(quark);
+                    assertEquals(msg, expectedInterval.getStartTime(), actualInterval.getStartTime());
+                    assertEquals(msg, expectedInterval.getEndTime(), actualInterval.getEndTime());
+                    assertEquals(msg, expectedInterval.getStateValue(), actualInterval.getStateValue());
+                }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    private File newFile() throws IOException {
+        File file = File.createTempFile("snapshot-test", ".ht");
+        fFiles.add(file);
+        return checkNotNull(file);
+    }
+
+    private ITmfStateSystemBuilder newStateSystem() throws IOException {
+        return newStateSystem(newFile());
+    }
+
+    private ITmfStateSystemBuilder newStateSystem(@NonNull File file) throws IOException {
+        IStateHistoryBackend backend = StateHistoryBackendFactory.createHistoryTreeBackendNewFile(SSID, file, PROVIDER_VERSION, START_TIME, 0);
+        ITmfStateSystemBuilder ss = StateSystemFactory.newStateSystem(backend);
+        fStateSystems.add(ss);
+        return ss;
+    }
+
+    private void applyChanges(ITmfStateSystemBuilder ss, int from, int to) {
+        for (Change change : fChanges.subList(from, to)) {
+            ss.modifyAttribute(change.fTime, change.fValue, ss.getQuarkAbsoluteAndAdd(change.fPath));
+        }
+    }
+
+    private static StateSnapshot writeRead(StateSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            snapshot.writeTo(out);
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return StateSnapshot.readFrom(in);
+        }
+    }
+}
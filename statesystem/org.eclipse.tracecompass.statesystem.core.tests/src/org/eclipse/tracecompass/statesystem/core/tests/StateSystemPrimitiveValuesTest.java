@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the modifyAttribute methods of {@link ITmfStateSystemBuilder} that take
+ * primitive values, which should build the same history as the state values.
+ */
+public class StateSystemPrimitiveValuesTest {
+
+    private static final @NonNull String SSID = "primitive-test";
+    private static final long START_TIME = 1000;
+    private static final int NB_CHANGES = 5000;
+    private static final double[] DOUBLES = { 0.0, -0.0, 1.5, Double.NaN, Double.MAX_VALUE };
+
+    private ITmfStateSystemBuilder fPrimitives;
+    private ITmfStateSystemBuilder fStateValues;
+
+    /**
+     * Create the state systems
+     */
+    @Before
+    public void setUp() {
+        fPrimitives = StateSystemFactory.newStateSystem(StateHistoryBackendFactory.createInMemoryBackend(SSID, START_TIME));
+        fStateValues = StateSystemFactory.newStateSystem(StateHistoryBackendFactory.createInMemoryBackend(SSID, START_TIME));
+    }
+
+    /**
+     * Dispose the state systems
+     */
+    @After
+    public void tearDown() {
+        fPrimitives.dispose();
+        fStateValues.dispose();
+    }
+
+    /**
+     * Test that the same changes, with primitive values or state values, build
+     * the same history
+     *
+     * @throws StateSystemDisposedException
+     *             Fails the test
+     */
+    @Test
+    public void testSameHistory() throws StateSystemDisposedException {
+        Random random = new Random(42);
+        long time = START_TIME;
+        for (int i = 0; i < NB_CHANGES; i++) {
+            time += random.nextInt(3);
+            /* The type of the values depends on the attribute */
+            int type = random.nextInt(3);
+            String[] path = { String.valueOf(type), String.valueOf(random.nextInt(20)) };
+            int quark = fPrimitives.getQuarkAbsoluteAndAdd(path);
+            assertEquals(quark, fStateValues.getQuarkAbsoluteAndAdd(path));
+
+            /* Use values outside of the cache of the state values too */
+            int value = random.nextInt(6) * 100;
+            if (value == 0) {
+                fPrimitives.modifyAttribute(time, TmfStateValue.nullValue(), quark);
+                fStateValues.modifyAttribute(time, TmfStateValue.nullValue(), quark);
+            } else if (type == 0) {
+                fPrimitives.modifyAttribute(time, value, quark);
+                fStateValues.modifyAttribute(time, TmfStateValue.newValueInt(value), quark);
+            } else if (type == 1) {
+                fPrimitives.modifyAttribute(time, (long) value << 32, quark);
+                fStateValues.modifyAttribute(time, TmfStateValue.newValueLong((long) value << 32), quark);
+            } else {
+                double doubleValue = DOUBLES[value / 100 - 1];
+                fPrimitives.modifyAttribute(time, doubleValue, quark);
+                fStateValues.modifyAttribute(time, TmfStateValue.newValueDouble(doubleValue), quark);
+            }
+            assertEquals(fStateValues.queryOngoingState(quark), fPrimitives.queryOngoingState(quark));
+            assertEquals(fStateValues.getOngoingStartTime(quark), fPrimitives.getOngoingStartTime(quark));
+        }
+        fPrimitives.closeHistory(time + 1);
+        fStateValues.closeHistory(time + 1);
+
+        assertEquals(fStateValues.getNbAttributes(), fPrimitives.getNbAttributes());
+        for (long t = START_TIME; t <= time + 1; t++) {
+            List<ITmfStateInterval> expected = fStateValues.queryFullState(t);
+            List<ITmfStateInterval> actual = fPrimitives.queryFullState(t);
+            for (int quark = 0; quark < expected.size(); quark++) {
+                String msg = "time " + t + ", quark " + quark;
+                assertEquals(msg, expected.get(quark).getStartTime(), actual.get(quark).getStartTime());
+                assertEquals(msg, expected.get(quark).getEndTime(), actual.get(quark).getEndTime());
+                assertEquals(msg, expected.get(quark).getStateValue(), actual.get(quark).getStateValue());
+            }
+        }
+    }
+
+    /**
+     * Test that the values of an attribute must all have the same type
+     */
+    @Test(expected = StateValueTypeException.class)
+    public void testTypeMismatch() {
+        int quark = fPrimitives.getQuarkAbsoluteAndAdd("attribute");
+        fPrimitives.modifyAttribute(START_TIME, 1, quark);
+        fPrimitives.modifyAttribute(START_TIME + 1, TmfStateValue.nullValue(), quark);
+        fPrimitives.modifyAttribute(START_TIME + 2, 1L, quark);
+    }
+
+    /**
+     * Test that a primitive value can be updated with a state value, and the
+     * other way around
+     */
+    @Test
+    public void testUpdateOngoingState() {
+        int quark = fPrimitives.getQuarkAbsoluteAndAdd("attribute");
+        fPrimitives.modifyAttribute(START_TIME, 1000, quark);
+        ITmfStateValue value = TmfStateValue.newValueInt(2000);
+        fPrimitives.updateOngoingState(value, quark);
+        assertEquals(value, fPrimitives.queryOngoingState(quark));
+
+        /* Setting the same value again does not start a new state */
+        fPrimitives.modifyAttribute(START_TIME + 1, 2000, quark);
+        assertEquals(START_TIME, fPrimitives.getOngoingStartTime(quark));
+        fPrimitives.modifyAttribute(START_TIME + 2, 3000, quark);
+        assertEquals(START_TIME + 2, fPrimitives.getOngoingStartTime(quark));
+        assertEquals(TmfStateValue.newValueInt(3000), fPrimitives.queryOngoingState(quark));
+    }
+
+    /**
+     * Test that reading the ongoing state of a primitive value again returns
+     * the same object, until the value changes
+     */
+    @Test
+    public void testOngoingStateCached() {
+        int quark = fPrimitives.getQuarkAbsoluteAndAdd("attribute");
+        fPrimitives.modifyAttribute(START_TIME, 1000, quark);
+        ITmfStateValue value = fPrimitives.queryOngoingState(quark);
+        assertEquals(TmfStateValue.newValueInt(1000), value);
+        assertSame(value, fPrimitives.queryOngoingState(quark));
+
+        fPrimitives.modifyAttribute(START_TIME + 1, 2000, quark);
+        assertEquals(TmfStateValue.newValueInt(2000), fPrimitives.queryOngoingState(quark));
+    }
+}
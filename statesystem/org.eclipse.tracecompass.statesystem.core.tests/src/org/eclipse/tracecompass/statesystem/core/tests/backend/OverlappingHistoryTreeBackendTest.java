@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests.backend;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTConfig;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HistoryTreeBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+
+/**
+ * Test the {@link HistoryTreeBackend} class with the overlapping layout of the
+ * history tree. Re-opening the file must detect the layout.
+ */
+public class OverlappingHistoryTreeBackendTest extends HistoryTreeBackendTest {
+
+    private static final long CACHE_SIZE = 1024 * 1024;
+
+    /**
+     * Constructor
+     *
+     * @param reOpen
+     *            True if the backend should be disposed and re-opened as a new
+     *            backend from the file, or false to use the backend as-is
+     */
+    public OverlappingHistoryTreeBackendTest(Boolean reOpen) {
+        super(reOpen);
+    }
+
+    @Override
+    protected IStateHistoryBackend getBackendForBuilding(long startTime) throws IOException {
+        File historyTreeFile = File.createTempFile("OverlappingHistoryTreeBackendTest", ".ht");
+        fHistoryTreeFiles.add(historyTreeFile);
+        HTConfig config = new HTConfig(historyTreeFile, fBlockSize, fMaxChildren, PROVIDER_VERSION, startTime, CACHE_SIZE, true);
+        HistoryTreeBackend backend = new HistoryTreeBackend(SSID, config);
+        fBackendMap.put(backend, historyTreeFile);
+        return backend;
+    }
+}
@@ -16,7 +16,9 @@ import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
@@ -30,6 +32,7 @@ import org.eclipse.tracecompass.statesystem.core.tests.stubs.statevalues.CustomS
 import org.junit.Test;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 /**
  * Abstract class to test implementations of the {@link IStateHistoryBackend}
@@ -257,6 +260,59 @@ public abstract class StateHistoryBackendTestBase {
         buildAndQueryFullRange(startTime, endTime, nbAttr, intervals, false);
     }
 
+    /**
+     * Test the 2D query method with the same "stair-like" intervals as
+     * {@link #testCascadingIntervals()}. The returned intervals must be exactly
+     * the inserted ones that intersect the time range, for the requested
+     * attributes only.
+     */
+    @Test
+    public void testQuery2D() {
+        final int nbAttr = 10;
+        final long duration = 10;
+        final long startTime = 0;
+        final long endTime = 1000;
+
+        List<ITmfStateInterval> intervals = new ArrayList<>();
+        for (long t = startTime + 1; t <= endTime + duration; t++) {
+            intervals.add(new TmfStateInterval(
+                    Math.max(startTime, t - duration),
+                    Math.min(endTime, t - 1),
+                    (int) t % nbAttr,
+                    TmfStateValue.newValueLong(t)));
+        }
+
+        IStateHistoryBackend backend = prepareBackend(startTime, endTime, intervals);
+        assertNotNull(backend);
+
+        Set<Integer> quarks = ImmutableSet.of(1, 4, 7);
+        long[][] ranges = { { 0, 0 }, { 95, 105 }, { 500, 500 }, { 0, 1000 }, { 990, 1000 } };
+        try {
+            for (long[] range : ranges) {
+                Set<String> expected = new HashSet<>();
+                for (ITmfStateInterval interval : intervals) {
+                    if (quarks.contains(interval.getAttribute()) &&
+                            interval.getStartTime() <= range[1] &&
+                            interval.getEndTime() >= range[0]) {
+                        expected.add(interval.toString());
+                    }
+                }
+
+                Set<String> actual = new HashSet<>();
+                int count = 0;
+                for (ITmfStateInterval interval : backend.query2D(quarks, range[0], range[1])) {
+                    actual.add(new TmfStateInterval(interval.getStartTime(), interval.getEndTime(),
+                            interval.getAttribute(), interval.getStateValue()).toString());
+                    count++;
+                }
+                assertEquals("Duplicate intervals for range " + range[0] + "-" + range[1], actual.size(), count);
+                assertEquals("Intervals for range " + range[0] + "-" + range[1], expected, actual);
+            }
+        } catch (StateSystemDisposedException e) {
+            fail(e.getMessage());
+        }
+    }
+
     /**
      * Test inserting values of different types and querying them right after
      */
@@ -29,6 +29,8 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.cache.CacheStats;
+
 /**
  * Tests the history tree
  *
@@ -40,18 +42,16 @@ public class HistoryTreeTest {
     /* Minimal allowed blocksize */
     private static final int BLOCK_SIZE = HistoryTree.TREE_HEADER_SIZE;
 
-    private static final HTInterval NULL_INTERVAL = new HTInterval(10, 20, 1, TmfStateValue.nullValue());
-
-    /* String with 23 characters, interval in file will be 25 bytes long */
+    /*
+     * String with 23 characters, its value takes 26 bytes in the node. The
+     * size of the interval also depends on its times relative to the node.
+     */
     private static final String TEST_STRING = "abcdefghifklmnopqrstuvw";
     private static final TmfStateValue STRING_VALUE = TmfStateValue.newValueString(TEST_STRING);
-    private static final HTInterval STRING_INTERVAL = new HTInterval(10, 20, 1, STRING_VALUE);
 
     private static final TmfStateValue LONG_VALUE = TmfStateValue.newValueLong(10L);
-    private static final HTInterval LONG_INTERVAL = new HTInterval(10, 20, 1, LONG_VALUE);
 
     private static final TmfStateValue INT_VALUE = TmfStateValue.newValueInt(1);
-    private static final HTInterval INT_INTERVAL = new HTInterval(10, 20, 1, INT_VALUE);
 
     private @Nullable File fTempFile;
 
@@ -85,15 +85,24 @@ public class HistoryTreeTest {
      *            option)
      */
     private HistoryTreeStub setupSmallTree(int maxChildren) {
+        File newFile = fTempFile;
+        assertNotNull(newFile);
+        return setupSmallTree(new HTConfig(newFile,
+                BLOCK_SIZE,
+                maxChildren, /* Number of children */
+                1, /* Provider version */
+                1)); /* Start time */
+    }
+
+    /**
+     * Setup a history tree with the given configuration.
+     *
+     * @param config
+     *            The configuration of the tree
+     */
+    private static HistoryTreeStub setupSmallTree(HTConfig config) {
         HistoryTreeStub ht = null;
         try {
-            File newFile = fTempFile;
-            assertNotNull(newFile);
-            HTConfig config = new HTConfig(newFile,
-                    BLOCK_SIZE,
-                    maxChildren, /* Number of children */
-                    1, /* Provider version */
-                    1); /* Start time */
             ht = new HistoryTreeStub(config);
 
         } catch (IOException e) {
@@ -118,6 +127,32 @@ public class HistoryTreeTest {
         return start + nbValues;
     }
 
+    /**
+     * Get the size that the intervals inserted by
+     * {@link #fillValues(HistoryTree, TmfStateValue, int, long)} take in a
+     * node. It depends on the start time of that node.
+     */
+    private static int sizeOfValues(HTNode node, TmfStateValue value, int nbValues, long start) {
+        int size = 0;
+        for (int i = 0; i < nbValues; i++) {
+            size += new HTInterval(start + i, start + i + 1, 1, value).getSizeOnDisk(node.getNodeStart());
+        }
+        return size;
+    }
+
+    /**
+     * Get the number of intervals inserted by
+     * {@link #fillValues(HistoryTree, TmfStateValue, int, long)} that fit in
+     * the given number of bytes of a node.
+     */
+    private static int countFittingValues(HTNode node, TmfStateValue value, long start, int nbBytes) {
+        int nbValues = 0;
+        while (sizeOfValues(node, value, nbValues + 1, start) <= nbBytes) {
+            nbValues++;
+        }
+        return nbValues;
+    }
+
     /**
      * Insert intervals in the tree to fill the current leaf node to capacity,
      * without exceeding it.
@@ -136,9 +171,8 @@ public class HistoryTreeTest {
 
         /* Fill the following leaf node */
         HTNode node = ht.getLatestLeaf();
-        int intervalSize = STRING_INTERVAL.getSizeOnDisk();
         int nodeFreeSpace = node.getNodeFreeSpace();
-        int nbIntervals = nodeFreeSpace / intervalSize;
+        int nbIntervals = countFittingValues(node, STRING_VALUE, leafNodeStart, nodeFreeSpace);
         long ret = fillValues(ht, STRING_VALUE, nbIntervals, leafNodeStart);
 
         /* Make sure we haven't changed the depth or node count */
@@ -163,31 +197,31 @@ public class HistoryTreeTest {
 
         /* Add null intervals up to ~10% */
         int nodeFreeSpace = node.getNodeFreeSpace();
-        int intervalSize = NULL_INTERVAL.getSizeOnDisk();
-        int nbIntervals = nodeFreeSpace / 10 / intervalSize;
+        int nbIntervals = countFittingValues(node, TmfStateValue.nullValue(), 1, nodeFreeSpace / 10);
+        int intervalsSize = sizeOfValues(node, TmfStateValue.nullValue(), nbIntervals, 1);
         long start = fillValues(ht, TmfStateValue.nullValue(), nbIntervals, 1);
-        assertEquals(nodeFreeSpace - nbIntervals * intervalSize , node.getNodeFreeSpace());
+        assertEquals(nodeFreeSpace - intervalsSize, node.getNodeFreeSpace());
 
         /* Add integer intervals up to ~20% */
         nodeFreeSpace = node.getNodeFreeSpace();
-        intervalSize = INT_INTERVAL.getSizeOnDisk();
-        nbIntervals = nodeFreeSpace / 10 / intervalSize;
+        nbIntervals = countFittingValues(node, INT_VALUE, start, nodeFreeSpace / 10);
+        intervalsSize = sizeOfValues(node, INT_VALUE, nbIntervals, start);
         start = fillValues(ht, INT_VALUE, nbIntervals, start);
-        assertEquals(nodeFreeSpace - nbIntervals * intervalSize , node.getNodeFreeSpace());
+        assertEquals(nodeFreeSpace - intervalsSize, node.getNodeFreeSpace());
 
         /* Add long intervals up to ~30% */
         nodeFreeSpace = node.getNodeFreeSpace();
-        intervalSize = LONG_INTERVAL.getSizeOnDisk();
-        nbIntervals = nodeFreeSpace / 10 / intervalSize;
+        nbIntervals = countFittingValues(node, LONG_VALUE, start, nodeFreeSpace / 10);
+        intervalsSize = sizeOfValues(node, LONG_VALUE, nbIntervals, start);
         start = fillValues(ht, LONG_VALUE, nbIntervals, start);
-        assertEquals(nodeFreeSpace - nbIntervals * intervalSize , node.getNodeFreeSpace());
+        assertEquals(nodeFreeSpace - intervalsSize, node.getNodeFreeSpace());
 
         /* Add string intervals up to ~40% */
         nodeFreeSpace = node.getNodeFreeSpace();
-        intervalSize = STRING_INTERVAL.getSizeOnDisk();
-        nbIntervals = nodeFreeSpace / 10 / intervalSize;
+        nbIntervals = countFittingValues(node, STRING_VALUE, start, nodeFreeSpace / 10);
+        intervalsSize = sizeOfValues(node, STRING_VALUE, nbIntervals, start);
         start = fillValues(ht, STRING_VALUE, nbIntervals, start);
-        assertEquals(nodeFreeSpace - nbIntervals * intervalSize , node.getNodeFreeSpace());
+        assertEquals(nodeFreeSpace - intervalsSize, node.getNodeFreeSpace());
 
     }
 
@@ -202,7 +236,7 @@ public class HistoryTreeTest {
         /* Fill a first node */
         HTNode node = ht.getLatestLeaf();
         int nodeFreeSpace = node.getNodeFreeSpace();
-        int nbIntervals = nodeFreeSpace / (STRING_INTERVAL.getSizeOnDisk());
+        int nbIntervals = countFittingValues(node, STRING_VALUE, 1, nodeFreeSpace);
         long start = fillValues(ht, STRING_VALUE, nbIntervals, 1);
 
         /* Add intervals that should add a sibling to the node */
@@ -215,7 +249,7 @@ public class HistoryTreeTest {
         /* Fill the latest leaf node (2nd child) */
         node = ht.getLatestLeaf();
         nodeFreeSpace = node.getNodeFreeSpace();
-        nbIntervals = nodeFreeSpace / (STRING_INTERVAL.getSizeOnDisk());
+        nbIntervals = countFittingValues(node, STRING_VALUE, start, nodeFreeSpace);
         start = fillValues(ht, STRING_VALUE, nbIntervals, start);
 
         /*
@@ -228,7 +262,7 @@ public class HistoryTreeTest {
         /* Fill the latest leaf node (3rd and last child) */
         node = ht.getLatestLeaf();
         nodeFreeSpace = node.getNodeFreeSpace();
-        nbIntervals = nodeFreeSpace / (STRING_INTERVAL.getSizeOnDisk());
+        nbIntervals = countFittingValues(node, STRING_VALUE, start, nodeFreeSpace);
         start = fillValues(ht, STRING_VALUE, nbIntervals, start);
 
         /* The new node created here should generate a new branch */
@@ -320,4 +354,50 @@ public class HistoryTreeTest {
         assertEquals( 5, branch.get(2).getSequenceNumber());
         assertEquals( 4, branch.get(2).getParentSequenceNumber());
     }
+
+    /**
+     * Test that the node cache is bounded by its configured size and that it
+     * records its hits, misses and evictions.
+     *
+     * @throws ClosedChannelException
+     *             If the test fails
+     */
+    @Test
+    public void testNodeCache() throws ClosedChannelException {
+        File newFile = fTempFile;
+        assertNotNull(newFile);
+        /* The cache can only hold one node */
+        HistoryTreeStub ht = setupSmallTree(new HTConfig(newFile,
+                BLOCK_SIZE,
+                2, /* Number of children */
+                1, /* Provider version */
+                1, /* Start time */
+                BLOCK_SIZE)); /* Cache size */
+
+        /* Create three branches, so that nodes 0 to 2 are written to disk */
+        long start = 1;
+        start = fillNextLeafNode(ht, start);
+        start = fillValues(ht, STRING_VALUE, 1, start);
+        start = fillNextLeafNode(ht, start);
+        start = fillValues(ht, STRING_VALUE, 1, start);
+        start = fillNextLeafNode(ht, start);
+        assertEquals(6, ht.getNodeCount());
+
+        /* Reading the same node twice in a row hits the cache */
+        ht.readNode(0);
+        CacheStats before = ht.getNodeCacheStats();
+        assertEquals(0, ht.readNode(0).getSequenceNumber());
+        CacheStats delta = ht.getNodeCacheStats().minus(before);
+        assertEquals(1, delta.hitCount());
+        assertEquals(0, delta.missCount());
+
+        /* Reading another node evicts the previous one */
+        before = ht.getNodeCacheStats();
+        assertEquals(1, ht.readNode(1).getSequenceNumber());
+        assertEquals(0, ht.readNode(0).getSequenceNumber());
+        delta = ht.getNodeCacheStats().minus(before);
+        assertEquals(0, delta.hitCount());
+        assertEquals(2, delta.missCount());
+        assertEquals(2, delta.evictionCount());
+    }
 }
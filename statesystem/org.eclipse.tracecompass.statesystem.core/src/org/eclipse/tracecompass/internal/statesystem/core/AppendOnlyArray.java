@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.statesystem.core;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Array of elements that can only grow, to which one thread at a time can
+ * append elements while any number of threads read it without locking.
+ *
+ * The elements are never moved once they are visible: appending an element
+ * first writes it in the array, growing it into a copy if needed, then
+ * publishes the new size. A reader that sees a given size thus sees all the
+ * elements below it.
+ *
+ * @param <E>
+ *            The type of elements
+ */
+final class AppendOnlyArray<E> {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private volatile Object[] fElements = new Object[INITIAL_CAPACITY];
+    private volatile int fSize = 0;
+
+    /**
+     * Append an element. The callers must make sure that only one thread at a
+     * time appends elements.
+     *
+     * @param element
+     *            The element to append
+     */
+    public void add(E element) {
+        int size = fSize;
+        Object[] elements = fElements;
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size * 2);
+            fElements = elements;
+        }
+        elements[size] = element;
+        fSize = size + 1;
+    }
+
+    /**
+     * Get the element at an index
+     *
+     * @param index
+     *            The index of the element
+     * @return The element
+     * @throws IndexOutOfBoundsException
+     *             If the index is out of range
+     */
+    public E get(int index) {
+        /* The size must be read before the array */
+        int size = fSize;
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        @SuppressWarnings("unchecked")
+        E element = (E) fElements[index];
+        return element;
+    }
+
+    /**
+     * Get the number of elements
+     *
+     * @return The number of elements
+     */
+    public int size() {
+        return fSize;
+    }
+
+    /**
+     * Get an unmodifiable view of the elements appended so far. The view does
+     * not change when more elements are appended.
+     *
+     * @return The elements
+     */
+    public List<E> snapshot() {
+        int size = fSize;
+        return new Snapshot<>(fElements, size);
+    }
+
+    private static final class Snapshot<E> extends AbstractList<E> implements RandomAccess {
+        private final Object[] fElements;
+        private final int fSize;
+
+        public Snapshot(Object[] elements, int size) {
+            fElements = elements;
+            fSize = size;
+        }
+
+        @Override
+        public E get(int index) {
+            if (index < 0 || index >= fSize) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + fSize); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            @SuppressWarnings("unchecked")
+            E element = (E) fElements[index];
+            return element;
+        }
+
+        @Override
+        public int size() {
+            return fSize;
+        }
+    }
+}
@@ -18,16 +18,13 @@ import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 import static org.eclipse.tracecompass.statesystem.core.ITmfStateSystem.INVALID_ATTRIBUTE;
 
 import java.io.PrintWriter;
-import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 
-import com.google.common.collect.ImmutableList;
-
 /**
  * An Attribute is a "node" in the Attribute Tree. It represents a smallest
  * unit of the model which can be in a particular state at a given time.
@@ -35,6 +32,9 @@ import com.google.common.collect.ImmutableList;
  * It is abstract, as different implementations can provide different ways to
  * access sub-attributes
  *
+ * The sub-attributes can be read by any thread without locking, while one
+ * thread at a time adds new ones.
+ *
  * @author Alexandre Montplaisir
  *
  */
@@ -47,6 +47,9 @@ public final class Attribute {
     /** The sub-attributes (<basename, attribute>) of this attribute */
     private final Map<String, Attribute> subAttributes;
 
+    /** The sub-attributes of this attribute, in the order they were added */
+    private final AppendOnlyArray<Attribute> orderedSubAttributes;
+
     /**
      * Constructor
      *
@@ -62,7 +65,8 @@ public final class Attribute {
         this.parent = parent;
         this.quark = quark;
         this.name = name;
-        this.subAttributes = Collections.synchronizedMap(new LinkedHashMap<String, Attribute>());
+        this.subAttributes = new ConcurrentHashMap<>();
+        this.orderedSubAttributes = new AppendOnlyArray<>();
     }
 
     // ------------------------------------------------------------------------
@@ -88,12 +92,13 @@ public final class Attribute {
     }
 
     /**
-     * Get the list of child attributes below this one.
+     * Get the list of child attributes below this one. The list does not
+     * change if children are added afterwards.
      *
      * @return The child attributes.
      */
     public Iterable<Attribute> getSubAttributes() {
-        return ImmutableList.copyOf(subAttributes.values());
+        return orderedSubAttributes.snapshot();
     }
 
     /**
@@ -158,7 +163,8 @@ public final class Attribute {
     /* The methods how to access children are left to derived classes */
 
     /**
-     * Add a sub-attribute to this attribute
+     * Add a sub-attribute to this attribute. Only one thread at a time may add
+     * sub-attributes.
      *
      * @param newSubAttribute The new attribute to add
      */
@@ -166,6 +172,7 @@ public final class Attribute {
         if (newSubAttribute == null) {
             throw new IllegalArgumentException();
         }
+        orderedSubAttributes.add(newSubAttribute);
         subAttributes.put(newSubAttribute.getName(), newSubAttribute);
     }
 
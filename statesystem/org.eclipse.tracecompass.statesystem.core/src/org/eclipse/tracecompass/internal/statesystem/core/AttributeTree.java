@@ -39,6 +39,11 @@ import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
  * Each node of this tree is both like a file and a directory in the
  * "file system".
  *
+ * Once added, attributes are never removed or changed, so the tree can be read
+ * by any number of threads without locking. Only the addition of attributes is
+ * synchronized on the tree, and an attribute becomes visible to the readers
+ * only once the state system has an entry for it.
+ *
  * @author alexmont
  *
  */
@@ -48,7 +53,7 @@ public final class AttributeTree {
     private static final int ATTRIB_TREE_MAGIC_NUMBER = 0x06EC3671;
 
     private final StateSystem ss;
-    private final List<Attribute> attributeList;
+    private final AppendOnlyArray<Attribute> attributeList;
     private final Attribute attributeTreeRoot;
 
     /**
@@ -59,7 +64,7 @@ public final class AttributeTree {
      */
     public AttributeTree(StateSystem ss) {
         this.ss = ss;
-        this.attributeList = new ArrayList<>();
+        this.attributeList = new AppendOnlyArray<>();
         this.attributeTreeRoot = new Attribute(null, "root", ROOT_ATTRIBUTE); //$NON-NLS-1$
     }
 
@@ -122,8 +127,9 @@ public final class AttributeTree {
                 oos.writeInt(ATTRIB_TREE_MAGIC_NUMBER);
 
                 /* Compute the serialized list of attributes and write it */
-                List<String[]> list = new ArrayList<>(attributeList.size());
-                for (Attribute entry : this.attributeList) {
+                List<Attribute> attributes = attributeList.snapshot();
+                List<String[]> list = new ArrayList<>(attributes.size());
+                for (Attribute entry : attributes) {
                     list.add(entry.getFullAttribute());
                 }
                 oos.writeObject(list);
@@ -141,7 +147,7 @@ public final class AttributeTree {
      *
      * @return The current number of attributes in the tree
      */
-    public synchronized int getNbAttributes() {
+    public int getNbAttributes() {
         return attributeList.size();
     }
 
@@ -162,7 +168,7 @@ public final class AttributeTree {
      * @throws IndexOutOfBoundsException
      *             If the starting node quark is out of range
      */
-    public synchronized int getQuarkDontAdd(int startingNodeQuark, String... subPath) {
+    public int getQuarkDontAdd(int startingNodeQuark, String... subPath) {
         Attribute prevNode;
 
         /* If subPath is empty, simply return the starting quark */
@@ -195,11 +201,7 @@ public final class AttributeTree {
      * @throws IndexOutOfBoundsException
      *             If the starting node quark is out of range
      */
-    public synchronized int getQuarkAndAdd(int startingNodeQuark, String... subPath) {
-        // FIXME synchronized here is probably quite costly... maybe only locking
-        // the "for" would be enough?
-
-        Attribute nextNode = null;
+    public int getQuarkAndAdd(int startingNodeQuark, String... subPath) {
         Attribute prevNode;
 
         /* Get the "starting node" */
@@ -209,30 +211,35 @@ public final class AttributeTree {
             prevNode = attributeList.get(startingNodeQuark);
         }
 
+        /* Most of the time, the attribute already exists: no need to lock */
         int knownQuark = prevNode.getSubAttributeQuark(subPath);
-        if (knownQuark == INVALID_ATTRIBUTE) {
+        if (knownQuark != INVALID_ATTRIBUTE) {
+            return knownQuark;
+        }
+
+        synchronized (this) {
             /*
              * The attribute was not in the table previously, and we want to add
-             * it
+             * it. Another thread may have added part of the path in the
+             * meantime.
              */
             for (String curDirectory : subPath) {
-                nextNode = prevNode.getSubAttributeNode(curDirectory);
+                Attribute nextNode = prevNode.getSubAttributeNode(curDirectory);
                 if (nextNode == null) {
                     /* This is where we need to start adding */
                     nextNode = new Attribute(prevNode, checkNotNull(curDirectory), attributeList.size());
-                    prevNode.addSubAttribute(nextNode);
-                    attributeList.add(nextNode);
+                    /*
+                     * Add the state system entry first, so that the readers
+                     * that see the new attribute can query its state.
+                     */
                     ss.addEmptyAttribute();
+                    attributeList.add(nextNode);
+                    prevNode.addSubAttribute(nextNode);
                 }
                 prevNode = nextNode;
             }
-            return attributeList.size() - 1;
+            return prevNode.getQuark();
         }
-        /*
-         * The attribute was already existing, return the quark of that
-         * attribute
-         */
-        return knownQuark;
     }
 
     /**
@@ -248,7 +255,7 @@ public final class AttributeTree {
      * @throws IndexOutOfBoundsException
      *             If the attribute quark is out of range
      */
-    public synchronized @NonNull List<@NonNull Integer> getSubAttributes(int attributeQuark, boolean recursive) {
+    public @NonNull List<@NonNull Integer> getSubAttributes(int attributeQuark, boolean recursive) {
         List<@NonNull Integer> listOfChildren = new ArrayList<>();
         Attribute startingAttribute;
 
@@ -276,7 +283,7 @@ public final class AttributeTree {
      * @throws IndexOutOfBoundsException
      *             If the quark is out of range
      */
-    public synchronized int getParentAttributeQuark(int quark) {
+    public int getParentAttributeQuark(int quark) {
         if (quark == ROOT_ATTRIBUTE) {
             return quark;
         }
@@ -302,7 +309,7 @@ public final class AttributeTree {
      * @throws IndexOutOfBoundsException
      *             If the quark is out of range
      */
-    public synchronized @NonNull String getAttributeName(int quark) {
+    public @NonNull String getAttributeName(int quark) {
         return attributeList.get(quark).getName();
     }
 
@@ -315,7 +322,7 @@ public final class AttributeTree {
      * @throws IndexOutOfBoundsException
      *             If the quark is out of range
      */
-    public synchronized @NonNull String getFullAttributeName(int quark) {
+    public @NonNull String getFullAttributeName(int quark) {
         return attributeList.get(quark).getFullAttributeName();
     }
 
@@ -329,7 +336,7 @@ public final class AttributeTree {
      * @throws IndexOutOfBoundsException
      *             If the quark is out of range
      */
-    public synchronized String @NonNull [] getFullAttributePathArray(int quark) {
+    public String @NonNull [] getFullAttributePathArray(int quark) {
         return attributeList.get(quark).getFullAttribute();
     }
 
@@ -339,7 +346,7 @@ public final class AttributeTree {
      * @param writer
      *            The writer where to print the output
      */
-    public synchronized void debugPrint(PrintWriter writer) {
+    public void debugPrint(PrintWriter writer) {
         attributeTreeRoot.debugPrint(writer);
     }
 
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.statesystem.core;
+
+import static org.eclipse.tracecompass.statesystem.core.ITmfStateSystem.INVALID_ATTRIBUTE;
+
+import java.util.Arrays;
+
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+
+/**
+ * Map of quarks by long key, with open addressing in primitive arrays so that
+ * neither the lookups nor the insertions box the keys. The quarks are never
+ * removed, since the attributes of a state system are never removed either.
+ *
+ * This class is not thread-safe.
+ */
+final class QuarkCache {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] fKeys = new long[INITIAL_CAPACITY];
+    private int[] fQuarks = newQuarks(INITIAL_CAPACITY);
+    private int fSize = 0;
+
+    /**
+     * Get the quark of a key
+     *
+     * @param key
+     *            The key
+     * @return The quark, or {@link ITmfStateSystem#INVALID_ATTRIBUTE} if the
+     *         key is not in the cache
+     */
+    public int get(long key) {
+        int mask = fKeys.length - 1;
+        int index = hash(key) & mask;
+        while (fQuarks[index] != INVALID_ATTRIBUTE) {
+            if (fKeys[index] == key) {
+                return fQuarks[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return INVALID_ATTRIBUTE;
+    }
+
+    /**
+     * Add the quark of a key that is not in the cache yet
+     *
+     * @param key
+     *            The key
+     * @param quark
+     *            The quark, which must be valid
+     */
+    public void put(long key, int quark) {
+        /* Keep the load factor under 1/2 */
+        if (2 * (fSize + 1) > fKeys.length) {
+            long[] keys = fKeys;
+            int[] quarks = fQuarks;
+            fKeys = new long[keys.length * 2];
+            fQuarks = newQuarks(keys.length * 2);
+            for (int i = 0; i < keys.length; i++) {
+                if (quarks[i] != INVALID_ATTRIBUTE) {
+                    insert(keys[i], quarks[i]);
+                }
+            }
+        }
+        insert(key, quark);
+        fSize++;
+    }
+
+    private void insert(long key, int quark) {
+        int mask = fKeys.length - 1;
+        int index = hash(key) & mask;
+        while (fQuarks[index] != INVALID_ATTRIBUTE) {
+            index = (index + 1) & mask;
+        }
+        fKeys[index] = key;
+        fQuarks[index] = quark;
+    }
+
+    private static int[] newQuarks(int capacity) {
+        int[] quarks = new int[capacity];
+        Arrays.fill(quarks, INVALID_ATTRIBUTE);
+        return quarks;
+    }
+
+    /* Spread the keys, which are often small consecutive numbers */
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -20,14 +20,20 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.statesystem.core.AttributePathTemplate;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSnapshot;
 import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
@@ -68,7 +74,10 @@ public class StateSystem implements ITmfStateSystemBuilder {
     private final CountDownLatch finishedLatch = new CountDownLatch(1);
 
     private boolean buildCancelled = false;
-    private boolean isDisposed = false;
+    private volatile boolean isDisposed = false;
+
+    /* Caches of the quarks of the path templates, by template identity */
+    private final Map<AttributePathTemplate, QuarkCache> quarkCaches = new ConcurrentHashMap<>();
 
     /**
      * New-file constructor. For when you build a state system with a new file,
@@ -109,6 +118,25 @@ public class StateSystem implements ITmfStateSystemBuilder {
         }
     }
 
+    /**
+     * Constructor to resume building a history. The state system has the
+     * attributes of the snapshot, and their ongoing states. The back-end should
+     * already have the intervals that ended before the snapshot.
+     *
+     * @param backend
+     *            Back-end plugin to use
+     * @param snapshot
+     *            The snapshot of the history to resume
+     */
+    public StateSystem(@NonNull IStateHistoryBackend backend, @NonNull StateSnapshot snapshot) {
+        this(backend);
+        for (int quark = 0; quark < snapshot.getNbAttributes(); quark++) {
+            /* The parents come first, so the quarks are the same */
+            getQuarkAbsoluteAndAdd(snapshot.getAttributePath(quark));
+        }
+        transState.replaceOngoingState(snapshot.getOngoingStates());
+    }
+
     @Override
     public String getSSID() {
         return backend.getSSID();
@@ -259,6 +287,19 @@ public class StateSystem implements ITmfStateSystemBuilder {
         return getAttributeTree().getQuarkAndAdd(ROOT_ATTRIBUTE, attribute);
     }
 
+    @Override
+    public int getQuarkAbsoluteAndAdd(AttributePathTemplate template, long key) {
+        QuarkCache cache = quarkCaches.computeIfAbsent(template, t -> new QuarkCache());
+        synchronized (cache) {
+            int quark = cache.get(key);
+            if (quark == INVALID_ATTRIBUTE) {
+                quark = getAttributeTree().getQuarkAndAdd(ROOT_ATTRIBUTE, template.getPath(key));
+                cache.put(key, quark);
+            }
+            return quark;
+        }
+    }
+
     @Override
     public int getQuarkRelative(int startingNodeQuark, String... subPath)
             throws AttributeNotFoundException {
@@ -368,6 +409,24 @@ public class StateSystem implements ITmfStateSystemBuilder {
         transState.processStateChange(t, value, attributeQuark);
     }
 
+    @Override
+    public void modifyAttribute(long t, int value, int attributeQuark)
+            throws TimeRangeException, StateValueTypeException {
+        transState.processStateChange(t, value, attributeQuark);
+    }
+
+    @Override
+    public void modifyAttribute(long t, long value, int attributeQuark)
+            throws TimeRangeException, StateValueTypeException {
+        transState.processStateChange(t, value, attributeQuark);
+    }
+
+    @Override
+    public void modifyAttribute(long t, double value, int attributeQuark)
+            throws TimeRangeException, StateValueTypeException {
+        transState.processStateChange(t, value, attributeQuark);
+    }
+
     @Deprecated
     @Override
     public void incrementAttribute(long t, int attributeQuark)
@@ -378,8 +437,7 @@ public class StateSystem implements ITmfStateSystemBuilder {
         if (!stateValue.isNull()) {
             prevValue = stateValue.unboxInt();
         }
-        modifyAttribute(t, TmfStateValue.newValueInt(prevValue + 1),
-                attributeQuark);
+        modifyAttribute(t, prevValue + 1, attributeQuark);
     }
 
     @Override
@@ -415,7 +473,7 @@ public class StateSystem implements ITmfStateSystemBuilder {
         stackDepth++;
         subAttributeQuark = getQuarkRelativeAndAdd(attributeQuark, String.valueOf(stackDepth));
 
-        modifyAttribute(t, TmfStateValue.newValueInt(stackDepth), attributeQuark);
+        modifyAttribute(t, stackDepth, attributeQuark);
         modifyAttribute(t, value, subAttributeQuark);
     }
 
@@ -538,7 +596,7 @@ public class StateSystem implements ITmfStateSystemBuilder {
     //--------------------------------------------------------------------------
 
     @Override
-    public synchronized List<ITmfStateInterval> queryFullState(long t)
+    public List<ITmfStateInterval> queryFullState(long t)
             throws TimeRangeException, StateSystemDisposedException {
         if (isDisposed) {
             throw new StateSystemDisposedException();
@@ -600,6 +658,48 @@ public class StateSystem implements ITmfStateSystemBuilder {
         return ret;
     }
 
+    @Override
+    public Iterable<@NonNull ITmfStateInterval> query2D(Collection<@NonNull Integer> quarks, long start, long end)
+            throws TimeRangeException, StateSystemDisposedException {
+        if (isDisposed) {
+            throw new StateSystemDisposedException();
+        }
+        if (end < start) {
+            throw new TimeRangeException(getSSID() + " Start:" + start + ", End:" + end); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        if (!transState.isActive()) {
+            /* Everything is in the backend, let it stream the intervals */
+            return backend.query2D(quarks, start, end);
+        }
+
+        /*
+         * If we are currently building the history, the ongoing states are not
+         * yet in the backend. Take them first, then skip those that got
+         * inserted in the backend in the meantime (same attribute and start
+         * time).
+         */
+        Map<Integer, ITmfStateInterval> ongoing = new HashMap<>();
+        for (Integer quark : quarks) {
+            /* Returns null if the ongoing state starts after the range */
+            ITmfStateInterval interval = transState.getIntervalAt(end, quark);
+            if (interval != null) {
+                ongoing.put(quark, interval);
+            }
+        }
+
+        List<@NonNull ITmfStateInterval> ret = new ArrayList<>();
+        for (ITmfStateInterval interval : backend.query2D(quarks, start, end)) {
+            ITmfStateInterval ongoingInterval = ongoing.get(interval.getAttribute());
+            if (ongoingInterval != null && ongoingInterval.getStartTime() == interval.getStartTime()) {
+                ongoing.remove(interval.getAttribute());
+            }
+            ret.add(interval);
+        }
+        ret.addAll(ongoing.values());
+        return ret;
+    }
+
     //--------------------------------------------------------------------------
     //        Debug methods
     //--------------------------------------------------------------------------
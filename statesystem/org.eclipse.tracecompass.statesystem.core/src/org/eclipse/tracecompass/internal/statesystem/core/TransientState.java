@@ -16,8 +16,9 @@
 package org.eclipse.tracecompass.internal.statesystem.core;
 
 import java.io.PrintWriter;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
@@ -41,11 +42,23 @@ import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
  * of the interval will be the recorded time we have here, and the "end time"
  * will be the timestamp of the new state-changing event we just read.
  *
+ * The ongoing states are kept in primitive arrays, indexed by quark: the
+ * integer, long and double values are stored as long bits along with their
+ * type, so that changing the state of an attribute does not allocate any
+ * object. The state value objects are only created when they are needed, for
+ * example to insert an interval in the back-end or to answer a query, and are
+ * then kept until the value changes. The string and custom values are kept as
+ * objects.
+ *
  * @author Alexandre Montplaisir
  */
 @NonNullByDefault
 public class TransientState {
 
+    private static final int INITIAL_CAPACITY = 64;
+    private static final Type[] TYPES = Type.values();
+    private static final byte NULL_TYPE = (byte) Type.NULL.ordinal();
+
     /* Indicates where to insert state changes that we generate */
     private final IStateHistoryBackend fBackend;
 
@@ -55,9 +68,18 @@ public class TransientState {
     private volatile long fLatestTime;
 
     /* A method accessing these arrays will have to go through the lock */
-    private List<ITmfStateValue> fOngoingStateInfo;
-    private List<Long> fOngoingStateStartTimes;
-    private List<Type> fStateValueTypes;
+    private int fSize = 0;
+    /* Start time of the ongoing state of each attribute */
+    private long[] fOngoingStartTimes;
+    /* Type of the ongoing value of each attribute, as the ordinal of its Type */
+    private byte[] fOngoingTypes;
+    /* Bits of the ongoing integer, long and double values */
+    private long[] fOngoingBits;
+    /* Ongoing value objects, always set for strings and custom values, and
+     * cached for the other types once they are read */
+    private @Nullable ITmfStateValue[] fOngoingValues;
+    /* Type of the values that an attribute accepts, NULL if not known yet */
+    private byte[] fStateValueTypes;
 
     /**
      * Constructor
@@ -68,9 +90,11 @@ public class TransientState {
     public TransientState(IStateHistoryBackend backend) {
         fBackend = backend;
         fIsActive = true;
-        fOngoingStateInfo = new ArrayList<>();
-        fOngoingStateStartTimes = new ArrayList<>();
-        fStateValueTypes = new ArrayList<>();
+        fOngoingStartTimes = new long[INITIAL_CAPACITY];
+        fOngoingTypes = new byte[INITIAL_CAPACITY];
+        fOngoingBits = new long[INITIAL_CAPACITY];
+        fOngoingValues = new @Nullable ITmfStateValue[INITIAL_CAPACITY];
+        fStateValueTypes = new byte[INITIAL_CAPACITY];
 
         fLatestTime = backend.getStartTime();
     }
@@ -96,7 +120,8 @@ public class TransientState {
     public ITmfStateValue getOngoingStateValue(int quark) {
         fRWLock.readLock().lock();
         try {
-            return fOngoingStateInfo.get(quark);
+            checkQuark(quark);
+            return getValue(quark);
         } finally {
             fRWLock.readLock().unlock();
         }
@@ -114,7 +139,8 @@ public class TransientState {
     public long getOngoingStartTime(int quark) {
         fRWLock.readLock().lock();
         try {
-            return fOngoingStateStartTimes.get(quark);
+            checkQuark(quark);
+            return fOngoingStartTimes[quark];
         } finally {
             fRWLock.readLock().unlock();
         }
@@ -134,7 +160,8 @@ public class TransientState {
     public void changeOngoingStateValue(int quark, ITmfStateValue newValue) {
         fRWLock.writeLock().lock();
         try {
-            fOngoingStateInfo.set(quark, newValue);
+            checkQuark(quark);
+            setValue(quark, newValue.getType(), getBits(newValue), newValue);
         } finally {
             fRWLock.writeLock().unlock();
         }
@@ -154,8 +181,9 @@ public class TransientState {
     public ITmfStateInterval getOngoingInterval(int quark) {
         fRWLock.readLock().lock();
         try {
-            return new TmfStateInterval(fOngoingStateStartTimes.get(quark), fLatestTime,
-                    quark, fOngoingStateInfo.get(quark));
+            checkQuark(quark);
+            return new TmfStateInterval(fOngoingStartTimes[quark], fLatestTime,
+                    quark, getValue(quark));
         } finally {
             fRWLock.readLock().unlock();
         }
@@ -176,13 +204,21 @@ public class TransientState {
      *             If the quark is out of range
      */
     public @Nullable ITmfStateInterval getIntervalAt(long time, int quark) {
+        /* Once the history is built, queries do not need the lock at all */
+        if (!isActive()) {
+            return null;
+        }
         fRWLock.readLock().lock();
         try {
-            if (!isActive() || time < fOngoingStateStartTimes.get(quark)) {
+            if (!isActive()) {
                 return null;
             }
-            return new TmfStateInterval(fOngoingStateStartTimes.get(quark),
-                    fLatestTime, quark, fOngoingStateInfo.get(quark));
+            checkQuark(quark);
+            if (time < fOngoingStartTimes[quark]) {
+                return null;
+            }
+            return new TmfStateInterval(fOngoingStartTimes[quark],
+                    fLatestTime, quark, getValue(quark));
         } finally {
             fRWLock.readLock().unlock();
         }
@@ -204,14 +240,14 @@ public class TransientState {
 
         fRWLock.writeLock().lock();
         try {
-            fOngoingStateInfo = new ArrayList<>(size);
-            fOngoingStateStartTimes = new ArrayList<>(size);
-            fStateValueTypes = new ArrayList<>(size);
-
+            fSize = 0;
+            ensureCapacity(size);
             for (ITmfStateInterval interval : newStateIntervals) {
-                fOngoingStateInfo.add(interval.getStateValue());
-                fOngoingStateStartTimes.add(interval.getStartTime());
-                fStateValueTypes.add(interval.getStateValue().getType());
+                ITmfStateValue value = interval.getStateValue();
+                fOngoingStartTimes[fSize] = interval.getStartTime();
+                fStateValueTypes[fSize] = (byte) value.getType().ordinal();
+                setValue(fSize, value.getType(), getBits(value), value);
+                fSize++;
             }
         } finally {
             fRWLock.writeLock().unlock();
@@ -232,10 +268,11 @@ public class TransientState {
              * covering for all timestamps). A null interval will then get added
              * at the first state change.
              */
-            fOngoingStateInfo.add(TmfStateValue.nullValue());
-            fStateValueTypes.add(Type.NULL);
-
-            fOngoingStateStartTimes.add(fBackend.getStartTime());
+            ensureCapacity(fSize + 1);
+            fOngoingStartTimes[fSize] = fBackend.getStartTime();
+            fStateValueTypes[fSize] = NULL_TYPE;
+            setValue(fSize, Type.NULL, 0, TmfStateValue.nullValue());
+            fSize++;
         } finally {
             fRWLock.writeLock().unlock();
         }
@@ -260,13 +297,89 @@ public class TransientState {
      */
     public void processStateChange(long eventTime, ITmfStateValue value, int quark)
             throws TimeRangeException, StateValueTypeException {
+        processStateChange(eventTime, value.getType(), getBits(value), value, quark);
+    }
+
+    /**
+     * Process a state change to an integer value, without creating a state
+     * value object unless it is needed.
+     *
+     * @param eventTime
+     *            The timestamp associated with this state change
+     * @param value
+     *            The new integer value of the attribute
+     * @param quark
+     *            The quark of the attribute that is being modified
+     * @throws TimeRangeException
+     *             If 'eventTime' is invalid
+     * @throws IndexOutOfBoundsException
+     *             If the quark is out of range
+     * @throws StateValueTypeException
+     *             If the attribute already has values of another type
+     */
+    public void processStateChange(long eventTime, int value, int quark)
+            throws TimeRangeException, StateValueTypeException {
+        processStateChange(eventTime, Type.INTEGER, value, null, quark);
+    }
+
+    /**
+     * Process a state change to a long value, without creating a state value
+     * object unless it is needed.
+     *
+     * @param eventTime
+     *            The timestamp associated with this state change
+     * @param value
+     *            The new long value of the attribute
+     * @param quark
+     *            The quark of the attribute that is being modified
+     * @throws TimeRangeException
+     *             If 'eventTime' is invalid
+     * @throws IndexOutOfBoundsException
+     *             If the quark is out of range
+     * @throws StateValueTypeException
+     *             If the attribute already has values of another type
+     */
+    public void processStateChange(long eventTime, long value, int quark)
+            throws TimeRangeException, StateValueTypeException {
+        processStateChange(eventTime, Type.LONG, value, null, quark);
+    }
+
+    /**
+     * Process a state change to a double value, without creating a state
+     * value object unless it is needed.
+     *
+     * @param eventTime
+     *            The timestamp associated with this state change
+     * @param value
+     *            The new double value of the attribute
+     * @param quark
+     *            The quark of the attribute that is being modified
+     * @throws TimeRangeException
+     *             If 'eventTime' is invalid
+     * @throws IndexOutOfBoundsException
+     *             If the quark is out of range
+     * @throws StateValueTypeException
+     *             If the attribute already has values of another type
+     */
+    public void processStateChange(long eventTime, double value, int quark)
+            throws TimeRangeException, StateValueTypeException {
+        processStateChange(eventTime, Type.DOUBLE, Double.doubleToLongBits(value), null, quark);
+    }
+
+    /*
+     * Common implementation of the state changes. The value object is required
+     * for strings and custom values, and optional for the other types.
+     */
+    private void processStateChange(long eventTime, Type type, long bits, @Nullable ITmfStateValue value, int quark)
+            throws TimeRangeException, StateValueTypeException {
         if (!this.fIsActive) {
             return;
         }
 
         fRWLock.writeLock().lock();
         try {
-            Type expectedSvType = fStateValueTypes.get(quark);
+            checkQuark(quark);
+            Type expectedSvType = TYPES[fStateValueTypes[quark]];
 
             /*
              * Make sure the state value type we're inserting is the same as the
@@ -277,17 +390,17 @@ public class TransientState {
                  * The value hasn't been used yet, set it to the value we're
                  * currently inserting (which might be null/-1 again).
                  */
-                fStateValueTypes.set(quark, value.getType());
-            } else if ((value.getType() != Type.NULL) && (value.getType() != expectedSvType)) {
+                fStateValueTypes[quark] = (byte) type.ordinal();
+            } else if ((type != Type.NULL) && (type != expectedSvType)) {
                 /*
                  * We authorize inserting null values in any type of attribute,
                  * but for every other types, it needs to match our
                  * expectations!
                  */
-                throw new StateValueTypeException(fBackend.getSSID() + " Quark:" + quark + ", Type:" + value.getType() + ", Expected:" + expectedSvType); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                throw new StateValueTypeException(fBackend.getSSID() + " Quark:" + quark + ", Type:" + type + ", Expected:" + expectedSvType); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
             }
 
-            if (fOngoingStateInfo.get(quark).equals(value)) {
+            if (isOngoingValue(quark, type, bits, value)) {
                 /*
                  * This is the case where the new value and the one already
                  * present in the Builder are the same. We do not need to create
@@ -296,19 +409,19 @@ public class TransientState {
                 return;
             }
 
-            if (fOngoingStateStartTimes.get(quark) < eventTime) {
+            if (fOngoingStartTimes[quark] < eventTime) {
                 /*
                  * These two conditions are necessary to create an interval and
                  * update ongoingStateInfo.
                  */
-                fBackend.insertPastState(fOngoingStateStartTimes.get(quark),
+                fBackend.insertPastState(fOngoingStartTimes[quark],
                         eventTime - 1, /* End Time */
                         quark, /* attribute quark */
-                        fOngoingStateInfo.get(quark)); /* StateValue */
+                        getValue(quark)); /* StateValue */
 
-                fOngoingStateStartTimes.set(quark, eventTime);
+                fOngoingStartTimes[quark] = eventTime;
             }
-            fOngoingStateInfo.set(quark, value);
+            setValue(quark, type, bits, value);
 
             /* Update the Transient State's lastestTime, if needed */
             if (fLatestTime < eventTime) {
@@ -335,7 +448,7 @@ public class TransientState {
             if (!this.fIsActive) {
                 return;
             }
-            if (stateInfo.size() > fOngoingStateInfo.size()) {
+            if (stateInfo.size() > fSize) {
                 throw new IllegalArgumentException();
             }
 
@@ -372,8 +485,8 @@ public class TransientState {
 
         fRWLock.writeLock().lock();
         try {
-            for (int i = 0; i < fOngoingStateInfo.size(); i++) {
-                if (fOngoingStateStartTimes.get(i) > endTime) {
+            for (int i = 0; i < fSize; i++) {
+                if (fOngoingStartTimes[i] > endTime) {
                     /*
                      * Handle the cases where trace end > timestamp of last
                      * state change. This can happen when inserting "future"
@@ -382,10 +495,10 @@ public class TransientState {
                     continue;
                 }
                 try {
-                    fBackend.insertPastState(fOngoingStateStartTimes.get(i),
+                    fBackend.insertPastState(fOngoingStartTimes[i],
                             endTime, /* End Time */
                             i, /* attribute quark */
-                            fOngoingStateInfo.get(i)); /* StateValue */
+                            getValue(i)); /* StateValue */
 
                 } catch (TimeRangeException e) {
                     /*
@@ -396,8 +509,8 @@ public class TransientState {
                 }
             }
 
-            fOngoingStateInfo.clear();
-            fOngoingStateStartTimes.clear();
+            fSize = 0;
+            Arrays.fill(fOngoingValues, null);
             this.fIsActive = false;
 
         } finally {
@@ -437,13 +550,113 @@ public class TransientState {
             return;
         }
         writer.println("\nAttribute\tStateValue\tValid since time"); //$NON-NLS-1$
-        for (int i = 0; i < fOngoingStateInfo.size(); i++) {
+        for (int i = 0; i < fSize; i++) {
             writer.format("%d\t\t", i); //$NON-NLS-1$
-            writer.print(fOngoingStateInfo.get(i).toString() + "\t\t"); //$NON-NLS-1$
-            writer.println(fOngoingStateStartTimes.get(i).toString());
+            writer.print(getValue(i).toString() + "\t\t"); //$NON-NLS-1$
+            writer.println(fOngoingStartTimes[i]);
         }
         writer.println('\n');
         return;
     }
 
+    // ------------------------------------------------------------------------
+    // Helpers, to be called with the lock held
+    // ------------------------------------------------------------------------
+
+    private void checkQuark(int quark) {
+        if (quark < 0 || quark >= fSize) {
+            throw new IndexOutOfBoundsException("Quark: " + quark + ", Size: " + fSize); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= fOngoingStartTimes.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, fOngoingStartTimes.length * 2);
+        fOngoingStartTimes = Arrays.copyOf(fOngoingStartTimes, newCapacity);
+        fOngoingTypes = Arrays.copyOf(fOngoingTypes, newCapacity);
+        fOngoingBits = Arrays.copyOf(fOngoingBits, newCapacity);
+        fOngoingValues = Arrays.copyOf(fOngoingValues, newCapacity);
+        fStateValueTypes = Arrays.copyOf(fStateValueTypes, newCapacity);
+    }
+
+    private void setValue(int quark, Type type, long bits, @Nullable ITmfStateValue value) {
+        fOngoingTypes[quark] = (byte) type.ordinal();
+        fOngoingBits[quark] = bits;
+        fOngoingValues[quark] = value;
+    }
+
+    private boolean isOngoingValue(int quark, Type type, long bits, @Nullable ITmfStateValue value) {
+        if (fOngoingTypes[quark] != type.ordinal()) {
+            return false;
+        }
+        switch (type) {
+        case INTEGER:
+        case LONG:
+        case DOUBLE:
+            return fOngoingBits[quark] == bits;
+        case NULL:
+            return true;
+        case STRING:
+        case CUSTOM:
+        default:
+            return Objects.equals(fOngoingValues[quark], value);
+        }
+    }
+
+    /*
+     * Get the ongoing value of an attribute, creating its object if it was set
+     * without one. The object is kept until the value changes, so that reading
+     * the same ongoing state again does not allocate.
+     *
+     * This can be called with the read lock only: concurrent readers would
+     * store equal objects, and the writers hold the write lock.
+     */
+    private ITmfStateValue getValue(int quark) {
+        ITmfStateValue value = fOngoingValues[quark];
+        if (value != null) {
+            return value;
+        }
+        long bits = fOngoingBits[quark];
+        switch (TYPES[fOngoingTypes[quark]]) {
+        case INTEGER:
+            value = TmfStateValue.newValueInt((int) bits);
+            break;
+        case LONG:
+            value = TmfStateValue.newValueLong(bits);
+            break;
+        case DOUBLE:
+            value = TmfStateValue.newValueDouble(Double.longBitsToDouble(bits));
+            break;
+        case NULL:
+        case STRING:
+        case CUSTOM:
+        default:
+            value = TmfStateValue.nullValue();
+            break;
+        }
+        fOngoingValues[quark] = value;
+        return value;
+    }
+
+    /*
+     * Get the bits of an integer, long or double value, as stored in the
+     * ongoing state arrays
+     */
+    private static long getBits(ITmfStateValue value) {
+        switch (value.getType()) {
+        case INTEGER:
+            return value.unboxInt();
+        case LONG:
+            return value.unboxLong();
+        case DOUBLE:
+            return Double.doubleToLongBits(value.unboxDouble());
+        case NULL:
+        case STRING:
+        case CUSTOM:
+        default:
+            return 0;
+        }
+    }
 }
@@ -17,10 +17,14 @@ package org.eclipse.tracecompass.internal.statesystem.core.backend;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NavigableSet;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -184,6 +188,32 @@ public class InMemoryBackend implements IStateHistoryBackend {
         return null;
     }
 
+    @Override
+    public Iterable<@NonNull ITmfStateInterval> query2D(Collection<@NonNull Integer> quarks, long start, long end)
+            throws TimeRangeException {
+        if (end < start) {
+            throw new TimeRangeException(ssid + " Start:" + start + ", End:" + end); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        Set<Integer> quarkSet = new HashSet<>(quarks);
+        List<@NonNull ITmfStateInterval> ret = new ArrayList<>();
+
+        /*
+         * Skip the intervals that end before the range with a binary search,
+         * then the remaining ones only need their start time and attribute
+         * checked.
+         */
+        synchronized (intervals) {
+            Iterator<ITmfStateInterval> iter = searchforEndTime(intervals, start);
+            while (iter.hasNext()) {
+                ITmfStateInterval entry = iter.next();
+                if (entry.getStartTime() <= end && quarkSet.contains(entry.getAttribute())) {
+                    ret.add(entry);
+                }
+            }
+        }
+        return ret;
+    }
+
     private boolean checkValidTime(long t) {
         if (t >= startTime && t <= latestTime) {
             return true;
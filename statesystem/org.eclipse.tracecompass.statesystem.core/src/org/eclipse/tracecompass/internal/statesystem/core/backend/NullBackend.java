@@ -15,6 +15,8 @@ package org.eclipse.tracecompass.internal.statesystem.core.backend;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.PrintWriter;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNull;
@@ -118,6 +120,17 @@ public class NullBackend implements IStateHistoryBackend {
         return null;
     }
 
+    /**
+     * Null back-ends cannot run queries. An empty iterable will be returned.
+     *
+     * @return Always returns an empty iterable.
+     */
+    @Override
+    public Iterable<@NonNull ITmfStateInterval> query2D(Collection<@NonNull Integer> quarks, long start, long end) {
+        /* Cannot do past queries */
+        return Collections.emptyList();
+    }
+
     @Override
     public void debugPrint(PrintWriter writer) {
         writer.println("Null history backend"); //$NON-NLS-1$
@@ -14,7 +14,9 @@
 package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
@@ -41,6 +43,12 @@ public final class CoreNode extends HTNode {
     /** Start times of each of the children (size = MAX_NB_CHILDREN) */
     private long[] childStart;
 
+    /**
+     * End times of each of the children (size = MAX_NB_CHILDREN), only kept
+     * in the overlapping layout. The ongoing children end at Long.MAX_VALUE.
+     */
+    private long[] childEnd;
+
     /** Seq number of this node's extension. -1 if none */
     private volatile int extension = -1;
 
@@ -76,6 +84,7 @@ public final class CoreNode extends HTNode {
          */
         this.children = new int[size];
         this.childStart = new long[size];
+        this.childEnd = new long[config.isOverlapping() ? size : 0];
     }
 
     @Override
@@ -100,6 +109,11 @@ public final class CoreNode extends HTNode {
         for (int i = nbChildren; i < size; i++) {
             buffer.getLong();
         }
+
+        this.childEnd = new long[getConfig().isOverlapping() ? size : 0];
+        for (int i = 0; i < childEnd.length; i++) {
+            childEnd[i] = buffer.getLong();
+        }
     }
 
     @Override
@@ -124,6 +138,11 @@ public final class CoreNode extends HTNode {
         for (int i = nbChildren; i < size; i++) {
             buffer.putLong(0);
         }
+
+        /* Write the "children's end times" array, in the overlapping layout */
+        for (int i = 0; i < childEnd.length; i++) {
+            buffer.putLong(i < nbChildren ? childEnd[i] : 0);
+        }
     }
 
     /**
@@ -197,6 +216,41 @@ public final class CoreNode extends HTNode {
         }
     }
 
+    /**
+     * Get the sequence numbers of the children whose time range intersects
+     * [t1, t2]. A child's range goes from its start time to the start time of
+     * the next child, minus one. The latest child's range is only bounded by
+     * this node's own end. In the overlapping layout, a child's range goes
+     * from its start time to its own end time instead, so the ranges of
+     * several children can contain the same timestamp.
+     *
+     * @param t1
+     *            The start of the time range
+     * @param t2
+     *            The end of the time range
+     * @return The sequence numbers of the intersecting children, in order
+     */
+    public List<Integer> selectChildren(long t1, long t2) {
+        rwl.readLock().lock();
+        try {
+            List<Integer> selected = new ArrayList<>();
+            boolean overlapping = getConfig().isOverlapping();
+            for (int i = 0; i < nbChildren; i++) {
+                if (childStart[i] > t2) {
+                    /* Children are sorted by start time, we are done */
+                    break;
+                }
+                if (overlapping ? childEnd[i] >= t1 :
+                        (i + 1 == nbChildren || childStart[i + 1] - 1 >= t1)) {
+                    selected.add(children[i]);
+                }
+            }
+            return selected;
+        } finally {
+            rwl.readLock().unlock();
+        }
+    }
+
     /**
      * Get the sequence number of the extension to this node (if there is one).
      *
@@ -220,6 +274,9 @@ public final class CoreNode extends HTNode {
 
             children[nbChildren] = childNode.getSequenceNumber();
             childStart[nbChildren] = childNode.getNodeStart();
+            if (childEnd.length > 0) {
+                childEnd[nbChildren] = Long.MAX_VALUE;
+            }
             nbChildren++;
 
         } finally {
@@ -227,6 +284,25 @@ public final class CoreNode extends HTNode {
         }
     }
 
+    /**
+     * Set the end time of the latest child, once it is closed. Only the
+     * overlapping layout keeps the end times of the children, this does
+     * nothing in the classic layout.
+     *
+     * @param endTime
+     *            The end time of the latest child
+     */
+    public void closeLatestChild(long endTime) {
+        rwl.writeLock().lock();
+        try {
+            if (childEnd.length > 0 && nbChildren > 0) {
+                childEnd[nbChildren - 1] = endTime;
+            }
+        } finally {
+            rwl.writeLock().unlock();
+        }
+    }
+
     @Override
     public NodeType getNodeType() {
         return NodeType.CORE;
@@ -243,7 +319,10 @@ public final class CoreNode extends HTNode {
                 + SIZE_INT * maxChildren
 
                 /* MAX_NB * Timevalue ('childStart' table) */
-                + SIZE_LONG * maxChildren;
+                + SIZE_LONG * maxChildren
+
+                /* MAX_NB * Timevalue ('childEnd' table), if overlapping */
+                + (getConfig().isOverlapping() ? SIZE_LONG * maxChildren : 0);
 
         return specificSize;
     }
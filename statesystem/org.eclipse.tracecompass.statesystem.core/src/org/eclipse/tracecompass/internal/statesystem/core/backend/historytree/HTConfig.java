@@ -24,11 +24,22 @@ public final class HTConfig {
     private static final int DEFAULT_BLOCKSIZE = 64 * 1024;
     private static final int DEFAULT_MAXCHILDREN = 50;
 
+    /** System property that overrides the default size of the node cache */
+    private static final String CACHE_SIZE_PROPERTY = "org.eclipse.tracecompass.statesystem.core.historytree.cacheSize"; //$NON-NLS-1$
+
+    /**
+     * Default size of the node cache, in bytes. It can be overridden with the
+     * {@link #CACHE_SIZE_PROPERTY} system property.
+     */
+    static final long DEFAULT_CACHE_SIZE = Long.getLong(CACHE_SIZE_PROPERTY, 16L * 1024 * 1024).longValue();
+
     private final File stateFile;
     private final int blockSize;
     private final int maxChildren;
     private final int providerVersion;
     private final long treeStart;
+    private final long cacheSize;
+    private final boolean overlapping;
 
     /**
      * Full constructor.
@@ -47,14 +58,71 @@ public final class HTConfig {
      *            uselessly.
      * @param startTime
      *            The start time of the history
+     * @param cacheSize
+     *            The maximum size, in bytes, of the nodes kept in memory by
+     *            this tree's node cache
+     * @param overlapping
+     *            True to use the overlapping layout, where the time ranges of
+     *            sibling nodes can overlap, false for the classic layout
      */
     public HTConfig(File newStateFile, int blockSize, int maxChildren,
-            int providerVersion, long startTime) {
+            int providerVersion, long startTime, long cacheSize, boolean overlapping) {
         this.stateFile = newStateFile;
         this.blockSize = blockSize;
         this.maxChildren = maxChildren;
         this.providerVersion = providerVersion;
         this.treeStart = startTime;
+        this.cacheSize = cacheSize;
+        this.overlapping = overlapping;
+    }
+
+    /**
+     * Version of the constructor using the classic layout.
+     *
+     * @param newStateFile
+     *            The name of the history file
+     * @param blockSize
+     *            The size of each "block" on disk. One node will always fit in
+     *            one block.
+     * @param maxChildren
+     *            The maximum number of children allowed per core (non-leaf)
+     *            node.
+     * @param providerVersion
+     *            The version of the state provider. If a file already exists,
+     *            and their versions match, the history file will not be rebuilt
+     *            uselessly.
+     * @param startTime
+     *            The start time of the history
+     * @param cacheSize
+     *            The maximum size, in bytes, of the nodes kept in memory by
+     *            this tree's node cache
+     */
+    public HTConfig(File newStateFile, int blockSize, int maxChildren,
+            int providerVersion, long startTime, long cacheSize) {
+        this(newStateFile, blockSize, maxChildren, providerVersion, startTime, cacheSize, false);
+    }
+
+    /**
+     * Version of the constructor using the default value for 'cacheSize'.
+     *
+     * @param newStateFile
+     *            The name of the history file
+     * @param blockSize
+     *            The size of each "block" on disk. One node will always fit in
+     *            one block.
+     * @param maxChildren
+     *            The maximum number of children allowed per core (non-leaf)
+     *            node.
+     * @param providerVersion
+     *            The version of the state provider. If a file already exists,
+     *            and their versions match, the history file will not be rebuilt
+     *            uselessly.
+     * @param startTime
+     *            The start time of the history
+     */
+    public HTConfig(File newStateFile, int blockSize, int maxChildren,
+            int providerVersion, long startTime) {
+        this(newStateFile, blockSize, maxChildren, providerVersion, startTime, DEFAULT_CACHE_SIZE);
     }
 
     /**
@@ -74,6 +142,26 @@ public final class HTConfig {
         this(newStateFile, DEFAULT_BLOCKSIZE, DEFAULT_MAXCHILDREN, providerVersion, startTime);
     }
 
+    /**
+     * Version of the constructor using default values for 'blockSize',
+     * 'maxChildren' and 'cacheSize', with a choice of layout.
+     *
+     * @param newStateFile
+     *            The name of the history file
+     * @param providerVersion
+     *            The version of the state provider. If a file already exists,
+     *            and their versions match, the history file will not be rebuilt
+     *            uselessly.
+     * @param startTime
+     *            The start time of the history
+     * @param overlapping
+     *            True to use the overlapping layout, false for the classic
+     *            layout
+     */
+    public HTConfig(File newStateFile, int providerVersion, long startTime, boolean overlapping) {
+        this(newStateFile, DEFAULT_BLOCKSIZE, DEFAULT_MAXCHILDREN, providerVersion, startTime, DEFAULT_CACHE_SIZE, overlapping);
+    }
+
     // ------------------------------------------------------------------------
     // Getters
     // ------------------------------------------------------------------------
@@ -122,4 +210,26 @@ public final class HTConfig {
     public long getTreeStart() {
         return treeStart;
     }
+
+    /**
+     * Get the maximum size of the node cache, in bytes.
+     *
+     * @return The node cache size
+     */
+    public long getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Get whether the tree uses the overlapping layout. In that layout, a new
+     * node can start before the end of its previous sibling, so that intervals
+     * that started a bit before the split still go in the new node instead of
+     * in its parents. The core nodes then keep the end time of each child, and
+     * queries can follow several children.
+     *
+     * @return True for the overlapping layout, false for the classic one
+     */
+    public boolean isOverlapping() {
+        return overlapping;
+    }
 }
@@ -46,13 +46,23 @@ public final class HTInterval implements ITmfStateInterval, Comparable<HTInterva
     private static final byte TYPE_DOUBLE = 3;
     private static final byte TYPE_CUSTOM = 20;
 
+    /**
+     * Integer values between 0 and {@link #MAX_INLINE_INT} are stored directly
+     * in the type byte, as TYPE_INLINE_INT + value.
+     */
+    private static final byte TYPE_INLINE_INT = 64;
+    private static final int MAX_INLINE_INT = Byte.MAX_VALUE - TYPE_INLINE_INT;
+
     private final long start;
     private final long end;
     private final int attribute;
     private final @NonNull TmfStateValue sv;
 
-    /** Number of bytes used by this interval when it is written to disk */
-    private final int fSizeOnDisk;
+    /**
+     * Number of bytes used by the state value of this interval (including its
+     * type) when it is written to disk
+     */
+    private final int fValueSizeOnDisk;
 
     /**
      * Standard constructor
@@ -79,37 +89,35 @@ public final class HTInterval implements ITmfStateInterval, Comparable<HTInterva
         this.end = intervalEnd;
         this.attribute = attribute;
         this.sv = value;
-        this.fSizeOnDisk = computeSizeOnDisk(sv);
+        this.fValueSizeOnDisk = computeValueSizeOnDisk(sv);
     }
 
     /**
-     * Compute how much space (in bytes) an interval will take in its serialized
-     * form on disk. This is dependent on its state value.
+     * Compute how much space (in bytes) the state value of an interval will
+     * take in its serialized form on disk, including the value type byte.
      */
-    private static int computeSizeOnDisk(ITmfStateValue sv) {
-        /*
-         * Minimum size is 2x long (start and end), 1x int (attribute) and 1x
-         * byte (value type).
-         */
-        int minSize = Long.BYTES + Long.BYTES + Integer.BYTES + Byte.BYTES;
-
+    private static int computeValueSizeOnDisk(ITmfStateValue sv) {
         switch (sv.getType()) {
         case NULL:
-            return minSize;
+            return Byte.BYTES;
         case INTEGER:
-            return (minSize + Integer.BYTES);
+            int value = sv.unboxInt();
+            if (value >= 0 && value <= MAX_INLINE_INT) {
+                return Byte.BYTES;
+            }
+            return Byte.BYTES + varLongSize(zigZag(value));
         case LONG:
-            return (minSize + Long.BYTES);
+            return Byte.BYTES + Long.BYTES;
         case DOUBLE:
-            return (minSize + Double.BYTES);
+            return Byte.BYTES + Double.BYTES;
         case STRING:
             /*
              * String's length + 2 (1 byte for size, 1 byte for \0 at the end
              */
-            return (minSize + sv.unboxStr().getBytes().length + 2);
+            return Byte.BYTES + sv.unboxStr().getBytes().length + 2;
         case CUSTOM:
             /* Length of serialized value (short) + state value */
-            return (minSize + Short.BYTES + ((CustomStateValue) sv).getSerializedSize());
+            return Byte.BYTES + Short.BYTES + ((CustomStateValue) sv).getSerializedSize();
         default:
             /*
              * It's very important that we know how to write the state value in
@@ -122,11 +130,10 @@ public final class HTInterval implements ITmfStateInterval, Comparable<HTInterva
     /**
      * "Faster" constructor for inner use only. When we build an interval when
      * reading it from disk (with {@link #readFrom}), we already know the size
-     * of the strings entry, so there is no need to call
-     * {@link #computeStringsEntrySize()} and do an extra copy.
+     * of the value, so there is no need to compute it again.
      */
     private HTInterval(long intervalStart, long intervalEnd, int attribute,
-            @NonNull TmfStateValue value, int size) throws TimeRangeException {
+            @NonNull TmfStateValue value, int valueSize) throws TimeRangeException {
         if (intervalStart > intervalEnd) {
             throw new TimeRangeException("Start:" + intervalStart + ", End:" + intervalEnd); //$NON-NLS-1$ //$NON-NLS-2$
         }
@@ -135,7 +142,7 @@ public final class HTInterval implements ITmfStateInterval, Comparable<HTInterva
         this.end = intervalEnd;
         this.attribute = attribute;
         this.sv = value;
-        this.fSizeOnDisk = size;
+        this.fValueSizeOnDisk = valueSize;
     }
 
     /**
@@ -143,42 +150,101 @@ public final class HTInterval implements ITmfStateInterval, Comparable<HTInterva
      * ByteBuffer, which normally comes from a NIO FileChannel.
      *
      * The interval is just a start, end, attribute and value, this is the
-     * layout of the HTInterval on disk
+     * layout of the HTInterval on disk, where varints use 7 bits per byte, the
+     * high bit indicating that another byte follows
      * <ul>
-     * <li>start (8 bytes)</li>
-     * <li>end (8 bytes)</li>
-     * <li>attribute (4 bytes)</li>
-     * <li>sv type (1 byte)</li>
-     * <li>sv ( 0 bytes for null, 4 for int , 8 for long and double, and the
-     * length of the string +2 for strings (it's variable))</li>
+     * <li>start - node start (varint)</li>
+     * <li>end - start (varint)</li>
+     * <li>attribute (varint)</li>
+     * <li>sv type (1 byte), which also holds small positive integer values</li>
+     * <li>sv ( 0 bytes for null and small integers, a zigzag varint for other
+     * integers, 8 for long and double, and the length of the string +2 for
+     * strings (it's variable))</li>
      * </ul>
      *
      * @param buffer
      *            The ByteBuffer from which to read the information
+     * @param nodeStart
+     *            The start time of the node containing this interval
      * @return The interval object
      * @throws IOException
      *             If there was an error reading from the buffer
      */
-    public static final HTInterval readFrom(ByteBuffer buffer) throws IOException {
+    public static final HTInterval readFrom(ByteBuffer buffer, long nodeStart) throws IOException {
+        /* Read the Data Section entry */
+        long intervalStart = nodeStart + getVarLong(buffer);
+        long intervalEnd = intervalStart + getVarLong(buffer);
+        int attribute = (int) getVarLong(buffer);
+
+        int posValue = buffer.position();
+        TmfStateValue value = readValue(buffer);
+
+        try {
+            return new HTInterval(intervalStart, intervalEnd, attribute, value, buffer.position() - posValue);
+        } catch (TimeRangeException e) {
+            throw new IOException(errMsg);
+        }
+    }
+
+    /**
+     * Build an interval whose times and attribute were already decoded, by
+     * reading its state value at the given position of the buffer. The
+     * position of the buffer itself is not modified.
+     *
+     * @param buffer
+     *            The buffer containing the interval
+     * @param valuePosition
+     *            The position of the value type byte in the buffer
+     * @param intervalStart
+     *            Start time of the interval
+     * @param intervalEnd
+     *            End time of the interval
+     * @param attribute
+     *            Attribute of the interval
+     * @return The interval object
+     * @throws IOException
+     *             If there was an error reading from the buffer
+     */
+    static HTInterval readFrom(ByteBuffer buffer, int valuePosition,
+            long intervalStart, long intervalEnd, int attribute) throws IOException {
+        byte valueType = buffer.get(valuePosition);
         TmfStateValue value;
+        int valueSize;
+        if (valueType == TYPE_NULL) {
+            /* Avoid copying the buffer for the most common values */
+            value = TmfStateValue.nullValue();
+            valueSize = Byte.BYTES;
+        } else if (valueType >= TYPE_INLINE_INT) {
+            value = TmfStateValue.newValueInt(valueType - TYPE_INLINE_INT);
+            valueSize = Byte.BYTES;
+        } else {
+            ByteBuffer view = buffer.duplicate();
+            view.order(buffer.order());
+            view.position(valuePosition);
+            value = readValue(view);
+            valueSize = view.position() - valuePosition;
+        }
 
-        int posStart = buffer.position();
-        /* Read the Data Section entry */
-        long intervalStart = buffer.getLong();
-        long intervalEnd = buffer.getLong();
-        int attribute = buffer.getInt();
+        try {
+            return new HTInterval(intervalStart, intervalEnd, attribute, value, valueSize);
+        } catch (TimeRangeException e) {
+            throw new IOException(errMsg);
+        }
+    }
 
+    private static TmfStateValue readValue(ByteBuffer buffer) throws IOException {
         /* Read the 'type' of the value, then react accordingly */
         byte valueType = buffer.get();
+        if (valueType >= TYPE_INLINE_INT) {
+            return TmfStateValue.newValueInt(valueType - TYPE_INLINE_INT);
+        }
         switch (valueType) {
 
         case TYPE_NULL:
-            value = TmfStateValue.nullValue();
-            break;
+            return TmfStateValue.nullValue();
 
         case TYPE_INTEGER:
-            value = TmfStateValue.newValueInt(buffer.getInt());
-            break;
+            return TmfStateValue.newValueInt(unZigZag(getVarLong(buffer)));
 
         case TYPE_STRING: {
             /* the first byte = the size to read */
@@ -186,40 +252,69 @@ public final class HTInterval implements ITmfStateInterval, Comparable<HTInterva
 
             byte[] array = new byte[valueSize];
             buffer.get(array);
-            value = TmfStateValue.newValueString(new String(array));
+            TmfStateValue value = TmfStateValue.newValueString(new String(array));
 
             /* Confirm the 0'ed byte at the end */
             byte res = buffer.get();
             if (res != 0) {
                 throw new IOException(errMsg);
             }
-            break;
+            return value;
         }
 
         case TYPE_LONG:
-            /* Go read the matching entry in the Strings section of the block */
-            value = TmfStateValue.newValueLong(buffer.getLong());
-            break;
+            return TmfStateValue.newValueLong(buffer.getLong());
 
         case TYPE_DOUBLE:
-            /* Go read the matching entry in the Strings section of the block */
-            value = TmfStateValue.newValueDouble(buffer.getDouble());
-            break;
+            return TmfStateValue.newValueDouble(buffer.getDouble());
 
         case TYPE_CUSTOM: {
             short valueSize = buffer.getShort();
             ISafeByteBufferReader safeBuffer = SafeByteBufferFactory.wrapReader(buffer, valueSize);
-            value = CustomStateValue.readSerializedValue(safeBuffer);
-            break;
+            return CustomStateValue.readSerializedValue(safeBuffer);
         }
         default:
             /* Unknown data, better to not make anything up... */
             throw new IOException(errMsg);
         }
+    }
 
-        try {
-            return new HTInterval(intervalStart, intervalEnd, attribute, value, buffer.position() - posStart);
-        } catch (TimeRangeException e) {
+    /**
+     * Move the position of the buffer past a state value, without decoding
+     * it.
+     *
+     * @param buffer
+     *            The buffer, positioned at the value type byte
+     * @throws IOException
+     *             If the value type is invalid
+     */
+    static void skipValue(ByteBuffer buffer) throws IOException {
+        byte valueType = buffer.get();
+        if (valueType >= TYPE_INLINE_INT) {
+            return;
+        }
+        switch (valueType) {
+        case TYPE_NULL:
+            break;
+        case TYPE_INTEGER:
+            getVarLong(buffer);
+            break;
+        case TYPE_STRING:
+            /* Size, then the string and its 0'ed byte */
+            int valueSize = buffer.get();
+            buffer.position(buffer.position() + valueSize + 1);
+            break;
+        case TYPE_LONG:
+            buffer.position(buffer.position() + Long.BYTES);
+            break;
+        case TYPE_DOUBLE:
+            buffer.position(buffer.position() + Double.BYTES);
+            break;
+        case TYPE_CUSTOM:
+            short customSize = buffer.getShort();
+            buffer.position(buffer.position() + customSize);
+            break;
+        default:
             throw new IOException(errMsg);
         }
     }
@@ -229,34 +324,35 @@ public final class HTInterval implements ITmfStateInterval, Comparable<HTInterva
      * corresponding to this interval in a ByteBuffer (mapped to a block in the
      * history-file, hopefully)
      *
-     * The interval is just a start, end, attribute and value, this is the
-     * layout of the HTInterval on disk
-     * <ul>
-     * <li>start (8 bytes)</li>
-     * <li>end (8 bytes)</li>
-     * <li>attribute (4 bytes)</li>
-     * <li>sv type (1 byte)</li>
-     * <li>sv ( 0 bytes for null, 4 for int , 8 for long and double, and the
-     * length of the string +2 for strings (it's variable))</li>
-     * </ul>
+     * See {@link #readFrom(ByteBuffer, long)} for the layout of the interval on
+     * disk.
      *
      * @param buffer
      *            The already-allocated ByteBuffer corresponding to a SHT Node
+     * @param nodeStart
+     *            The start time of the node containing this interval
      */
-    public void writeInterval(ByteBuffer buffer) {
+    public void writeInterval(ByteBuffer buffer, long nodeStart) {
         final byte byteFromType = getByteFromType(sv.getType());
 
-        buffer.putLong(start);
-        buffer.putLong(end);
-        buffer.putInt(attribute);
-        buffer.put(byteFromType);
+        putVarLong(buffer, start - nodeStart);
+        putVarLong(buffer, end - start);
+        putVarLong(buffer, attribute & 0xFFFFFFFFL);
 
         switch (byteFromType) {
         case TYPE_NULL:
+            buffer.put(byteFromType);
             break;
-        case TYPE_INTEGER:
-            buffer.putInt(sv.unboxInt());
+        case TYPE_INTEGER: {
+            int value = sv.unboxInt();
+            if (value >= 0 && value <= MAX_INLINE_INT) {
+                buffer.put((byte) (TYPE_INLINE_INT + value));
+            } else {
+                buffer.put(byteFromType);
+                putVarLong(buffer, zigZag(value));
+            }
             break;
+        }
 
         case TYPE_STRING: {
             String string = sv.unboxStr();
@@ -266,6 +362,7 @@ public final class HTInterval implements ITmfStateInterval, Comparable<HTInterva
              * Write the Strings entry (1st byte = size, then the bytes, then
              * the 0). We have checked the string length at the constructor.
              */
+            buffer.put(byteFromType);
             buffer.put((byte) strArray.length);
             buffer.put(strArray);
             buffer.put((byte) 0);
@@ -273,15 +370,18 @@ public final class HTInterval implements ITmfStateInterval, Comparable<HTInterva
         }
 
         case TYPE_LONG:
+            buffer.put(byteFromType);
             buffer.putLong(sv.unboxLong());
             break;
 
         case TYPE_DOUBLE:
+            buffer.put(byteFromType);
             buffer.putDouble(sv.unboxDouble());
             break;
 
         case TYPE_CUSTOM: {
             int size = ((CustomStateValue) sv).getSerializedSize();
+            buffer.put(byteFromType);
             buffer.putShort((short) size);
             ISafeByteBufferWriter safeBuffer = SafeByteBufferFactory.wrapWriter(buffer, size);
             ((CustomStateValue) sv).serialize(safeBuffer);
@@ -324,12 +424,18 @@ public final class HTInterval implements ITmfStateInterval, Comparable<HTInterva
     }
 
     /**
-     * Total serialized size of this interval
+     * Total serialized size of this interval, which depends on the start time
+     * of the node it is written in.
      *
+     * @param nodeStart
+     *            The start time of the node containing this interval
      * @return The interval size
      */
-    public int getSizeOnDisk() {
-        return fSizeOnDisk;
+    public int getSizeOnDisk(long nodeStart) {
+        return varLongSize(start - nodeStart)
+                + varLongSize(end - start)
+                + varLongSize(attribute & 0xFFFFFFFFL)
+                + fValueSizeOnDisk;
     }
 
     /**
@@ -403,4 +509,64 @@ public final class HTInterval implements ITmfStateInterval, Comparable<HTInterva
             throw new IllegalStateException();
         }
     }
+
+    // ------------------------------------------------------------------------
+    // Variable-length encoding
+    // ------------------------------------------------------------------------
+
+    private static long zigZag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+    }
+
+    private static int unZigZag(long value) {
+        int zigZagged = (int) value;
+        return (zigZagged >>> 1) ^ -(zigZagged & 1);
+    }
+
+    /**
+     * Get the number of bytes needed to write an unsigned value as a varint.
+     *
+     * @param value
+     *            The value, considered as unsigned
+     * @return The size of the varint
+     */
+    static int varLongSize(long value) {
+        int size = 1;
+        long remaining = value >>> 7;
+        while (remaining != 0) {
+            remaining >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            buffer.put((byte) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        buffer.put((byte) remaining);
+    }
+
+    /**
+     * Read an unsigned varint from a buffer.
+     *
+     * @param buffer
+     *            The buffer, positioned at the start of the varint
+     * @return The value
+     * @throws IOException
+     *             If the varint is longer than a long
+     */
+    static long getVarLong(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException(errMsg);
+    }
 }
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Flyweight view of the intervals of a node that was read from disk.
+ *
+ * The times and attributes of the intervals are decoded in primitive arrays
+ * when the node is read, while their state values stay in the node's buffer.
+ * {@link HTInterval} objects are only created for the intervals that are
+ * actually returned by a query.
+ */
+final class HTIntervalBlock {
+
+    private final ByteBuffer fBuffer;
+    private final long[] fStarts;
+    private final long[] fEnds;
+    private final int[] fAttributes;
+    private final int[] fValuePositions;
+    private final int fSizeOnDisk;
+
+    /**
+     * Decode the intervals section of a node.
+     *
+     * @param buffer
+     *            The buffer, positioned at the start of the intervals. Its
+     *            position will be moved past the intervals.
+     * @param intervalCount
+     *            The number of intervals in the node
+     * @param nodeStart
+     *            The start time of the node
+     * @throws IOException
+     *             If the intervals are invalid
+     */
+    public HTIntervalBlock(ByteBuffer buffer, int intervalCount, long nodeStart) throws IOException {
+        /* Keep our own view, so that the values can be read concurrently */
+        fBuffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        fStarts = new long[intervalCount];
+        fEnds = new long[intervalCount];
+        fAttributes = new int[intervalCount];
+        fValuePositions = new int[intervalCount];
+
+        int posStart = buffer.position();
+        for (int i = 0; i < intervalCount; i++) {
+            fStarts[i] = nodeStart + HTInterval.getVarLong(buffer);
+            fEnds[i] = fStarts[i] + HTInterval.getVarLong(buffer);
+            fAttributes[i] = (int) HTInterval.getVarLong(buffer);
+            fValuePositions[i] = buffer.position();
+            HTInterval.skipValue(buffer);
+        }
+        fSizeOnDisk = buffer.position() - posStart;
+    }
+
+    /**
+     * @return The number of intervals
+     */
+    public int size() {
+        return fStarts.length;
+    }
+
+    /**
+     * @return The total size of the intervals on disk, in bytes
+     */
+    public int getSizeOnDisk() {
+        return fSizeOnDisk;
+    }
+
+    /**
+     * @param index
+     *            The index of the interval
+     * @return The start time of that interval
+     */
+    public long getStart(int index) {
+        return fStarts[index];
+    }
+
+    /**
+     * @param index
+     *            The index of the interval
+     * @return The end time of that interval
+     */
+    public long getEnd(int index) {
+        return fEnds[index];
+    }
+
+    /**
+     * @param index
+     *            The index of the interval
+     * @return The attribute of that interval
+     */
+    public int getAttribute(int index) {
+        return fAttributes[index];
+    }
+
+    /**
+     * Build the interval object at the given index.
+     *
+     * @param index
+     *            The index of the interval
+     * @return The interval
+     */
+    public HTInterval getInterval(int index) {
+        try {
+            return HTInterval.readFrom(fBuffer, fValuePositions[index],
+                    fStarts[index], fEnds[index], fAttributes[index]);
+        } catch (IOException e) {
+            /* The values were already validated when reading the node */
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Get the index of the first interval whose end time is greater than or
+     * equal to t. The intervals are sorted by end time.
+     *
+     * @param t
+     *            The timestamp
+     * @return The index of the first interval that can contain t
+     */
+    public int getStartIndexFor(long t) {
+        int low = 0;
+        int high = fEnds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (fEnds[mid] < t) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
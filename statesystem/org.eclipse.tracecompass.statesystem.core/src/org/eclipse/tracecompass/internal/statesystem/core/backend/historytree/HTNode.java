@@ -22,9 +22,11 @@ import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
@@ -130,6 +132,12 @@ public abstract class HTNode {
     /* Vector containing all the intervals contained in this node */
     private final List<HTInterval> fIntervals;
 
+    /*
+     * Intervals of a node read from disk, which are only decoded on demand.
+     * When it is set, fIntervals is empty.
+     */
+    private @Nullable HTIntervalBlock fIntervalBlock = null;
+
     /* Lock used to protect the accesses to intervals, nodeEnd and such */
     private final ReentrantReadWriteLock fRwl = new ReentrantReadWriteLock(false);
 
@@ -171,16 +179,35 @@ public abstract class HTNode {
      */
     public static final @NonNull HTNode readNode(HTConfig config, FileChannel fc)
             throws IOException {
-        HTNode newNode = null;
-        int res, i;
-
         ByteBuffer buffer = ByteBuffer.allocate(config.getBlockSize());
         buffer.order(ByteOrder.LITTLE_ENDIAN);
         buffer.clear();
-        res = fc.read(buffer);
+        int res = fc.read(buffer);
         assert (res == config.getBlockSize());
         buffer.flip();
 
+        return readNode(config, buffer);
+    }
+
+    /**
+     * Reader factory method. Build a Node object (of the right type) by reading
+     * a block from a buffer, for example one mapped from the file.
+     *
+     * @param config
+     *            Configuration of the History Tree
+     * @param buffer
+     *            Buffer positioned at the start of the node. Its byte order
+     *            will be set to little endian.
+     * @return The node object
+     * @throws IOException
+     *             If the node in the buffer is invalid
+     */
+    public static final @NonNull HTNode readNode(HTConfig config, ByteBuffer buffer)
+            throws IOException {
+        HTNode newNode = null;
+
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
         /* Read the common header part */
         byte typeByte = buffer.get();
         NodeType type = NodeType.fromByte(typeByte);
@@ -214,11 +241,9 @@ public abstract class HTNode {
          * At this point, we should be done reading the header and 'buffer'
          * should only have the intervals left
          */
-        for (i = 0; i < intervalCount; i++) {
-            HTInterval interval = HTInterval.readFrom(buffer);
-            newNode.fIntervals.add(interval);
-            newNode.fSizeOfIntervalSection += interval.getSizeOnDisk();
-        }
+        HTIntervalBlock block = new HTIntervalBlock(buffer, intervalCount, start);
+        newNode.fIntervalBlock = block;
+        newNode.fSizeOfIntervalSection = block.getSizeOnDisk();
 
         /* Assign the node's other information we have read previously */
         newNode.fNodeEnd = end;
@@ -255,14 +280,21 @@ public abstract class HTNode {
             buffer.putLong(fNodeEnd);
             buffer.putInt(fSequenceNumber);
             buffer.putInt(fParentSequenceNumber);
-            buffer.putInt(fIntervals.size());
+            buffer.putInt(getIntervalCount());
             buffer.put((byte) 1); // TODO Used to be "isDone", to be removed from header
 
             /* Now call the inner method to write the specific header part */
             writeSpecificHeader(buffer);
 
             /* Back to us, we write the intervals */
-            fIntervals.forEach(i -> i.writeInterval(buffer));
+            HTIntervalBlock block = fIntervalBlock;
+            if (block != null) {
+                for (int i = 0; i < block.size(); i++) {
+                    block.getInterval(i).writeInterval(buffer, fNodeStart);
+                }
+            } else {
+                fIntervals.forEach(i -> i.writeInterval(buffer, fNodeStart));
+            }
 
             /*
              * Fill the rest with zeros
@@ -366,7 +398,9 @@ public abstract class HTNode {
         fRwl.writeLock().lock();
         try {
             /* Just in case, should be checked before even calling this function */
-            assert (newInterval.getSizeOnDisk() <= getNodeFreeSpace());
+            assert (newInterval.getSizeOnDisk(fNodeStart) <= getNodeFreeSpace());
+
+            decodeIntervals();
 
             /* Find the insert position to keep the list sorted */
             int index = fIntervals.size();
@@ -375,7 +409,7 @@ public abstract class HTNode {
             }
 
             fIntervals.add(index, newInterval);
-            fSizeOfIntervalSection += newInterval.getSizeOnDisk();
+            fSizeOfIntervalSection += newInterval.getSizeOnDisk(fNodeStart);
 
         } finally {
             fRwl.writeLock().unlock();
@@ -400,6 +434,7 @@ public abstract class HTNode {
 //                throw new IllegalArgumentException("Endtime " + endtime + " cannot be lower than start time " + fNodeStart);
 //            }
 
+            decodeIntervals();
             if (!fIntervals.isEmpty()) {
                 /*
                  * Make sure there are no intervals in this node with their
@@ -435,6 +470,16 @@ public abstract class HTNode {
         /* This is from a state system query, we are "reading" this node */
         fRwl.readLock().lock();
         try {
+            HTIntervalBlock block = fIntervalBlock;
+            if (block != null) {
+                for (int i = block.getStartIndexFor(t); i < block.size(); i++) {
+                    int attribute = block.getAttribute(i);
+                    if (block.getStart(i) <= t && attribute < stateInfo.size()) {
+                        stateInfo.set(attribute, block.getInterval(i));
+                    }
+                }
+                return;
+            }
             for (int i = getStartIndexFor(t); i < fIntervals.size(); i++) {
                 /*
                  * Now we only have to compare the Start times, since we now the
@@ -471,6 +516,17 @@ public abstract class HTNode {
     public HTInterval getRelevantInterval(int key, long t) throws TimeRangeException {
         fRwl.readLock().lock();
         try {
+            HTIntervalBlock block = fIntervalBlock;
+            if (block != null) {
+                for (int i = block.getStartIndexFor(t); i < block.size(); i++) {
+                    if (block.getAttribute(i) == key
+                            && block.getStart(i) <= t
+                            && block.getEnd(i) >= t) {
+                        return block.getInterval(i);
+                    }
+                }
+                return null;
+            }
             for (int i = getStartIndexFor(t); i < fIntervals.size(); i++) {
                 HTInterval curInterval = fIntervals.get(i);
                 if (curInterval.getAttribute() == key
@@ -488,6 +544,73 @@ public abstract class HTNode {
         }
     }
 
+    /**
+     * Get all the intervals in this node that belong to one of the given
+     * attributes and intersect the time range [t1, t2].
+     *
+     * @param quarks
+     *            The attribute quarks to look for
+     * @param t1
+     *            The start of the time range
+     * @param t2
+     *            The end of the time range
+     * @return The matching intervals, sorted by end time
+     */
+    public List<HTInterval> getMatchingIntervals(Set<Integer> quarks, long t1, long t2) {
+        fRwl.readLock().lock();
+        try {
+            List<HTInterval> matching = new ArrayList<>();
+            /*
+             * Intervals ending before t1 are skipped with the binary search,
+             * then we only have to check the start times and attributes of the
+             * remaining ones.
+             */
+            HTIntervalBlock block = fIntervalBlock;
+            if (block != null) {
+                for (int i = block.getStartIndexFor(t1); i < block.size(); i++) {
+                    if (block.getStart(i) <= t2
+                            && quarks.contains(block.getAttribute(i))) {
+                        matching.add(block.getInterval(i));
+                    }
+                }
+                return matching;
+            }
+            for (int i = getStartIndexFor(t1); i < fIntervals.size(); i++) {
+                HTInterval curInterval = fIntervals.get(i);
+                if (curInterval.getStartTime() <= t2
+                        && quarks.contains(curInterval.getAttribute())) {
+                    matching.add(curInterval);
+                }
+            }
+            return matching;
+
+        } finally {
+            fRwl.readLock().unlock();
+        }
+    }
+
+    /**
+     * Decode all the intervals of a node read from disk into fIntervals, so
+     * that the node can be modified. Should only be called with the write lock
+     * taken.
+     */
+    private void decodeIntervals() {
+        HTIntervalBlock block = fIntervalBlock;
+        if (block == null) {
+            return;
+        }
+        for (int i = 0; i < block.size(); i++) {
+            fIntervals.add(block.getInterval(i));
+        }
+        fIntervalBlock = null;
+    }
+
+    private int getIntervalCount() {
+        /* Should only be called by methods with the readLock taken */
+        HTIntervalBlock block = fIntervalBlock;
+        return (block != null ? block.size() : fIntervals.size());
+    }
+
     private int getStartIndexFor(long t) throws TimeRangeException {
         /* Should only be called by methods with the readLock taken */
 
@@ -589,7 +712,7 @@ public abstract class HTNode {
                 fSequenceNumber,
                 (fParentSequenceNumber == -1) ? "Root" : "Parent #" + fParentSequenceNumber,
                 toStringSpecific(),
-                fIntervals.size(),
+                getIntervalCount(),
                 getNodeUsagePercent(),
                 fNodeStart,
                 (fIsOnDisk || fNodeEnd != 0) ? fNodeEnd : "...");
@@ -622,8 +745,15 @@ public abstract class HTNode {
 
         /* List of intervals in the node */
         writer.println("  Intervals contained:");
-        for (int i = 0; i < fIntervals.size(); i++) {
-            writer.println(fIntervals.get(i).toString());
+        HTIntervalBlock block = fIntervalBlock;
+        if (block != null) {
+            for (int i = 0; i < block.size(); i++) {
+                writer.println(block.getInterval(i).toString());
+            }
+        } else {
+            for (int i = 0; i < fIntervals.size(); i++) {
+                writer.println(fIntervals.get(i).toString());
+            }
         }
         writer.println('\n');
     }
@@ -12,17 +12,31 @@
 
 package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
 
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import org.eclipse.jdt.annotation.NonNull;
-import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.statesystem.core.Activator;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
 /**
  * This class abstracts inputs/outputs of the HistoryTree nodes.
  *
@@ -37,25 +51,6 @@ import org.eclipse.tracecompass.internal.statesystem.core.Activator;
  */
 class HT_IO {
 
-    @NonNullByDefault
-    private static final class CacheElement {
-        private final HTNode value;
-        private final HT_IO key;
-
-        public CacheElement(HT_IO ss, HTNode node) {
-            key = ss;
-            value = node;
-        }
-
-        public HT_IO getKey() {
-            return key;
-        }
-
-        public HTNode getValue() {
-            return value;
-        }
-    }
-
     /* Configuration of the History Tree */
     private final HTConfig fConfig;
 
@@ -65,13 +60,35 @@ class HT_IO {
     private final FileChannel fFileChannelIn;
     private final FileChannel fFileChannelOut;
 
-    // TODO test/benchmark optimal cache size
     /**
-     * Cache size, must be a power of 2
+     * Cache of the nodes read from or written to this tree's file. Its size is
+     * bounded in bytes by {@link HTConfig#getCacheSize()}, and the least
+     * recently used nodes are evicted first.
+     */
+    private final LoadingCache<Integer, HTNode> fNodeCache;
+
+    /**
+     * Whether completed trees are read through memory mappings of their file.
+     * It can be disabled with the system property of the same name.
+     */
+    private static final boolean USE_MAPPINGS = Boolean.parseBoolean(
+            System.getProperty("org.eclipse.tracecompass.statesystem.core.historytree.mmap", "true")); //$NON-NLS-1$ //$NON-NLS-2$
+
+    /**
+     * A mapped file cannot be deleted on Windows until its mapping is garbage
+     * collected (http://bugs.java.com/view_bug.do?bug_id=4715154), so the
+     * nodes are never mapped there, like in the SafeMappedByteBuffer of the
+     * CTF parser.
      */
-    private static final int CACHE_SIZE = 256;
-    private static final int CACHE_MASK = CACHE_SIZE - 1;
-    private static final CacheElement NODE_CACHE[] = new CacheElement[CACHE_SIZE];
+    private static final boolean IS_WIN32 = System.getProperty("os.name").startsWith("Windows"); //$NON-NLS-1$ //$NON-NLS-2$
+
+    /**
+     * Read-only mappings of the node section of the file, each covering
+     * {@link #fNodesPerMapping} nodes. It is only set once the tree is
+     * complete, until then the nodes are read through the input channel.
+     */
+    private volatile @Nullable List<MappedByteBuffer> fMappings = null;
+    private final int fNodesPerMapping;
 
     /**
      * Standard constructor
@@ -112,6 +129,22 @@ class HT_IO {
         }
         fFileChannelIn = fFileInputStream.getChannel();
         fFileChannelOut = fFileOutputStream.getChannel();
+        fNodesPerMapping = Integer.MAX_VALUE / config.getBlockSize();
+
+        /*
+         * Every node takes exactly one block, so the size in bytes translates
+         * directly to a number of nodes. Always keep room for at least one.
+         */
+        long maxNodes = Math.max(1, config.getCacheSize() / config.getBlockSize());
+        fNodeCache = checkNotNull(CacheBuilder.newBuilder()
+                .maximumSize(maxNodes)
+                .recordStats()
+                .build(new CacheLoader<Integer, HTNode>() {
+                    @Override
+                    public HTNode load(Integer key) throws IOException {
+                        return readNodeFromDisk(key.intValue());
+                    }
+                }));
     }
 
     /**
@@ -125,41 +158,81 @@ class HT_IO {
      *             reading. Instead of using a big reader-writer lock, we'll
      *             just catch this exception.
      */
-    public synchronized @NonNull HTNode readNode(int seqNumber) throws ClosedChannelException {
-        /* Do a cache lookup */
-        int offset = (seqNumber + hashCode()) & CACHE_MASK;
-        CacheElement cachedNode = NODE_CACHE[offset];
+    public @NonNull HTNode readNode(int seqNumber) throws ClosedChannelException {
+        /*
+         * Cache hits do not need the lock, only the loading of a missing node
+         * does, since it moves the position of the input channel.
+         */
+        try {
+            return checkNotNull(fNodeCache.get(seqNumber));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ClosedChannelException) {
+                throw (ClosedChannelException) cause;
+            }
+            /*
+             * Other types of IOExceptions shouldn't happen at this point though
+             */
+            Activator.getDefault().logError(e.getMessage(), e);
+            throw new IllegalStateException();
+        }
+    }
 
-        if (cachedNode != null && cachedNode.getKey() == this && cachedNode.getValue().getSequenceNumber() == seqNumber) {
-            return cachedNode.getValue();
+    private HTNode readNodeFromDisk(int seqNumber) throws IOException {
+        List<MappedByteBuffer> mappings = fMappings;
+        if (mappings != null) {
+            /*
+             * The mappings are never modified, so each reader can work on its
+             * own view of it without any locking.
+             */
+            int blockSize = fConfig.getBlockSize();
+            int offset = (seqNumber % fNodesPerMapping) * blockSize;
+            ByteBuffer buffer = mappings.get(seqNumber / fNodesPerMapping).duplicate();
+            buffer.limit(offset + blockSize);
+            buffer.position(offset);
+            return HTNode.readNode(fConfig, buffer.slice());
         }
 
-        /* Lookup on disk */
-        try {
+        synchronized (this) {
             seekFCToNodePos(fFileChannelIn, seqNumber);
-            HTNode readNode = HTNode.readNode(fConfig, fFileChannelIn);
-
-            /* Put the node in the cache. */
-            NODE_CACHE[offset] = new CacheElement(this, readNode);
-            return readNode;
+            return HTNode.readNode(fConfig, fFileChannelIn);
+        }
+    }
 
-        } catch (ClosedChannelException e) {
-            throw e;
+    /**
+     * Map the nodes of the file in memory, so that they can be read
+     * concurrently. This should only be called once the tree is complete and
+     * its nodes will not be written anymore.
+     *
+     * @param nodeCount
+     *            The number of nodes in the tree
+     */
+    public synchronized void mapNodes(int nodeCount) {
+        if (!USE_MAPPINGS || IS_WIN32 || !fFileChannelIn.isOpen()) {
+            return;
+        }
+        long blockSize = fConfig.getBlockSize();
+        List<MappedByteBuffer> mappings = new ArrayList<>();
+        try {
+            for (int first = 0; first < nodeCount; first += fNodesPerMapping) {
+                int nb = Math.min(fNodesPerMapping, nodeCount - first);
+                mappings.add(fFileChannelIn.map(MapMode.READ_ONLY,
+                        HistoryTree.TREE_HEADER_SIZE + first * blockSize,
+                        nb * blockSize));
+            }
         } catch (IOException e) {
-            /*
-             * Other types of IOExceptions shouldn't happen at this point though
-             */
+            /* Keep reading through the file channel */
             Activator.getDefault().logError(e.getMessage(), e);
-            throw new IllegalStateException();
+            return;
         }
+        fMappings = mappings;
     }
 
     public synchronized void writeNode(HTNode node) {
         try {
             /* Insert the node into the cache. */
             int seqNumber = node.getSequenceNumber();
-            int offset = (seqNumber + hashCode()) & CACHE_MASK;
-            NODE_CACHE[offset] = new CacheElement(this, node);
+            fNodeCache.put(seqNumber, node);
 
             /* Position ourselves at the start of the node and write it */
             seekFCToNodePos(fFileChannelOut, seqNumber);
@@ -170,6 +243,15 @@ class HT_IO {
         }
     }
 
+    /**
+     * Get the hit, miss and eviction statistics of this tree's node cache.
+     *
+     * @return A snapshot of the node cache statistics
+     */
+    public CacheStats getCacheStats() {
+        return checkNotNull(fNodeCache.stats());
+    }
+
     public FileChannel getFcOut() {
         return fFileChannelOut;
     }
@@ -188,6 +270,14 @@ class HT_IO {
     }
 
     public synchronized void closeFile() {
+        /*
+         * The nodes read from the mappings keep slices of them, so they are
+         * dropped with the mappings. The mappings can then be released by the
+         * garbage collector, as the channel does not reference them.
+         */
+        fMappings = null;
+        fNodeCache.invalidateAll();
+        fNodeCache.cleanUp();
         try {
             fFileInputStream.close();
             fFileOutputStream.close();
@@ -31,6 +31,7 @@ import org.eclipse.tracecompass.internal.statesystem.core.Activator;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableList;
 
 /**
@@ -50,8 +51,11 @@ public class HistoryTree {
 
     private static final int HISTORY_FILE_MAGIC_NUMBER = 0x05FFA900;
 
+    /** Magic number of the files using the overlapping layout */
+    private static final int OVERLAPPING_FILE_MAGIC_NUMBER = 0x05FFA901;
+
     /** File format version. Increment when breaking compatibility. */
-    private static final int FILE_VERSION = 6;
+    private static final int FILE_VERSION = 7;
 
     // ------------------------------------------------------------------------
     // Tree-specific configuration
@@ -131,6 +135,7 @@ public class HistoryTree {
         int rootNodeSeqNb, res;
         int bs, maxc;
         long startTime;
+        boolean overlapping;
 
         /* Java I/O mumbo jumbo... */
         if (!existingStateFile.exists()) {
@@ -155,9 +160,10 @@ public class HistoryTree {
              * of file
              */
             res = buffer.getInt();
-            if (res != HISTORY_FILE_MAGIC_NUMBER) {
+            if (res != HISTORY_FILE_MAGIC_NUMBER && res != OVERLAPPING_FILE_MAGIC_NUMBER) {
                 throw new IOException("Wrong magic number"); //$NON-NLS-1$
             }
+            overlapping = (res == OVERLAPPING_FILE_MAGIC_NUMBER);
 
             res = buffer.getInt(); /* File format version number */
             if (res != FILE_VERSION) {
@@ -184,7 +190,8 @@ public class HistoryTree {
             rootNodeSeqNb = buffer.getInt();
             startTime = buffer.getLong();
 
-            fConfig = new HTConfig(existingStateFile, bs, maxc, expProviderVersion, startTime);
+            fConfig = new HTConfig(existingStateFile, bs, maxc, expProviderVersion,
+                    startTime, HTConfig.DEFAULT_CACHE_SIZE, overlapping);
         }
 
         /*
@@ -194,7 +201,12 @@ public class HistoryTree {
          */
         fTreeIO = new HT_IO(fConfig, false);
 
+        /*
+         * The latest branch is read before mapping the nodes, so that it does
+         * not keep slices of the mappings once the file is closed.
+         */
         fLatestBranch = buildLatestBranch(rootNodeSeqNb);
+        fTreeIO.mapNodes(fNodeCount);
         fTreeEnd = getRootNode().getNodeEnd();
 
         /*
@@ -254,6 +266,7 @@ public class HistoryTree {
             fTreeEnd = requestedEndTime;
 
             /* Close off the latest branch of the tree */
+            closeLatestChildren(0, fTreeEnd);
             for (int i = 0; i < fLatestBranch.size(); i++) {
                 fLatestBranch.get(i).closeThisNode(fTreeEnd);
                 fTreeIO.writeNode(fLatestBranch.get(i));
@@ -267,7 +280,7 @@ public class HistoryTree {
                 /* Save the config of the tree to the header of the file */
                 fc.position(0);
 
-                buffer.putInt(HISTORY_FILE_MAGIC_NUMBER);
+                buffer.putInt(fConfig.isOverlapping() ? OVERLAPPING_FILE_MAGIC_NUMBER : HISTORY_FILE_MAGIC_NUMBER);
 
                 buffer.putInt(FILE_VERSION);
                 buffer.putInt(fConfig.getProviderVersion());
@@ -295,6 +308,9 @@ public class HistoryTree {
                  */
                 throw new RuntimeException("State system write error"); //$NON-NLS-1$
             }
+
+            /* The tree is now read-only */
+            fTreeIO.mapNodes(fNodeCount);
         }
     }
 
@@ -320,6 +336,16 @@ public class HistoryTree {
         return fTreeEnd;
     }
 
+    /**
+     * Get whether this tree uses the overlapping layout.
+     *
+     * @return True for the overlapping layout, false for the classic one
+     * @see HTConfig#isOverlapping()
+     */
+    public boolean isOverlapping() {
+        return fConfig.isOverlapping();
+    }
+
     /**
      * Get the number of nodes in this tree.
      *
@@ -416,6 +442,15 @@ public class HistoryTree {
         fTreeIO.writeNode(node);
     }
 
+    /**
+     * Get the hit, miss and eviction statistics of the node cache.
+     *
+     * @return A snapshot of the node cache statistics
+     */
+    public CacheStats getNodeCacheStats() {
+        return fTreeIO.getCacheStats();
+    }
+
     /**
      * Close the history file.
      */
@@ -461,15 +496,11 @@ public class HistoryTree {
     private void tryInsertAtNode(HTInterval interval, int indexOfNode) {
         HTNode targetNode = fLatestBranch.get(indexOfNode);
 
-        /* Verify if there is enough room in this node to store this interval */
-        if (interval.getSizeOnDisk() > targetNode.getNodeFreeSpace()) {
-            /* Nope, not enough room. Insert in a new sibling instead. */
-            addSiblingNode(indexOfNode);
-            tryInsertAtNode(interval, fLatestBranch.size() - 1);
-            return;
-        }
-
-        /* Make sure the interval time range fits this node */
+        /*
+         * Make sure the interval time range fits this node. This is checked
+         * first, since the size of the interval depends on the start of the
+         * node it is written in.
+         */
         if (interval.getStartTime() < targetNode.getNodeStart()) {
             /*
              * No, this interval starts before the startTime of this node. We
@@ -479,6 +510,14 @@ public class HistoryTree {
             return;
         }
 
+        /* Verify if there is enough room in this node to store this interval */
+        if (interval.getSizeOnDisk(targetNode.getNodeStart()) > targetNode.getNodeFreeSpace()) {
+            /* Nope, not enough room. Insert in a new sibling instead. */
+            addSiblingNode(indexOfNode, interval.getStartTime());
+            tryInsertAtNode(interval, fLatestBranch.size() - 1);
+            return;
+        }
+
         /*
          * Ok, there is room, and the interval fits in this time slot. Let's add
          * it.
@@ -497,10 +536,16 @@ public class HistoryTree {
      *
      * @param indexOfNode
      *            The index in latestBranch where we start adding
+     * @param intervalStart
+     *            The start time of the interval that did not fit. In the
+     *            overlapping layout, the new branch starts at that time if it
+     *            is earlier than the split time, so that the interval goes in
+     *            the new leaf instead of in its parents.
      */
-    private void addSiblingNode(int indexOfNode) {
+    private void addSiblingNode(int indexOfNode, long intervalStart) {
         synchronized (fLatestBranch) {
             final long splitTime = fTreeEnd;
+            final long newStart = getNewBranchStart(splitTime, intervalStart);
 
             if (indexOfNode >= fLatestBranch.size()) {
                 /*
@@ -512,18 +557,19 @@ public class HistoryTree {
 
             /* Check if we need to add a new root node */
             if (indexOfNode == 0) {
-                addNewRootNode();
+                addNewRootNode(intervalStart);
                 return;
             }
 
             /* Check if we can indeed add a child to the target parent */
             if (((CoreNode) fLatestBranch.get(indexOfNode - 1)).getNbChildren() == fConfig.getMaxChildren()) {
                 /* If not, add a branch starting one level higher instead */
-                addSiblingNode(indexOfNode - 1);
+                addSiblingNode(indexOfNode - 1, intervalStart);
                 return;
             }
 
             /* Split off the new branch from the old one */
+            closeLatestChildren(indexOfNode - 1, splitTime);
             for (int i = indexOfNode; i < fLatestBranch.size(); i++) {
                 fLatestBranch.get(i).closeThisNode(splitTime);
                 fTreeIO.writeNode(fLatestBranch.get(i));
@@ -533,10 +579,10 @@ public class HistoryTree {
 
                 switch (fLatestBranch.get(i).getNodeType()) {
                 case CORE:
-                    newNode = initNewCoreNode(prevNode.getSequenceNumber(), splitTime + 1);
+                    newNode = initNewCoreNode(prevNode.getSequenceNumber(), newStart);
                     break;
                 case LEAF:
-                    newNode = initNewLeafNode(prevNode.getSequenceNumber(), splitTime + 1);
+                    newNode = initNewLeafNode(prevNode.getSequenceNumber(), newStart);
                     break;
                 default:
                     throw new IllegalStateException();
@@ -551,9 +597,13 @@ public class HistoryTree {
     /**
      * Similar to the previous method, except here we rebuild a completely new
      * latestBranch
+     *
+     * @param intervalStart
+     *            The start time of the interval that did not fit
      */
-    private void addNewRootNode() {
+    private void addNewRootNode(long intervalStart) {
         final long splitTime = fTreeEnd;
+        final long newStart = getNewBranchStart(splitTime, intervalStart);
 
         HTNode oldRootNode = fLatestBranch.get(0);
         CoreNode newRootNode = initNewCoreNode(-1, fConfig.getTreeStart());
@@ -562,7 +612,7 @@ public class HistoryTree {
         oldRootNode.setParentSequenceNumber(newRootNode.getSequenceNumber());
 
         /* Close off the whole current latestBranch */
-
+        closeLatestChildren(0, splitTime);
         for (int i = 0; i < fLatestBranch.size(); i++) {
             fLatestBranch.get(i).closeThisNode(splitTime);
             fTreeIO.writeNode(fLatestBranch.get(i));
@@ -570,6 +620,7 @@ public class HistoryTree {
 
         /* Link the new root to its first child (the previous root node) */
         newRootNode.linkNewChild(oldRootNode);
+        newRootNode.closeLatestChild(splitTime);
 
         /* Rebuild a new latestBranch */
         int depth = fLatestBranch.size();
@@ -580,18 +631,42 @@ public class HistoryTree {
         for (int i = 1; i < depth; i++) {
             CoreNode prevNode = (CoreNode) fLatestBranch.get(i - 1);
             CoreNode newNode = initNewCoreNode(prevNode.getSequenceNumber(),
-                    splitTime + 1);
+                    newStart);
             prevNode.linkNewChild(newNode);
             fLatestBranch.add(newNode);
         }
 
         // Create the new leafNode
         CoreNode prevNode = (CoreNode) fLatestBranch.get(depth - 1);
-        LeafNode newNode = initNewLeafNode(prevNode.getSequenceNumber(), splitTime + 1);
+        LeafNode newNode = initNewLeafNode(prevNode.getSequenceNumber(), newStart);
         prevNode.linkNewChild(newNode);
         fLatestBranch.add(newNode);
     }
 
+    /**
+     * Get the start time of a new branch. The classic layout starts it right
+     * after the split. The overlapping layout starts it at the start of the
+     * interval that did not fit, if it is earlier. The interval start is never
+     * before the start of the node it was tried in, so the children of each
+     * node remain sorted by start time.
+     */
+    private long getNewBranchStart(long splitTime, long intervalStart) {
+        if (fConfig.isOverlapping()) {
+            return Math.min(intervalStart, splitTime + 1);
+        }
+        return splitTime + 1;
+    }
+
+    /**
+     * Set the end time of the latest children of the core nodes of the latest
+     * branch, from the given index down, before they are written to disk.
+     */
+    private void closeLatestChildren(int fromIndex, long endTime) {
+        for (int i = fromIndex; i < fLatestBranch.size() - 1; i++) {
+            ((CoreNode) fLatestBranch.get(i)).closeLatestChild(endTime);
+        }
+    }
+
     /**
      * Add a new empty core node to the tree.
      *
@@ -20,7 +20,14 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.internal.statesystem.core.Activator;
@@ -31,6 +38,9 @@ import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableSet;
+
 /**
  * History Tree backend for storing a state history. This is the basic version
  * that runs in the same thread as the class creating it.
@@ -97,9 +107,23 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
             long startTime,
             int blockSize,
             int maxChildren) throws IOException {
+        this(ssid, new HTConfig(newStateFile, blockSize, maxChildren,
+                providerVersion, startTime));
+    }
+
+    /**
+     * Constructor for new history files, using a {@link HTConfig} object for
+     * the configuration of the tree, including its layout.
+     *
+     * @param ssid
+     *            The state system's ID
+     * @param conf
+     *            The configuration of the new history tree
+     * @throws IOException
+     *             Thrown if we can't create the file for some reason
+     */
+    public HistoryTreeBackend(@NonNull String ssid, HTConfig conf) throws IOException {
         fSsid = ssid;
-        final HTConfig conf = new HTConfig(newStateFile, blockSize, maxChildren,
-                providerVersion, startTime);
         fSht = new HistoryTree(conf);
     }
 
@@ -228,6 +252,22 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
             throws TimeRangeException, StateSystemDisposedException {
         checkValidTime(t);
 
+        if (fSht.isOverlapping()) {
+            /* Several children of a node can contain t, visit all of them */
+            try {
+                Deque<HTNode> nodesToVisit = new ArrayDeque<>();
+                nodesToVisit.push(fSht.getRootNode());
+                while (!nodesToVisit.isEmpty()) {
+                    HTNode node = nodesToVisit.pop();
+                    node.writeInfoFromNode(stateInfo, t);
+                    pushChildren(nodesToVisit, node, t);
+                }
+            } catch (ClosedChannelException e) {
+                throw new StateSystemDisposedException(e);
+            }
+            return;
+        }
+
         /* We start by reading the information in the root node */
         HTNode currentNode = fSht.getRootNode();
         currentNode.writeInfoFromNode(stateInfo, t);
@@ -254,6 +294,17 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
         return getRelevantInterval(t, attributeQuark);
     }
 
+    @Override
+    public Iterable<@NonNull ITmfStateInterval> query2D(Collection<@NonNull Integer> quarks, long start, long end)
+            throws TimeRangeException {
+        if (end < start) {
+            throw new TimeRangeException(String.format("%s Start:%d, End:%d", //$NON-NLS-1$
+                    fSsid, start, end));
+        }
+        final Set<Integer> quarkSet = ImmutableSet.copyOf(quarks);
+        return () -> new Query2DIterator(quarkSet, start, end);
+    }
+
     private void checkValidTime(long t) {
         long startTime = getStartTime();
         long endTime = getEndTime();
@@ -275,6 +326,25 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
             throws TimeRangeException, StateSystemDisposedException {
         checkValidTime(t);
 
+        if (fSht.isOverlapping()) {
+            /* Search the children containing t until the interval is found */
+            try {
+                Deque<HTNode> nodesToVisit = new ArrayDeque<>();
+                nodesToVisit.push(fSht.getRootNode());
+                while (!nodesToVisit.isEmpty()) {
+                    HTNode node = nodesToVisit.pop();
+                    HTInterval interval = node.getRelevantInterval(key, t);
+                    if (interval != null) {
+                        return interval;
+                    }
+                    pushChildren(nodesToVisit, node, t);
+                }
+            } catch (ClosedChannelException e) {
+                throw new StateSystemDisposedException(e);
+            }
+            return null;
+        }
+
         HTNode currentNode = fSht.getRootNode();
         HTInterval interval = currentNode.getRelevantInterval(key, t);
 
@@ -289,6 +359,76 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
         return interval;
     }
 
+    /**
+     * Push the children of a core node that contain the timestamp t, the
+     * latest one on top since it is the most likely to be queried.
+     */
+    private void pushChildren(Deque<HTNode> nodesToVisit, HTNode node, long t) throws ClosedChannelException {
+        if (node.getNodeType() == HTNode.NodeType.CORE) {
+            for (Integer child : ((CoreNode) node).selectChildren(t, t)) {
+                nodesToVisit.push(fSht.readNode(child));
+            }
+        }
+    }
+
+    /**
+     * Iterator over the result of a 2D query. It walks the tree breadth-first,
+     * visiting only the nodes whose time range intersects the query, and reads
+     * every node at most once. Nodes are only read from the tree when the
+     * intervals of the previous one have been consumed.
+     *
+     * If the history file is closed during the iteration, the iteration simply
+     * ends.
+     */
+    private final class Query2DIterator implements Iterator<@NonNull ITmfStateInterval> {
+
+        private final Set<Integer> fQuarks;
+        private final long fStart;
+        private final long fEnd;
+
+        /* Sequence numbers of the nodes left to visit */
+        private final Deque<Integer> fNodesToVisit = new ArrayDeque<>();
+        private Iterator<HTInterval> fCurrentIntervals = Collections.emptyIterator();
+
+        public Query2DIterator(Set<Integer> quarks, long start, long end) {
+            fQuarks = quarks;
+            fStart = start;
+            fEnd = end;
+            if (!quarks.isEmpty()) {
+                fNodesToVisit.add(fSht.getRootNode().getSequenceNumber());
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!fCurrentIntervals.hasNext()) {
+                Integer seqNb = fNodesToVisit.poll();
+                if (seqNb == null) {
+                    return false;
+                }
+                try {
+                    HTNode node = fSht.readNode(seqNb);
+                    if (node.getNodeType() == HTNode.NodeType.CORE) {
+                        fNodesToVisit.addAll(((CoreNode) node).selectChildren(fStart, fEnd));
+                    }
+                    fCurrentIntervals = node.getMatchingIntervals(fQuarks, fStart, fEnd).iterator();
+                } catch (ClosedChannelException e) {
+                    fNodesToVisit.clear();
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public @NonNull ITmfStateInterval next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return fCurrentIntervals.next();
+        }
+    }
+
     /**
      * Return the size of the tree history file
      *
@@ -298,6 +438,16 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
         return fSht.getFileSize();
     }
 
+    /**
+     * Return the hit, miss and eviction statistics of the node cache of the
+     * history tree, which can be used to tune its size.
+     *
+     * @return A snapshot of the node cache statistics
+     */
+    public CacheStats getNodeCacheStats() {
+        return fSht.getNodeCacheStats();
+    }
+
     /**
      * Return the average node usage as a percentage (between 0 and 100)
      *
@@ -16,6 +16,8 @@ package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNull;
@@ -27,6 +29,9 @@ import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+
 /**
  * Variant of the HistoryTreeBackend which runs all the interval-insertion logic
  * in a separate thread.
@@ -123,6 +128,30 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
         shtThread.start();
     }
 
+    /**
+     * New State History constructor, using a {@link HTConfig} object for the
+     * configuration of the tree, including its layout.
+     *
+     * @param ssid
+     *            The state system's id
+     * @param conf
+     *            The configuration of the new history tree
+     * @param queueSize
+     *            The size of the interval insertion queue. 2000 - 10000 usually
+     *            works well
+     * @throws IOException
+     *             If there was a problem opening the history file for writing
+     */
+    public ThreadedHistoryTreeBackend(@NonNull String ssid, HTConfig conf, int queueSize)
+            throws IOException {
+        super(ssid, conf);
+        fEndTime = conf.getTreeStart();
+
+        intervalQueue = new BufferedBlockingQueue<>(queueSize / CHUNK_SIZE, CHUNK_SIZE);
+        shtThread = new Thread(this, "History Tree Thread"); //$NON-NLS-1$
+        shtThread.start();
+    }
+
     /*
      * The Threaded version does not specify an "existing file" constructor,
      * since the history is already built (and we only use the other thread
@@ -288,4 +317,47 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
         return super.doSingularQuery(t, attributeQuark);
     }
 
+    @Override
+    public Iterable<@NonNull ITmfStateInterval> query2D(Collection<@NonNull Integer> quarks, long start, long end)
+            throws TimeRangeException {
+        Iterable<@NonNull ITmfStateInterval> treeIntervals = super.query2D(quarks, start, end);
+        if (isFinishedBuilding()) {
+            /*
+             * The history tree is the only place to look for intervals once
+             * construction is finished, we can stream directly from it.
+             */
+            return treeIntervals;
+        }
+
+        /*
+         * Some intervals may still be in the queue. Same as for the singular
+         * query, look in the tree, then in the queue, then in the tree again in
+         * case intervals moved from the queue to the tree while we were
+         * iterating. Intervals read from the tree nodes are not always the
+         * same objects, but an attribute cannot have two intervals starting at
+         * the same time, which is enough to avoid returning them twice.
+         */
+        SetMultimap<Integer, Long> seen = HashMultimap.create();
+        List<@NonNull ITmfStateInterval> ret = new ArrayList<>();
+        for (ITmfStateInterval interval : treeIntervals) {
+            if (seen.put(interval.getAttribute(), interval.getStartTime())) {
+                ret.add(interval);
+            }
+        }
+        for (HTInterval interval : intervalQueue) {
+            if (quarks.contains(interval.getAttribute())
+                    && interval.getStartTime() <= end
+                    && interval.getEndTime() >= start
+                    && seen.put(interval.getAttribute(), interval.getStartTime())) {
+                ret.add(interval);
+            }
+        }
+        for (ITmfStateInterval interval : super.query2D(quarks, start, end)) {
+            if (seen.put(interval.getAttribute(), interval.getStartTime())) {
+                ret.add(interval);
+            }
+        }
+        return ret;
+    }
+
 }
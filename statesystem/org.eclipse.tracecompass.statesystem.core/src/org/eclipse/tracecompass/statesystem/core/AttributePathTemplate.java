@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * Template of absolute attribute paths that differ by one element, the key,
+ * which is a number like a thread ID or a CPU number. For example, the template
+ * with the prefix "Threads" and the suffix "System_call" represents the paths
+ * "Threads/1234/System_call" for all the thread IDs.
+ *
+ * Templates are meant to be created once, for example as constants of a state
+ * provider. The quark of the path for a given key is then resolved with
+ * {@link ITmfStateSystemBuilder#getQuarkAbsoluteAndAdd(AttributePathTemplate, long)},
+ * which caches the quarks by key instead of looking up each name of the path.
+ *
+ * @since 2.0
+ */
+@NonNullByDefault
+public final class AttributePathTemplate {
+
+    private final String[] fPrefix;
+    private final String[] fSuffix;
+
+    /**
+     * Constructor
+     *
+     * @param prefix
+     *            The names of the path before the key, from the root
+     * @param suffix
+     *            The names of the path after the key, can be empty
+     */
+    public AttributePathTemplate(String[] prefix, String... suffix) {
+        fPrefix = prefix.clone();
+        fSuffix = suffix.clone();
+    }
+
+    /**
+     * Get the full path for a given key. The name of the key in the path is
+     * its decimal representation.
+     *
+     * @param key
+     *            The key
+     * @return The names of the attribute and of its parents, from the root
+     */
+    public String[] getPath(long key) {
+        String[] path = new String[fPrefix.length + 1 + fSuffix.length];
+        System.arraycopy(fPrefix, 0, path, 0, fPrefix.length);
+        path[fPrefix.length] = String.valueOf(key);
+        System.arraycopy(fSuffix, 0, path, fPrefix.length + 1, fSuffix.length);
+        return path;
+    }
+
+    @Override
+    public String toString() {
+        String[] path = getPath(0);
+        path[fPrefix.length] = "<key>"; //$NON-NLS-1$
+        return String.join("/", path); //$NON-NLS-1$
+    }
+}
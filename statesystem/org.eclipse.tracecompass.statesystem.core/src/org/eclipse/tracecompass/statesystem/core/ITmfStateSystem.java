@@ -12,6 +12,7 @@
 
 package org.eclipse.tracecompass.statesystem.core;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNull;
@@ -433,4 +434,32 @@ public interface ITmfStateSystem {
      */
     @NonNull ITmfStateInterval querySingleState(long t, int attributeQuark)
             throws StateSystemDisposedException;
-}
\ No newline at end of file
+
+    /**
+     * Two-dimensional query method. It returns all the intervals of the given
+     * attributes that intersect the time range [start, end]. The intervals are
+     * returned in no particular order.
+     *
+     * This should be preferred over running successive single queries (like
+     * {@link StateSystemUtils#queryHistoryRange}) when populating views for a
+     * whole time range: the back-end can then read the history only once,
+     * instead of once for every single query.
+     *
+     * @param quarks
+     *            The attributes for which we want the intervals
+     * @param start
+     *            The start of the time range
+     * @param end
+     *            The end of the time range
+     * @return The intervals of these attributes that intersect the time range
+     * @throws TimeRangeException
+     *             If end is smaller than start
+     * @throws IndexOutOfBoundsException
+     *             If one of the attribute quarks is out of range
+     * @throws StateSystemDisposedException
+     *             If the query is sent after the state system has been disposed
+     * @since 2.0
+     */
+    @NonNull Iterable<@NonNull ITmfStateInterval> query2D(@NonNull Collection<@NonNull Integer> quarks, long start, long end)
+            throws StateSystemDisposedException;
+}
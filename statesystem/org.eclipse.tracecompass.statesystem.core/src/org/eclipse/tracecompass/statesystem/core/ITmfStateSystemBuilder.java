@@ -16,6 +16,7 @@ import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 
 /**
  * This is the external interface to build or modify an existing state history.
@@ -60,6 +61,25 @@ public interface ITmfStateSystemBuilder extends ITmfStateSystem {
      */
     int getQuarkAbsoluteAndAdd(String... attribute);
 
+    /**
+     * Quark-retrieving method for the path of a template, with a given key.
+     * This is the same as calling {@link #getQuarkAbsoluteAndAdd(String...)}
+     * with {@link AttributePathTemplate#getPath(long)}, but the state system
+     * can cache the quarks of each template by key, so that the path does not
+     * have to be built and looked up every time.
+     *
+     * @param template
+     *            The template of the attribute path
+     * @param key
+     *            The key, like a thread ID or a CPU number
+     * @return The quark of the attribute (which either existed or just got
+     *         created)
+     * @since 2.0
+     */
+    default int getQuarkAbsoluteAndAdd(AttributePathTemplate template, long key) {
+        return getQuarkAbsoluteAndAdd(template.getPath(key));
+    }
+
     /**
      * "Relative path" quark-getting method. Instead of specifying a full path,
      * if you know the path is relative to another attribute for which you
@@ -130,6 +150,84 @@ public interface ITmfStateSystemBuilder extends ITmfStateSystem {
     void modifyAttribute(long t, ITmfStateValue value, int attributeQuark)
             throws StateValueTypeException;
 
+    /**
+     * Modify an attribute to an integer value. This is the same as
+     * {@link #modifyAttribute(long, ITmfStateValue, int)} with a value of type
+     * INTEGER, but implementations can avoid creating a state value object
+     * for every state change.
+     *
+     * @param t
+     *            Timestamp of the state change
+     * @param value
+     *            The int value we want to assign to the attribute
+     * @param attributeQuark
+     *            Integer value of the quark corresponding to the attribute we
+     *            want to modify
+     * @throws TimeRangeException
+     *             If the requested time is outside of the trace's range
+     * @throws IndexOutOfBoundsException
+     *             If the attribute quark is out of range
+     * @throws StateValueTypeException
+     *             If the attribute already has values of another type
+     * @since 2.0
+     */
+    default void modifyAttribute(long t, int value, int attributeQuark)
+            throws StateValueTypeException {
+        modifyAttribute(t, TmfStateValue.newValueInt(value), attributeQuark);
+    }
+
+    /**
+     * Modify an attribute to a long value. This is the same as
+     * {@link #modifyAttribute(long, ITmfStateValue, int)} with a value of type
+     * LONG, but implementations can avoid creating a state value object
+     * for every state change.
+     *
+     * @param t
+     *            Timestamp of the state change
+     * @param value
+     *            The long value we want to assign to the attribute
+     * @param attributeQuark
+     *            Integer value of the quark corresponding to the attribute we
+     *            want to modify
+     * @throws TimeRangeException
+     *             If the requested time is outside of the trace's range
+     * @throws IndexOutOfBoundsException
+     *             If the attribute quark is out of range
+     * @throws StateValueTypeException
+     *             If the attribute already has values of another type
+     * @since 2.0
+     */
+    default void modifyAttribute(long t, long value, int attributeQuark)
+            throws StateValueTypeException {
+        modifyAttribute(t, TmfStateValue.newValueLong(value), attributeQuark);
+    }
+
+    /**
+     * Modify an attribute to a double value. This is the same as
+     * {@link #modifyAttribute(long, ITmfStateValue, int)} with a value of type
+     * DOUBLE, but implementations can avoid creating a state value object
+     * for every state change.
+     *
+     * @param t
+     *            Timestamp of the state change
+     * @param value
+     *            The double value we want to assign to the attribute
+     * @param attributeQuark
+     *            Integer value of the quark corresponding to the attribute we
+     *            want to modify
+     * @throws TimeRangeException
+     *             If the requested time is outside of the trace's range
+     * @throws IndexOutOfBoundsException
+     *             If the attribute quark is out of range
+     * @throws StateValueTypeException
+     *             If the attribute already has values of another type
+     * @since 2.0
+     */
+    default void modifyAttribute(long t, double value, int attributeQuark)
+            throws StateValueTypeException {
+        modifyAttribute(t, TmfStateValue.newValueDouble(value), attributeQuark);
+    }
+
     /**
      * Increment attribute method. Reads the current value of a given integer
      * attribute (this value is right now in the Transient State), and increment
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTInterval;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+
+/**
+ * Snapshot of the ongoing state of a state system that is being built: its
+ * attributes, and the current state of each of them with the time at which it
+ * started.
+ *
+ * A snapshot can be saved to a file, and used later to resume building the
+ * history where it was stopped, see
+ * {@link StateSystemFactory#resumeStateSystem}. The ongoing states are
+ * serialized like the intervals of a history tree.
+ *
+ * @since 2.0
+ */
+@NonNullByDefault
+public final class StateSnapshot {
+
+    private static final int SNAPSHOT_MAGIC_NUMBER = 0x05FFC0DE;
+
+    /* Bounds of the lengths read from a snapshot, which may be corrupt */
+    private static final int MAX_PATH_LENGTH = 1 << 16;
+    /* The values of the intervals have at most Short.MAX_VALUE bytes */
+    private static final int MAX_INTERVAL_SIZE = 1 << 16;
+
+    private final long fStartTime;
+    private final long fTime;
+    private final List<String[]> fAttributePaths;
+    private final List<ITmfStateInterval> fOngoingStates;
+
+    private StateSnapshot(long startTime, long time, List<String[]> attributePaths, List<ITmfStateInterval> ongoingStates) {
+        fStartTime = startTime;
+        fTime = time;
+        fAttributePaths = attributePaths;
+        fOngoingStates = ongoingStates;
+    }
+
+    /**
+     * Take a snapshot of the ongoing state of a state system. The state system
+     * should not be modified while the snapshot is taken.
+     *
+     * @param ss
+     *            The state system, which should not be closed yet
+     * @return The snapshot
+     */
+    public static StateSnapshot takeSnapshot(ITmfStateSystem ss) {
+        int nbAttributes = ss.getNbAttributes();
+        long time = ss.getCurrentEndTime();
+        List<String[]> paths = new ArrayList<>(nbAttributes);
+        for (int quark = 0; quark < nbAttributes; quark++) {
+            paths.add(ss.getFullAttributePathArray(quark));
+            time = Math.max(time, ss.getOngoingStartTime(quark));
+        }
+
+        /* The ongoing states end at the time of the snapshot */
+        List<ITmfStateInterval> ongoingStates = new ArrayList<>(nbAttributes);
+        for (int quark = 0; quark < nbAttributes; quark++) {
+            ITmfStateValue value = ss.queryOngoingState(quark);
+            ongoingStates.add(new HTInterval(ss.getOngoingStartTime(quark), time, quark, (TmfStateValue) value));
+        }
+        return new StateSnapshot(ss.getStartTime(), time, paths, ongoingStates);
+    }
+
+    /**
+     * Get the start time of the state system
+     *
+     * @return The start time
+     */
+    public long getStartTime() {
+        return fStartTime;
+    }
+
+    /**
+     * Get the time of this snapshot, which is the end time of the ongoing
+     * states.
+     *
+     * @return The time of the snapshot
+     */
+    public long getTime() {
+        return fTime;
+    }
+
+    /**
+     * Get the number of attributes of the state system
+     *
+     * @return The number of attributes
+     */
+    public int getNbAttributes() {
+        return fAttributePaths.size();
+    }
+
+    /**
+     * Get the full path of an attribute
+     *
+     * @param quark
+     *            The quark of the attribute
+     * @return The names of the attribute and of its parents, from the root
+     */
+    public String[] getAttributePath(int quark) {
+        return fAttributePaths.get(quark).clone();
+    }
+
+    /**
+     * Get the ongoing state of each attribute, as intervals ending at the time
+     * of this snapshot
+     *
+     * @return The ongoing states, indexed by quark
+     */
+    public List<ITmfStateInterval> getOngoingStates() {
+        return Collections.unmodifiableList(fOngoingStates);
+    }
+
+    /**
+     * Write this snapshot
+     *
+     * @param out
+     *            The output to write to
+     * @throws IOException
+     *             If the snapshot could not be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(SNAPSHOT_MAGIC_NUMBER);
+        out.writeLong(fStartTime);
+        out.writeLong(fTime);
+        out.writeInt(fAttributePaths.size());
+        for (int quark = 0; quark < fAttributePaths.size(); quark++) {
+            String[] path = fAttributePaths.get(quark);
+            out.writeInt(path.length);
+            for (String name : path) {
+                out.writeUTF(name);
+            }
+
+            HTInterval interval = (HTInterval) fOngoingStates.get(quark);
+            ByteBuffer buffer = ByteBuffer.allocate(interval.getSizeOnDisk(fStartTime));
+            interval.writeInterval(buffer, fStartTime);
+            out.writeInt(buffer.capacity());
+            out.write(buffer.array());
+        }
+    }
+
+    /**
+     * Read a snapshot written by {@link #writeTo(DataOutput)}
+     *
+     * @param in
+     *            The input to read from
+     * @return The snapshot
+     * @throws IOException
+     *             If the snapshot could not be read, or is not valid
+     */
+    public static StateSnapshot readFrom(DataInput in) throws IOException {
+        if (in.readInt() != SNAPSHOT_MAGIC_NUMBER) {
+            throw new IOException("Not a state system snapshot"); //$NON-NLS-1$
+        }
+        long startTime = in.readLong();
+        long time = in.readLong();
+        int nbAttributes = in.readInt();
+        if (nbAttributes < 0 || time < startTime) {
+            throw new IOException("Invalid state system snapshot"); //$NON-NLS-1$
+        }
+        /* The lists grow as the attributes are read, the count may be wrong */
+        List<String[]> paths = new ArrayList<>();
+        List<ITmfStateInterval> ongoingStates = new ArrayList<>();
+        for (int quark = 0; quark < nbAttributes; quark++) {
+            String[] path = new String[readLength(in, MAX_PATH_LENGTH)];
+            for (int i = 0; i < path.length; i++) {
+                path[i] = in.readUTF();
+            }
+            paths.add(path);
+
+            byte[] bytes = new byte[readLength(in, MAX_INTERVAL_SIZE)];
+            in.readFully(bytes);
+            try {
+                HTInterval interval = HTInterval.readFrom(ByteBuffer.wrap(bytes), startTime);
+                if (interval.getAttribute() != quark || interval.getEndTime() != time) {
+                    throw new IOException("Invalid state system snapshot"); //$NON-NLS-1$
+                }
+                ongoingStates.add(interval);
+            } catch (BufferUnderflowException e) {
+                throw new IOException(e);
+            }
+        }
+        return new StateSnapshot(startTime, time, paths, ongoingStates);
+    }
+
+    private static int readLength(DataInput in, int max) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > max) {
+            throw new IOException("Invalid length in state system snapshot: " + length); //$NON-NLS-1$
+        }
+        return length;
+    }
+}
@@ -12,7 +12,6 @@ package org.eclipse.tracecompass.statesystem.core;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
-import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 
 /**
  * Provide utility methods for building the state system
@@ -50,7 +49,7 @@ public final class StateSystemBuilderUtils {
         if (!stateValue.isNull()) {
             prevValue = stateValue.unboxLong();
         }
-        ssb.modifyAttribute(t, TmfStateValue.newValueLong(prevValue + increment), attributeQuark);
+        ssb.modifyAttribute(t, prevValue + increment, attributeQuark);
     }
 
     /**
@@ -79,7 +78,7 @@ public final class StateSystemBuilderUtils {
         if (!stateValue.isNull()) {
             prevValue = stateValue.unboxInt();
         }
-        ssb.modifyAttribute(t, TmfStateValue.newValueInt(prevValue + increment), attributeQuark);
+        ssb.modifyAttribute(t, prevValue + increment, attributeQuark);
     }
 
 }
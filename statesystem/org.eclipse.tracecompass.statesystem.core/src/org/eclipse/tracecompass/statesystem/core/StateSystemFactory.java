@@ -13,10 +13,15 @@
 package org.eclipse.tracecompass.statesystem.core;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.tracecompass.internal.statesystem.core.StateSystem;
 import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
 
 /**
  * Factory to create state systems.
@@ -30,6 +35,9 @@ import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
 @NonNullByDefault
 public final class StateSystemFactory {
 
+    /** Number of time windows in which to copy a history when resuming it */
+    private static final int COPY_WINDOWS = 256;
+
     private StateSystemFactory() {}
 
     /**
@@ -64,4 +72,64 @@ public final class StateSystemFactory {
         return new StateSystem(backend, newFile);
     }
 
+    /**
+     * Factory method to resume building a history that was stopped. The
+     * intervals of the previous history that ended before the states ongoing
+     * in the snapshot are copied into the new back-end, and the new state
+     * system then continues from the snapshot.
+     *
+     * @param backend
+     *            The new back-end, which must have the same start time as the
+     *            previous one
+     * @param previousBackend
+     *            The back-end of the stopped history. It must have been closed
+     *            after the snapshot was taken.
+     * @param snapshot
+     *            The snapshot taken when the history was stopped
+     * @return The new state system, which can be built from the time of the
+     *         snapshot
+     * @throws StateSystemDisposedException
+     *             If the previous back-end was disposed
+     * @since 2.0
+     */
+    public static ITmfStateSystemBuilder resumeStateSystem(IStateHistoryBackend backend,
+            IStateHistoryBackend previousBackend, StateSnapshot snapshot) throws StateSystemDisposedException {
+        if (backend.getStartTime() != snapshot.getStartTime()) {
+            throw new IllegalArgumentException();
+        }
+        int nbAttributes = snapshot.getNbAttributes();
+        List<Integer> quarks = new ArrayList<>(nbAttributes);
+        long[] ongoingStartTimes = new long[nbAttributes];
+        for (int quark = 0; quark < nbAttributes; quark++) {
+            quarks.add(quark);
+            ongoingStartTimes[quark] = snapshot.getOngoingStates().get(quark).getStartTime();
+        }
+
+        /*
+         * The back-end expects the intervals in the order of their end times,
+         * so copy them by windows of time, sorting the intervals ending in
+         * each window.
+         */
+        long start = snapshot.getStartTime();
+        long end = Math.min(snapshot.getTime(), previousBackend.getEndTime());
+        long windowDuration = (end - start) / COPY_WINDOWS + 1;
+        for (long windowStart = start; windowStart <= end; windowStart += windowDuration) {
+            long windowEnd = Math.min(end, windowStart + windowDuration - 1);
+            List<ITmfStateInterval> intervals = new ArrayList<>();
+            for (ITmfStateInterval interval : previousBackend.query2D(quarks, windowStart, windowEnd)) {
+                /* The ongoing states are restored from the snapshot instead */
+                if (interval.getEndTime() >= windowStart && interval.getEndTime() <= windowEnd &&
+                        interval.getStartTime() < ongoingStartTimes[interval.getAttribute()]) {
+                    intervals.add(interval);
+                }
+            }
+            intervals.sort(Comparator.comparingLong(ITmfStateInterval::getEndTime));
+            for (ITmfStateInterval interval : intervals) {
+                backend.insertPastState(interval.getStartTime(), interval.getEndTime(),
+                        interval.getAttribute(), interval.getStateValue());
+            }
+        }
+        return new StateSystem(backend, snapshot);
+    }
+
 }
@@ -15,6 +15,8 @@ package org.eclipse.tracecompass.statesystem.core.backend;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNull;
@@ -182,6 +184,57 @@ public interface IStateHistoryBackend {
     ITmfStateInterval doSingularQuery(long t, int attributeQuark)
             throws TimeRangeException, StateSystemDisposedException;
 
+    /**
+     * Two-dimensional query method. It returns all the intervals of the given
+     * attributes that intersect the time range [start, end], in no particular
+     * order.
+     * <p>
+     * Back-ends should override this method to fetch all the intervals in one
+     * pass over their storage. The default implementation is a fallback that
+     * runs successive singular queries for each attribute.
+     *
+     * @param quarks
+     *            The attributes for which to return the intervals
+     * @param start
+     *            The start of the time range
+     * @param end
+     *            The end of the time range
+     * @return The intervals intersecting the time range, for the requested
+     *         attributes
+     * @throws TimeRangeException
+     *             If the time range is invalid
+     * @throws StateSystemDisposedException
+     *             If the state system is disposed while a request is ongoing.
+     * @since 2.0
+     */
+    default Iterable<@NonNull ITmfStateInterval> query2D(@NonNull Collection<@NonNull Integer> quarks, long start, long end)
+            throws TimeRangeException, StateSystemDisposedException {
+        if (end < start) {
+            throw new TimeRangeException(getSSID() + " Start:" + start + ", End:" + end); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        long t1 = Math.max(start, getStartTime());
+        long t2 = Math.min(end, getEndTime());
+        List<@NonNull ITmfStateInterval> intervals = new ArrayList<>();
+        if (t1 > t2) {
+            return intervals;
+        }
+        for (Integer quark : quarks) {
+            long t = t1;
+            while (t <= t2) {
+                ITmfStateInterval interval = doSingularQuery(t, quark);
+                if (interval == null) {
+                    break;
+                }
+                intervals.add(interval);
+                if (interval.getEndTime() == Long.MAX_VALUE) {
+                    break;
+                }
+                t = interval.getEndTime() + 1;
+            }
+        }
+        return intervals;
+    }
+
     /**
      * Debug method to print the contents of the history backend.
      *
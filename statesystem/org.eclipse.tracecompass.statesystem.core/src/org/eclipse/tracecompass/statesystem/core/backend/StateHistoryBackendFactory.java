@@ -18,6 +18,7 @@ import java.io.IOException;
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.InMemoryBackend;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.NullBackend;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTConfig;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HistoryTreeBackend;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.ThreadedHistoryTreeBackend;
 
@@ -94,6 +95,46 @@ public final class StateHistoryBackendFactory {
         return new HistoryTreeBackend(ssid, stateFile, providerVersion, startTime);
     }
 
+    /**
+     * Create a new backend using a History Tree with the overlapping layout.
+     * In that layout, the time ranges of sibling nodes can overlap, so that
+     * long intervals that do not fit in a full leaf go in the next leaf
+     * instead of in its parents, and the core nodes keep the end time of each
+     * of their children. This keeps the upper nodes smaller, at the cost of
+     * following several branches for some queries.
+     *
+     * Existing files of either layout are opened with
+     * {@link #createHistoryTreeBackendExistingFile}.
+     *
+     * @param ssid
+     *            The state system's id
+     * @param stateFile
+     *            The filename/location where to store the state history (Should
+     *            end in .ht)
+     * @param providerVersion
+     *            Version of of the state provider. We will only try to reopen
+     *            existing files if this version matches the one in the
+     *            framework.
+     * @param startTime
+     *            The earliest time stamp that will be stored in the history
+     * @param queueSize
+     *            The size of the interval insertion queue between the receiver
+     *            and writer threads. If 0 is specified, no queue is used and
+     *            the writes happen in the same thread.
+     * @return The state system backend
+     * @throws IOException
+     *             Thrown if we can't create the file for some reason
+     * @since 2.0
+     */
+    public static IStateHistoryBackend createOverlappingHistoryTreeBackendNewFile(String ssid,
+            File stateFile, int providerVersion, long startTime, int queueSize) throws IOException {
+        HTConfig conf = new HTConfig(stateFile, providerVersion, startTime, true);
+        if (queueSize > 0) {
+            return new ThreadedHistoryTreeBackend(ssid, conf, queueSize);
+        }
+        return new HistoryTreeBackend(ssid, conf);
+    }
+
     /**
      * Create a new History Tree backend, but attempt to open an existing file
      * on disk. If the file cannot be found or recognized, an IOException will
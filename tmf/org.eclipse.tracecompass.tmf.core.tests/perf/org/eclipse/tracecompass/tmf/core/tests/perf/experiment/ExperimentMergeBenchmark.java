@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.perf.experiment;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
+import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
+import org.junit.Test;
+
+/**
+ * Benchmark of the merge of the events of the traces of an experiment, on a
+ * synthetic experiment with many traces whose events interleave.
+ */
+public class ExperimentMergeBenchmark {
+
+    private static final String TEST_ID = "org.eclipse.linuxtools#Experiment merge#";
+    private static final String TEST_SUMMARY = "Experiment merge: ";
+
+    private static final int NB_TRACES = 500;
+    private static final int NB_EVENTS_PER_TRACE = 2000;
+    private static final int NB_READERS = 4;
+    private static final int LOOP_COUNT = 5;
+
+    /**
+     * Read all the events of the experiment with one context
+     */
+    @Test
+    public void testSequentialRead() {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + "sequential read");
+        perf.tagAsSummary(pm, TEST_SUMMARY + NB_TRACES + " traces", Dimension.CPU_TIME);
+
+        for (int i = 0; i < LOOP_COUNT; i++) {
+            TmfExperiment experiment = createExperiment();
+            pm.start();
+            long nbEvents = readAll(experiment);
+            pm.stop();
+            assertEquals((long) NB_TRACES * NB_EVENTS_PER_TRACE, nbEvents);
+            experiment.dispose();
+        }
+        pm.commit();
+    }
+
+    /**
+     * Read all the events of the experiment with concurrent readers, each with
+     * its own context
+     *
+     * @throws Exception
+     *             if a reader fails
+     */
+    @Test
+    public void testConcurrentRead() throws Exception {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + "concurrent read");
+        perf.tagAsSummary(pm, TEST_SUMMARY + NB_TRACES + " traces, " + NB_READERS + " readers", Dimension.ELAPSED_PROCESS);
+
+        ExecutorService executor = Executors.newFixedThreadPool(NB_READERS);
+        try {
+            for (int i = 0; i < LOOP_COUNT; i++) {
+                TmfExperiment experiment = createExperiment();
+                pm.start();
+                List<Future<Long>> futures = new ArrayList<>();
+                for (int j = 0; j < NB_READERS; j++) {
+                    futures.add(executor.submit(() -> readAll(experiment)));
+                }
+                for (Future<Long> future : futures) {
+                    assertEquals((long) NB_TRACES * NB_EVENTS_PER_TRACE, future.get().longValue());
+                }
+                pm.stop();
+                experiment.dispose();
+            }
+        } catch (ExecutionException e) {
+            throw (Exception) e.getCause();
+        } finally {
+            executor.shutdown();
+        }
+        pm.commit();
+    }
+
+    private static TmfExperiment createExperiment() {
+        ITmfTrace[] traces = new ITmfTrace[NB_TRACES];
+        for (int i = 0; i < NB_TRACES; i++) {
+            traces[i] = new SyntheticTrace(i);
+        }
+        return new TmfExperiment(ITmfEvent.class, "MergeExperiment", traces, TmfExperiment.DEFAULT_INDEX_PAGE_SIZE, null);
+    }
+
+    private static long readAll(TmfExperiment experiment) {
+        ITmfContext context = experiment.seekEvent((ITmfLocation) null);
+        long nbEvents = 0;
+        long lastTime = Long.MIN_VALUE;
+        ITmfEvent event = experiment.getNext(context);
+        while (event != null) {
+            long time = event.getTimestamp().getValue();
+            if (time < lastTime) {
+                throw new IllegalStateException("Events out of order"); //$NON-NLS-1$
+            }
+            lastTime = time;
+            nbEvents++;
+            event = experiment.getNext(context);
+        }
+        context.dispose();
+        return nbEvents;
+    }
+
+    /**
+     * Trace generating its events in memory. The event of rank r of trace i is
+     * at time r * NB_TRACES + i, so the events of the traces interleave and the
+     * experiment switches trace at every event.
+     */
+    private static class SyntheticTrace extends TmfTrace {
+
+        private final int fTraceIndex;
+        private ITmfLocation fCurrentLocation = new TmfLongLocation(0L);
+
+        public SyntheticTrace(int traceIndex) {
+            fTraceIndex = traceIndex;
+        }
+
+        @Override
+        public IStatus validate(IProject project, String path) {
+            return Status.OK_STATUS;
+        }
+
+        @Override
+        public synchronized ITmfContext seekEvent(ITmfLocation location) {
+            long rank = (location == null ? 0L : (Long) location.getLocationInfo());
+            fCurrentLocation = new TmfLongLocation(rank);
+            return new TmfContext(fCurrentLocation, rank);
+        }
+
+        @Override
+        public ITmfContext seekEvent(double ratio) {
+            return seekEvent(new TmfLongLocation(Math.round(ratio * NB_EVENTS_PER_TRACE)));
+        }
+
+        @Override
+        public double getLocationRatio(ITmfLocation location) {
+            return (double) (Long) location.getLocationInfo() / NB_EVENTS_PER_TRACE;
+        }
+
+        @Override
+        public ITmfLocation getCurrentLocation() {
+            return fCurrentLocation;
+        }
+
+        @Override
+        public ITmfEvent parseEvent(ITmfContext context) {
+            long rank = (Long) context.getLocation().getLocationInfo();
+            if (rank >= NB_EVENTS_PER_TRACE) {
+                return null;
+            }
+            fCurrentLocation = new TmfLongLocation(rank + 1);
+            return new TmfEvent(this, rank, TmfTimestamp.fromNanos(rank * NB_TRACES + fTraceIndex), null, null);
+        }
+    }
+}
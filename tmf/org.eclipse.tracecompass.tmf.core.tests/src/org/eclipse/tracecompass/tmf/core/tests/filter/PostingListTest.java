@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.filter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+
+import org.eclipse.tracecompass.internal.tmf.core.filter.PostingList;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfEventSearchIndex;
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link PostingList} class, in its sorted array and in
+ * its bitmap form.
+ */
+@SuppressWarnings("javadoc")
+public class PostingListTest {
+
+    @Test
+    public void testEmpty() throws IOException {
+        PostingList list = new PostingList();
+        assertEquals(0, list.getCardinality());
+        assertEquals(new BitSet(), getOffsets(list));
+        assertEquals(new BitSet(), getOffsets(copy(list)));
+    }
+
+    @Test
+    public void testArray() throws IOException {
+        PostingList list = new PostingList();
+        BitSet expected = new BitSet();
+        for (int offset = 3; offset < TmfEventSearchIndex.BLOCK_SIZE; offset += 100) {
+            list.add(offset);
+            /* Adding the last offset again has no effect */
+            list.add(offset);
+            expected.set(offset);
+        }
+        assertEquals(expected.cardinality(), list.getCardinality());
+        assertEquals(expected, getOffsets(list));
+        assertEquals(expected, getOffsets(copy(list)));
+    }
+
+    @Test
+    public void testArrayToBitmap() throws IOException {
+        PostingList list = new PostingList();
+        BitSet expected = new BitSet();
+        for (int offset = 1; expected.cardinality() < PostingList.ARRAY_MAX; offset += 7) {
+            list.add(offset);
+            expected.set(offset);
+        }
+        assertEquals(PostingList.ARRAY_MAX, list.getCardinality());
+        assertEquals(expected, getOffsets(list));
+
+        /* The next offsets are set in the bitmap of the block */
+        for (int offset = expected.length() + 1; offset < TmfEventSearchIndex.BLOCK_SIZE; offset += 3) {
+            list.add(offset);
+            list.add(offset);
+            expected.set(offset);
+        }
+        list.add(TmfEventSearchIndex.BLOCK_SIZE - 1);
+        expected.set(TmfEventSearchIndex.BLOCK_SIZE - 1);
+        assertEquals(expected.cardinality(), list.getCardinality());
+        assertEquals(expected, getOffsets(list));
+
+        PostingList copy = copy(list);
+        assertEquals(expected.cardinality(), copy.getCardinality());
+        assertEquals(expected, getOffsets(copy));
+    }
+
+    @Test
+    public void testFullBlock() throws IOException {
+        PostingList list = new PostingList();
+        for (int offset = 0; offset < TmfEventSearchIndex.BLOCK_SIZE; offset++) {
+            list.add(offset);
+        }
+        BitSet expected = new BitSet();
+        expected.set(0, TmfEventSearchIndex.BLOCK_SIZE);
+        assertEquals(TmfEventSearchIndex.BLOCK_SIZE, list.getCardinality());
+        assertEquals(expected, getOffsets(copy(list)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidBitmapCardinality() throws IOException {
+        PostingList list = new PostingList();
+        for (int offset = 0; offset <= PostingList.ARRAY_MAX; offset++) {
+            list.add(offset);
+        }
+        byte[] bytes = write(list);
+        /* The cardinality is the first int of the list */
+        bytes[3]++;
+        read(bytes);
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnsortedArray() throws IOException {
+        PostingList list = new PostingList();
+        list.add(1);
+        list.add(2);
+        byte[] bytes = write(list);
+        /* The offsets follow the cardinality and the kind of list */
+        bytes[Integer.BYTES + 1 + 1] = 3;
+        read(bytes);
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    private static BitSet getOffsets(PostingList list) {
+        BitSet bits = new BitSet();
+        list.addTo(bits);
+        return bits;
+    }
+
+    private static byte[] write(PostingList list) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            list.write(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static PostingList read(byte[] bytes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            return PostingList.read(in);
+        }
+    }
+
+    private static PostingList copy(PostingList list) throws IOException {
+        return read(write(list));
+    }
+}
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+
+import org.eclipse.tracecompass.internal.tmf.core.filter.SearchIndexBlock;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfEventSearchIndex;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventType;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link SearchIndexBlock} class: the posting lists of the
+ * event types and field values, and the fields that are not covered.
+ */
+@SuppressWarnings("javadoc")
+public class SearchIndexBlockTest {
+
+    /**
+     * Create an event of a type with top-level fields, given as pairs of
+     * names and values
+     */
+    static ITmfEvent event(String type, Object... fields) {
+        ITmfEventField[] children = new ITmfEventField[fields.length / 2];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = new TmfEventField((String) fields[2 * i], fields[2 * i + 1], null);
+        }
+        ITmfEventField content = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, null, children);
+        return new TmfEvent(null, ITmfContext.UNKNOWN_RANK, TmfTimestamp.fromNanos(0), new TmfEventType(type, null), content);
+    }
+
+    @Test
+    public void testEventTypes() throws IOException {
+        SearchIndexBlock block = new SearchIndexBlock();
+        ITmfEvent[] events = { event("A"), event("B"), event("C") };
+        BitSet expectedB = new BitSet();
+        for (int offset = 0; offset < TmfEventSearchIndex.BLOCK_SIZE; offset++) {
+            int type = (offset % 5 == 0 ? 1 : (offset % 1000 == 1 ? 2 : 0));
+            block.add(events[type]);
+            if (type == 1) {
+                expectedB.set(offset);
+            }
+        }
+        assertTrue(block.isFull());
+        assertEquals(TmfEventSearchIndex.BLOCK_SIZE, block.getNbEvents());
+
+        for (SearchIndexBlock b : new SearchIndexBlock[] { block, copy(block) }) {
+            assertEquals(TmfEventSearchIndex.BLOCK_SIZE, b.getNbEvents());
+            assertEquals(expectedB, b.getEventsOfType("B"));
+            BitSet c = b.getEventsOfType("C");
+            assertEquals(TmfEventSearchIndex.BLOCK_SIZE / 1000 + 1, c.cardinality());
+            assertTrue(c.get(1));
+            assertFalse(c.get(0));
+            BitSet all = b.getEventsOfType("A");
+            all.or(b.getEventsOfType("B"));
+            all.or(c);
+            assertEquals(TmfEventSearchIndex.BLOCK_SIZE, all.cardinality());
+            assertTrue(b.getEventsOfType("D").isEmpty());
+        }
+    }
+
+    @Test
+    public void testFieldValues() throws IOException {
+        SearchIndexBlock block = new SearchIndexBlock();
+        BitSet cpu3 = new BitSet();
+        BitSet tid42 = new BitSet();
+        for (int offset = 0; offset < 10000; offset++) {
+            int cpu = offset % 8;
+            long tid = (offset % 100 == 0 ? 42 : offset % 200);
+            block.add(event("E", "cpu", cpu, "tid", tid));
+            if (cpu == 3) {
+                cpu3.set(offset);
+            }
+            if (tid == 42) {
+                tid42.set(offset);
+            }
+        }
+        assertFalse(block.isFull());
+
+        for (SearchIndexBlock b : new SearchIndexBlock[] { block, copy(block) }) {
+            assertEquals(10000, b.getNbEvents());
+            /* The values are indexed by their string value */
+            assertEquals(cpu3, b.getEventsWithValue("cpu", "3"));
+            assertEquals(tid42, b.getEventsWithValue("tid", "42"));
+            assertTrue(b.getEventsWithValue("cpu", "8").isEmpty());
+            /* A field that no event has is covered, no event has a value */
+            assertTrue(b.getEventsWithValue("prio", "0").isEmpty());
+        }
+    }
+
+    @Test
+    public void testTooManyValues() throws IOException {
+        SearchIndexBlock block = new SearchIndexBlock();
+        for (int offset = 0; offset <= SearchIndexBlock.MAX_VALUES_PER_FIELD; offset++) {
+            block.add(event("E", "tid", offset, "cpu", offset % 2));
+        }
+        /* Once the field was excluded, its new values are not indexed */
+        block.add(event("E", "tid", 0, "cpu", 0));
+        for (SearchIndexBlock b : new SearchIndexBlock[] { block, copy(block) }) {
+            assertNull(b.getEventsWithValue("tid", "0"));
+            assertNull(b.getEventsWithValue("tid", "1"));
+            assertEquals(SearchIndexBlock.MAX_VALUES_PER_FIELD / 2 + 2, b.getEventsWithValue("cpu", "0").cardinality());
+        }
+    }
+
+    @Test
+    public void testTooLongValue() throws IOException {
+        SearchIndexBlock block = new SearchIndexBlock();
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i <= SearchIndexBlock.MAX_VALUE_LENGTH; i++) {
+            value.append('x');
+        }
+        block.add(event("E", "name", "short", "cpu", 1));
+        block.add(event("E", "name", value.toString(), "cpu", 1));
+        for (SearchIndexBlock b : new SearchIndexBlock[] { block, copy(block) }) {
+            assertNull(b.getEventsWithValue("name", "short"));
+            assertEquals(2, b.getEventsWithValue("cpu", "1").cardinality());
+        }
+    }
+
+    @Test
+    public void testTooManyFields() throws IOException {
+        SearchIndexBlock block = new SearchIndexBlock();
+        for (int i = 0; i <= SearchIndexBlock.MAX_FIELDS; i++) {
+            block.add(event("E", "field" + i, "value"));
+        }
+        for (SearchIndexBlock b : new SearchIndexBlock[] { block, copy(block) }) {
+            for (int i = 0; i < SearchIndexBlock.MAX_FIELDS; i++) {
+                BitSet bits = b.getEventsWithValue("field" + i, "value");
+                assertEquals(1, bits.cardinality());
+                assertTrue(bits.get(i));
+            }
+            assertNull(b.getEventsWithValue("field" + SearchIndexBlock.MAX_FIELDS, "value"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidNbEvents() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            new SearchIndexBlock().write(out);
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            SearchIndexBlock.read(in);
+        }
+    }
+
+    private static SearchIndexBlock copy(SearchIndexBlock block) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            block.write(out);
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return SearchIndexBlock.read(in);
+        }
+    }
+}
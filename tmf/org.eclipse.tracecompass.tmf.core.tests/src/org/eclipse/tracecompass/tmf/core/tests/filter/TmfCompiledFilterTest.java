@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfCompiledFilter;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfBaseAspects;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfContentFieldAspect;
+import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
+import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAndNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode.Type;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterContainsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterEqualsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterMatchesNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterOrNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterTraceTypeNode;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link TmfCompiledFilter} class. The compiled filters
+ * must give the same results as the filter trees they are compiled from.
+ */
+@SuppressWarnings("javadoc")
+public class TmfCompiledFilterTest {
+
+    private static final @NonNull TmfTraceStub TRACE = new TmfTraceStub();
+    private static final @NonNull String FIELD = "field";
+    private static final @NonNull String OTHER_FIELD = "other";
+    private static final Object[] VALUES = { "1", "5", "11", "abc", "ABC", "a.b", 7L, 2.5, 5, null };
+
+    private final List<ITmfEvent> fEvents = new ArrayList<>();
+
+    public TmfCompiledFilterTest() {
+        for (int i = 0; i < VALUES.length; i++) {
+            ITmfEventField[] fields = new ITmfEventField[] {
+                    new TmfEventField(FIELD, VALUES[i], null),
+                    new TmfEventField(OTHER_FIELD, VALUES[VALUES.length - 1 - i], null) };
+            ITmfEventField content = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, null, fields);
+            fEvents.add(new TmfEvent(TRACE, i, TmfTimestamp.fromNanos(i), TmfFilterTreeNodeTestBase.EVENT_TYPE, content));
+        }
+    }
+
+    @AfterClass
+    public static void disposeTrace() {
+        TRACE.dispose();
+    }
+
+    // ------------------------------------------------------------------------
+    // Tests
+    // ------------------------------------------------------------------------
+
+    @Test
+    public void testNotFilterTree() {
+        ITmfFilter filter = event -> true;
+        assertSame(filter, TmfCompiledFilter.compile(filter));
+    }
+
+    @Test
+    public void testLeaves() {
+        for (boolean not : new boolean[] { false, true }) {
+            for (boolean ignoreCase : new boolean[] { false, true }) {
+                assertSameResults(equalsNode(FIELD, "abc", ignoreCase, not));
+                assertSameResults(containsNode(FIELD, "b", ignoreCase, not));
+                assertSameResults(containsNode(FIELD, "B", ignoreCase, not));
+            }
+            assertSameResults(matchesNode(FIELD, "^[0-9]+$", not));
+            assertSameResults(matchesNode(FIELD, "[", not));
+            for (int result = -1; result <= 1; result++) {
+                assertSameResults(compareNode(FIELD, Type.NUM, "5", result, not));
+                assertSameResults(compareNode(FIELD, Type.NUM, "2.5", result, not));
+                assertSameResults(compareNode(FIELD, Type.NUM, "0x5", result, not));
+                assertSameResults(compareNode(FIELD, Type.ALPHA, "5", result, not));
+            }
+        }
+    }
+
+    @Test
+    public void testTimestamp() {
+        for (int result = -1; result <= 1; result++) {
+            TmfFilterCompareNode node = new TmfFilterCompareNode(null);
+            node.setEventAspect(TmfBaseAspects.getTimestampAspect());
+            node.setType(Type.TIMESTAMP);
+            node.setValue("0.000000004");
+            node.setResult(result);
+            assertSameResults(node);
+        }
+    }
+
+    @Test
+    public void testNoAspect() {
+        TmfFilterEqualsNode node = new TmfFilterEqualsNode(null);
+        node.setValue("abc");
+        assertSameResults(node);
+        node.setNot(true);
+        assertSameResults(node);
+    }
+
+    @Test
+    public void testTree() {
+        for (boolean not : new boolean[] { false, true }) {
+            TmfFilterRootNode root = new TmfFilterRootNode();
+            TmfFilterNode filterNode = new TmfFilterNode(root, "filter");
+            TmfFilterOrNode or = new TmfFilterOrNode(filterNode);
+            or.setNot(not);
+            TmfFilterAndNode and = new TmfFilterAndNode(or);
+            and.addChild(matchesNode(FIELD, "[a-z]", false));
+            and.addChild(equalsNode(OTHER_FIELD, "5", false, true));
+            TmfFilterAndNode nestedAnd = new TmfFilterAndNode(and);
+            nestedAnd.addChild(containsNode(FIELD, "A", true, false));
+            or.addChild(compareNode(OTHER_FIELD, Type.NUM, "5", 1, not));
+            TmfFilterOrNode nestedOr = new TmfFilterOrNode(or);
+            nestedOr.addChild(equalsNode(FIELD, "1", false, false));
+            assertSameResults(root);
+        }
+    }
+
+    @Test
+    public void testTraceType() {
+        TmfFilterTraceTypeNode node = new TmfFilterTraceTypeNode(null);
+        node.setTraceClass(TmfTraceStub.class);
+        node.addChild(equalsNode(FIELD, "5", false, false));
+        assertSameResults(node);
+        node.setTraceTypeId("unknown");
+        assertSameResults(node);
+    }
+
+    /**
+     * Each aspect is resolved at most once per event
+     */
+    @Test
+    public void testResolveOnce() {
+        CountingAspect aspect = new CountingAspect();
+        TmfFilterOrNode or = new TmfFilterOrNode(null);
+        for (String value : new String[] { "x", "y", "z" }) {
+            TmfFilterEqualsNode node = new TmfFilterEqualsNode(or);
+            node.setEventAspect(aspect);
+            node.setValue(value);
+        }
+        ITmfFilter filter = TmfCompiledFilter.compile(or);
+        for (ITmfEvent event : fEvents) {
+            filter.matches(event);
+        }
+        assertEquals(fEvents.size(), aspect.fCount);
+    }
+
+    /**
+     * Nodes that are not compiled are called in the order of the tree
+     */
+    @Test
+    public void testNodeOrder() {
+        List<String> calls = new ArrayList<>();
+        TmfFilterAndNode and = new TmfFilterAndNode(null);
+        and.addChild(new TmfFilterNode(null) {
+            @Override
+            public boolean matches(ITmfEvent event) {
+                calls.add("node");
+                return true;
+            }
+        });
+        and.addChild(equalsNode(FIELD, "abc", false, false));
+        assertSameResults(and);
+        calls.clear();
+        TmfCompiledFilter.compile(and).matches(fEvents.get(0));
+        assertEquals(1, calls.size());
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    private void assertSameResults(ITmfFilterTreeNode node) {
+        ITmfFilter filter = TmfCompiledFilter.compile(node);
+        for (ITmfEvent event : fEvents) {
+            assertEquals(node.toString() + " " + event.getContent(), node.matches(event), filter.matches(event));
+        }
+    }
+
+    private static TmfFilterEqualsNode equalsNode(@NonNull String field, String value, boolean ignoreCase, boolean not) {
+        TmfFilterEqualsNode node = new TmfFilterEqualsNode(null);
+        node.setEventAspect(new TmfContentFieldAspect(field, field));
+        node.setValue(value);
+        node.setIgnoreCase(ignoreCase);
+        node.setNot(not);
+        return node;
+    }
+
+    private static TmfFilterContainsNode containsNode(@NonNull String field, String value, boolean ignoreCase, boolean not) {
+        TmfFilterContainsNode node = new TmfFilterContainsNode(null);
+        node.setEventAspect(new TmfContentFieldAspect(field, field));
+        node.setValue(value);
+        node.setIgnoreCase(ignoreCase);
+        node.setNot(not);
+        return node;
+    }
+
+    private static TmfFilterMatchesNode matchesNode(@NonNull String field, String regex, boolean not) {
+        TmfFilterMatchesNode node = new TmfFilterMatchesNode(null);
+        node.setEventAspect(new TmfContentFieldAspect(field, field));
+        node.setRegex(regex);
+        node.setNot(not);
+        return node;
+    }
+
+    private static TmfFilterCompareNode compareNode(@NonNull String field, Type type, String value, int result, boolean not) {
+        TmfFilterCompareNode node = new TmfFilterCompareNode(null);
+        node.setEventAspect(new TmfContentFieldAspect(field, field));
+        node.setType(type);
+        node.setValue(value);
+        node.setResult(result);
+        node.setNot(not);
+        return node;
+    }
+
+    private static class CountingAspect implements ITmfEventAspect<Object> {
+        private int fCount = 0;
+
+        @Override
+        public String getName() {
+            return FIELD;
+        }
+
+        @Override
+        public String getHelpText() {
+            return FIELD;
+        }
+
+        @Override
+        public Object resolve(ITmfEvent event) {
+            fCount++;
+            ITmfEventField field = event.getContent().getField(FIELD);
+            return (field == null ? null : field.getValue());
+        }
+    }
+}
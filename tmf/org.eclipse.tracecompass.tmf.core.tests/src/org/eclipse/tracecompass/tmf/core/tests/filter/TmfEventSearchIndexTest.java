@@ -0,0 +1,297 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.tracecompass.internal.tmf.core.filter.SearchIndexBlock;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfEventSearchIndex;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfEventSearchIndex.Query;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfEventSearchIndexModule;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfBaseAspects;
+import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAndNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterEqualsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterOrNode;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceOpenedSignal;
+import org.eclipse.tracecompass.tmf.core.tests.shared.TmfTestTrace;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link TmfEventSearchIndex} class and its analysis
+ * module. The candidates of a query must include all the events that match
+ * the filter.
+ */
+@SuppressWarnings("javadoc")
+public class TmfEventSearchIndexTest {
+
+    private static final TmfTestTrace TEST_TRACE = TmfTestTrace.A_TEST_10K;
+    private static final int NB_EVENTS = 10000;
+    private static final int BLOCK_SIZE = TmfEventSearchIndex.BLOCK_SIZE;
+
+    private TmfTrace fTrace;
+    private TmfEventSearchIndexModule fModule;
+    private TmfEventSearchIndex fIndex;
+    private final List<String> fTypes = new ArrayList<>();
+
+    // ------------------------------------------------------------------------
+    // Housekeeping
+    // ------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws Exception {
+        ITmfTrace trace = TEST_TRACE.getTrace();
+        fTrace = (TmfTrace) trace;
+        fModule = new TmfEventSearchIndexModule();
+        assertTrue(fModule.setTrace(trace));
+        fModule.schedule();
+        assertTrue(fModule.waitForCompletion());
+        fIndex = fModule.getIndex();
+        assertNotNull(fIndex);
+
+        TmfEventRequest request = new TmfEventRequest(ITmfEvent.class, TmfTimeRange.ETERNITY,
+                0, ITmfEventRequest.ALL_DATA, ITmfEventRequest.ExecutionType.FOREGROUND) {
+            @Override
+            public void handleData(ITmfEvent event) {
+                super.handleData(event);
+                fTypes.add(event.getType().getName());
+            }
+        };
+        trace.sendRequest(request);
+        request.waitForCompletion();
+    }
+
+    @After
+    public void tearDown() {
+        fModule.dispose();
+        TEST_TRACE.dispose();
+    }
+
+    // ------------------------------------------------------------------------
+    // Tests
+    // ------------------------------------------------------------------------
+
+    @Test
+    public void testBuild() {
+        assertEquals(NB_EVENTS, fTypes.size());
+        assertEquals(NB_EVENTS, fIndex.getNbEvents());
+    }
+
+    @Test
+    public void testEventType() {
+        Query query = fIndex.createQuery(typeNode("Type-2", false));
+        assertTrue(query.isIndexed());
+        assertEquals(getRanks("Type-2"), getCandidates(query));
+        List<Long> ranks = getRanks("Type-2");
+        assertEquals(ranks.get(ranks.size() - 1).longValue(), query.previousCandidate(NB_EVENTS - 1));
+        assertEquals(-1, query.previousCandidate(ranks.get(0) - 1));
+    }
+
+    @Test
+    public void testOr() {
+        TmfFilterOrNode or = new TmfFilterOrNode(null);
+        or.addChild(typeNode("Type-2", false));
+        or.addChild(typeNode("Type-5", false));
+        List<Long> candidates = getCandidates(fIndex.createQuery(or));
+        assertEquals(getRanks("Type-2").size() + getRanks("Type-5").size(), candidates.size());
+    }
+
+    @Test
+    public void testAndWithNegation() {
+        TmfFilterAndNode and = new TmfFilterAndNode(null);
+        and.addChild(typeNode("Type-2", false));
+        and.addChild(typeNode("Type-3", true));
+        assertEquals(getRanks("Type-2"), getCandidates(fIndex.createQuery(and)));
+    }
+
+    @Test
+    public void testNotIndexed() {
+        Query query = fIndex.createQuery(typeNode("Type-2", true));
+        assertFalse(query.isIndexed());
+        assertEquals(NB_EVENTS, getCandidates(query).size());
+    }
+
+    @Test
+    public void testContentField() {
+        /* The events of the stub trace have no field */
+        TmfFilterEqualsNode node = new TmfFilterEqualsNode(null);
+        node.setEventAspect(TmfBaseAspects.getContentsAspect().forField("field"));
+        node.setValue("value");
+        Query query = fIndex.createQuery(node);
+        assertTrue(query.isIndexed());
+        assertEquals(NB_EVENTS, query.nextCandidate(0));
+    }
+
+    /**
+     * The index is reopened from its file, and its incomplete last block is
+     * removed before an update
+     */
+    @Test
+    public void testReopen() throws Exception {
+        File file = fIndex.getFile();
+        fModule.dispose();
+        try (TmfEventSearchIndex index = new TmfEventSearchIndex(file, new File(fTrace.getPath()))) {
+            assertEquals(NB_EVENTS, index.getNbEvents());
+            assertEquals(getRanks("Type-4"), getCandidates(index.createQuery(typeNode("Type-4", false))));
+            assertEquals(0, index.startUpdate());
+            assertEquals(0, index.getNbEvents());
+        }
+    }
+
+    /**
+     * The candidates are searched forwards and backwards across the blocks of
+     * a synthetic index, whose second block does not cover the field
+     */
+    @Test
+    public void testBlockCrossing() throws Exception {
+        File file = File.createTempFile("search-index-test", ".idx");
+        try (TmfEventSearchIndex index = new TmfEventSearchIndex(file, new File(fTrace.getPath()))) {
+            ITmfEvent a = SearchIndexBlockTest.event("A", "cpu", 0);
+            ITmfEvent b = SearchIndexBlockTest.event("B", "cpu", 1);
+            SearchIndexBlock block = new SearchIndexBlock();
+            for (int offset = 0; offset < BLOCK_SIZE; offset++) {
+                block.add(offset == 5 || offset == BLOCK_SIZE - 1 ? b : a);
+            }
+            index.append(block);
+            block = new SearchIndexBlock();
+            for (int offset = 0; offset < BLOCK_SIZE; offset++) {
+                block.add(SearchIndexBlockTest.event("A", "cpu", offset));
+            }
+            index.append(block);
+            block = new SearchIndexBlock();
+            for (int offset = 0; offset < 20; offset++) {
+                block.add(offset == 10 ? b : a);
+            }
+            index.append(block);
+            long nbEvents = 2 * BLOCK_SIZE + 20;
+            assertEquals(nbEvents, index.getNbEvents());
+
+            Query type = index.createQuery(typeNode("B", false));
+            assertEquals(5, type.nextCandidate(0));
+            assertEquals(BLOCK_SIZE - 1, type.nextCandidate(6));
+            assertEquals(2 * BLOCK_SIZE + 10, type.nextCandidate(BLOCK_SIZE));
+            assertEquals(nbEvents, type.nextCandidate(2 * BLOCK_SIZE + 11));
+            /* The ranks after the end of the index are all candidates */
+            assertEquals(nbEvents + 5, type.nextCandidate(nbEvents + 5));
+            assertEquals(2 * BLOCK_SIZE + 10, type.previousCandidate(nbEvents - 1));
+            assertEquals(BLOCK_SIZE - 1, type.previousCandidate(2 * BLOCK_SIZE + 9));
+            assertEquals(5, type.previousCandidate(BLOCK_SIZE - 2));
+            assertEquals(-1, type.previousCandidate(4));
+
+            TmfFilterEqualsNode node = new TmfFilterEqualsNode(null);
+            node.setEventAspect(TmfBaseAspects.getContentsAspect().forField("cpu"));
+            node.setValue("1");
+            Query field = index.createQuery(node);
+            assertEquals(BLOCK_SIZE - 1, field.nextCandidate(6));
+            /* All the ranks of the block that does not cover the field are candidates */
+            assertEquals(BLOCK_SIZE, field.nextCandidate(BLOCK_SIZE));
+            assertTrue(field.isCandidate(BLOCK_SIZE + 100));
+            assertFalse(field.isCandidate(BLOCK_SIZE - 2));
+            assertEquals(2 * BLOCK_SIZE - 1, field.previousCandidate(2 * BLOCK_SIZE + 9));
+            assertEquals(2 * BLOCK_SIZE + 10, field.nextCandidate(2 * BLOCK_SIZE));
+            assertEquals(-1, field.previousCandidate(4));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * The index file of another version of the trace is discarded
+     */
+    @Test
+    public void testStaleIndex() throws Exception {
+        File file = fIndex.getFile();
+        fModule.dispose();
+        File traceFile = File.createTempFile("search-index-test", ".txt");
+        try {
+            Files.write(traceFile.toPath(), new byte[1]);
+            try (TmfEventSearchIndex index = new TmfEventSearchIndex(file, traceFile)) {
+                assertEquals(0, index.getNbEvents());
+            }
+            try (TmfEventSearchIndex index = new TmfEventSearchIndex(file, new File(fTrace.getPath()))) {
+                assertEquals(0, index.getNbEvents());
+            }
+        } finally {
+            traceFile.delete();
+        }
+    }
+
+    /**
+     * The query of the events table schedules the analysis module of the
+     * trace, and uses its index while it is being built
+     */
+    @Test
+    public void testCreateQuery() {
+        fModule.dispose();
+        fTrace.traceOpened(new TmfTraceOpenedSignal(this, fTrace, null));
+        TmfEventSearchIndexModule module = TmfTraceUtils.getAnalysisModuleOfClass(fTrace, TmfEventSearchIndexModule.class, TmfEventSearchIndexModule.ID);
+        assertNotNull(module);
+        assertNull(module.getIndex());
+
+        assertNull(TmfEventSearchIndexModule.createQuery(fTrace, typeNode("Type-2", true)));
+        Query query = TmfEventSearchIndexModule.createQuery(fTrace, typeNode("Type-2", false));
+        assertNotNull(query);
+        assertNotNull(module.getIndex());
+        assertTrue(module.waitForCompletion());
+        assertEquals(NB_EVENTS, module.getIndex().getNbEvents());
+        assertEquals(getRanks("Type-2"), getCandidates(query));
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    private static ITmfFilterTreeNode typeNode(String type, boolean not) {
+        TmfFilterEqualsNode node = new TmfFilterEqualsNode(null);
+        node.setEventAspect(TmfBaseAspects.getEventTypeAspect());
+        node.setValue(type);
+        node.setNot(not);
+        return node;
+    }
+
+    private List<Long> getRanks(String type) {
+        List<Long> ranks = new ArrayList<>();
+        for (int i = 0; i < fTypes.size(); i++) {
+            if (fTypes.get(i).equals(type)) {
+                ranks.add((long) i);
+            }
+        }
+        return ranks;
+    }
+
+    private static List<Long> getCandidates(Query query) {
+        List<Long> candidates = new ArrayList<>();
+        long rank = query.nextCandidate(0);
+        while (rank < NB_EVENTS) {
+            assertTrue(query.isCandidate(rank));
+            candidates.add(rank);
+            rank = query.nextCandidate(rank + 1);
+        }
+        return candidates;
+    }
+}
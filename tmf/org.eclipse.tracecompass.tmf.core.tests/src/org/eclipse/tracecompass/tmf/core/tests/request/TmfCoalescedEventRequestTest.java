@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.IllformedLocaleException;
+import java.util.List;
 import java.util.Vector;
 
 import org.eclipse.core.runtime.FileLocator;
@@ -405,6 +406,12 @@ public class TmfCoalescedEventRequestTest {
         }
     }
 
+    private static class TmfTestTriggerSignal3 extends TmfSignal {
+        public TmfTestTriggerSignal3(Object source) {
+            super(source);
+        }
+    }
+
     @TmfSignalHandler
     public void trigger(final TmfTestTriggerSignal signal) {
 
@@ -477,6 +484,48 @@ public class TmfCoalescedEventRequestTest {
         providers[0].sendRequest(request1);
     }
 
+    private static final int BATCH_SIZE = 100;
+    private int fMaxBatchSize;
+
+    /**
+     * @param signal
+     *            the trigger signal
+     */
+    @TmfSignalHandler
+    public void trigger(final TmfTestTriggerSignal3 signal) {
+        TmfTimeRange range = new TmfTimeRange(TmfTimestamp.BIG_BANG, TmfTimestamp.BIG_CRUNCH);
+        final long REQUEST_OFFSET = 1000;
+
+        requestedEvents1 = new Vector<>();
+        request1 = new TmfEventRequest(ITmfEvent.class, range, 0, NB_EVENTS, ExecutionType.FOREGROUND) {
+            @Override
+            public void handleData(ITmfEvent event) {
+                super.handleData(event);
+                requestedEvents1.add(event);
+            }
+        };
+
+        fMaxBatchSize = 0;
+        requestedEvents2 = new Vector<>();
+        request2 = new TmfEventRequest(ITmfEvent.class, range, REQUEST_OFFSET, NB_EVENTS, ExecutionType.FOREGROUND) {
+            @Override
+            public int getBatchSize() {
+                return BATCH_SIZE;
+            }
+
+            @Override
+            public void handleDataBatch(List<ITmfEvent> events) {
+                super.handleDataBatch(events);
+                fMaxBatchSize = Math.max(fMaxBatchSize, events.size());
+                requestedEvents2.addAll(events);
+            }
+        };
+
+        providers = TmfProviderManager.getProviders(ITmfEvent.class, TmfTraceStub.class);
+        providers[0].sendRequest(request1);
+        providers[0].sendRequest(request2);
+    }
+
     public void runCoalescedRequest(long startIndex) throws InterruptedException {
 
         fTrace = setupTrace(TEST_TRACE.getFullPath());
@@ -580,4 +629,41 @@ public class TmfCoalescedEventRequestTest {
         fTrace = null;
     }
 
+    /**
+     * A request that receives its events in batches, coalesced with a request
+     * that receives them one by one
+     */
+    @Test
+    public void testBatchRequest() throws InterruptedException {
+
+        fTrace = setupTrace(TEST_TRACE.getFullPath());
+
+        TmfSignalManager.register(this);
+        TmfTestTriggerSignal3 signal = new TmfTestTriggerSignal3(this);
+        TmfSignalManager.dispatchSignal(signal);
+
+        request1.waitForCompletion();
+        request2.waitForCompletion();
+
+        try {
+            assertEquals("Request1: nbEvents", NB_EVENTS, requestedEvents1.size());
+            assertEquals("Request1: nbRead", NB_EVENTS, request1.getNbRead());
+            assertFalse("Request1: isCancelled", request1.isCancelled());
+
+            assertEquals("Request2: nbEvents", NB_EVENTS, requestedEvents2.size());
+            assertEquals("Request2: nbRead", NB_EVENTS, request2.getNbRead());
+            assertFalse("Request2: isCancelled", request2.isCancelled());
+            assertTrue("Request2: batch size", fMaxBatchSize > 1 && fMaxBatchSize <= BATCH_SIZE);
+
+            for (int i = 0; i < NB_EVENTS; i++) {
+                assertEquals("Distinct events", i + 1 + request1.getIndex(), requestedEvents1.get(i).getTimestamp().getValue());
+                assertEquals("Distinct events", i + 1 + request2.getIndex(), requestedEvents2.get(i).getTimestamp().getValue());
+            }
+        } finally {
+            TmfSignalManager.deregister(this);
+            fTrace.dispose();
+            fTrace = null;
+        }
+    }
+
 }
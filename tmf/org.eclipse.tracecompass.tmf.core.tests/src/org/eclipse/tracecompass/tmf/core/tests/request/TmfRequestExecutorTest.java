@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.request;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.tracecompass.internal.tmf.core.component.TmfEventThread;
+import org.eclipse.tracecompass.internal.tmf.core.request.TmfRequestExecutor;
+import org.eclipse.tracecompass.internal.tmf.core.request.TmfRequestMetrics;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.tests.TmfCoreTestPlugin;
+import org.eclipse.tracecompass.tmf.core.tests.shared.TmfTestTrace;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link TmfRequestExecutor} class.
+ */
+@SuppressWarnings("javadoc")
+public class TmfRequestExecutorTest {
+
+    private static final TmfTestTrace TEST_TRACE = TmfTestTrace.A_TEST_10K;
+    private static final int NB_EVENTS = 1000;
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private TmfTraceStub fTrace;
+    private TmfRequestExecutor fExecutor;
+
+    // ------------------------------------------------------------------------
+    // Housekeeping
+    // ------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws TmfTraceException, IOException, URISyntaxException {
+        URL location = FileLocator.find(TmfCoreTestPlugin.getDefault().getBundle(), new Path(TEST_TRACE.getFullPath()), null);
+        File test = new File(FileLocator.toFileURL(location).toURI());
+        fTrace = new TmfTraceStub(test.getPath(), 500, false, null);
+    }
+
+    @After
+    public void tearDown() {
+        if (fExecutor != null) {
+            fExecutor.stop();
+        }
+        fTrace.dispose();
+    }
+
+    // ------------------------------------------------------------------------
+    // Tests
+    // ------------------------------------------------------------------------
+
+    @Test
+    public void testConstructor() {
+        fExecutor = new TmfRequestExecutor(3);
+        assertEquals(3, fExecutor.getNbLanes());
+        assertEquals(0, fExecutor.getNbActiveTasks());
+        assertEquals(0, fExecutor.getQueueDepth(ExecutionType.FOREGROUND));
+        assertEquals(0, fExecutor.getQueueDepth(ExecutionType.BACKGROUND));
+        assertTrue(fExecutor.getMetrics().isEmpty());
+        assertFalse(fExecutor.isShutdown());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorNoLane() {
+        fExecutor = new TmfRequestExecutor(0);
+    }
+
+    /**
+     * Many more requests than lanes are all executed, none is cancelled
+     */
+    @Test
+    public void testManyRequests() throws InterruptedException {
+        fExecutor = new TmfRequestExecutor(1);
+        fExecutor.init();
+        List<CountingRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            CountingRequest request = new CountingRequest(i % 2 == 0 ? ExecutionType.FOREGROUND : ExecutionType.BACKGROUND);
+            requests.add(request);
+            fExecutor.execute(new TmfEventThread(fTrace, request));
+        }
+        for (CountingRequest request : requests) {
+            request.waitForCompletion();
+            assertFalse(request.isCancelled());
+            assertEquals(NB_EVENTS, request.getNbRead());
+        }
+    }
+
+    /**
+     * Requests run at the same time in different lanes
+     */
+    @Test
+    public void testConcurrentLanes() throws InterruptedException {
+        fExecutor = new TmfRequestExecutor(2);
+        fExecutor.init();
+        CountDownLatch started = new CountDownLatch(2);
+        BlockingRequest request1 = new BlockingRequest(started);
+        BlockingRequest request2 = new BlockingRequest(started);
+        fExecutor.execute(new TmfEventThread(fTrace, request1));
+        fExecutor.execute(new TmfEventThread(fTrace, request2));
+
+        /* Both requests wait for each other in their first event */
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        request1.waitForCompletion();
+        request2.waitForCompletion();
+        assertEquals(NB_EVENTS, request1.getNbRead());
+        assertEquals(NB_EVENTS, request2.getNbRead());
+    }
+
+    /**
+     * The metrics show the running and the waiting requests
+     */
+    @Test
+    public void testMetrics() throws InterruptedException {
+        fExecutor = new TmfRequestExecutor(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingRequest request1 = new BlockingRequest(started, release);
+        CountingRequest request2 = new CountingRequest(ExecutionType.BACKGROUND);
+        fExecutor.execute(new TmfEventThread(fTrace, request1));
+        fExecutor.execute(new TmfEventThread(fTrace, request2));
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertEquals(1, fExecutor.getNbActiveTasks());
+        assertEquals(0, fExecutor.getQueueDepth(ExecutionType.FOREGROUND));
+        assertEquals(1, fExecutor.getQueueDepth(ExecutionType.BACKGROUND));
+        List<TmfRequestMetrics> metrics = fExecutor.getMetrics();
+        assertEquals(2, metrics.size());
+        assertEquals(request1.getRequestId(), metrics.get(0).getRequestId());
+        assertTrue(metrics.get(0).isRunning());
+        assertEquals(ExecutionType.FOREGROUND, metrics.get(0).getExecType());
+        assertEquals(request2.getRequestId(), metrics.get(1).getRequestId());
+        assertFalse(metrics.get(1).isRunning());
+        assertEquals(0, metrics.get(1).getNbEvents());
+        assertEquals(0.0, metrics.get(1).getEventsPerSecond(), 0.0);
+
+        release.countDown();
+        request1.waitForCompletion();
+        request2.waitForCompletion();
+        assertEquals(NB_EVENTS, request2.getNbRead());
+    }
+
+    @Test
+    public void testStop() throws InterruptedException {
+        fExecutor = new TmfRequestExecutor(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingRequest request1 = new BlockingRequest(started, release);
+        CountingRequest request2 = new CountingRequest(ExecutionType.BACKGROUND);
+        fExecutor.execute(new TmfEventThread(fTrace, request1));
+        fExecutor.execute(new TmfEventThread(fTrace, request2));
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        fExecutor.stop();
+        release.countDown();
+        request1.waitForCompletion();
+        request2.waitForCompletion();
+        assertTrue(fExecutor.isShutdown());
+        assertTrue(request1.isCancelled());
+        assertTrue(request2.isCancelled());
+    }
+
+    // ------------------------------------------------------------------------
+    // Helper classes
+    // ------------------------------------------------------------------------
+
+    private static class CountingRequest extends TmfEventRequest {
+        CountingRequest(ExecutionType execType) {
+            super(ITmfEvent.class, TmfTimeRange.ETERNITY, 0, NB_EVENTS, execType);
+        }
+    }
+
+    /**
+     * Request that counts down a latch at its first event, then waits for
+     * another latch
+     */
+    private static class BlockingRequest extends TmfEventRequest {
+        private final CountDownLatch fStarted;
+        private final CountDownLatch fRelease;
+
+        BlockingRequest(CountDownLatch started) {
+            this(started, started);
+        }
+
+        BlockingRequest(CountDownLatch started, CountDownLatch release) {
+            super(ITmfEvent.class, TmfTimeRange.ETERNITY, 0, NB_EVENTS, ExecutionType.FOREGROUND);
+            fStarted = started;
+            fRelease = release;
+        }
+
+        @Override
+        public void handleData(ITmfEvent event) {
+            super.handleData(event);
+            if (getNbRead() == 1) {
+                fStarted.countDown();
+                try {
+                    fRelease.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
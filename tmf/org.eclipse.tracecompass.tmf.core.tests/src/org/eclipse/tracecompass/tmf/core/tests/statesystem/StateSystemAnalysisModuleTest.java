@@ -9,6 +9,7 @@
 
 package org.eclipse.tracecompass.tmf.core.tests.statesystem;
 
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -16,18 +17,32 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.StateSystemBuilderUtils;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
 import org.eclipse.tracecompass.tmf.core.signal.TmfTraceOpenedSignal;
+import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.statesystem.Messages;
 import org.eclipse.tracecompass.tmf.core.statesystem.TmfStateSystemAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.tests.TmfCoreTestPlugin;
+import org.eclipse.tracecompass.tmf.core.tests.shared.TmfTestTrace;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.tests.stubs.analysis.TestStateSystemModule;
 import org.eclipse.tracecompass.tmf.tests.stubs.analysis.TestStateSystemProvider;
 import org.eclipse.tracecompass.tmf.tests.stubs.trace.xml.TmfXmlTraceStub;
@@ -273,4 +288,210 @@ public class StateSystemAnalysisModuleTest {
         assertTrue(module.isQueryable(7));
         assertTrue(module.isQueryable(10));
     }
+
+    private static final String NOISE_EVENT = "noise";
+    private static final String NOISE_FIELD = "noise1";
+
+    private static void setupAbsoluteStateHandler() {
+        TestStateSystemProvider.setEventHandler((ss, event) -> {
+            long time = event.getTimestamp().toNanos();
+            if (event.getName().equals(CRUCIAL_EVENT)) {
+                String crucialInfo = (String) event.getContent().getField(CRUCIAL_FIELD).getValue();
+                ss.modifyAttribute(time, TmfStateValue.newValueString(crucialInfo), ss.getQuarkAbsoluteAndAdd(CRUCIAL_FIELD));
+            } else if (event.getName().equals(NOISE_EVENT)) {
+                int noise = (Integer) event.getContent().getField(NOISE_FIELD).getValue();
+                ss.modifyAttribute(time, TmfStateValue.newValueInt(noise), ss.getQuarkAbsoluteAndAdd(NOISE_EVENT, NOISE_FIELD));
+                ss.modifyAttribute(time, TmfStateValue.nullValue(), ss.getQuarkAbsoluteAndAdd(NOISE_EVENT, String.valueOf(noise)));
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Test that the state system built in time slices, when the state
+     * provider supports it, is the same as the one built by a single provider
+     */
+    @Test
+    public void testTimeSlicedBuild() {
+        setupAbsoluteStateHandler();
+        try {
+            /* Build the reference state system with a single provider */
+            fModule.schedule();
+            assertTrue(fModule.waitForCompletion());
+            ITmfStateSystem expected = fModule.getStateSystem();
+            assertNotNull(expected);
+
+            /* Build it again in time slices, on another instance of the trace */
+            TestStateSystemProvider.setTimeSliceable(true);
+            TmfXmlTraceStub trace = TmfXmlTraceStub.setupTrace(TmfCoreTestPlugin.getAbsoluteFilePath(XML_TRACE));
+            try {
+                trace.traceOpened(new TmfTraceOpenedSignal(this, trace, null));
+                /* The time range of the trace must be known to cut it in slices */
+                trace.indexTrace(true);
+                TestStateSystemModule module = (TestStateSystemModule) trace.getAnalysisModule(MODULE_SS);
+                assertNotNull(module);
+                module.schedule();
+                assertTrue(module.waitForCompletion());
+                ITmfStateSystem actual = module.getStateSystem();
+                assertNotNull(actual);
+
+                assertEquals(expected.getNbAttributes(), actual.getNbAttributes());
+                assertEquals(expected.getStartTime(), actual.getStartTime());
+                assertEquals(expected.getCurrentEndTime(), actual.getCurrentEndTime());
+                for (long t = expected.getStartTime(); t <= expected.getCurrentEndTime(); t++) {
+                    List<ITmfStateInterval> expectedStates = expected.queryFullState(t);
+                    for (ITmfStateInterval expectedState : expectedStates) {
+                        int quark = actual.getQuarkAbsolute(expected.getFullAttributePathArray(expectedState.getAttribute()));
+                        ITmfStateInterval actualState = actual.querySingleState(t, quark);
+                        assertEquals(expectedState.getStartTime(), actualState.getStartTime());
+                        assertEquals(expectedState.getEndTime(), actualState.getEndTime());
+                        assertEquals(expectedState.getStateValue(), actualState.getStateValue());
+                    }
+                }
+            } catch (StateSystemDisposedException | AttributeNotFoundException e) {
+                fail(e.getMessage());
+            } finally {
+                trace.dispose();
+            }
+        } finally {
+            TestStateSystemProvider.setTimeSliceable(false);
+            TestStateSystemProvider.setEventHandler(null);
+        }
+    }
+
+    private static final String REFERENCE_ID = "org.eclipse.tracecompass.tmf.core.tests.analysis.reference";
+    private static final String RESUMED_ID = "org.eclipse.tracecompass.tmf.core.tests.analysis.resumed";
+    private static final String COUNT_ATTRIBUTE = "count";
+    private static final String LAST_ATTRIBUTE = "last";
+    private static final int NB_EVENTS = 10000;
+    private static final int NB_EVENTS_BEFORE_CANCEL = 3000;
+
+    /**
+     * Create a module building a full history of the trace. Its provider
+     * blocks the event request once it received a number of events, until a
+     * latch is released.
+     */
+    private static TestStateSystemModule createFullHistoryModule(String id, ITmfTrace trace, AtomicInteger nbEvents,
+            int blockAfter, CountDownLatch blocked, CountDownLatch release) throws TmfAnalysisException {
+        TestStateSystemModule module = new TestStateSystemModule() {
+            @Override
+            protected ITmfStateProvider createStateProvider() {
+                return new TestStateSystemProvider(checkNotNull(getTrace())) {
+                    @Override
+                    public void processEvents(@NonNull List<@NonNull ITmfEvent> events) {
+                        super.processEvents(events);
+                        if (nbEvents.addAndGet(events.size()) >= blockAfter && blocked.getCount() > 0) {
+                            blocked.countDown();
+                            try {
+                                release.await();
+                            } catch (InterruptedException e) {
+                                fail(e.getMessage());
+                            }
+                        }
+                    }
+                };
+            }
+
+            @Override
+            protected StateSystemBackendType getBackendType() {
+                return StateSystemBackendType.FULL;
+            }
+        };
+        module.setId(id);
+        module.setTrace(trace);
+        return module;
+    }
+
+    /**
+     * Test that a build of a full history that was cancelled is resumed from
+     * its snapshot, and gives the same state system as a complete build
+     *
+     * @throws Exception
+     *             If the test failed
+     */
+    @Test
+    public void testResumeCancelledBuild() throws Exception {
+        /* The count depends on the ongoing state, from before the snapshot */
+        TestStateSystemProvider.setEventHandler((ss, event) -> {
+            long time = event.getTimestamp().toNanos();
+            try {
+                StateSystemBuilderUtils.incrementAttributeInt(ss, time, ss.getQuarkAbsoluteAndAdd(COUNT_ATTRIBUTE), 1);
+                ss.modifyAttribute(time, TmfStateValue.newValueLong(time), ss.getQuarkAbsoluteAndAdd(LAST_ATTRIBUTE));
+            } catch (AttributeNotFoundException e) {
+                return false;
+            }
+            return true;
+        });
+        TestStateSystemProvider.setResumable(true);
+        ITmfTrace trace = TmfTestTrace.A_TEST_10K.getTrace();
+        String directory = TmfTraceManager.getSupplementaryFileDir(trace);
+        File referenceFile = new File(directory + REFERENCE_ID + ".ht");
+        File resumedFile = new File(directory + RESUMED_ID + ".ht");
+        File snapshotFile = new File(resumedFile.getPath() + ".snapshot");
+        TestStateSystemModule reference = null;
+        TestStateSystemModule resumed = null;
+        try {
+            trace.indexTrace(true);
+
+            /* Build the reference state system without interruption */
+            reference = createFullHistoryModule(REFERENCE_ID, trace, new AtomicInteger(), Integer.MAX_VALUE, new CountDownLatch(1), new CountDownLatch(0));
+            reference.schedule();
+            assertTrue(reference.waitForCompletion());
+            ITmfStateSystem expected = reference.getStateSystem();
+            assertNotNull(expected);
+
+            /* Cancel a build in the middle of the trace */
+            AtomicInteger nbEventsBeforeCancel = new AtomicInteger();
+            CountDownLatch blocked = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            TestStateSystemModule cancelled = createFullHistoryModule(RESUMED_ID, trace, nbEventsBeforeCancel, NB_EVENTS_BEFORE_CANCEL, blocked, release);
+            cancelled.schedule();
+            blocked.await();
+            cancelled.cancel();
+            release.countDown();
+            cancelled.waitForCompletion();
+            cancelled.dispose();
+            assertTrue(resumedFile.exists());
+            assertTrue(snapshotFile.exists());
+            assertTrue(nbEventsBeforeCancel.get() < NB_EVENTS);
+
+            /* Resume it, only the remaining events are read */
+            AtomicInteger nbEventsAfterResume = new AtomicInteger();
+            resumed = createFullHistoryModule(RESUMED_ID, trace, nbEventsAfterResume, Integer.MAX_VALUE, new CountDownLatch(1), new CountDownLatch(0));
+            resumed.schedule();
+            assertTrue(resumed.waitForCompletion());
+            assertFalse(snapshotFile.exists());
+            assertEquals(NB_EVENTS, nbEventsBeforeCancel.get() + nbEventsAfterResume.get());
+            ITmfStateSystem actual = resumed.getStateSystem();
+            assertNotNull(actual);
+
+            assertEquals(expected.getNbAttributes(), actual.getNbAttributes());
+            assertEquals(expected.getStartTime(), actual.getStartTime());
+            assertEquals(expected.getCurrentEndTime(), actual.getCurrentEndTime());
+            long start = expected.getStartTime();
+            long step = Math.max(1, (expected.getCurrentEndTime() - start) / 1000);
+            for (long t = start; t <= expected.getCurrentEndTime(); t += step) {
+                for (ITmfStateInterval expectedState : expected.queryFullState(t)) {
+                    int quark = actual.getQuarkAbsolute(expected.getFullAttributePathArray(expectedState.getAttribute()));
+                    ITmfStateInterval actualState = actual.querySingleState(t, quark);
+                    assertEquals(expectedState.getStartTime(), actualState.getStartTime());
+                    assertEquals(expectedState.getEndTime(), actualState.getEndTime());
+                    assertEquals(expectedState.getStateValue(), actualState.getStateValue());
+                }
+            }
+        } finally {
+            TestStateSystemProvider.setResumable(false);
+            TestStateSystemProvider.setEventHandler(null);
+            if (reference != null) {
+                reference.dispose();
+            }
+            if (resumed != null) {
+                resumed.dispose();
+            }
+            trace.dispose();
+            referenceFile.delete();
+            resumedFile.delete();
+            snapshotFile.delete();
+        }
+    }
 }
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.tracecompass.internal.tmf.core.trace.experiment.TmfExperimentContext;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.junit.Test;
+
+/**
+ * Test suite for the heap of the traces' next events in
+ * {@link TmfExperimentContext}.
+ */
+@SuppressWarnings("javadoc")
+public class TmfExperimentContextTest {
+
+    private static ITmfEvent event(long time) {
+        return new TmfEvent(null, ITmfContext.UNKNOWN_RANK, TmfTimestamp.fromNanos(time), null, null);
+    }
+
+    /**
+     * The index of the trace that a linear scan of the events would pick
+     */
+    private static int linearNextTrace(TmfExperimentContext context) {
+        int next = TmfExperimentContext.NO_TRACE;
+        for (int i = 0; i < context.getNbTraces(); i++) {
+            ITmfEvent event = context.getEvent(i);
+            ITmfEvent nextEvent = (next == TmfExperimentContext.NO_TRACE ? null : context.getEvent(next));
+            if (event != null && (nextEvent == null || event.getTimestamp().compareTo(nextEvent.getTimestamp()) < 0)) {
+                next = i;
+            }
+        }
+        return next;
+    }
+
+    @Test
+    public void testEmpty() {
+        TmfExperimentContext context = new TmfExperimentContext(3);
+        assertEquals(TmfExperimentContext.NO_TRACE, context.getNextTrace());
+
+        context.setEvent(1, event(10));
+        context.setEvent(1, null);
+        assertEquals(TmfExperimentContext.NO_TRACE, context.getNextTrace());
+    }
+
+    @Test
+    public void testEarliestEvent() {
+        TmfExperimentContext context = new TmfExperimentContext(4);
+        context.setEvent(0, event(30));
+        context.setEvent(1, event(20));
+        context.setEvent(2, event(40));
+        context.setEvent(3, event(10));
+        assertEquals(3, context.getNextTrace());
+
+        context.setEvent(3, null);
+        assertEquals(1, context.getNextTrace());
+    }
+
+    @Test
+    public void testEqualTimestamps() {
+        TmfExperimentContext context = new TmfExperimentContext(4);
+        context.setEvent(3, event(10));
+        context.setEvent(2, event(10));
+        context.setEvent(0, event(20));
+        context.setEvent(1, event(10));
+        /* Ties are broken by the index of the trace */
+        assertEquals(1, context.getNextTrace());
+        context.setEvent(1, event(20));
+        assertEquals(2, context.getNextTrace());
+        context.setEvent(2, event(20));
+        assertEquals(3, context.getNextTrace());
+        context.setEvent(3, event(20));
+        assertEquals(0, context.getNextTrace());
+    }
+
+    @Test
+    public void testTracesEndingMidMerge() {
+        long[][] traces = {
+                { 1, 4, 7, 10, 13, 16 },
+                { 2, 4 },
+                { },
+                { 3, 4, 5, 6, 7, 8, 9, 10 },
+                { 4 },
+        };
+        TmfExperimentContext context = new TmfExperimentContext(traces.length);
+        int[] positions = new int[traces.length];
+        for (int i = 0; i < traces.length; i++) {
+            context.setEvent(i, (traces[i].length > 0 ? event(traces[i][0]) : null));
+        }
+
+        /* Merge the traces as TmfExperiment.getNext does */
+        List<String> merged = new ArrayList<>();
+        int trace = context.getNextTrace();
+        while (trace != TmfExperimentContext.NO_TRACE) {
+            merged.add(traces[trace][positions[trace]] + "@" + trace);
+            positions[trace]++;
+            context.setEvent(trace, (positions[trace] < traces[trace].length ? event(traces[trace][positions[trace]]) : null));
+            trace = context.getNextTrace();
+        }
+
+        List<String> expected = Arrays.asList("1@0", "2@1", "3@3", "4@0", "4@1", "4@3", "4@4", "5@3", "6@3",
+                "7@0", "7@3", "8@3", "9@3", "10@0", "10@3", "13@0", "16@0");
+        assertEquals(expected, merged);
+    }
+
+    @Test
+    public void testReseek() {
+        TmfExperimentContext context = new TmfExperimentContext(3);
+        context.setEvent(0, event(100));
+        context.setEvent(1, event(200));
+        context.setEvent(2, event(300));
+        assertEquals(0, context.getNextTrace());
+
+        /* Seek trace 2 back, before the others */
+        context.setEvent(2, event(50));
+        assertEquals(2, context.getNextTrace());
+
+        /* Seek trace 2 forward again, and trace 0 after trace 1 */
+        context.setEvent(2, event(250));
+        context.setEvent(0, event(220));
+        assertEquals(1, context.getNextTrace());
+        context.setEvent(1, null);
+        assertEquals(0, context.getNextTrace());
+        context.setEvent(0, null);
+        assertEquals(2, context.getNextTrace());
+
+        /* Traces that ended come back after a seek */
+        context.setEvent(1, event(10));
+        context.setEvent(0, event(10));
+        assertEquals(0, context.getNextTrace());
+    }
+
+    @Test
+    public void testRandomUpdates() {
+        Random random = new Random(7);
+        int nbTraces = 50;
+        TmfExperimentContext context = new TmfExperimentContext(nbTraces);
+        for (int i = 0; i < 10000; i++) {
+            int trace = random.nextInt(nbTraces);
+            context.setEvent(trace, (random.nextInt(10) == 0 ? null : event(random.nextInt(1000))));
+            assertEquals(linearNextTrace(context), context.getNextTrace());
+        }
+    }
+}
@@ -69,6 +69,8 @@ public class TestStateSystemProvider extends AbstractTmfStateProvider {
         return true;
     };
     private static @NonNull TestStateProviderHandler sfHandler = DEFAULT_HANDLER;
+    private static boolean sfTimeSliceable = false;
+    private static boolean sfResumable = false;
 
     /**
      * Set the event handler for the state provider
@@ -84,6 +86,29 @@ public class TestStateSystemProvider extends AbstractTmfStateProvider {
         sfHandler = handler;
     }
 
+    /**
+     * Set whether the history of the state provider can be built in time
+     * slices. The event handler must then only set absolute states.
+     *
+     * @param timeSliceable
+     *            The value {@link #isTimeSliceable()} should return
+     */
+    public static void setTimeSliceable(boolean timeSliceable) {
+        sfTimeSliceable = timeSliceable;
+    }
+
+    /**
+     * Set whether a stopped build of the history of the state provider can be
+     * resumed. The event handler must then keep all its state in the state
+     * system.
+     *
+     * @param resumable
+     *            The value {@link #isResumable()} should return
+     */
+    public static void setResumable(boolean resumable) {
+        sfResumable = resumable;
+    }
+
     private final Lock fLock = new ReentrantLock();
     private @Nullable Condition fNextEventSignal = null;
 
@@ -107,6 +132,16 @@ public class TestStateSystemProvider extends AbstractTmfStateProvider {
         return new TestStateSystemProvider(this.getTrace());
     }
 
+    @Override
+    public boolean isTimeSliceable() {
+        return sfTimeSliceable;
+    }
+
+    @Override
+    public boolean isResumable() {
+        return sfResumable;
+    }
+
     @Override
     protected void eventHandle(ITmfEvent event) {
         ITmfStateSystemBuilder ss = checkNotNull(getStateSystemBuilder());
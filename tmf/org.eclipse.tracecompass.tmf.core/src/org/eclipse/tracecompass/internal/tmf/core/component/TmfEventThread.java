@@ -14,6 +14,9 @@
 
 package org.eclipse.tracecompass.internal.tmf.core.component;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
@@ -24,6 +27,7 @@ import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceWithEventTypeFilter;
 
 /**
  * Provides the core event request processor. It also has support for suspending
@@ -180,29 +184,59 @@ public class TmfEventThread implements Runnable {
         }
 
         try {
+            // Offer the event types of the request to the trace, so it can
+            // skip the other events. They are checked below anyway.
+            Set<String> eventTypes = fRequest.getEventTypes();
+            if (eventTypes != null && fProvider instanceof ITmfTraceWithEventTypeFilter) {
+                ((ITmfTraceWithEventTypeFilter) fProvider).setEventTypeFilter(context, eventTypes);
+            }
+
             // Get the ordered events
             ITmfEvent event = fProvider.getNext(context);
             TmfCoreTracer.traceRequest(fRequest.getRequestId(), "read first event"); //$NON-NLS-1$
 
+            // The events of the current batch, if the request takes batches
+            int batchSize = fRequest.getBatchSize();
+            List<ITmfEvent> batch = (batchSize > 1 ? new ArrayList<>(batchSize) : null);
+
             while (event != null && !fProvider.isCompleted(fRequest, event, nbRead)) {
 
                 TmfCoreTracer.traceEvent(fProvider, fRequest, event);
-                if (fRequest.getDataType().isInstance(event)) {
-                    fRequest.handleData(event);
+                boolean wanted = (eventTypes == null || eventTypes.contains(event.getName()));
+                if (wanted && fRequest.getDataType().isInstance(event)) {
+                    if (batch == null) {
+                        fRequest.handleData(event);
+                    } else {
+                        batch.add(event);
+                        if (batch.size() >= batchSize) {
+                            fRequest.handleDataBatch(batch);
+                            batch = new ArrayList<>(batchSize);
+                        }
+                    }
                 }
 
-                // Pause execution if requested
+                // Pause execution if requested, after delivering the pending
+                // events
+                if (fIsPaused && batch != null && !batch.isEmpty()) {
+                    fRequest.handleDataBatch(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
                 while (fIsPaused) {
                     CountDownLatch latch = fLatch;
                     latch.await();
                 }
 
-                // To avoid an unnecessary read passed the last event requested
-                if (++nbRead < nbRequested) {
+                // To avoid an unnecessary read passed the last event requested.
+                // The events of unwanted types are not counted.
+                if (!wanted || ++nbRead < nbRequested) {
                     event = fProvider.getNext(context);
                 }
             }
 
+            if (batch != null && !batch.isEmpty() && !fRequest.isCompleted()) {
+                fRequest.handleDataBatch(batch);
+            }
+
             isCompleted = true;
 
             if (fRequest.isCancelled()) {
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.filter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The offsets of the events of a block of the search index that have a given
+ * key. Like the containers of roaring bitmaps, the offsets are kept in a
+ * sorted array while they are few, and in a bitmap of the whole block once the
+ * array would be larger than the bitmap.
+ */
+public final class PostingList {
+
+    /** Maximum number of offsets kept in the sorted array */
+    public static final int ARRAY_MAX = 4096;
+
+    private static final int BITMAP_WORDS = TmfEventSearchIndex.BLOCK_SIZE / Long.SIZE;
+    private static final byte ARRAY = 0;
+    private static final byte BITMAP = 1;
+    private static final int INITIAL_CAPACITY = 4;
+
+    private char[] fArray;
+    private long[] fBitmap;
+    private int fCardinality;
+    private int fLast = -1;
+
+    /**
+     * Constructor for an empty list
+     */
+    public PostingList() {
+        fArray = new char[INITIAL_CAPACITY];
+        fBitmap = null;
+        fCardinality = 0;
+    }
+
+    private PostingList(char[] array, long[] bitmap, int cardinality) {
+        fArray = array;
+        fBitmap = bitmap;
+        fCardinality = cardinality;
+    }
+
+    /**
+     * Add an offset. The offsets must be added in increasing order, adding
+     * the last offset again has no effect.
+     *
+     * @param offset
+     *            The offset of the event in its block
+     */
+    public void add(int offset) {
+        if (offset == fLast) {
+            return;
+        }
+        fLast = offset;
+        if (fBitmap != null) {
+            fBitmap[offset >>> 6] |= 1L << offset;
+        } else if (fCardinality < ARRAY_MAX) {
+            if (fCardinality == fArray.length) {
+                fArray = Arrays.copyOf(fArray, Math.min(fArray.length * 2, ARRAY_MAX));
+            }
+            fArray[fCardinality] = (char) offset;
+        } else {
+            long[] bitmap = new long[BITMAP_WORDS];
+            for (int i = 0; i < fCardinality; i++) {
+                bitmap[fArray[i] >>> 6] |= 1L << fArray[i];
+            }
+            bitmap[offset >>> 6] |= 1L << offset;
+            fBitmap = bitmap;
+            fArray = null;
+        }
+        fCardinality++;
+    }
+
+    /**
+     * @return The number of offsets in this list
+     */
+    public int getCardinality() {
+        return fCardinality;
+    }
+
+    /**
+     * Set the bits of the offsets of this list in a bit set
+     *
+     * @param bits
+     *            The bit set
+     */
+    public void addTo(BitSet bits) {
+        if (fBitmap != null) {
+            bits.or(BitSet.valueOf(fBitmap));
+        } else {
+            for (int i = 0; i < fCardinality; i++) {
+                bits.set(fArray[i]);
+            }
+        }
+    }
+
+    /**
+     * Write this list
+     *
+     * @param out
+     *            The output
+     * @throws IOException
+     *             If the list could not be written
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(fCardinality);
+        if (fBitmap != null) {
+            out.writeByte(BITMAP);
+            for (long word : fBitmap) {
+                out.writeLong(word);
+            }
+        } else {
+            out.writeByte(ARRAY);
+            for (int i = 0; i < fCardinality; i++) {
+                out.writeChar(fArray[i]);
+            }
+        }
+    }
+
+    /**
+     * Read a list written by {@link #write}
+     *
+     * @param in
+     *            The input
+     * @return The list
+     * @throws IOException
+     *             If the list could not be read
+     */
+    public static PostingList read(DataInput in) throws IOException {
+        int cardinality = in.readInt();
+        byte kind = in.readByte();
+        if (kind == BITMAP) {
+            long[] bitmap = new long[BITMAP_WORDS];
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                bitmap[i] = in.readLong();
+                count += Long.bitCount(bitmap[i]);
+            }
+            /* Only the lists larger than the array limit are bitmaps */
+            if (cardinality <= ARRAY_MAX || count != cardinality) {
+                throw new IOException("Invalid posting list bitmap"); //$NON-NLS-1$
+            }
+            return new PostingList(null, bitmap, cardinality);
+        }
+        if (kind != ARRAY || cardinality < 0 || cardinality > ARRAY_MAX) {
+            throw new IOException("Invalid posting list"); //$NON-NLS-1$
+        }
+        char[] array = new char[cardinality];
+        for (int i = 0; i < cardinality; i++) {
+            array[i] = in.readChar();
+            if (i > 0 && array[i] <= array[i - 1]) {
+                throw new IOException("Unsorted posting list"); //$NON-NLS-1$
+            }
+        }
+        return new PostingList(array, null, cardinality);
+    }
+}
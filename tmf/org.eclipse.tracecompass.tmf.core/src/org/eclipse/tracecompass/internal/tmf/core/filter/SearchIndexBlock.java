@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.filter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventType;
+
+/**
+ * The posting lists of the events of one block of consecutive ranks of the
+ * search index.
+ *
+ * The event types are always indexed. The values of the top-level fields of
+ * the event content are indexed by their string value, as long as the field
+ * has few distinct values in the block. A field with too many distinct or too
+ * long values is marked as not covered for the whole block, and its posting
+ * lists are dropped, which bounds the size of a block.
+ */
+public final class SearchIndexBlock {
+
+    /** Maximum number of distinct values of a field in a block */
+    public static final int MAX_VALUES_PER_FIELD = 256;
+    /** Maximum number of distinct fields indexed in a block */
+    public static final int MAX_FIELDS = 64;
+    /** Maximum length of an indexed value */
+    public static final int MAX_VALUE_LENGTH = 128;
+
+    private final Map<String, PostingList> fTypes = new HashMap<>();
+    private final Map<String, Map<String, PostingList>> fValues = new HashMap<>();
+    private final Set<String> fUncoveredFields = new HashSet<>();
+    private int fNbEvents = 0;
+
+    /**
+     * @return The number of events in this block
+     */
+    public int getNbEvents() {
+        return fNbEvents;
+    }
+
+    /**
+     * @return If this block contains {@link TmfEventSearchIndex#BLOCK_SIZE}
+     *         events
+     */
+    public boolean isFull() {
+        return fNbEvents == TmfEventSearchIndex.BLOCK_SIZE;
+    }
+
+    /**
+     * Add the next event of the block
+     *
+     * @param event
+     *            The event
+     */
+    public void add(ITmfEvent event) {
+        int offset = fNbEvents++;
+        ITmfEventType type = event.getType();
+        if (type != null) {
+            fTypes.computeIfAbsent(type.getName(), k -> new PostingList()).add(offset);
+        }
+        for (ITmfEventField field : event.getContent().getFields()) {
+            String name = field.getName();
+            Object value = field.getValue();
+            if (value == null || fUncoveredFields.contains(name)) {
+                continue;
+            }
+            String valueString = value.toString();
+            Map<String, PostingList> values = fValues.get(name);
+            if (values == null) {
+                if (fValues.size() >= MAX_FIELDS) {
+                    fUncoveredFields.add(name);
+                    continue;
+                }
+                values = new HashMap<>();
+                fValues.put(name, values);
+            }
+            PostingList list = values.get(valueString);
+            if (list == null) {
+                if (values.size() >= MAX_VALUES_PER_FIELD || valueString.length() > MAX_VALUE_LENGTH) {
+                    fValues.remove(name);
+                    fUncoveredFields.add(name);
+                    continue;
+                }
+                list = new PostingList();
+                values.put(valueString, list);
+            }
+            list.add(offset);
+        }
+    }
+
+    /**
+     * Get the events of a type
+     *
+     * @param type
+     *            The name of the event type
+     * @return The offsets of the events of this type in the block
+     */
+    public BitSet getEventsOfType(String type) {
+        BitSet bits = new BitSet();
+        PostingList list = fTypes.get(type);
+        if (list != null) {
+            list.addTo(bits);
+        }
+        return bits;
+    }
+
+    /**
+     * Get the events whose field has a value
+     *
+     * @param field
+     *            The name of the top-level field
+     * @param value
+     *            The string value of the field
+     * @return The offsets of the events that have this value, or null if the
+     *         field is not covered by this block
+     */
+    public BitSet getEventsWithValue(String field, String value) {
+        if (fUncoveredFields.contains(field)) {
+            return null;
+        }
+        BitSet bits = new BitSet();
+        Map<String, PostingList> values = fValues.get(field);
+        PostingList list = (values == null ? null : values.get(value));
+        if (list != null) {
+            list.addTo(bits);
+        }
+        return bits;
+    }
+
+    // ------------------------------------------------------------------------
+    // Serialization
+    // ------------------------------------------------------------------------
+
+    /**
+     * Write this block
+     *
+     * @param out
+     *            The output
+     * @throws IOException
+     *             If the block could not be written
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(fNbEvents);
+        writeLists(out, fTypes);
+        out.writeInt(fValues.size());
+        for (Entry<String, Map<String, PostingList>> entry : fValues.entrySet()) {
+            out.writeUTF(entry.getKey());
+            writeLists(out, entry.getValue());
+        }
+        out.writeInt(fUncoveredFields.size());
+        for (String field : fUncoveredFields) {
+            out.writeUTF(field);
+        }
+    }
+
+    private static void writeLists(DataOutput out, Map<String, PostingList> lists) throws IOException {
+        out.writeInt(lists.size());
+        for (Entry<String, PostingList> entry : lists.entrySet()) {
+            out.writeUTF(entry.getKey());
+            entry.getValue().write(out);
+        }
+    }
+
+    /**
+     * Read a block written by {@link #write}
+     *
+     * @param in
+     *            The input
+     * @return The block
+     * @throws IOException
+     *             If the block could not be read
+     */
+    public static SearchIndexBlock read(DataInput in) throws IOException {
+        SearchIndexBlock block = new SearchIndexBlock();
+        block.fNbEvents = in.readInt();
+        if (block.fNbEvents <= 0 || block.fNbEvents > TmfEventSearchIndex.BLOCK_SIZE) {
+            throw new IOException("Invalid number of events in a search index block"); //$NON-NLS-1$
+        }
+        readLists(in, block.fTypes);
+        int nbFields = in.readInt();
+        for (int i = 0; i < nbFields; i++) {
+            String field = in.readUTF();
+            Map<String, PostingList> values = new HashMap<>();
+            readLists(in, values);
+            block.fValues.put(field, values);
+        }
+        int nbUncovered = in.readInt();
+        for (int i = 0; i < nbUncovered; i++) {
+            block.fUncoveredFields.add(in.readUTF());
+        }
+        return block;
+    }
+
+    private static void readLists(DataInput in, Map<String, PostingList> lists) throws IOException {
+        int nbLists = in.readInt();
+        for (int i = 0; i < nbLists; i++) {
+            String key = in.readUTF();
+            lists.put(key, PostingList.read(in));
+        }
+    }
+}
@@ -0,0 +1,753 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.filter;
+
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
+import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
+import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAndNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode.Type;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterContainsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterEqualsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterMatchesNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterObjectNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterOrNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterTraceTypeNode;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestampFormat;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+
+/**
+ * A filter tree compiled into a flat predicate. It gives the same result as
+ * {@link ITmfFilter#matches(ITmfEvent)} on the tree it was compiled from, but:
+ * <ul>
+ * <li>nested AND and OR nodes are flattened,</li>
+ * <li>the children of AND and OR nodes are evaluated from the cheapest to the
+ * most expensive,</li>
+ * <li>each distinct event aspect is resolved at most once per event, and its
+ * string value is computed at most once per event,</li>
+ * <li>the values of numerical comparisons are parsed once, and numbers are
+ * compared as primitive values,</li>
+ * <li>the regex matchers are reused instead of being created for each
+ * event.</li>
+ * </ul>
+ *
+ * The compiled filter is a snapshot of the tree: it must be compiled again if
+ * the tree is modified. It can be used by several threads concurrently. Nodes
+ * of other types than the ones of the filter model, including subclasses of
+ * them, are evaluated by calling their own {@link ITmfFilter#matches(ITmfEvent)}.
+ */
+public final class TmfCompiledFilter implements ITmfFilter {
+
+    private static final String TIMESTAMP_FORMAT = "T.SSSSSSSSS"; //$NON-NLS-1$
+
+    /* Relative costs of the predicates, to order the children of a node */
+    private static final int COST_TRACE_TYPE = 1;
+    private static final int COST_EQUALS = 2;
+    private static final int COST_COMPARE = 2;
+    private static final int COST_CONTAINS = 3;
+    private static final int COST_MATCHES = 5;
+    private static final int COST_NODE = 10;
+    private static final int MAX_COST = 1000;
+
+    private final ITmfFilter fFilter;
+    private final Predicate fPredicate;
+    private final ITmfEventAspect<?>[] fAspects;
+    private final Pattern[] fPatterns;
+    private final ThreadLocal<EventValues> fEventValues;
+
+    private TmfCompiledFilter(ITmfFilter filter, Predicate predicate, List<ITmfEventAspect<?>> aspects, List<Pattern> patterns) {
+        fFilter = filter;
+        fPredicate = predicate;
+        fAspects = aspects.toArray(new ITmfEventAspect<?>[aspects.size()]);
+        fPatterns = patterns.toArray(new Pattern[patterns.size()]);
+        fEventValues = ThreadLocal.withInitial(() -> new EventValues(fAspects, fPatterns));
+    }
+
+    /**
+     * Compile a filter. Filters that are not filter trees are returned as
+     * they are.
+     *
+     * @param filter
+     *            The filter to compile
+     * @return The compiled filter
+     */
+    public static ITmfFilter compile(ITmfFilter filter) {
+        if (!(filter instanceof ITmfFilterTreeNode) || filter instanceof TmfCompiledFilter) {
+            return filter;
+        }
+        Compiler compiler = new Compiler();
+        Predicate predicate = compiler.compile((ITmfFilterTreeNode) filter);
+        return new TmfCompiledFilter(filter, predicate, compiler.fAspects, compiler.fPatterns);
+    }
+
+    /**
+     * @return The filter this filter was compiled from
+     */
+    public ITmfFilter getFilter() {
+        return fFilter;
+    }
+
+    @Override
+    public boolean matches(ITmfEvent event) {
+        if (event == null) {
+            return fFilter.matches(event);
+        }
+        EventValues values = fEventValues.get();
+        values.reset(event);
+        try {
+            return fPredicate.test(values);
+        } finally {
+            /* Do not keep a reference to the event */
+            values.reset(null);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return fFilter.toString();
+    }
+
+    // ------------------------------------------------------------------------
+    // Per-thread values of the current event
+    // ------------------------------------------------------------------------
+
+    private static final class EventValues {
+        private static final byte RESOLVED = 1;
+        private static final byte STRING = 2;
+        private static final byte UPPER_CASE = 4;
+
+        private final ITmfEventAspect<?>[] fAspects;
+        private final byte[] fState;
+        private final Object[] fValues;
+        private final String[] fStrings;
+        private final String[] fUpperCaseStrings;
+        private final Matcher[] fMatchers;
+        private TmfTimestampFormat fTimestampFormat = null;
+        private ITmfEvent fEvent = null;
+
+        public EventValues(ITmfEventAspect<?>[] aspects, Pattern[] patterns) {
+            fAspects = aspects;
+            fState = new byte[aspects.length];
+            fValues = new Object[aspects.length];
+            fStrings = new String[aspects.length];
+            fUpperCaseStrings = new String[aspects.length];
+            fMatchers = new Matcher[patterns.length];
+            for (int i = 0; i < patterns.length; i++) {
+                fMatchers[i] = patterns[i].matcher(""); //$NON-NLS-1$
+            }
+        }
+
+        public void reset(ITmfEvent event) {
+            fEvent = event;
+            Arrays.fill(fState, (byte) 0);
+            Arrays.fill(fValues, null);
+            Arrays.fill(fStrings, null);
+            Arrays.fill(fUpperCaseStrings, null);
+        }
+
+        public ITmfEvent getEvent() {
+            return fEvent;
+        }
+
+        public Object getValue(int aspect) {
+            if ((fState[aspect] & RESOLVED) == 0) {
+                fValues[aspect] = fAspects[aspect].resolve(fEvent);
+                fState[aspect] |= RESOLVED;
+            }
+            return fValues[aspect];
+        }
+
+        public String getString(int aspect) {
+            if ((fState[aspect] & STRING) == 0) {
+                Object value = getValue(aspect);
+                fStrings[aspect] = (value == null ? null : value.toString());
+                fState[aspect] |= STRING;
+            }
+            return fStrings[aspect];
+        }
+
+        public String getUpperCaseString(int aspect) {
+            if ((fState[aspect] & UPPER_CASE) == 0) {
+                String value = getString(aspect);
+                fUpperCaseStrings[aspect] = (value == null ? null : value.toUpperCase());
+                fState[aspect] |= UPPER_CASE;
+            }
+            return fUpperCaseStrings[aspect];
+        }
+
+        public Matcher getMatcher(int pattern, String value) {
+            return fMatchers[pattern].reset(value);
+        }
+
+        public TmfTimestampFormat getTimestampFormat() {
+            TmfTimestampFormat format = fTimestampFormat;
+            if (format == null) {
+                format = new TmfTimestampFormat(TIMESTAMP_FORMAT);
+                fTimestampFormat = format;
+            }
+            return format;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Compiler
+    // ------------------------------------------------------------------------
+
+    private static final class Compiler {
+        private final List<ITmfEventAspect<?>> fAspects = new ArrayList<>();
+        private final List<Pattern> fPatterns = new ArrayList<>();
+
+        public Predicate compile(ITmfFilterTreeNode node) {
+            /* Only the exact classes are compiled, subclasses may override matches() */
+            Class<?> nodeClass = node.getClass();
+            if (nodeClass == TmfFilterRootNode.class) {
+                return and(node.getChildren(), false);
+            } else if (nodeClass == TmfFilterAndNode.class) {
+                return and(node.getChildren(), ((TmfFilterAndNode) node).isNot());
+            } else if (nodeClass == TmfFilterOrNode.class) {
+                return or(node.getChildren(), ((TmfFilterOrNode) node).isNot());
+            } else if (nodeClass == TmfFilterNode.class || nodeClass == TmfFilterObjectNode.class) {
+                return or(node.getChildren(), false);
+            } else if (nodeClass == TmfFilterTraceTypeNode.class) {
+                TmfFilterTraceTypeNode traceTypeNode = (TmfFilterTraceTypeNode) node;
+                return new TraceTypePredicate(traceTypeNode.getTraceClass(), traceTypeNode.getTraceTypeId(), and(node.getChildren(), false));
+            } else if (nodeClass == TmfFilterEqualsNode.class) {
+                return compileEquals((TmfFilterEqualsNode) node);
+            } else if (nodeClass == TmfFilterContainsNode.class) {
+                return compileContains((TmfFilterContainsNode) node);
+            } else if (nodeClass == TmfFilterMatchesNode.class) {
+                return compileMatches((TmfFilterMatchesNode) node);
+            } else if (nodeClass == TmfFilterCompareNode.class) {
+                return compileCompare((TmfFilterCompareNode) node);
+            }
+            return new NodePredicate(node);
+        }
+
+        private Predicate and(ITmfFilterTreeNode[] nodes, boolean not) {
+            List<Predicate> children = new ArrayList<>();
+            for (ITmfFilterTreeNode node : nodes) {
+                Predicate child = compile(node);
+                if (child instanceof AndPredicate && !((AndPredicate) child).fNot) {
+                    children.addAll(Arrays.asList(((AndPredicate) child).fChildren));
+                } else {
+                    children.add(child);
+                }
+            }
+            if (children.size() == 1 && !not) {
+                return children.get(0);
+            }
+            return new AndPredicate(sort(children), not);
+        }
+
+        private Predicate or(ITmfFilterTreeNode[] nodes, boolean not) {
+            List<Predicate> children = new ArrayList<>();
+            for (ITmfFilterTreeNode node : nodes) {
+                Predicate child = compile(node);
+                if (child instanceof OrPredicate && !((OrPredicate) child).fNot) {
+                    children.addAll(Arrays.asList(((OrPredicate) child).fChildren));
+                } else {
+                    children.add(child);
+                }
+            }
+            if (children.size() == 1 && !not) {
+                return children.get(0);
+            }
+            return new OrPredicate(sort(children), not);
+        }
+
+        private static Predicate[] sort(List<Predicate> predicates) {
+            /*
+             * The sort is stable, so predicates of equal cost keep their order.
+             * Nodes that are not compiled may have side effects, so they are
+             * called in the order of the tree.
+             */
+            if (predicates.stream().allMatch(Predicate::isPure)) {
+                predicates.sort(Comparator.comparingInt(Predicate::getCost));
+            }
+            return predicates.toArray(new Predicate[predicates.size()]);
+        }
+
+        private int getAspect(ITmfEventAspect<?> aspect) {
+            int index = fAspects.indexOf(aspect);
+            if (index < 0) {
+                index = fAspects.size();
+                fAspects.add(aspect);
+            }
+            return index;
+        }
+
+        private Predicate compileEquals(TmfFilterEqualsNode node) {
+            if (node.getEventAspect() == null) {
+                return new ConstantPredicate(node.isNot());
+            }
+            if (node.getValue() == null) {
+                return new NodePredicate(node);
+            }
+            return new EqualsPredicate(getAspect(node.getEventAspect()), node.getValue(), node.isIgnoreCase(), node.isNot());
+        }
+
+        private Predicate compileContains(TmfFilterContainsNode node) {
+            if (node.getEventAspect() == null) {
+                return new ConstantPredicate(node.isNot());
+            }
+            if (node.getValue() == null) {
+                return new NodePredicate(node);
+            }
+            return new ContainsPredicate(getAspect(node.getEventAspect()), node.getValue(), node.isIgnoreCase(), node.isNot());
+        }
+
+        private Predicate compileMatches(TmfFilterMatchesNode node) {
+            Pattern pattern = null;
+            if (node.getRegex() != null) {
+                try {
+                    pattern = Pattern.compile(node.getRegex(), Pattern.DOTALL);
+                } catch (PatternSyntaxException e) {
+                    pattern = null;
+                }
+            }
+            if (pattern == null || node.getEventAspect() == null) {
+                return new ConstantPredicate(node.isNot());
+            }
+            fPatterns.add(pattern);
+            return new MatchesPredicate(getAspect(node.getEventAspect()), fPatterns.size() - 1, node.isNot());
+        }
+
+        private Predicate compileCompare(TmfFilterCompareNode node) {
+            if (node.getEventAspect() == null || node.getValue() == null) {
+                return new ConstantPredicate(false);
+            }
+            int aspect = getAspect(node.getEventAspect());
+            Type type = node.getType();
+            if (type == Type.NUM) {
+                Number value = toNumber(node.getValue());
+                if (value == null) {
+                    return new ConstantPredicate(false);
+                }
+                return new NumberComparePredicate(aspect, value, node.getResult(), node.isNot());
+            } else if (type == Type.ALPHA) {
+                return new StringComparePredicate(aspect, node.getValue(), node.getResult(), node.isNot());
+            } else if (type == Type.TIMESTAMP) {
+                ITmfTimestamp value = toTimestamp(node.getValue(), new TmfTimestampFormat(TIMESTAMP_FORMAT));
+                if (value == null) {
+                    return new ConstantPredicate(false);
+                }
+                return new TimestampComparePredicate(aspect, value, node.getResult(), node.isNot());
+            }
+            return new ConstantPredicate(false);
+        }
+    }
+
+    private static Number toNumber(Object value) {
+        if (value instanceof Number) {
+            return (Number) value;
+        }
+        try {
+            return Long.decode(value.toString());
+        } catch (NumberFormatException e) {
+        }
+        try {
+            return NumberFormat.getInstance().parse(value.toString());
+        } catch (ParseException e) {
+        }
+        return null;
+    }
+
+    private static ITmfTimestamp toTimestamp(Object value, TmfTimestampFormat format) {
+        if (value instanceof ITmfTimestamp) {
+            return (ITmfTimestamp) value;
+        }
+        try {
+            return TmfTimestamp.fromNanos(format.parseValue(value.toString()));
+        } catch (ParseException e) {
+        }
+        return null;
+    }
+
+    // ------------------------------------------------------------------------
+    // Predicates
+    // ------------------------------------------------------------------------
+
+    private abstract static class Predicate {
+        public abstract boolean test(EventValues values);
+
+        public abstract int getCost();
+
+        /**
+         * @return true if the predicate has no side effect, so it can be
+         *         evaluated in any order
+         */
+        public boolean isPure() {
+            return true;
+        }
+    }
+
+    private static final class ConstantPredicate extends Predicate {
+        private final boolean fResult;
+
+        public ConstantPredicate(boolean result) {
+            fResult = result;
+        }
+
+        @Override
+        public boolean test(EventValues values) {
+            return fResult;
+        }
+
+        @Override
+        public int getCost() {
+            return 0;
+        }
+    }
+
+    /**
+     * Evaluates a node that cannot be compiled by calling its matches() method
+     */
+    private static final class NodePredicate extends Predicate {
+        private final ITmfFilterTreeNode fNode;
+
+        public NodePredicate(ITmfFilterTreeNode node) {
+            fNode = node;
+        }
+
+        @Override
+        public boolean test(EventValues values) {
+            return fNode.matches(values.getEvent());
+        }
+
+        @Override
+        public int getCost() {
+            return COST_NODE;
+        }
+
+        @Override
+        public boolean isPure() {
+            return false;
+        }
+    }
+
+    private static final class AndPredicate extends Predicate {
+        private final Predicate[] fChildren;
+        private final boolean fNot;
+        private final int fCost;
+        private final boolean fPure;
+
+        public AndPredicate(Predicate[] children, boolean not) {
+            fChildren = children;
+            fNot = not;
+            fCost = sumCosts(children);
+            fPure = Arrays.stream(children).allMatch(Predicate::isPure);
+        }
+
+        @Override
+        public boolean test(EventValues values) {
+            for (Predicate child : fChildren) {
+                if (!child.test(values)) {
+                    return false ^ fNot;
+                }
+            }
+            return true ^ fNot;
+        }
+
+        @Override
+        public int getCost() {
+            return fCost;
+        }
+
+        @Override
+        public boolean isPure() {
+            return fPure;
+        }
+    }
+
+    private static final class OrPredicate extends Predicate {
+        private final Predicate[] fChildren;
+        private final boolean fNot;
+        private final int fCost;
+        private final boolean fPure;
+
+        public OrPredicate(Predicate[] children, boolean not) {
+            fChildren = children;
+            fNot = not;
+            fCost = sumCosts(children);
+            fPure = Arrays.stream(children).allMatch(Predicate::isPure);
+        }
+
+        @Override
+        public boolean test(EventValues values) {
+            for (Predicate child : fChildren) {
+                if (child.test(values)) {
+                    return true ^ fNot;
+                }
+            }
+            /* Same result as TmfFilterOrNode */
+            return false & fNot;
+        }
+
+        @Override
+        public int getCost() {
+            return fCost;
+        }
+
+        @Override
+        public boolean isPure() {
+            return fPure;
+        }
+    }
+
+    private static int sumCosts(Predicate[] predicates) {
+        int cost = 0;
+        for (Predicate predicate : predicates) {
+            cost = Math.min(MAX_COST, cost + predicate.getCost());
+        }
+        return cost;
+    }
+
+    private static final class TraceTypePredicate extends Predicate {
+        private final Class<? extends ITmfTrace> fTraceClass;
+        private final String fTraceTypeId;
+        private final Predicate fChild;
+
+        public TraceTypePredicate(Class<? extends ITmfTrace> traceClass, String traceTypeId, Predicate child) {
+            fTraceClass = traceClass;
+            fTraceTypeId = traceTypeId;
+            fChild = child;
+        }
+
+        @Override
+        public boolean test(EventValues values) {
+            ITmfTrace trace = values.getEvent().getTrace();
+            if (!trace.getClass().equals(fTraceClass)) {
+                return false;
+            }
+            if (fTraceTypeId != null && !fTraceTypeId.equals(trace.getTraceTypeId())) {
+                return false;
+            }
+            return fChild.test(values);
+        }
+
+        @Override
+        public int getCost() {
+            return COST_TRACE_TYPE;
+        }
+
+        @Override
+        public boolean isPure() {
+            return fChild.isPure();
+        }
+    }
+
+    private static final class EqualsPredicate extends Predicate {
+        private final int fAspect;
+        private final String fValue;
+        private final boolean fIgnoreCase;
+        private final boolean fNot;
+
+        public EqualsPredicate(int aspect, String value, boolean ignoreCase, boolean not) {
+            fAspect = aspect;
+            fValue = value;
+            fIgnoreCase = ignoreCase;
+            fNot = not;
+        }
+
+        @Override
+        public boolean test(EventValues values) {
+            String value = values.getString(fAspect);
+            if (value == null) {
+                return false ^ fNot;
+            }
+            if (fIgnoreCase) {
+                return value.equalsIgnoreCase(fValue) ^ fNot;
+            }
+            return value.equals(fValue) ^ fNot;
+        }
+
+        @Override
+        public int getCost() {
+            return COST_EQUALS;
+        }
+    }
+
+    private static final class ContainsPredicate extends Predicate {
+        private final int fAspect;
+        private final String fValue;
+        private final boolean fIgnoreCase;
+        private final boolean fNot;
+
+        public ContainsPredicate(int aspect, String value, boolean ignoreCase, boolean not) {
+            fAspect = aspect;
+            fValue = (ignoreCase ? value.toUpperCase() : value);
+            fIgnoreCase = ignoreCase;
+            fNot = not;
+        }
+
+        @Override
+        public boolean test(EventValues values) {
+            String value = (fIgnoreCase ? values.getUpperCaseString(fAspect) : values.getString(fAspect));
+            if (value == null) {
+                return false ^ fNot;
+            }
+            return value.contains(fValue) ^ fNot;
+        }
+
+        @Override
+        public int getCost() {
+            return COST_CONTAINS;
+        }
+    }
+
+    private static final class MatchesPredicate extends Predicate {
+        private final int fAspect;
+        private final int fPattern;
+        private final boolean fNot;
+
+        public MatchesPredicate(int aspect, int pattern, boolean not) {
+            fAspect = aspect;
+            fPattern = pattern;
+            fNot = not;
+        }
+
+        @Override
+        public boolean test(EventValues values) {
+            String value = values.getString(fAspect);
+            if (value == null) {
+                return false ^ fNot;
+            }
+            return values.getMatcher(fPattern, value).find() ^ fNot;
+        }
+
+        @Override
+        public int getCost() {
+            return COST_MATCHES;
+        }
+    }
+
+    private static final class NumberComparePredicate extends Predicate {
+        private final int fAspect;
+        private final boolean fDoubleValue;
+        private final long fLongValue;
+        private final double fValue;
+        private final int fResult;
+        private final boolean fNot;
+
+        public NumberComparePredicate(int aspect, Number value, int result, boolean not) {
+            fAspect = aspect;
+            fDoubleValue = (value instanceof Double);
+            fLongValue = value.longValue();
+            fValue = value.doubleValue();
+            fResult = result;
+            fNot = not;
+        }
+
+        @Override
+        public boolean test(EventValues values) {
+            Object value = values.getValue(fAspect);
+            if (value == null) {
+                return false;
+            }
+            /* Avoid parsing the most common types of values */
+            if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                long longValue = ((Number) value).longValue();
+                if (fDoubleValue) {
+                    return (Double.compare(longValue, fValue) == fResult) ^ fNot;
+                }
+                return (Long.compare(longValue, fLongValue) == fResult) ^ fNot;
+            }
+            Number number = toNumber(value);
+            if (number == null) {
+                return false;
+            }
+            if (fDoubleValue || number instanceof Double || number instanceof Float) {
+                return (Double.compare(number.doubleValue(), fValue) == fResult) ^ fNot;
+            }
+            return (Long.compare(number.longValue(), fLongValue) == fResult) ^ fNot;
+        }
+
+        @Override
+        public int getCost() {
+            return COST_COMPARE;
+        }
+    }
+
+    private static final class StringComparePredicate extends Predicate {
+        private final int fAspect;
+        private final String fValue;
+        private final int fResult;
+        private final boolean fNot;
+
+        public StringComparePredicate(int aspect, String value, int result, boolean not) {
+            fAspect = aspect;
+            fValue = value;
+            fResult = result;
+            fNot = not;
+        }
+
+        @Override
+        public boolean test(EventValues values) {
+            String value = values.getString(fAspect);
+            if (value == null) {
+                return false;
+            }
+            return ((int) Math.signum(value.compareTo(fValue)) == fResult) ^ fNot;
+        }
+
+        @Override
+        public int getCost() {
+            return COST_COMPARE;
+        }
+    }
+
+    private static final class TimestampComparePredicate extends Predicate {
+        private final int fAspect;
+        private final ITmfTimestamp fValue;
+        private final int fResult;
+        private final boolean fNot;
+
+        public TimestampComparePredicate(int aspect, ITmfTimestamp value, int result, boolean not) {
+            fAspect = aspect;
+            fValue = value;
+            fResult = result;
+            fNot = not;
+        }
+
+        @Override
+        public boolean test(EventValues values) {
+            Object value = values.getValue(fAspect);
+            if (value == null) {
+                return false;
+            }
+            ITmfTimestamp timestamp = toTimestamp(value, values.getTimestampFormat());
+            if (timestamp == null) {
+                return false;
+            }
+            return ((int) Math.signum(timestamp.compareTo(fValue)) == fResult) ^ fNot;
+        }
+
+        @Override
+        public int getCost() {
+            return COST_COMPARE;
+        }
+    }
+}
@@ -0,0 +1,521 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.filter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfBaseAspects;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfEventFieldAspect;
+import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
+import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAndNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterEqualsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterObjectNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterOrNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterTraceTypeNode;
+
+/**
+ * A persistent inverted index of the events of a trace, stored in a file of
+ * the supplementary folder of the trace.
+ *
+ * The ranks of the trace are split in blocks of {@link #BLOCK_SIZE}
+ * consecutive ranks, and each block holds the posting lists of the event types
+ * and of the values of the top-level content fields of its events (see
+ * {@link SearchIndexBlock}). The blocks are appended to the file as they are
+ * completed, so the index can be queried while it is being built, and its
+ * construction can resume from the last complete block. The header of the file
+ * holds the size and modification time of the trace files, so that the index
+ * of a trace that changed since is not used.
+ *
+ * The index answers {@link Query queries} with the ranks of the events that
+ * may match a filter. Those ranks are a superset of the matching ranks: the
+ * candidates must still be read and matched against the filter.
+ */
+public class TmfEventSearchIndex implements AutoCloseable {
+
+    /** Number of consecutive ranks in a block of the index */
+    public static final int BLOCK_SIZE = 1 << 16;
+
+    private static final int MAGIC = 0x5EA2C81D;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + 2 * Long.BYTES;
+    private static final int CACHE_SIZE = 8;
+
+    private final File fFile;
+    private final RandomAccessFile fRandomAccessFile;
+    /* The offsets of the blocks in the file */
+    private final List<Long> fBlockOffsets = new ArrayList<>();
+    private final Map<Integer, SearchIndexBlock> fCache = new LinkedHashMap<Integer, SearchIndexBlock>(CACHE_SIZE, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, SearchIndexBlock> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private long fNbEvents = 0;
+    private int fLastBlockSize = 0;
+    /* Incremented when a block is removed, to invalidate the queries */
+    private int fUpdateCount = 0;
+
+    /**
+     * Open an index file, or create it if it does not exist, is not a valid
+     * index file or is the index of another version of the trace
+     *
+     * @param file
+     *            The index file
+     * @param traceFile
+     *            The file or directory of the indexed trace. Its size and
+     *            modification time are stored in the index file, which is
+     *            discarded when they change.
+     * @throws IOException
+     *             If the file could not be opened or created
+     */
+    public TmfEventSearchIndex(File file, File traceFile) throws IOException {
+        fFile = file;
+        fRandomAccessFile = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+        try {
+            long traceSize = getSize(traceFile);
+            long traceModified = getLastModified(traceFile);
+            if (fRandomAccessFile.length() < HEADER_SIZE ||
+                    fRandomAccessFile.readInt() != MAGIC ||
+                    fRandomAccessFile.readInt() != VERSION ||
+                    fRandomAccessFile.readLong() != traceSize ||
+                    fRandomAccessFile.readLong() != traceModified) {
+                fRandomAccessFile.setLength(0);
+                fRandomAccessFile.seek(0);
+                fRandomAccessFile.writeInt(MAGIC);
+                fRandomAccessFile.writeInt(VERSION);
+                fRandomAccessFile.writeLong(traceSize);
+                fRandomAccessFile.writeLong(traceModified);
+            }
+            readBlockOffsets();
+        } catch (IOException e) {
+            fRandomAccessFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the total size of the files of a trace
+     */
+    private static long getSize(File traceFile) {
+        File[] children = traceFile.listFiles();
+        if (children == null) {
+            return traceFile.length();
+        }
+        long size = 0;
+        for (File child : children) {
+            size += getSize(child);
+        }
+        return size;
+    }
+
+    /**
+     * Get the last modification time of the files of a trace
+     */
+    private static long getLastModified(File traceFile) {
+        long lastModified = traceFile.lastModified();
+        File[] children = traceFile.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                lastModified = Math.max(lastModified, getLastModified(child));
+            }
+        }
+        return lastModified;
+    }
+
+    private void readBlockOffsets() throws IOException {
+        long length = fRandomAccessFile.length();
+        long offset = HEADER_SIZE;
+        while (offset + 2 * Integer.BYTES <= length) {
+            fRandomAccessFile.seek(offset);
+            int size = fRandomAccessFile.readInt();
+            int nbEvents = fRandomAccessFile.readInt();
+            if (size < Integer.BYTES || offset + Integer.BYTES + size > length ||
+                    nbEvents <= 0 || nbEvents > BLOCK_SIZE || fLastBlockSize < BLOCK_SIZE && !fBlockOffsets.isEmpty()) {
+                /* Incomplete write, or a partial block followed by another */
+                break;
+            }
+            fBlockOffsets.add(offset);
+            fNbEvents += nbEvents;
+            fLastBlockSize = nbEvents;
+            offset += Integer.BYTES + size;
+        }
+        if (offset != length) {
+            Activator.logWarning(MessageFormat.format("Truncating the search index {0} at {1}", fFile, offset)); //$NON-NLS-1$
+            fRandomAccessFile.setLength(offset);
+        }
+    }
+
+    /**
+     * @return The file of this index
+     */
+    public File getFile() {
+        return fFile;
+    }
+
+    /**
+     * @return The number of events indexed, which are the events of ranks 0 to
+     *         this number minus one
+     */
+    public synchronized long getNbEvents() {
+        return fNbEvents;
+    }
+
+    // ------------------------------------------------------------------------
+    // Construction
+    // ------------------------------------------------------------------------
+
+    /**
+     * Prepare the index to be updated: the last block of the index is removed
+     * if it is not complete, so it can be indexed again with the events that
+     * were added to the trace since.
+     *
+     * @return The rank of the first event to index
+     * @throws IOException
+     *             If the file could not be truncated
+     */
+    public synchronized long startUpdate() throws IOException {
+        if (!fBlockOffsets.isEmpty() && fLastBlockSize < BLOCK_SIZE) {
+            int last = fBlockOffsets.size() - 1;
+            fRandomAccessFile.setLength(fBlockOffsets.remove(last));
+            fCache.remove(last);
+            fNbEvents -= fLastBlockSize;
+            fLastBlockSize = BLOCK_SIZE;
+            fUpdateCount++;
+        }
+        return fNbEvents;
+    }
+
+    /**
+     * Append a block of events to the index. The index must not end with an
+     * incomplete block.
+     *
+     * @param block
+     *            The block of the next events
+     * @throws IOException
+     *             If the block could not be written
+     */
+    public synchronized void append(SearchIndexBlock block) throws IOException {
+        if (!fBlockOffsets.isEmpty() && fLastBlockSize < BLOCK_SIZE) {
+            throw new IllegalStateException("The index ends with an incomplete block"); //$NON-NLS-1$
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            block.write(out);
+        }
+        long offset = fRandomAccessFile.length();
+        fRandomAccessFile.seek(offset);
+        fRandomAccessFile.writeInt(bytes.size());
+        fRandomAccessFile.write(bytes.toByteArray());
+        fBlockOffsets.add(offset);
+        fNbEvents += block.getNbEvents();
+        fLastBlockSize = block.getNbEvents();
+    }
+
+    /**
+     * Get a block of the index
+     *
+     * @param index
+     *            The index of the block, which contains the ranks starting at
+     *            index * {@link #BLOCK_SIZE}
+     * @return The block, or null if it is not in the index
+     * @throws IOException
+     *             If the block could not be read
+     */
+    synchronized SearchIndexBlock getBlock(int index) throws IOException {
+        if (index >= fBlockOffsets.size()) {
+            return null;
+        }
+        SearchIndexBlock block = fCache.get(index);
+        if (block == null) {
+            fRandomAccessFile.seek(fBlockOffsets.get(index));
+            byte[] bytes = new byte[fRandomAccessFile.readInt()];
+            fRandomAccessFile.readFully(bytes);
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+                block = SearchIndexBlock.read(in);
+            }
+            fCache.put(index, block);
+        }
+        return block;
+    }
+
+    private synchronized int getUpdateCount() {
+        return fUpdateCount;
+    }
+
+    @Override
+    public synchronized void close() {
+        fCache.clear();
+        try {
+            fRandomAccessFile.close();
+        } catch (IOException e) {
+            Activator.logError(MessageFormat.format("Error closing the search index {0}", fFile), e); //$NON-NLS-1$
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Queries
+    // ------------------------------------------------------------------------
+
+    /**
+     * Create a query of the ranks that may match a filter
+     *
+     * @param filter
+     *            The filter, can be a compiled filter
+     * @return The query
+     */
+    public Query createQuery(ITmfFilter filter) {
+        ITmfFilter tree = (filter instanceof TmfCompiledFilter ? ((TmfCompiledFilter) filter).getFilter() : filter);
+        return new Query(toTerm(tree));
+    }
+
+    /**
+     * The ranks that may match a filter. The ranks after the end of the index
+     * are always candidates. A query keeps the candidates of the last block it
+     * looked at, and should be used by a single thread.
+     */
+    public final class Query {
+
+        private final Term fTerm;
+        private int fBlockIndex = -1;
+        private int fUpdateCount = -1;
+        private BitSet fBlockCandidates = null;
+
+        private Query(Term term) {
+            fTerm = term;
+        }
+
+        /**
+         * @return If the index can exclude some ranks for this filter. If not,
+         *         all ranks are candidates.
+         */
+        public boolean isIndexed() {
+            return fTerm != null;
+        }
+
+        /**
+         * Get the first candidate starting from a rank
+         *
+         * @param rank
+         *            The rank from which to search
+         * @return The smallest candidate rank that is greater or equal to the
+         *         rank, which is at most the number of indexed events if no
+         *         indexed event may match
+         */
+        public long nextCandidate(long rank) {
+            long nbEvents = getNbEvents();
+            long current = rank;
+            while (current < nbEvents) {
+                BitSet candidates = getBlockCandidates(current);
+                long blockStart = current - (current % BLOCK_SIZE);
+                if (candidates == null) {
+                    return current;
+                }
+                int next = candidates.nextSetBit((int) (current - blockStart));
+                if (next >= 0) {
+                    return blockStart + next;
+                }
+                current = blockStart + BLOCK_SIZE;
+            }
+            return Math.max(rank, nbEvents);
+        }
+
+        /**
+         * Get the last candidate up to a rank
+         *
+         * @param rank
+         *            The rank from which to search backwards
+         * @return The largest candidate rank that is less or equal to the
+         *         rank, or -1 if there is none
+         */
+        public long previousCandidate(long rank) {
+            if (rank >= getNbEvents()) {
+                return rank;
+            }
+            long current = rank;
+            while (current >= 0) {
+                BitSet candidates = getBlockCandidates(current);
+                long blockStart = current - (current % BLOCK_SIZE);
+                if (candidates == null) {
+                    return current;
+                }
+                int previous = candidates.previousSetBit((int) (current - blockStart));
+                if (previous >= 0) {
+                    return blockStart + previous;
+                }
+                current = blockStart - 1;
+            }
+            return -1;
+        }
+
+        /**
+         * Check if a rank is a candidate
+         *
+         * @param rank
+         *            The rank
+         * @return If the event of this rank may match the filter
+         */
+        public boolean isCandidate(long rank) {
+            if (rank >= getNbEvents()) {
+                return true;
+            }
+            BitSet candidates = getBlockCandidates(rank);
+            return candidates == null || candidates.get((int) (rank % BLOCK_SIZE));
+        }
+
+        private BitSet getBlockCandidates(long rank) {
+            int blockIndex = (int) (rank / BLOCK_SIZE);
+            int updateCount = getUpdateCount();
+            if (blockIndex != fBlockIndex || updateCount != fUpdateCount) {
+                fBlockIndex = blockIndex;
+                fUpdateCount = updateCount;
+                fBlockCandidates = null;
+                if (fTerm != null) {
+                    try {
+                        SearchIndexBlock block = getBlock(blockIndex);
+                        if (block != null) {
+                            fBlockCandidates = fTerm.evaluate(block);
+                        }
+                    } catch (IOException e) {
+                        Activator.logError(MessageFormat.format("Error reading the search index {0}", fFile), e); //$NON-NLS-1$
+                    }
+                }
+            }
+            return fBlockCandidates;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Filter terms
+    // ------------------------------------------------------------------------
+
+    /**
+     * A part of a filter that can be evaluated with a block of the index
+     */
+    @FunctionalInterface
+    private interface Term {
+        /**
+         * @return The offsets of the events of the block that may match, or
+         *         null if they all may match
+         */
+        BitSet evaluate(SearchIndexBlock block);
+    }
+
+    /**
+     * Convert a filter to a term. The term is null when the index cannot
+     * exclude any event for this filter. Negations are never indexed, since
+     * the complement of a superset is not a superset of the complement.
+     */
+    private static Term toTerm(ITmfFilter filter) {
+        if (!(filter instanceof ITmfFilterTreeNode)) {
+            return null;
+        }
+        /* Only the exact classes are indexed, subclasses may override matches() */
+        ITmfFilterTreeNode node = (ITmfFilterTreeNode) filter;
+        Class<?> nodeClass = node.getClass();
+        if (nodeClass == TmfFilterRootNode.class || nodeClass == TmfFilterTraceTypeNode.class) {
+            return and(node.getChildren());
+        } else if (nodeClass == TmfFilterAndNode.class) {
+            return ((TmfFilterAndNode) node).isNot() ? null : and(node.getChildren());
+        } else if (nodeClass == TmfFilterOrNode.class) {
+            return ((TmfFilterOrNode) node).isNot() ? null : or(node.getChildren());
+        } else if (nodeClass == TmfFilterNode.class || nodeClass == TmfFilterObjectNode.class) {
+            return or(node.getChildren());
+        } else if (nodeClass == TmfFilterEqualsNode.class) {
+            return equalsTerm((TmfFilterEqualsNode) node);
+        }
+        return null;
+    }
+
+    private static Term and(ITmfFilterTreeNode[] nodes) {
+        List<Term> terms = new ArrayList<>();
+        for (ITmfFilterTreeNode node : nodes) {
+            Term term = toTerm(node);
+            if (term != null) {
+                terms.add(term);
+            }
+        }
+        if (terms.isEmpty()) {
+            return null;
+        }
+        return block -> {
+            BitSet result = null;
+            for (Term term : terms) {
+                BitSet bits = term.evaluate(block);
+                if (result == null) {
+                    result = bits;
+                } else if (bits != null) {
+                    result.and(bits);
+                }
+            }
+            return result;
+        };
+    }
+
+    private static Term or(ITmfFilterTreeNode[] nodes) {
+        List<Term> terms = new ArrayList<>();
+        for (ITmfFilterTreeNode node : nodes) {
+            Term term = toTerm(node);
+            if (term == null) {
+                return null;
+            }
+            terms.add(term);
+        }
+        return block -> {
+            BitSet result = new BitSet();
+            for (Term term : terms) {
+                BitSet bits = term.evaluate(block);
+                if (bits == null) {
+                    return null;
+                }
+                result.or(bits);
+            }
+            return result;
+        };
+    }
+
+    private static Term equalsTerm(TmfFilterEqualsNode node) {
+        String value = node.getValue();
+        if (node.isNot() || node.isIgnoreCase() || value == null) {
+            return null;
+        }
+        ITmfEventAspect<?> aspect = node.getEventAspect();
+        if (aspect == TmfBaseAspects.getEventTypeAspect()) {
+            return block -> block.getEventsOfType(value);
+        }
+        if (aspect instanceof TmfEventFieldAspect) {
+            /* Only the top-level fields of the event content are indexed */
+            String field = ((TmfEventFieldAspect) aspect).getFieldPath();
+            if (field != null && !field.isEmpty() && field.charAt(0) != '/' &&
+                    aspect.equals(TmfBaseAspects.getContentsAspect().forField(field))) {
+                return block -> block.getEventsWithValue(field, value);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.filter;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.MessageFormat;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfEventSearchIndex.Query;
+import org.eclipse.tracecompass.tmf.core.analysis.TmfAbstractAnalysisModule;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
+import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
+
+/**
+ * Analysis module building the {@link TmfEventSearchIndex} of a trace. The
+ * index is kept in the supplementary folder of the trace, and each execution
+ * only indexes the events that were not indexed by the previous ones. The
+ * analysis is not automatic, it is scheduled by the first query of the index
+ * (see {@link #createQuery}).
+ */
+public class TmfEventSearchIndexModule extends TmfAbstractAnalysisModule {
+
+    /** ID of this analysis module */
+    public static final String ID = "org.eclipse.tracecompass.tmf.core.filter.searchindex"; //$NON-NLS-1$
+
+    private static final String FILE_NAME = "search-index.idx"; //$NON-NLS-1$
+
+    private @Nullable TmfEventSearchIndex fIndex = null;
+    private @Nullable ITmfEventRequest fRequest = null;
+    private boolean fDisposed = false;
+
+    /**
+     * Get the index built by this analysis. The index can be queried while it
+     * is being built.
+     *
+     * @return The index, or null if it was not opened yet or could not be
+     *         opened
+     */
+    public synchronized @Nullable TmfEventSearchIndex getIndex() {
+        return fIndex;
+    }
+
+    /**
+     * Get the query of the search index of a trace for a filter. The analysis
+     * building the index is scheduled if it did not run yet, and the index
+     * file is opened right away, so the blocks already in the file can be
+     * used while the other ones are being indexed.
+     *
+     * @param trace
+     *            The trace
+     * @param filter
+     *            The filter, can be a compiled filter
+     * @return The query, or null if the trace has no search index or the
+     *         index cannot exclude events for this filter
+     */
+    public static @Nullable Query createQuery(ITmfTrace trace, ITmfFilter filter) {
+        TmfEventSearchIndexModule module = TmfTraceUtils.getAnalysisModuleOfClass(trace, TmfEventSearchIndexModule.class, ID);
+        if (module == null) {
+            return null;
+        }
+        module.schedule();
+        TmfEventSearchIndex index;
+        try {
+            index = module.openIndex(trace);
+        } catch (IOException e) {
+            Activator.logError(MessageFormat.format("Error opening the search index of {0}", trace.getName()), e); //$NON-NLS-1$
+            return null;
+        }
+        if (index == null) {
+            return null;
+        }
+        Query query = index.createQuery(filter);
+        return (query.isIndexed() ? query : null);
+    }
+
+    private synchronized @Nullable TmfEventSearchIndex openIndex(ITmfTrace trace) throws IOException {
+        TmfEventSearchIndex index = fIndex;
+        if (index == null && !fDisposed) {
+            index = new TmfEventSearchIndex(new File(TmfTraceManager.getSupplementaryFileDir(trace) + FILE_NAME), new File(trace.getPath()));
+            fIndex = index;
+        }
+        return index;
+    }
+
+    @Override
+    protected boolean executeAnalysis(IProgressMonitor monitor) throws TmfAnalysisException {
+        ITmfTrace trace = getTrace();
+        if (trace == null) {
+            return false;
+        }
+        TmfEventSearchIndex index;
+        long startRank;
+        try {
+            index = openIndex(trace);
+            if (index == null) {
+                return false;
+            }
+            startRank = index.startUpdate();
+        } catch (IOException e) {
+            Activator.logError(MessageFormat.format("Error opening the search index of {0}", trace.getName()), e); //$NON-NLS-1$
+            return false;
+        }
+
+        IndexRequest request = new IndexRequest(index, startRank);
+        fRequest = request;
+        trace.sendRequest(request);
+        try {
+            request.waitForCompletion();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return request.isCompleted() && !request.isCancelled() && !request.isFailed();
+    }
+
+    @Override
+    protected void canceling() {
+        ITmfEventRequest request = fRequest;
+        if (request != null && !request.isCompleted()) {
+            request.cancel();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        super.dispose();
+        synchronized (this) {
+            fDisposed = true;
+            TmfEventSearchIndex index = fIndex;
+            if (index != null) {
+                index.close();
+                fIndex = null;
+            }
+        }
+    }
+
+    /**
+     * Request reading the events that are not indexed yet, and appending them
+     * to the index block by block. The last block is appended even if it is
+     * incomplete, so that the whole trace can be queried.
+     */
+    private static class IndexRequest extends TmfEventRequest {
+
+        private final TmfEventSearchIndex fIndex;
+        private SearchIndexBlock fBlock = new SearchIndexBlock();
+
+        public IndexRequest(TmfEventSearchIndex index, long startRank) {
+            super(ITmfEvent.class, TmfTimeRange.ETERNITY, startRank, ITmfEventRequest.ALL_DATA, ExecutionType.BACKGROUND);
+            fIndex = index;
+        }
+
+        @Override
+        public void handleData(ITmfEvent event) {
+            super.handleData(event);
+            fBlock.add(event);
+            if (fBlock.isFull()) {
+                appendBlock();
+                fBlock = new SearchIndexBlock();
+            }
+        }
+
+        @Override
+        public void handleSuccess() {
+            super.handleSuccess();
+            if (fBlock.getNbEvents() > 0) {
+                appendBlock();
+            }
+        }
+
+        private void appendBlock() {
+            try {
+                fIndex.append(fBlock);
+            } catch (IOException e) {
+                Activator.logError(MessageFormat.format("Error writing the search index {0}", fIndex.getFile()), e); //$NON-NLS-1$
+                fail(e);
+            }
+        }
+    }
+}
@@ -21,6 +21,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
@@ -215,6 +216,79 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
 
         long index = getIndex() + getNbRead() - 1;
 
+        // dispatch event to relevant requests
+        for (ITmfEventRequest request : getRequests(data)) {
+            if (accepts(request, data, index, request.getNbRead())) {
+                request.handleData(data);
+            }
+        }
+    }
+
+    /**
+     * The batch size of a coalesced request is the largest batch size of its
+     * sub-requests. The sub-requests with a batch size of 1 still receive the
+     * events one by one.
+     */
+    @Override
+    public int getBatchSize() {
+        int batchSize = 1;
+        for (ITmfEventRequest request : fRequests) {
+            batchSize = Math.max(batchSize, request.getBatchSize());
+        }
+        return batchSize;
+    }
+
+    /**
+     * The event types of a coalesced request are the union of the event types
+     * of its sub-requests, as long as they all have some.
+     */
+    @Override
+    public @Nullable Set<String> getEventTypes() {
+        Set<String> eventTypes = new HashSet<>();
+        for (ITmfEventRequest request : fRequests) {
+            Set<String> requestTypes = request.getEventTypes();
+            if (requestTypes == null) {
+                return null;
+            }
+            eventTypes.addAll(requestTypes);
+        }
+        return (eventTypes.isEmpty() ? null : eventTypes);
+    }
+
+    @Override
+    public void handleDataBatch(List<ITmfEvent> events) {
+        long firstIndex = getIndex() + getNbRead();
+        super.handleDataBatch(events);
+
+        Map<ITmfEventRequest, SubBatch> batches = new HashMap<>();
+        for (int i = 0; i < events.size(); i++) {
+            ITmfEvent data = events.get(i);
+            for (ITmfEventRequest request : getRequests(data)) {
+                if (request.getBatchSize() <= 1) {
+                    if (accepts(request, data, firstIndex + i, request.getNbRead())) {
+                        request.handleData(data);
+                    }
+                    continue;
+                }
+                SubBatch batch = batches.computeIfAbsent(request, r -> new SubBatch());
+                if (accepts(request, data, firstIndex + i, request.getNbRead() + batch.size())) {
+                    batch.add(events, i);
+                } else {
+                    batch.skip(events, i);
+                }
+            }
+        }
+
+        // dispatch the batches to the requests that receive them
+        for (Map.Entry<ITmfEventRequest, SubBatch> entry : batches.entrySet()) {
+            List<ITmfEvent> batch = entry.getValue().getEvents(events);
+            if (!batch.isEmpty()) {
+                entry.getKey().handleDataBatch(batch);
+            }
+        }
+    }
+
+    private Set<ITmfEventRequest> getRequests(ITmfEvent data) {
         String traceName = data.getTrace().getName();
         Set<ITmfEventRequest> requests = fRequestsCache.get(traceName);
 
@@ -228,18 +302,56 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
             }
             fRequestsCache.put(traceName, requests);
         }
+        return requests;
+    }
 
-        // dispatch event to relevant requests
-        for (ITmfEventRequest request : requests) {
-            long start = request.getIndex();
-            if (!request.isCompleted() && index >= start && request.getNbRead() < request.getNbRequested()) {
-                ITmfTimestamp ts = data.getTimestamp();
-                if (request.getRange().contains(ts)) {
-                    if (request.getDataType().isInstance(data)) {
-                        request.handleData(data);
-                    }
-                }
+    private static boolean accepts(ITmfEventRequest request, ITmfEvent data, long index, long nbRead) {
+        Set<String> eventTypes = request.getEventTypes();
+        return !request.isCompleted() && index >= request.getIndex() && nbRead < request.getNbRequested() &&
+                request.getRange().contains(data.getTimestamp()) && request.getDataType().isInstance(data) &&
+                (eventTypes == null || eventTypes.contains(data.getName()));
+    }
+
+    /**
+     * The events of a batch that go to one sub-request. As long as the
+     * sub-request accepts a prefix of the batch, it gets a view of the batch
+     * instead of a copy of the events.
+     */
+    private static final class SubBatch {
+        private int fPrefixSize = 0;
+        private @Nullable List<ITmfEvent> fEvents = null;
+
+        public int size() {
+            List<ITmfEvent> events = fEvents;
+            return (events == null ? fPrefixSize : events.size());
+        }
+
+        public void add(List<ITmfEvent> batch, int i) {
+            List<ITmfEvent> events = fEvents;
+            if (events != null) {
+                events.add(batch.get(i));
+            } else if (fPrefixSize == i) {
+                fPrefixSize++;
+            } else {
+                events = new ArrayList<>(batch.subList(0, fPrefixSize));
+                events.add(batch.get(i));
+                fEvents = events;
+            }
+        }
+
+        public void skip(List<ITmfEvent> batch, int i) {
+            if (fEvents == null && fPrefixSize == i) {
+                /* The prefix ends here */
+                fEvents = new ArrayList<>(batch.subList(0, fPrefixSize));
+            }
+        }
+
+        public List<ITmfEvent> getEvents(List<ITmfEvent> batch) {
+            List<ITmfEvent> events = fEvents;
+            if (events != null) {
+                return events;
             }
+            return (fPrefixSize == batch.size() ? batch : batch.subList(0, fPrefixSize));
         }
     }
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -16,10 +16,13 @@ package org.eclipse.tracecompass.internal.tmf.core.request;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
-import java.util.Queue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -29,16 +32,33 @@ import org.eclipse.tracecompass.internal.tmf.core.component.TmfEventThread;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
 
 /**
- * The request scheduler works with 5 slots with a specific time. It has 4 slots
- * for foreground requests and 1 slot for background requests, and it passes
- * through all the slots (foreground first and background after).
+ * The request scheduler runs up to one request per lane at the same time, with
+ * one lane per processor by default. The requests that do not fit in the lanes
+ * wait in one queue per priority, which is not bounded.
  *
- * Example: if we have one foreground and one background request, the foreground
- * request will be executed four times more often than the background request.
+ * The lanes do not have their own queues, so there is no work stealing
+ * between them: all the lanes share the queues of the executor, and a lane
+ * that becomes free takes the next waiting request right away. No lane can
+ * then stay idle while requests wait behind a busy one, which is what work
+ * stealing would provide. The requests are few and long-lived, so the shared
+ * queues, protected by the lock of the executor, are not contended.
+ *
+ * The lanes are time-sliced: when requests are waiting, the running requests
+ * are suspended and put back at the end of their queue, background requests
+ * first, and the lanes are given to the waiting requests. The scheduler has 4
+ * slots for foreground requests and 1 slot for background requests, and it
+ * passes through all the slots (foreground first and background after).
+ *
+ * Example: if we have one foreground and one background request waiting for a
+ * single lane, the foreground request will be executed four times more often
+ * than the background request.
+ *
+ * The scheduler also keeps metrics of the requests: the time they waited in
+ * the queues, the time they ran and the events they read.
  *
  * @author Francois Chouinard
  * @author Simon Delisle
- * @version 1.1
+ * @version 1.2
  */
 public class TmfRequestExecutor implements Executor {
 
@@ -57,12 +77,15 @@ public class TmfRequestExecutor implements Executor {
     private final ExecutorService fExecutor = Executors.newCachedThreadPool();
     private final String fExecutorName;
 
+    // The number of requests that can run at the same time
+    private final int fNbLanes;
+
     // The request queues
-    private final Queue<TmfEventThread> fForegroundTasks = new ArrayBlockingQueue<>(10);
-    private final Queue<TmfEventThread> fBackgroundTasks = new ArrayBlockingQueue<>(10);
+    private final Deque<RequestTask> fForegroundTasks = new ArrayDeque<>();
+    private final Deque<RequestTask> fBackgroundTasks = new ArrayDeque<>();
 
-    // The tasks
-    private TmfEventThread fActiveTask;
+    // The tasks running in the lanes
+    private final List<RequestTask> fActiveTasks = new ArrayList<>();
 
     private Timer fTimer;
     private TimerTask fTimerTask;
@@ -74,14 +97,28 @@ public class TmfRequestExecutor implements Executor {
     // ------------------------------------------------------------------------
 
     /**
-     * Default constructor
+     * Default constructor, with one lane per available processor
      */
     public TmfRequestExecutor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param nbLanes
+     *            The maximum number of requests to run at the same time
+     */
+    public TmfRequestExecutor(int nbLanes) {
+        if (nbLanes < 1) {
+            throw new IllegalArgumentException();
+        }
+        fNbLanes = nbLanes;
         // We know the canonical name is not null because we use ExecutorService only
         String canonicalName = checkNotNull(fExecutor.getClass().getCanonicalName());
         fExecutorName = canonicalName.substring(canonicalName.lastIndexOf('.') + 1);
         if (TmfCoreTracer.isComponentTraced()) {
-            TmfCoreTracer.trace(fExecutor + " created"); //$NON-NLS-1$
+            TmfCoreTracer.trace(fExecutor + " created with " + fNbLanes + " lanes"); //$NON-NLS-1$ //$NON-NLS-2$
         }
     }
 
@@ -103,6 +140,50 @@ public class TmfRequestExecutor implements Executor {
         return fExecutor.isTerminated();
     }
 
+    /**
+     * @return the maximum number of requests running at the same time
+     */
+    public int getNbLanes() {
+        return fNbLanes;
+    }
+
+    /**
+     * @return the number of requests currently running
+     */
+    public synchronized int getNbActiveTasks() {
+        return fActiveTasks.size();
+    }
+
+    /**
+     * @param execType
+     *            The priority of the queue
+     * @return the number of requests waiting in the queue of that priority
+     */
+    public synchronized int getQueueDepth(ExecutionType execType) {
+        return getQueue(execType).size();
+    }
+
+    /**
+     * Get the metrics of the requests currently running or waiting in this
+     * executor
+     *
+     * @return The metrics of the requests, running ones first
+     */
+    public synchronized List<TmfRequestMetrics> getMetrics() {
+        long now = System.nanoTime();
+        List<TmfRequestMetrics> metrics = new ArrayList<>();
+        for (RequestTask task : fActiveTasks) {
+            metrics.add(task.getMetrics(now));
+        }
+        for (RequestTask task : fForegroundTasks) {
+            metrics.add(task.getMetrics(now));
+        }
+        for (RequestTask task : fBackgroundTasks) {
+            metrics.add(task.getMetrics(now));
+        }
+        return metrics;
+    }
+
     // ------------------------------------------------------------------------
     // Operations
     // ------------------------------------------------------------------------
@@ -131,29 +212,28 @@ public class TmfRequestExecutor implements Executor {
 
         // Wrap the thread in a MyThread
         TmfEventThread thread = (TmfEventThread) command;
+        if (isShutdown()) {
+            thread.cancel();
+            return;
+        }
+        RequestTask task = new RequestTask();
         TmfEventThread wrapper = new TmfEventThread(thread) {
             @Override
             public void run() {
                 try {
                     command.run();
                 } finally {
-                    scheduleNext();
+                    taskCompleted(task);
                 }
             }
         };
+        task.fThread = wrapper;
 
-        // Add the thread to the appropriate queue
-        ExecutionType priority = thread.getExecType();
-
-        if (priority == ExecutionType.FOREGROUND) {
-            if (!fForegroundTasks.offer(wrapper)) {
-                wrapper.cancel();
-            }
-        } else {
-            if (!fBackgroundTasks.offer(wrapper)) {
-                wrapper.cancel();
-            }
-        }
+        // Add the thread to the appropriate queue, and start it right away if
+        // a lane is free
+        task.fQueuedTime = System.nanoTime();
+        getQueue(thread.getExecType()).add(task);
+        fillLanes();
     }
 
     /**
@@ -171,42 +251,13 @@ public class TmfRequestExecutor implements Executor {
     }
 
     /**
-     * Executes the next pending request, if applicable.
+     * Executes the next pending requests, if applicable, suspending running
+     * requests if all the lanes are busy.
      */
     protected synchronized void scheduleNext() {
         if (!isShutdown()) {
-            if (fActiveTask == null) {
-                schedule();
-            } else if (fActiveTask.getExecType() == ExecutionType.FOREGROUND) {
-                if (fActiveTask.getThread().isCompleted()) {
-                    fActiveTask = null;
-                    schedule();
-                } else {
-                    if (hasTasks()) {
-                        fActiveTask.getThread().suspend();
-                        if (!fForegroundTasks.offer(fActiveTask)) {
-                            fActiveTask.cancel();
-                            fActiveTask = null;
-                        }
-                        schedule();
-                    }
-                }
-
-            } else if (fActiveTask.getExecType() == ExecutionType.BACKGROUND) {
-                if (fActiveTask.getThread().isCompleted()) {
-                    fActiveTask = null;
-                    schedule();
-                } else {
-                    if (hasTasks()) {
-                        fActiveTask.getThread().suspend();
-                        if (!fBackgroundTasks.offer(fActiveTask)) {
-                            fActiveTask.cancel();
-                            fActiveTask = null;
-                        }
-                        schedule();
-                    }
-                }
-            }
+            preempt();
+            fillLanes();
         }
     }
 
@@ -222,15 +273,18 @@ public class TmfRequestExecutor implements Executor {
             fTimer.cancel();
         }
 
-        if (fActiveTask != null) {
-            fActiveTask.cancel();
-        }
-
-        while ((fActiveTask = fForegroundTasks.poll()) != null) {
-            fActiveTask.cancel();
-        }
-        while ((fActiveTask = fBackgroundTasks.poll()) != null) {
-            fActiveTask.cancel();
+        List<RequestTask> tasks = new ArrayList<>(fActiveTasks);
+        tasks.addAll(fForegroundTasks);
+        tasks.addAll(fBackgroundTasks);
+        fActiveTasks.clear();
+        fForegroundTasks.clear();
+        fBackgroundTasks.clear();
+        for (RequestTask task : tasks) {
+            task.fThread.cancel();
+            /* Let the suspended threads see the cancellation and end */
+            if (task.fThread.getThread().isPaused()) {
+                task.fThread.getThread().resume();
+            }
         }
 
         fExecutor.shutdown();
@@ -243,51 +297,82 @@ public class TmfRequestExecutor implements Executor {
     // Helper methods
     // ------------------------------------------------------------------------
 
+    private Deque<RequestTask> getQueue(ExecutionType execType) {
+        return (execType == ExecutionType.FOREGROUND ? fForegroundTasks : fBackgroundTasks);
+    }
+
     /**
-     * Determine which type of request (foreground or background) we schedule
-     * next
+     * Suspend as many running requests as there are requests waiting, if all
+     * the lanes are busy. Background requests are suspended first, then the
+     * ones that have been running for the longest time.
      */
-    private void schedule() {
-        if (!fForegroundTasks.isEmpty()) {
-            scheduleNextForeground();
-        } else {
-            scheduleNextBackground();
+    private void preempt() {
+        int nbWaiting = fForegroundTasks.size() + fBackgroundTasks.size();
+        if (nbWaiting == 0 || fActiveTasks.size() < fNbLanes) {
+            return;
+        }
+        List<RequestTask> candidates = new ArrayList<>(fActiveTasks);
+        candidates.sort(Comparator.<RequestTask, Boolean> comparing(task -> task.fThread.getExecType() == ExecutionType.FOREGROUND)
+                .thenComparingLong(task -> task.fRunStart));
+        long now = System.nanoTime();
+        for (RequestTask task : candidates.subList(0, Math.min(nbWaiting, candidates.size()))) {
+            task.fThread.getThread().suspend();
+            task.fRunTime += now - task.fRunStart;
+            task.fQueuedTime = now;
+            task.fRunning = false;
+            fActiveTasks.remove(task);
+            getQueue(task.fThread.getExecType()).add(task);
         }
     }
 
     /**
-     * Schedule the next foreground request
+     * Start or resume waiting requests until all the lanes are busy
      */
-    private void scheduleNextForeground() {
-        if (fForegroundCycle < FOREGROUND_SLOT || fBackgroundTasks.isEmpty()) {
-            ++fForegroundCycle;
-            fActiveTask = fForegroundTasks.poll();
-            executefActiveTask();
-        } else {
-            fActiveTask = null;
-            scheduleNextBackground();
+    private void fillLanes() {
+        while (fActiveTasks.size() < fNbLanes && hasTasks()) {
+            RequestTask task = pollNext();
+            long now = System.nanoTime();
+            task.fWaitTime += now - task.fQueuedTime;
+            task.fRunStart = now;
+            task.fRunning = true;
+            fActiveTasks.add(task);
+            if (task.fThread.getThread().isPaused()) {
+                task.fThread.getThread().resume();
+            } else {
+                fExecutor.execute(task.fThread);
+            }
         }
     }
 
     /**
-     * Schedule the next background request
+     * Determine which type of request (foreground or background) we schedule
+     * next, and remove it from its queue
      */
-    private void scheduleNextBackground() {
-        fForegroundCycle = 0;
-        if (!fBackgroundTasks.isEmpty()) {
-            fActiveTask = fBackgroundTasks.poll();
-            executefActiveTask();
+    private RequestTask pollNext() {
+        if (!fForegroundTasks.isEmpty() && (fForegroundCycle < FOREGROUND_SLOT || fBackgroundTasks.isEmpty())) {
+            ++fForegroundCycle;
+            return fForegroundTasks.poll();
         }
+        fForegroundCycle = 0;
+        return fBackgroundTasks.poll();
     }
 
     /**
-     * Execute or resume the active task
+     * Free the lane of a request that completed and give it to the next
+     * waiting request
      */
-    private void executefActiveTask() {
-        if (fActiveTask.getThread().isPaused()) {
-            fActiveTask.getThread().resume();
-        } else {
-            fExecutor.execute(fActiveTask);
+    private synchronized void taskCompleted(RequestTask task) {
+        TmfRequestMetrics metrics = task.getMetrics(System.nanoTime());
+        if (!fActiveTasks.remove(task)) {
+            /* It completed while being suspended */
+            fForegroundTasks.remove(task);
+            fBackgroundTasks.remove(task);
+        }
+        if (TmfCoreTracer.isRequestTraced()) {
+            TmfCoreTracer.traceRequest(task.fThread.getRequest().getRequestId(), "COMPLETED " + metrics); //$NON-NLS-1$
+        }
+        if (!isShutdown()) {
+            fillLanes();
         }
     }
 
@@ -298,6 +383,26 @@ public class TmfRequestExecutor implements Executor {
         return !(fForegroundTasks.isEmpty() && fBackgroundTasks.isEmpty());
     }
 
+    /**
+     * A request handled by the executor, with its timings. The times are only
+     * accessed with the lock of the executor.
+     */
+    private static final class RequestTask {
+        private TmfEventThread fThread;
+        private long fQueuedTime;
+        private long fWaitTime;
+        private long fRunStart;
+        private long fRunTime;
+        private boolean fRunning;
+
+        public TmfRequestMetrics getMetrics(long now) {
+            long waitTime = fWaitTime + (fRunning ? 0 : now - fQueuedTime);
+            long runTime = fRunTime + (fRunning ? now - fRunStart : 0);
+            return new TmfRequestMetrics(fThread.getRequest().getRequestId(), fThread.getExecType(),
+                    fRunning, waitTime, runTime, fThread.getRequest().getNbRead());
+        }
+    }
+
     // ------------------------------------------------------------------------
     // Object
     // ------------------------------------------------------------------------
@@ -305,7 +410,7 @@ public class TmfRequestExecutor implements Executor {
     @Override
     @SuppressWarnings("nls")
     public String toString() {
-        return "[TmfRequestExecutor(" + fExecutorName + ")]";
+        return "[TmfRequestExecutor(" + fExecutorName + "," + fNbLanes + " lanes)]";
     }
 
 }
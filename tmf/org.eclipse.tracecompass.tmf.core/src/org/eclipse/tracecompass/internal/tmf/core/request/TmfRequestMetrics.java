@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.request;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
+
+/**
+ * Snapshot of the execution metrics of a request handled by a
+ * {@link TmfRequestExecutor}
+ */
+public final class TmfRequestMetrics {
+
+    private final int fRequestId;
+    private final ExecutionType fExecType;
+    private final boolean fRunning;
+    private final long fWaitTime;
+    private final long fRunTime;
+    private final long fNbEvents;
+
+    /**
+     * Constructor
+     *
+     * @param requestId
+     *            The ID of the request
+     * @param execType
+     *            The execution priority of the request
+     * @param running
+     *            Whether the request is currently running in a lane of the
+     *            executor
+     * @param waitTime
+     *            The time the request spent in the queues of the executor, in
+     *            nanoseconds
+     * @param runTime
+     *            The time the request spent running, in nanoseconds
+     * @param nbEvents
+     *            The number of events read by the request
+     */
+    public TmfRequestMetrics(int requestId, ExecutionType execType, boolean running, long waitTime, long runTime, long nbEvents) {
+        fRequestId = requestId;
+        fExecType = execType;
+        fRunning = running;
+        fWaitTime = waitTime;
+        fRunTime = runTime;
+        fNbEvents = nbEvents;
+    }
+
+    /**
+     * @return The ID of the request
+     */
+    public int getRequestId() {
+        return fRequestId;
+    }
+
+    /**
+     * @return The execution priority of the request
+     */
+    public ExecutionType getExecType() {
+        return fExecType;
+    }
+
+    /**
+     * @return Whether the request is currently running, as opposed to waiting
+     *         in a queue
+     */
+    public boolean isRunning() {
+        return fRunning;
+    }
+
+    /**
+     * @return The time the request spent waiting in the queues, in nanoseconds
+     */
+    public long getWaitTime() {
+        return fWaitTime;
+    }
+
+    /**
+     * @return The time the request spent running, in nanoseconds
+     */
+    public long getRunTime() {
+        return fRunTime;
+    }
+
+    /**
+     * @return The number of events read by the request
+     */
+    public long getNbEvents() {
+        return fNbEvents;
+    }
+
+    /**
+     * @return The number of events read per second of running time
+     */
+    public double getEventsPerSecond() {
+        if (fRunTime <= 0) {
+            return 0.0;
+        }
+        return (double) fNbEvents * TimeUnit.SECONDS.toNanos(1) / fRunTime;
+    }
+
+    @Override
+    @SuppressWarnings("nls")
+    public String toString() {
+        return "[TmfRequestMetrics(" + fRequestId + "," + fExecType + ",running=" + fRunning +
+                ",wait=" + TimeUnit.NANOSECONDS.toMillis(fWaitTime) + "ms" +
+                ",run=" + TimeUnit.NANOSECONDS.toMillis(fRunTime) + "ms" +
+                ",events=" + fNbEvents + String.format(",%.0f events/s", getEventsPerSecond()) + ")]";
+    }
+}
@@ -18,8 +18,12 @@ import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNullCont
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.stream.Collectors;
@@ -275,6 +279,78 @@ public class PartialHistoryBackend implements IStateHistoryBackend {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * The partial history only has the intervals crossing the checkpoints. To
+     * get all the intervals in the range, we restore the state at the
+     * checkpoint before the range, then re-read the trace up to the end of the
+     * range while recording the intervals closed by the partial state system.
+     * The states still ongoing at the end of the range are returned with the
+     * end of the range as dummy end time, like for full queries.
+     */
+    @Override
+    public Iterable<@NonNull ITmfStateInterval> query2D(Collection<@NonNull Integer> quarks, long start, long end)
+            throws TimeRangeException, StateSystemDisposedException {
+        /* Wait for required steps to be done */
+        waitForCheckpoints();
+        fPartialSS.getUpstreamSS().waitUntilBuilt();
+
+        if (end < start) {
+            throw new TimeRangeException(fSSID + " Start:" + start + ", End:" + end); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        long t1 = Math.max(start, getStartTime());
+        long t2 = Math.min(end, getEndTime());
+        List<@NonNull ITmfStateInterval> ret = new ArrayList<>();
+        if (t1 > t2 || quarks.isEmpty()) {
+            return ret;
+        }
+
+        /* Reload the checkpoint preceding the range */
+        long checkpointTime = fCheckpoints.floorKey(t1);
+        int nbAttributes = fPartialSS.getUpstreamSS().getNbAttributes();
+        List<@Nullable ITmfStateInterval> stateInfo = new ArrayList<>(nbAttributes);
+        for (int i = 0; i < nbAttributes; i++) {
+            stateInfo.add(null);
+        }
+        fInnerHistory.doQuery(stateInfo, checkpointTime);
+        List<@NonNull ITmfStateInterval> filledStateInfo =
+                checkNotNullContents(stateInfo.stream()).collect(Collectors.toList());
+
+        Set<Integer> quarkSet = new HashSet<>(quarks);
+        fPartialSS.takeQueryLock();
+        try {
+            fPartialSS.replaceOngoingState(filledStateInfo);
+            fPartialSS.startRecording(interval -> {
+                if (interval.getEndTime() >= t1 && quarkSet.contains(interval.getAttribute())) {
+                    ret.add(interval);
+                }
+            });
+
+            if (checkpointTime < t2) {
+                TmfTimeRange range = new TmfTimeRange(
+                        TmfTimestamp.fromNanos(checkpointTime + 1),
+                        TmfTimestamp.fromNanos(t2));
+                ITmfEventRequest request = new PartialStateSystemRequest(fPartialInput, range);
+                fPartialInput.getTrace().sendRequest(request);
+                try {
+                    request.waitForCompletion();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+
+            /* Add the states that are still ongoing at the end of the range */
+            for (Integer quark : quarkSet) {
+                long ongoingStart = ((ITmfStateSystem) fPartialSS).getOngoingStartTime(quark);
+                ITmfStateValue val = ((ITmfStateSystem) fPartialSS).queryOngoingState(quark);
+                ret.add(new TmfStateInterval(ongoingStart, t2, quark, val));
+            }
+        } finally {
+            fPartialSS.stopRecording();
+            fPartialSS.releaseQueryLock();
+        }
+        return ret;
+    }
+
     private boolean checkValidTime(long t) {
         return (t >= getStartTime() && t <= getEndTime());
     }
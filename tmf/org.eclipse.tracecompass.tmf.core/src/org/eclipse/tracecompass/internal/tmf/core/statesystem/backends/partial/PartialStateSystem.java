@@ -15,14 +15,18 @@ import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.statesystem.core.AttributeTree;
 import org.eclipse.tracecompass.internal.statesystem.core.StateSystem;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.NullBackend;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
-import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.interval.TmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 
 /**
  * State system interface-like extension to use with partial state histories.
@@ -40,6 +44,7 @@ public class PartialStateSystem extends StateSystem {
 
     private final CountDownLatch ssAssignedLatch = new CountDownLatch(1);
     private final Lock queryLock = new ReentrantLock();
+    private final RecordingBackend recordingBackend;
 
     /**
      * Reference to the real upstream state system. This is used so we can read
@@ -54,8 +59,14 @@ public class PartialStateSystem extends StateSystem {
         /*
          * We use a Null back end here : we only use this state system for its
          * "ongoing" values, so no need to save the changes that are inserted.
+         * They can still be looked at while a recording is ongoing.
          */
-        super(StateHistoryBackendFactory.createNullBackend("partial")); //$NON-NLS-1$
+        this(new RecordingBackend("partial")); //$NON-NLS-1$
+    }
+
+    private PartialStateSystem(RecordingBackend backend) {
+        super(backend);
+        recordingBackend = backend;
     }
 
     /**
@@ -87,6 +98,25 @@ public class PartialStateSystem extends StateSystem {
         super.dispose();
     }
 
+    /**
+     * Start recording the state intervals that get closed in this state
+     * system, as events are sent to its state provider. This should only be
+     * done while holding the query lock.
+     *
+     * @param recorder
+     *            The consumer that will receive the closed intervals
+     */
+    public void startRecording(Consumer<@NonNull ITmfStateInterval> recorder) {
+        recordingBackend.fRecorder = recorder;
+    }
+
+    /**
+     * Stop recording the closed state intervals. They will be discarded again.
+     */
+    public void stopRecording() {
+        recordingBackend.fRecorder = null;
+    }
+
     // ------------------------------------------------------------------------
     // Methods regarding the query lock
     // ------------------------------------------------------------------------
@@ -160,4 +190,25 @@ public class PartialStateSystem extends StateSystem {
         }
     }
 
+    /**
+     * Null back-end which can forward the discarded intervals to a recorder.
+     */
+    private static final class RecordingBackend extends NullBackend {
+
+        private volatile @Nullable Consumer<@NonNull ITmfStateInterval> fRecorder = null;
+
+        public RecordingBackend(@NonNull String ssid) {
+            super(ssid);
+        }
+
+        @Override
+        public void insertPastState(long stateStartTime, long stateEndTime,
+                int quark, ITmfStateValue value) {
+            Consumer<@NonNull ITmfStateInterval> recorder = fRecorder;
+            if (recorder != null) {
+                recorder.accept(new TmfStateInterval(stateStartTime, stateEndTime, quark, value));
+            }
+        }
+    }
+
 }
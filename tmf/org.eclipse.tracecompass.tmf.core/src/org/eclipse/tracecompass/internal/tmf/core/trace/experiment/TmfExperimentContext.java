@@ -15,6 +15,7 @@
 package org.eclipse.tracecompass.internal.tmf.core.trace.experiment;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.Nullable;
@@ -33,6 +34,13 @@ import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
  * <p>
  * The last trace refers to the trace from which the last event was "consumed"
  * at the experiment level.
+ * <p>
+ * The traces that have a next event are kept in a binary heap ordered by the
+ * timestamp of that event, so that the next trace to read from is found in
+ * O(log N) instead of scanning the events of all the traces. Ties are broken
+ * by the index of the trace, to keep the order of the events deterministic.
+ * <p>
+ * A context is not thread-safe, it must be used by one thread at a time.
  */
 public final class TmfExperimentContext extends TmfContext {
 
@@ -45,6 +53,9 @@ public final class TmfExperimentContext extends TmfContext {
      */
     public static final int NO_TRACE = -1;
 
+    /** Position of a trace that is not in the heap */
+    private static final int NOT_QUEUED = -1;
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
@@ -53,6 +64,12 @@ public final class TmfExperimentContext extends TmfContext {
     private final List<ITmfEvent> fEvents;
     private int fLastTraceRead;
 
+    /** Indexes of the traces with a next event, as a binary heap */
+    private final int[] fHeap;
+    /** Position in the heap of each trace, or NOT_QUEUED */
+    private final int[] fHeapPositions;
+    private int fHeapSize;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -68,7 +85,10 @@ public final class TmfExperimentContext extends TmfContext {
         fLastTraceRead = NO_TRACE;
         fContexts = new ArrayList<>(nbTraces);
         fEvents = new ArrayList<>(nbTraces);
-
+        fHeap = new int[nbTraces];
+        fHeapPositions = new int[nbTraces];
+        fHeapSize = 0;
+        Arrays.fill(fHeapPositions, NOT_QUEUED);
 
         /* Initialize the arrays to the requested size */
         for (int i = 0; i < nbTraces; i++) {
@@ -146,6 +166,30 @@ public final class TmfExperimentContext extends TmfContext {
      */
     public void setEvent(int traceIndex, ITmfEvent event) {
         fEvents.set(traceIndex, event);
+        int position = fHeapPositions[traceIndex];
+        if (event == null) {
+            if (position != NOT_QUEUED) {
+                removeAt(position);
+            }
+        } else if (position == NOT_QUEUED) {
+            fHeap[fHeapSize] = traceIndex;
+            fHeapPositions[traceIndex] = fHeapSize;
+            fHeapSize++;
+            siftUp(fHeapSize - 1);
+        } else if (!siftUp(position)) {
+            siftDown(position);
+        }
+    }
+
+    /**
+     * Get the index of the trace whose current event is the earliest, which is
+     * the trace to read the next event of the experiment from.
+     *
+     * @return The index of the trace, or {@link #NO_TRACE} if none of the
+     *         traces have an event
+     */
+    public int getNextTrace() {
+        return (fHeapSize == 0 ? NO_TRACE : fHeap[0]);
     }
 
     /**
@@ -168,6 +212,81 @@ public final class TmfExperimentContext extends TmfContext {
         fLastTraceRead = newIndex;
     }
 
+    // ------------------------------------------------------------------------
+    // Heap operations
+    // ------------------------------------------------------------------------
+
+    private void removeAt(int position) {
+        int traceIndex = fHeap[position];
+        fHeapPositions[traceIndex] = NOT_QUEUED;
+        fHeapSize--;
+        if (position == fHeapSize) {
+            return;
+        }
+        int last = fHeap[fHeapSize];
+        fHeap[position] = last;
+        fHeapPositions[last] = position;
+        if (!siftUp(position)) {
+            siftDown(position);
+        }
+    }
+
+    /**
+     * Move a trace up the heap until its parent is before it
+     *
+     * @return true if the trace moved
+     */
+    private boolean siftUp(int position) {
+        int traceIndex = fHeap[position];
+        int current = position;
+        while (current > 0) {
+            int parent = (current - 1) >>> 1;
+            if (compare(fHeap[parent], traceIndex) <= 0) {
+                break;
+            }
+            place(fHeap[parent], current);
+            current = parent;
+        }
+        place(traceIndex, current);
+        return current != position;
+    }
+
+    private void siftDown(int position) {
+        int traceIndex = fHeap[position];
+        int current = position;
+        while (true) {
+            int child = 2 * current + 1;
+            if (child >= fHeapSize) {
+                break;
+            }
+            if (child + 1 < fHeapSize && compare(fHeap[child + 1], fHeap[child]) < 0) {
+                child++;
+            }
+            if (compare(traceIndex, fHeap[child]) <= 0) {
+                break;
+            }
+            place(fHeap[child], current);
+            current = child;
+        }
+        place(traceIndex, current);
+    }
+
+    private void place(int traceIndex, int position) {
+        fHeap[position] = traceIndex;
+        fHeapPositions[traceIndex] = position;
+    }
+
+    private int compare(int trace1, int trace2) {
+        ITmfEvent event1 = fEvents.get(trace1);
+        ITmfEvent event2 = fEvents.get(trace2);
+        if (event1 == null || event2 == null) {
+            /* Traces without an event are never in the heap */
+            throw new IllegalStateException();
+        }
+        int result = event1.getTimestamp().compareTo(event2.getTimestamp());
+        return (result != 0 ? result : Integer.compare(trace1, trace2));
+    }
+
     // ------------------------------------------------------------------------
     // Object
     // ------------------------------------------------------------------------
@@ -13,6 +13,9 @@
 
 package org.eclipse.tracecompass.tmf.core.request;
 
+import java.util.List;
+import java.util.Set;
+
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
@@ -156,6 +159,58 @@ public interface ITmfEventRequest {
      */
     void handleData(@NonNull ITmfEvent event);
 
+    /**
+     * Gets the names of the types of the events this request wants to
+     * receive. The events of other types are not delivered to the request and
+     * are not counted in its number of events read. This is offered to the
+     * traces implementing
+     * {@link org.eclipse.tracecompass.tmf.core.trace.ITmfTraceWithEventTypeFilter},
+     * which can then skip these events without creating them.
+     *
+     * Since the events of other types are not counted, the index of the
+     * request should be 0 if it uses this filter.
+     *
+     * @return The names of the event types, or null for all the events. The
+     *         default is null.
+     * @since 2.0
+     */
+    default @Nullable Set<String> getEventTypes() {
+        return null;
+    }
+
+    /**
+     * Gets the number of events this request wants to receive at once. If it
+     * is greater than 1, the events are delivered in batches of at most this
+     * size to {@link #handleDataBatch(List)} instead of one by one to
+     * {@link #handleData(ITmfEvent)}.
+     *
+     * @return The maximum number of events per batch. The default is 1, no
+     *         batches.
+     * @since 2.0
+     */
+    default int getBatchSize() {
+        return 1;
+    }
+
+    /**
+     * Process a batch of events, in order. This is only called if
+     * {@link #getBatchSize()} is greater than 1. The list is not modified or
+     * reused by the caller after this call, so the request can keep it, but it
+     * must not modify it.
+     *
+     * The default implementation calls {@link #handleData(ITmfEvent)} for each
+     * event.
+     *
+     * @param events
+     *            The trace events to process
+     * @since 2.0
+     */
+    default void handleDataBatch(List<ITmfEvent> events) {
+        for (ITmfEvent event : events) {
+            handleData(event);
+        }
+    }
+
     // ------------------------------------------------------------------------
     // Request notifications
     // ------------------------------------------------------------------------
@@ -13,6 +13,7 @@
 
 package org.eclipse.tracecompass.tmf.core.request;
 
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 
 import org.eclipse.jdt.annotation.Nullable;
@@ -26,7 +27,9 @@ import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
  * Open ranges can be used, especially for continuous streaming.
  * <p>
  * The request is processed asynchronously by a TmfEventProvider and, as events
- * become available, handleData() is invoked synchronously for each one.
+ * become available, handleData() is invoked synchronously for each one. A
+ * request whose getBatchSize() is greater than 1 receives them in batches in
+ * handleDataBatch() instead.
  * <p>
  * The TmfEventProvider indicates that the request is completed by calling
  * done(). The request can be cancelled at any time with cancel().
@@ -338,6 +341,18 @@ public abstract class TmfEventRequest implements ITmfEventRequest {
         fNbRead++;
     }
 
+    /**
+     * Like {@link #handleData(ITmfEvent)}, this only counts the events read.
+     * Requests with a batch size greater than 1 override it to process the
+     * events, and call super.handleDataBatch().
+     *
+     * @since 2.0
+     */
+    @Override
+    public void handleDataBatch(List<ITmfEvent> events) {
+        fNbRead += events.size();
+    }
+
     @Override
     public void handleStarted() {
         if (TmfCoreTracer.isRequestTraced()) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2015 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -12,9 +12,13 @@
 
 package org.eclipse.tracecompass.tmf.core.statesystem;
 
-import org.eclipse.jdt.annotation.NonNull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.eclipse.jdt.annotation.Nullable;
-import org.eclipse.tracecompass.common.core.collect.BufferedBlockingQueue;
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
@@ -33,6 +37,10 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
  * processEvent() is replaced with eventHandle(), so that all the multi-thread
  * logic is abstracted away.
  *
+ * The events are passed to the event handler thread in chunks. The batches of
+ * events received by processEvents() are queued as they are, without copying
+ * them.
+ *
  * @author Alexandre Montplaisir
  */
 public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
@@ -41,7 +49,13 @@ public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
     private static final int DEFAULT_EVENTS_CHUNK_SIZE = 127;
 
     private final ITmfTrace fTrace;
-    private final BufferedBlockingQueue<ITmfEvent> fEventsQueue;
+    private final BlockingQueue<List<ITmfEvent>> fEventsQueue;
+    /** Lock for the input buffer */
+    private final Object fInputLock = new Object();
+    /** The chunk of events being filled by processEvent() */
+    private List<ITmfEvent> fInputBuffer = new ArrayList<>(DEFAULT_EVENTS_CHUNK_SIZE);
+    /** The number of events in the queue, including the input buffer */
+    private final AtomicInteger fQueueSize = new AtomicInteger(0);
     private final Thread fEventHandlerThread;
 
     private boolean fStateSystemAssigned;
@@ -61,7 +75,7 @@ public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
      */
     public AbstractTmfStateProvider(ITmfTrace trace, String id) {
         fTrace = trace;
-        fEventsQueue = new BufferedBlockingQueue<>(DEFAULT_EVENTS_QUEUE_SIZE, DEFAULT_EVENTS_CHUNK_SIZE);
+        fEventsQueue = new ArrayBlockingQueue<>(DEFAULT_EVENTS_QUEUE_SIZE);
         fStateSystemAssigned = false;
         // set the safe time to before the trace start, the analysis has not yet started
         fSafeTime = trace.getStartTime().toNanos() - 1;
@@ -112,8 +126,8 @@ public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
     public void dispose() {
         /* Insert a null event in the queue to stop the event handler's thread. */
         try {
-            fEventsQueue.put(END_EVENT);
-            fEventsQueue.flushInputBuffer();
+            put(END_EVENT);
+            flushInputBuffer();
             fEventHandlerThread.join();
         } catch (InterruptedException e) {
             e.printStackTrace();
@@ -132,7 +146,29 @@ public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
 
         /* Insert the event we're received into the events queue */
         ITmfEvent curEvent = event;
-        fEventsQueue.put(curEvent);
+        put(curEvent);
+    }
+
+    /**
+     * @since 2.0
+     */
+    @Override
+    public void processEvents(List<ITmfEvent> events) {
+        /* Make sure the target state system has been assigned */
+        if (!fStateSystemAssigned) {
+            Activator.logError("Cannot process event without a target state system"); //$NON-NLS-1$
+            return;
+        }
+
+        if (events.isEmpty()) {
+            return;
+        }
+        /* Queue the events after the ones received before, as a chunk */
+        synchronized (fInputLock) {
+            flushInputBuffer();
+            fQueueSize.addAndGet(events.size());
+            putChunk(events);
+        }
     }
 
     /**
@@ -145,9 +181,9 @@ public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
          * for sure that the state system processed the preceding real event.
          */
         try {
-            fEventsQueue.put(EMPTY_QUEUE_EVENT);
-            fEventsQueue.flushInputBuffer();
-            while (!fEventsQueue.isEmpty()) {
+            put(EMPTY_QUEUE_EVENT);
+            flushInputBuffer();
+            while (fQueueSize.get() != 0) {
                 Thread.sleep(100);
             }
         } catch (InterruptedException e) {
@@ -155,6 +191,37 @@ public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
         }
     }
 
+    private void put(ITmfEvent event) {
+        synchronized (fInputLock) {
+            fInputBuffer.add(event);
+            fQueueSize.incrementAndGet();
+            if (fInputBuffer.size() >= DEFAULT_EVENTS_CHUNK_SIZE) {
+                flushInputBuffer();
+            }
+        }
+    }
+
+    private void flushInputBuffer() {
+        synchronized (fInputLock) {
+            if (!fInputBuffer.isEmpty()) {
+                putChunk(fInputBuffer);
+                fInputBuffer = new ArrayList<>(DEFAULT_EVENTS_CHUNK_SIZE);
+            }
+        }
+    }
+
+    private void putChunk(List<ITmfEvent> chunk) {
+        try {
+            /* This blocks if the queue is full, until the handler catches up */
+            fEventsQueue.put(chunk);
+        } catch (InterruptedException e) {
+            /* The chunk is dropped, its events will never be processed */
+            fQueueSize.addAndGet(-chunk.size());
+            Thread.currentThread().interrupt();
+            Activator.logError("Events queue interrupted", e); //$NON-NLS-1$
+        }
+    }
+
     // ------------------------------------------------------------------------
     // Special event types
     // ------------------------------------------------------------------------
@@ -195,26 +262,29 @@ public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
                 return;
             }
 
-
-            /*
-             * We never insert null in the queue. Cannot be checked at
-             * compile-time until Java 8 annotations...
-             */
-            @NonNull ITmfEvent event = fEventsQueue.take();
-            /* This is a singleton, we want to do != instead of !x.equals */
-            while (event != END_EVENT) {
-                if (event == EMPTY_QUEUE_EVENT) {
-                    /* Synchronization event, should be ignored */
-                    event = fEventsQueue.take();
-                    continue;
+            try {
+                while (true) {
+                    List<ITmfEvent> chunk = fEventsQueue.take();
+                    for (ITmfEvent event : chunk) {
+                        /* This is a singleton, we want to do == instead of x.equals */
+                        if (event == END_EVENT) {
+                            fQueueSize.decrementAndGet();
+                            closeStateSystem();
+                            return;
+                        }
+                        /* Synchronization events are ignored */
+                        if (event != EMPTY_QUEUE_EVENT) {
+                            currentEvent = event;
+                            fSafeTime = event.getTimestamp().toNanos() - 1;
+                            eventHandle(event);
+                        }
+                        fQueueSize.decrementAndGet();
+                    }
                 }
-                currentEvent = event;
-                fSafeTime = event.getTimestamp().toNanos() - 1;
-                eventHandle(event);
-                event = fEventsQueue.take();
+            } catch (InterruptedException e) {
+                Activator.logError("Events queue interrupted", e); //$NON-NLS-1$
+                throw new IllegalStateException(e);
             }
-            /* We've received the last event, clean up */
-            closeStateSystem();
         }
 
         private void closeStateSystem() {
@@ -12,6 +12,8 @@
 
 package org.eclipse.tracecompass.tmf.core.statesystem;
 
+import java.util.List;
+
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
@@ -98,6 +100,24 @@ public interface ITmfStateProvider {
      */
     void processEvent(ITmfEvent event);
 
+    /**
+     * Send a batch of events to this input plugin for processing, in order.
+     * The list is not modified after this call, so the implementation can keep
+     * it instead of copying the events.
+     *
+     * The default implementation calls {@link #processEvent(ITmfEvent)} for
+     * each event.
+     *
+     * @param events
+     *            The events to process
+     * @since 2.0
+     */
+    default void processEvents(List<ITmfEvent> events) {
+        for (ITmfEvent event : events) {
+            processEvent(event);
+        }
+    }
+
     /**
      * Provide a non-initialized copy of this state input plugin. You will need
      * to call {@link #assignTargetStateSystem} on it to assign its target.
@@ -107,6 +127,45 @@ public interface ITmfStateProvider {
      */
     ITmfStateProvider getNewInstance();
 
+    /**
+     * Indicate whether the state history of this provider can be built in
+     * parallel, by cutting the trace in time slices whose events are processed
+     * by separate instances of this provider (see {@link #getNewInstance()}).
+     *
+     * Each instance starts from an empty state system, and the attributes it
+     * does not modify keep the state left by the previous slice. This is only
+     * correct if the state changes caused by an event do not depend on the
+     * events of the previous slices: the provider must not read the ongoing
+     * state of an attribute, increment it, or push and pop values on a stack
+     * attribute.
+     *
+     * @return True if the history can be built in time slices. The default is
+     *         false.
+     * @since 2.0
+     */
+    default boolean isTimeSliceable() {
+        return false;
+    }
+
+    /**
+     * Indicate whether a stopped build of the state history of this provider
+     * can be resumed later, by a new instance of this provider, from a
+     * snapshot of the state system taken when it was stopped.
+     *
+     * This is only correct if the provider keeps all the state it needs to
+     * process the next events in the state system, and not in its own fields.
+     * It is independent of {@link #isTimeSliceable()}: a provider that reads
+     * or increments ongoing states cannot be time-sliced, but it can be
+     * resumed.
+     *
+     * @return True if the build of the history can be resumed. The default is
+     *         false.
+     * @since 2.0
+     */
+    default boolean isResumable() {
+        return false;
+    }
+
     /**
      * Indicate to the state history building process that we are done (for now),
      * and that it should close its current history.
@@ -0,0 +1,381 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.statesystem;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.statesystem.core.StateSystem;
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.interval.TmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+
+import com.google.common.primitives.Ints;
+
+/**
+ * Builds the state history of a time-sliceable state provider (see
+ * {@link ITmfStateProvider#isTimeSliceable()}) with several threads.
+ *
+ * The trace is cut in time slices, and a new instance of the provider reads
+ * the events of each slice, in its own in-memory state system. The slices are
+ * then stitched, in order, into the target state system: the state changes of
+ * each slice are replayed into it, and the attributes that a slice did not
+ * modify keep the state they had at the end of the previous slice.
+ *
+ * There are more slices than threads, so that the threads building the next
+ * slices keep working while a slice is stitched. To bound the memory used, a
+ * slice processes at most {@link #EVENTS_PER_SLICE} events: the time slices
+ * are sized from the number of events of the trace, and a slice that has more
+ * events than that is cut, the rest of it being built as a new slice. At most
+ * two slices per thread are being built or waiting to be stitched at the same
+ * time: the next slice is only submitted once a slice is stitched.
+ *
+ * Note that {@link org.eclipse.tracecompass.tmf.core.trace.TmfTrace#getNext}
+ * is synchronized, so the threads read the events of a trace one at a time.
+ * The work done in parallel is the processing of the events by the providers.
+ */
+@SuppressWarnings("restriction") /* We're extending StateSystem */
+final class TimeSlicedHistoryBuilder {
+
+    private static final int SLICES_PER_THREAD = 4;
+    private static final int SLICES_IN_FLIGHT_PER_THREAD = 2;
+    private static final int EVENTS_PER_SLICE = 50000;
+    private static final long NO_REMAINDER = Long.MIN_VALUE;
+
+    private final String fId;
+    private final ITmfStateProvider fProvider;
+    private final ITmfStateSystemBuilder fTarget;
+    private final ITmfTrace fTrace;
+    private volatile boolean fCancelled = false;
+
+    /**
+     * Constructor
+     *
+     * @param id
+     *            The ID of the state system being built
+     * @param provider
+     *            The state provider, whose new instances will build the
+     *            slices. It is not assigned a state system itself.
+     * @param target
+     *            The state system in which to stitch the slices
+     */
+    public TimeSlicedHistoryBuilder(String id, ITmfStateProvider provider, ITmfStateSystemBuilder target) {
+        fId = id;
+        fProvider = provider;
+        fTarget = target;
+        fTrace = provider.getTrace();
+    }
+
+    /**
+     * Check whether the history of a state provider can be built in time
+     * slices. The provider must support it, and the time range of the trace
+     * must be known.
+     *
+     * @param provider
+     *            The state provider
+     * @return True if the history can be built by this class
+     */
+    public static boolean canBuild(ITmfStateProvider provider) {
+        ITmfTrace trace = provider.getTrace();
+        return provider.isTimeSliceable() &&
+                trace.getEndTime().toNanos() > trace.getStartTime().toNanos();
+    }
+
+    /**
+     * Build the history and close the target state system. This blocks until
+     * the history is built or the build is cancelled.
+     *
+     * @return True if the history was built, false if it was cancelled or
+     *         failed
+     */
+    public boolean build() {
+        int nbThreads = Runtime.getRuntime().availableProcessors();
+        long start = fTrace.getStartTime().toNanos();
+        long end = fTrace.getEndTime().toNanos();
+        long nbSlicesForEvents = (fTrace.getNbEvents() + EVENTS_PER_SLICE - 1) / EVENTS_PER_SLICE;
+        int nbSlices = Ints.saturatedCast(Math.min(Math.max((long) nbThreads * SLICES_PER_THREAD, nbSlicesForEvents), end - start));
+        long sliceDuration = (end - start) / nbSlices;
+
+        int maxInFlight = nbThreads * SLICES_IN_FLIGHT_PER_THREAD;
+
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        long endTime = fProvider.getStartTime();
+        try {
+            /* The slices being built or waiting to be stitched, in order */
+            Deque<Future<@Nullable Slice>> slices = new ArrayDeque<>(maxInFlight);
+            int nbSubmitted = 0;
+            int nextId = 0;
+            while (nbSubmitted < Math.min(maxInFlight, nbSlices)) {
+                slices.add(submitSlice(executor, nextId++, nbSubmitted, nbSlices, start, sliceDuration));
+                nbSubmitted++;
+            }
+
+            Future<@Nullable Slice> future = slices.poll();
+            while (future != null) {
+                Slice slice = future.get();
+                if (fCancelled) {
+                    return false;
+                }
+                if (slice != null) {
+                    stitch(slice);
+                    endTime = Math.max(endTime, slice.fStateSystem.getCurrentEndTime());
+                }
+                /* A slice is stitched, start building the next one */
+                if (slice != null && slice.fRemainderStart != NO_REMAINDER) {
+                    /* The slice was cut, its remainder is stitched first */
+                    long remainderStart = slice.fRemainderStart;
+                    long remainderEnd = slice.fEndTime;
+                    int id = nextId++;
+                    slices.addFirst(executor.submit(() -> buildSlice(id, remainderStart, remainderEnd)));
+                } else if (nbSubmitted < nbSlices) {
+                    slices.add(submitSlice(executor, nextId++, nbSubmitted, nbSlices, start, sliceDuration));
+                    nbSubmitted++;
+                }
+                future = slices.poll();
+            }
+            return true;
+
+        } catch (InterruptedException | ExecutionException | StateSystemDisposedException e) {
+            Activator.logError("Error building the state history in time slices", e); //$NON-NLS-1$
+            fCancelled = true;
+            return false;
+        } finally {
+            executor.shutdownNow();
+            fTarget.closeHistory(endTime);
+        }
+    }
+
+    /**
+     * Stop building the history. {@link #build()} will then return false.
+     */
+    public void cancel() {
+        fCancelled = true;
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    private Future<@Nullable Slice> submitSlice(ExecutorService executor, int id, int index, int nbSlices, long start, long sliceDuration) {
+        /*
+         * The first slice reads from the beginning of the trace, and the last
+         * one to the end of the trace, whatever their times.
+         */
+        final long sliceStart = (index == 0 ? Long.MIN_VALUE : start + index * sliceDuration);
+        final long sliceEnd = (index == nbSlices - 1 ? Long.MAX_VALUE : start + (index + 1) * sliceDuration - 1);
+        return executor.submit(() -> buildSlice(id, sliceStart, sliceEnd));
+    }
+
+    /**
+     * Process the events of a time slice with a new instance of the provider.
+     * Returns null if there are no events of the trace in the slice. The slice
+     * is cut after {@link #EVENTS_PER_SLICE} events, between two timestamps.
+     */
+    private @Nullable Slice buildSlice(int id, long sliceStart, long sliceEnd) {
+        ITmfContext context = fTrace.seekEvent(sliceStart == Long.MIN_VALUE ?
+                TmfTimestamp.BIG_BANG : TmfTimestamp.fromNanos(sliceStart));
+        ITmfStateProvider provider = null;
+        SliceStateSystem ss = null;
+        long ssStart = 0;
+        long remainderStart = NO_REMAINDER;
+        int nbEvents = 0;
+        long lastTime = Long.MIN_VALUE;
+        try {
+            ITmfEvent event = fTrace.getNext(context);
+            while (event != null && !fCancelled) {
+                long time = event.getTimestamp().toNanos();
+                if (time > sliceEnd) {
+                    break;
+                }
+                if (!TmfStateSystemAnalysisModule.isEventFromTrace(fTrace, event)) {
+                    event = fTrace.getNext(context);
+                    continue;
+                }
+                if (nbEvents >= EVENTS_PER_SLICE && time > lastTime) {
+                    remainderStart = time;
+                    break;
+                }
+                if (provider == null) {
+                    /*
+                     * The state system of the slice starts just before it, so
+                     * that the states set at its start can be told from the
+                     * attributes it does not modify.
+                     */
+                    ssStart = (sliceStart == Long.MIN_VALUE ? fProvider.getStartTime() : sliceStart) - 1;
+                    ss = new SliceStateSystem(
+                            StateHistoryBackendFactory.createInMemoryBackend(fId + ".slice" + id, ssStart)); //$NON-NLS-1$
+                    provider = fProvider.getNewInstance();
+                    provider.assignTargetStateSystem(ss);
+                }
+                provider.processEvent(event);
+                nbEvents++;
+                lastTime = time;
+                event = fTrace.getNext(context);
+            }
+        } finally {
+            context.dispose();
+            if (provider != null) {
+                /* Wait for the events to be processed and close the history */
+                provider.dispose();
+            }
+        }
+        return (ss == null ? null : new Slice(ss, ssStart, remainderStart, sliceEnd));
+    }
+
+    /**
+     * Replay the state changes of a slice into the target state system, in
+     * time order.
+     */
+    private void stitch(Slice slice) throws StateSystemDisposedException {
+        SliceStateSystem ss = slice.fStateSystem;
+        int nbAttributes = ss.getNbAttributes();
+        int[] targetQuarks = new int[nbAttributes];
+        List<@NonNull Integer> quarks = new ArrayList<>(nbAttributes);
+        for (int quark = 0; quark < nbAttributes; quark++) {
+            targetQuarks[quark] = fTarget.getQuarkAbsoluteAndAdd(ss.getFullAttributePathArray(quark));
+            quarks.add(quark);
+        }
+
+        List<ITmfStateInterval> changes = new ArrayList<>();
+        Map<Integer, Long> firstNullTimes = new HashMap<>(ss.fFirstNullTimes);
+        for (ITmfStateInterval interval : ss.query2D(quarks, slice.fStartTime, ss.getCurrentEndTime())) {
+            /* Intervals starting with the slice were not set by the slice */
+            if (interval.getStartTime() > slice.fStartTime) {
+                changes.add(interval);
+                firstNullTimes.remove(interval.getAttribute(), interval.getStartTime());
+            }
+        }
+        /*
+         * An attribute first set to null by the slice keeps the null state it
+         * started with, so the slice has no interval for that change. It still
+         * has to be replayed, the attribute may have another value in the
+         * target.
+         */
+        firstNullTimes.forEach((quark, time) -> changes.add(new TmfStateInterval(time, time, quark, TmfStateValue.nullValue())));
+        changes.sort(Comparator.comparingLong(ITmfStateInterval::getStartTime));
+        ITmfStateValue[] previousValues = new ITmfStateValue[nbAttributes];
+        for (ITmfStateInterval change : changes) {
+            if (fCancelled) {
+                break;
+            }
+            int quark = change.getAttribute();
+            long time = change.getStartTime();
+            ITmfStateValue value = change.getStateValue();
+            if (value.equals(previousValues[quark]) && !value.isNull()) {
+                /*
+                 * The slice has two intervals with the same value, because the
+                 * value changed and came back at the same time. Do the same in
+                 * the target, which would otherwise keep the first interval.
+                 */
+                fTarget.modifyAttribute(time, TmfStateValue.nullValue(), targetQuarks[quark]);
+            }
+            fTarget.modifyAttribute(time, value, targetQuarks[quark]);
+            previousValues[quark] = value;
+        }
+        ss.dispose();
+    }
+
+    /**
+     * State system of a time slice, which remembers the attributes whose first
+     * state change in the slice sets them to null.
+     */
+    private static final class SliceStateSystem extends StateSystem {
+        private final Set<Integer> fModifiedQuarks = new HashSet<>();
+        private final Map<Integer, Long> fFirstNullTimes = new HashMap<>();
+
+        public SliceStateSystem(IStateHistoryBackend backend) {
+            super(backend);
+        }
+
+        @Override
+        public void modifyAttribute(long t, @Nullable ITmfStateValue value, int attributeQuark)
+                throws TimeRangeException, StateValueTypeException {
+            record(t, value != null && value.isNull(), attributeQuark);
+            super.modifyAttribute(t, value, attributeQuark);
+        }
+
+        @Override
+        public void modifyAttribute(long t, int value, int attributeQuark)
+                throws TimeRangeException, StateValueTypeException {
+            record(t, false, attributeQuark);
+            super.modifyAttribute(t, value, attributeQuark);
+        }
+
+        @Override
+        public void modifyAttribute(long t, long value, int attributeQuark)
+                throws TimeRangeException, StateValueTypeException {
+            record(t, false, attributeQuark);
+            super.modifyAttribute(t, value, attributeQuark);
+        }
+
+        @Override
+        public void modifyAttribute(long t, double value, int attributeQuark)
+                throws TimeRangeException, StateValueTypeException {
+            record(t, false, attributeQuark);
+            super.modifyAttribute(t, value, attributeQuark);
+        }
+
+        @Override
+        public void removeAttribute(long t, int attributeQuark) throws TimeRangeException {
+            /* This is called again for each sub-attribute */
+            record(t, true, attributeQuark);
+            super.removeAttribute(t, attributeQuark);
+        }
+
+        private synchronized void record(long t, boolean isNull, int quark) {
+            if (fModifiedQuarks.add(quark) && isNull) {
+                fFirstNullTimes.put(quark, t);
+            }
+        }
+    }
+
+    /**
+     * The state system of a time slice, and the start of its remainder if it
+     * was cut
+     */
+    private static final class Slice {
+        private final SliceStateSystem fStateSystem;
+        private final long fStartTime;
+        private final long fRemainderStart;
+        private final long fEndTime;
+
+        public Slice(SliceStateSystem stateSystem, long startTime, long remainderStart, long endTime) {
+            fStateSystem = stateSystem;
+            fStartTime = startTime;
+            fRemainderStart = remainderStart;
+            fEndTime = endTime;
+        }
+    }
+}
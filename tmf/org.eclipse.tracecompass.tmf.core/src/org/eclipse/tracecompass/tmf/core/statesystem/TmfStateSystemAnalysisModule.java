@@ -13,9 +13,17 @@
 
 package org.eclipse.tracecompass.tmf.core.statesystem;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 
@@ -30,9 +38,11 @@ import org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partial.P
 import org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partial.PartialStateSystem;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSnapshot;
 import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
 import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
 import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.tmf.core.analysis.TmfAbstractAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
@@ -47,6 +57,8 @@ import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
 import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
 
+import com.google.common.primitives.Ints;
+
 /**
  * Abstract analysis module to generate a state system. It is a base class that
  * can be used as a shortcut by analysis who just need to build a single state
@@ -62,6 +74,14 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         implements ITmfAnalysisModuleWithStateSystems {
 
     private static final String EXTENSION = ".ht"; //$NON-NLS-1$
+    private static final String SNAPSHOT_EXTENSION = ".snapshot"; //$NON-NLS-1$
+    private static final String PREVIOUS_EXTENSION = ".previous"; //$NON-NLS-1$
+
+    /* Size of the blocking queue to use when building a state history */
+    private static final int QUEUE_SIZE = 10000;
+
+    /** Number of events delivered at once to the state provider */
+    private static final int EVENTS_BATCH_SIZE = 127;
 
     private final CountDownLatch fInitialized = new CountDownLatch(1);
     private final Object fRequestSyncObj = new Object();
@@ -75,6 +95,8 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
     private boolean fInitializationSucceeded;
 
     private volatile @Nullable ITmfStateProvider fStateProvider;
+    private volatile @Nullable TimeSlicedHistoryBuilder fTimeSlicedBuilder;
+    private @Nullable File fSnapshotFile;
 
     /**
      * State system backend types
@@ -270,6 +292,10 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         if ((req != null) && (!req.isCompleted())) {
             req.cancel();
         }
+        TimeSlicedHistoryBuilder builder = fTimeSlicedBuilder;
+        if (builder != null) {
+            builder.cancel();
+        }
     }
 
     @Override
@@ -290,12 +316,19 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
      * scratch.
      */
     private void createFullHistory(String id, ITmfStateProvider provider, File htFile) throws TmfTraceException {
+        File snapshotFile = new File(htFile.getPath() + SNAPSHOT_EXTENSION);
+        fSnapshotFile = snapshotFile;
 
         /* If the target file already exists, do not rebuild it uselessly */
         // TODO for now we assume it's complete. Might be a good idea to check
         // at least if its range matches the trace's range.
 
-        if (htFile.exists()) {
+        if (htFile.exists() && snapshotFile.exists()) {
+            /* The previous build was stopped, try to resume it */
+            if (resumeFullHistory(id, provider, htFile, snapshotFile)) {
+                return;
+            }
+        } else if (htFile.exists()) {
            /* Load an existing history */
             final int version = provider.getVersion();
             try {
@@ -314,16 +347,14 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
             }
         }
 
-        /* Size of the blocking queue to use when building a state history */
-        final int QUEUE_SIZE = 10000;
-
+        /* Any snapshot is for a previous history, which will be overwritten */
+        snapshotFile.delete();
         try {
             IStateHistoryBackend backend = StateHistoryBackendFactory.createHistoryTreeBackendNewFile(
                     id, htFile, provider.getVersion(), provider.getStartTime(), QUEUE_SIZE);
             fHtBackend = backend;
             fStateSystem = StateSystemFactory.newStateSystem(backend);
-            provider.assignTargetStateSystem(fStateSystem);
-            build(provider);
+            buildHistory(id, provider);
         } catch (IOException e) {
             /*
              * If it fails here however, it means there was a problem writing to
@@ -333,6 +364,89 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         }
     }
 
+    /*
+     * Resume building a full history from the snapshot saved when its previous
+     * build was stopped. The intervals of the stopped history are copied in a
+     * new file, then the events are read from the rank saved with the
+     * snapshot. Returns false if the build could not be resumed, in which case
+     * the history has to be built from scratch.
+     */
+    private boolean resumeFullHistory(String id, ITmfStateProvider provider, File htFile, File snapshotFile) {
+        final int version = provider.getVersion();
+        int rank;
+        StateSnapshot snapshot;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+            if (in.readInt() != version) {
+                return false;
+            }
+            rank = in.readInt();
+            snapshot = StateSnapshot.readFrom(in);
+        } catch (IOException e) {
+            return false;
+        } finally {
+            /* A new snapshot will be saved if this build is stopped too */
+            snapshotFile.delete();
+        }
+
+        File previousFile = new File(htFile.getPath() + PREVIOUS_EXTENSION);
+        if (!htFile.renameTo(previousFile)) {
+            return false;
+        }
+        IStateHistoryBackend previousBackend = null;
+        IStateHistoryBackend backend = null;
+        ITmfStateSystemBuilder ss;
+        try {
+            previousBackend = StateHistoryBackendFactory.createHistoryTreeBackendExistingFile(id, previousFile, version);
+            backend = StateHistoryBackendFactory.createHistoryTreeBackendNewFile(
+                    id, htFile, version, provider.getStartTime(), QUEUE_SIZE);
+            ss = StateSystemFactory.resumeStateSystem(backend, previousBackend, snapshot);
+        } catch (IOException | StateSystemDisposedException | IllegalArgumentException e) {
+            if (backend != null) {
+                backend.dispose();
+            }
+            return false;
+        } finally {
+            if (previousBackend != null) {
+                previousBackend.dispose();
+            }
+            previousFile.delete();
+        }
+
+        fHtBackend = backend;
+        fStateSystem = ss;
+        fNbRead = rank;
+        provider.assignTargetStateSystem(ss);
+        build(provider);
+        return true;
+    }
+
+    /*
+     * Save a snapshot of the state system being built, so that its build can
+     * be resumed from the given event rank. This is only done for full
+     * histories of complete traces, if the provider supports it. Returns true
+     * if the snapshot was saved.
+     */
+    private boolean saveSnapshot(ITmfStateProvider provider, long rank) {
+        File snapshotFile = fSnapshotFile;
+        ITmfStateSystemBuilder ss = fStateSystem;
+        if (snapshotFile == null || ss == null || !provider.isResumable() ||
+                !(provider instanceof AbstractTmfStateProvider) || !isCompleteTrace(provider.getTrace())) {
+            return false;
+        }
+
+        /* Wait for the events read so far to be processed */
+        ((AbstractTmfStateProvider) provider).waitForEmptyQueue();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(snapshotFile)))) {
+            out.writeInt(provider.getVersion());
+            out.writeInt(Ints.checkedCast(rank));
+            StateSnapshot.takeSnapshot(ss).writeTo(out);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            snapshotFile.delete();
+            return false;
+        }
+    }
+
     /*
      * Create a new state system backed with a partial history. A partial
      * history is similar to a "full" one (which you get with
@@ -363,9 +477,6 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
          * 7- Call HistoryBuilder(realProvider, realSS, partialBackend) to build the thing.
          */
 
-        /* Size of the blocking queue to use when building a state history */
-        final int QUEUE_SIZE = 10000;
-
         final long granularity = 50000;
 
         /* 2 */
@@ -429,8 +540,7 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         IStateHistoryBackend backend = StateHistoryBackendFactory.createInMemoryBackend(id, provider.getStartTime());
         fHtBackend = backend;
         fStateSystem = StateSystemFactory.newStateSystem(backend);
-        provider.assignTargetStateSystem(fStateSystem);
-        build(provider);
+        buildHistory(id, provider);
     }
 
     private void disposeProvider(boolean deleteFiles) {
@@ -444,6 +554,33 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         }
     }
 
+    /*
+     * Build the history of a new state system, with several threads if the
+     * provider supports it, or else with the provider itself.
+     */
+    private void buildHistory(String id, ITmfStateProvider provider) {
+        ITmfStateSystemBuilder ss = fStateSystem;
+        if (ss == null) {
+            throw new IllegalArgumentException();
+        }
+        if (isCompleteTrace(provider.getTrace()) && TimeSlicedHistoryBuilder.canBuild(provider)) {
+            TimeSlicedHistoryBuilder builder = new TimeSlicedHistoryBuilder(id, provider, ss);
+            fTimeSlicedBuilder = builder;
+            /*
+             * The provider itself does not process any event, so the state
+             * system is not queryable until it is built.
+             */
+            fStateProvider = provider;
+            analysisReady(true);
+            boolean built = builder.build();
+            fTimeSlicedBuilder = null;
+            disposeProvider(!built);
+            return;
+        }
+        provider.assignTargetStateSystem(ss);
+        build(provider);
+    }
+
     private void build(ITmfStateProvider provider) {
         if ((fStateSystem == null) || (fHtBackend == null)) {
             throw new IllegalArgumentException();
@@ -503,19 +640,35 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         @Override
         public void handleData(final ITmfEvent event) {
             super.handleData(event);
-            if (event.getTrace() == trace) {
+            if (isEventFromTrace(trace, event)) {
                 sci.processEvent(event);
-            } else if (trace instanceof TmfExperiment) {
-                /*
-                 * If the request is for an experiment, check if the event is
-                 * from one of the child trace
-                 */
-                for (ITmfTrace childTrace : ((TmfExperiment) trace).getTraces()) {
-                    if (childTrace == event.getTrace()) {
-                        sci.processEvent(event);
+            }
+        }
+
+        @Override
+        public int getBatchSize() {
+            return EVENTS_BATCH_SIZE;
+        }
+
+        @Override
+        public void handleDataBatch(List<ITmfEvent> events) {
+            super.handleDataBatch(events);
+            /* Pass the batch itself if all the events are from the trace */
+            List<ITmfEvent> fromTrace = events;
+            for (int i = 0; i < events.size(); i++) {
+                if (!isEventFromTrace(trace, events.get(i))) {
+                    fromTrace = new ArrayList<>(events.subList(0, i));
+                    for (int j = i + 1; j < events.size(); j++) {
+                        if (isEventFromTrace(trace, events.get(j))) {
+                            fromTrace.add(events.get(j));
+                        }
                     }
+                    break;
                 }
             }
+            if (!fromTrace.isEmpty()) {
+                sci.processEvents(fromTrace);
+            }
         }
 
         @Override
@@ -539,7 +692,8 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         @Override
         public void handleCancel() {
             super.handleCancel();
-            disposeProvider(true);
+            /* Keep the history if its build can be resumed later */
+            disposeProvider(!saveSnapshot(sci, getIndex() + getNbRead()));
         }
 
         @Override
@@ -601,6 +755,24 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         fRequest = request;
     }
 
+    /*
+     * Check if an event is from the trace of the state provider, or from one
+     * of its child traces if it is an experiment.
+     */
+    static boolean isEventFromTrace(ITmfTrace trace, ITmfEvent event) {
+        if (event.getTrace() == trace) {
+            return true;
+        }
+        if (trace instanceof TmfExperiment) {
+            for (ITmfTrace childTrace : ((TmfExperiment) trace).getTraces()) {
+                if (childTrace == event.getTrace()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     private static boolean isCompleteTrace(ITmfTrace trace) {
         return !(trace instanceof ITmfTraceCompleteness) || ((ITmfTraceCompleteness) trace).isComplete();
     }
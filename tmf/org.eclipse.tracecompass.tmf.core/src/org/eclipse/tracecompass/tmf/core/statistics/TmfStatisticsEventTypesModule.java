@@ -124,6 +124,15 @@ public class TmfStatisticsEventTypesModule extends TmfStateSystemAnalysisModule
             return new StatsProviderEventTypes(this.getTrace());
         }
 
+        /**
+         * The counts are kept in the state system only, so a stopped build
+         * can continue from the ongoing counts.
+         */
+        @Override
+        public boolean isResumable() {
+            return true;
+        }
+
         @Override
         protected void eventHandle(ITmfEvent event) {
             ITmfStateSystemBuilder ss = checkNotNull(getStateSystemBuilder());
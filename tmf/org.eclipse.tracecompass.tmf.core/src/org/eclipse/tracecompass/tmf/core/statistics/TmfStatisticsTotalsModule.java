@@ -108,6 +108,15 @@ public class TmfStatisticsTotalsModule extends TmfStateSystemAnalysisModule {
             return new StatsProviderTotals(this.getTrace());
         }
 
+        /**
+         * The counts are kept in the state system only, so a stopped build
+         * can continue from the ongoing counts.
+         */
+        @Override
+        public boolean isResumable() {
+            return true;
+        }
+
         @Override
         protected void eventHandle(ITmfEvent event) {
             /* Do not count lost events in the total */
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.trace;
+
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.NonNull;
+
+/**
+ * This interface should be implemented by the traces that can skip the events
+ * of unwanted types while they read the trace, before the events are created.
+ * It allows the requests that only want a few event types (see
+ * {@link org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest#getEventTypes()})
+ * to avoid the cost of parsing all the other events.
+ *
+ * The filter is a hint: the trace may still return events of other types, so
+ * the caller has to check the types of the events it receives.
+ *
+ * @since 2.0
+ */
+public interface ITmfTraceWithEventTypeFilter {
+
+    /**
+     * Only read the events of the given types from now on with this context.
+     * The event at the current position of the context is skipped if it is of
+     * another type. The ranks and locations of a filtered context are only
+     * meaningful with the same filter.
+     *
+     * @param context
+     *            A context obtained from this trace
+     * @param eventTypes
+     *            The names of the event types to read
+     * @return true if the trace will skip the events of other types, false if
+     *         the filter could not be applied to this context
+     */
+    boolean setEventTypeFilter(@NonNull ITmfContext context, @NonNull Set<String> eventTypes);
+
+}
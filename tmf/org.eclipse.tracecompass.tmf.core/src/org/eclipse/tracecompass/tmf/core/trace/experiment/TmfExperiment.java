@@ -22,6 +22,7 @@ import java.io.File;
 import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -52,6 +53,7 @@ import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceWithEventTypeFilter;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfPersistentlyIndexable;
@@ -66,7 +68,7 @@ import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
  * @version 1.0
  * @author Francois Chouinard
  */
-public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable {
+public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable, ITmfTraceWithEventTypeFilter {
 
     // ------------------------------------------------------------------------
     // Constants
@@ -290,7 +292,7 @@ public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable
     // ------------------------------------------------------------------------
 
     @Override
-    public synchronized ITmfContext seekEvent(final ITmfLocation location) {
+    public ITmfContext seekEvent(final ITmfLocation location) {
         // Validate the location
         if (location != null && !(location instanceof TmfExperimentLocation)) {
             return null; // Throw an exception?
@@ -364,14 +366,19 @@ public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable
     // ------------------------------------------------------------------------
 
     @Override
-    public synchronized ITmfEvent parseEvent(final ITmfContext context) {
+    public ITmfEvent parseEvent(final ITmfContext context) {
         final ITmfContext tmpContext = seekEvent(context.getLocation());
         final ITmfEvent event = getNext(tmpContext);
         return event;
     }
 
+    /**
+     * Get the next event of the experiment. The experiment itself is not
+     * locked, only the context, so that requests using different contexts can
+     * read the experiment concurrently.
+     */
     @Override
-    public synchronized ITmfEvent getNext(ITmfContext context) {
+    public ITmfEvent getNext(ITmfContext context) {
 
         // Validate the context
         if (!(context instanceof TmfExperimentContext)) {
@@ -387,51 +394,72 @@ public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable
 
         TmfExperimentContext expContext = (TmfExperimentContext) context;
 
-        // If an event was consumed previously, first get the next one from that
-        // trace
-        final int lastTrace = expContext.getLastTrace();
-        if (lastTrace != TmfExperimentContext.NO_TRACE) {
-            final ITmfContext traceContext = expContext.getContext(lastTrace);
-            expContext.setEvent(lastTrace, ((ITmfTrace) getChild(lastTrace)).getNext(traceContext));
-            expContext.setLastTrace(TmfExperimentContext.NO_TRACE);
-        }
+        synchronized (expContext) {
+            // If an event was consumed previously, first get the next one from
+            // that trace
+            final int lastTrace = expContext.getLastTrace();
+            if (lastTrace != TmfExperimentContext.NO_TRACE) {
+                final ITmfContext traceContext = expContext.getContext(lastTrace);
+                expContext.setEvent(lastTrace, ((ITmfTrace) getChild(lastTrace)).getNext(traceContext));
+                expContext.setLastTrace(TmfExperimentContext.NO_TRACE);
+            }
 
-        // Scan the candidate events and identify the "next" trace to read from
-        int trace = TmfExperimentContext.NO_TRACE;
-        ITmfTimestamp timestamp = TmfTimestamp.BIG_CRUNCH;
-        for (int i = 0; i < length; i++) {
-            final ITmfEvent event = expContext.getEvent(i);
+            // The "next" trace to read from is the one with the earliest event
+            final int trace = expContext.getNextTrace();
+
+            ITmfEvent event = null;
+            if (trace != TmfExperimentContext.NO_TRACE) {
+                event = expContext.getEvent(trace);
+                if (event != null) {
+                    updateAttributes(expContext, event);
+                    expContext.increaseRank();
+                    expContext.setLastTrace(trace);
+                    final ITmfContext traceContext = expContext.getContext(trace);
+                    if (traceContext == null) {
+                        throw new IllegalStateException();
+                    }
 
-            if (event != null) {
-                final ITmfTimestamp otherTS = event.getTimestamp();
-                if (otherTS.compareTo(timestamp) < 0) {
-                    trace = i;
-                    timestamp = otherTS;
+                    // Update the experiment location
+                    TmfLocationArray locationArray = new TmfLocationArray(
+                            ((TmfExperimentLocation) expContext.getLocation()).getLocationInfo(),
+                            trace, traceContext.getLocation(), traceContext.getRank());
+                    expContext.setLocation(new TmfExperimentLocation(locationArray));
                 }
             }
+
+            return event;
         }
+    }
 
-        ITmfEvent event = null;
-        if (trace != TmfExperimentContext.NO_TRACE) {
-            event = expContext.getEvent(trace);
-            if (event != null) {
-                updateAttributes(expContext, event);
-                expContext.increaseRank();
-                expContext.setLastTrace(trace);
-                final ITmfContext traceContext = expContext.getContext(trace);
-                if (traceContext == null) {
-                    throw new IllegalStateException();
+    /**
+     * The filter is passed to the contexts of the traces that support it. The
+     * current event of these traces is replaced by the next one of the wanted
+     * types.
+     *
+     * @since 2.0
+     */
+    @Override
+    public boolean setEventTypeFilter(ITmfContext context, Set<String> eventTypes) {
+        if (!(context instanceof TmfExperimentContext)) {
+            return false;
+        }
+        TmfExperimentContext expContext = (TmfExperimentContext) context;
+        boolean applied = false;
+        synchronized (expContext) {
+            for (int i = 0; i < expContext.getNbTraces(); i++) {
+                ITmfTrace trace = (ITmfTrace) getChild(i);
+                ITmfContext traceContext = expContext.getContext(i);
+                if (traceContext != null && trace instanceof ITmfTraceWithEventTypeFilter &&
+                        ((ITmfTraceWithEventTypeFilter) trace).setEventTypeFilter(traceContext, eventTypes)) {
+                    applied = true;
+                    ITmfEvent event = expContext.getEvent(i);
+                    if (event != null && !eventTypes.contains(event.getName()) && i != expContext.getLastTrace()) {
+                        expContext.setEvent(i, trace.getNext(traceContext));
+                    }
                 }
-
-                // Update the experiment location
-                TmfLocationArray locationArray = new TmfLocationArray(
-                        ((TmfExperimentLocation) expContext.getLocation()).getLocationInfo(),
-                        trace, traceContext.getLocation(), traceContext.getRank());
-                expContext.setLocation(new TmfExperimentLocation(locationArray));
             }
         }
-
-        return event;
+        return applied;
     }
 
     @Override
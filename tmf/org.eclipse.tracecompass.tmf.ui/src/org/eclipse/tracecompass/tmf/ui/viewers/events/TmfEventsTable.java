@@ -57,6 +57,7 @@ import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.EValidator;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.jface.action.Action;
 import org.eclipse.jface.action.IAction;
 import org.eclipse.jface.action.IMenuListener;
@@ -122,6 +123,9 @@ import org.eclipse.swt.widgets.TableItem;
 import org.eclipse.swt.widgets.Text;
 import org.eclipse.tracecompass.common.core.NonNullUtils;
 import org.eclipse.tracecompass.internal.tmf.core.filter.TmfCollapseFilter;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfCompiledFilter;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfEventSearchIndex;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfEventSearchIndexModule;
 import org.eclipse.tracecompass.internal.tmf.ui.Activator;
 import org.eclipse.tracecompass.internal.tmf.ui.Messages;
 import org.eclipse.tracecompass.internal.tmf.ui.commands.CopyToClipboardOperation;
@@ -2114,13 +2118,25 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
         packMarginColumn();
     }
 
+    /**
+     * Get the query of the search index of a trace for a filter, if the trace
+     * has a search index and the index can exclude events for this filter.
+     * The index of the trace is built in the background by the first search
+     * or filter.
+     */
+    private static @Nullable TmfEventSearchIndex.Query createSearchIndexQuery(ITmfTrace trace, ITmfFilter filter) {
+        return TmfEventSearchIndexModule.createQuery(trace, filter);
+    }
+
     /**
      * Wrapper Thread object for the filtering thread.
      */
     protected class FilterThread extends Thread {
         private final ITmfFilterTreeNode filter;
+        private final ITmfFilter compiledFilter;
         private TmfCollapseFilter collapseFilter = null;
         private TmfEventRequest request;
+        private long skipRank = -1;
         private boolean refreshBusy = false;
         private boolean refreshPending = false;
         private final Object syncObj = new Object();
@@ -2134,6 +2150,7 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
         public FilterThread(final ITmfFilterTreeNode filter) {
             super("Filter Thread"); //$NON-NLS-1$
             this.filter = filter;
+            this.compiledFilter = TmfCompiledFilter.compile(filter);
         }
 
         @Override
@@ -2144,42 +2161,71 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
             if (fCollapseFilterEnabled) {
                 collapseFilter = new TmfCollapseFilter();
             }
-            final int nbRequested = (int) (fTrace.getNbEvents() - fFilterCheckCount);
-            if (nbRequested <= 0) {
+            final long nbEvents = fTrace.getNbEvents();
+            if (nbEvents - fFilterCheckCount <= 0) {
                 return;
             }
-            request = new TmfEventRequest(ITmfEvent.class, TmfTimeRange.ETERNITY,
-                    (int) fFilterCheckCount, nbRequested, ExecutionType.BACKGROUND) {
-                @Override
-                public void handleData(final ITmfEvent event) {
-                    super.handleData(event);
-                    if (request.isCancelled()) {
-                        return;
-                    }
-                    boolean refresh = false;
-                    if (filter.matches(event)) {
-                        if (collapseFilter == null || collapseFilter.matches(event)) {
-                            final long rank = fFilterCheckCount;
-                            final int index = (int) fFilterMatchCount;
-                            fFilterMatchCount++;
-                            fCache.storeEvent(event, rank, index);
-                        } else if (collapseFilter != null) {
-                            fCache.updateCollapsedEvent((int) fFilterMatchCount - 1);
+            final TmfEventSearchIndex.Query query = createSearchIndexQuery(fTrace, compiledFilter);
+            /*
+             * When the search index shows that the next events cannot match,
+             * the request is restarted at the next candidate event.
+             */
+            do {
+                skipRank = -1;
+                final int nbRequested = (int) (nbEvents - fFilterCheckCount);
+                if (nbRequested <= 0) {
+                    break;
+                }
+                request = new TmfEventRequest(ITmfEvent.class, TmfTimeRange.ETERNITY,
+                        (int) fFilterCheckCount, nbRequested, ExecutionType.BACKGROUND) {
+                    @Override
+                    public void handleData(final ITmfEvent event) {
+                        super.handleData(event);
+                        if (request.isCancelled()) {
+                            return;
+                        }
+                        if (query != null && !query.isCandidate(fFilterCheckCount)) {
+                            long next = query.nextCandidate(fFilterCheckCount);
+                            if (next - fFilterCheckCount > fTrace.getCacheSize()) {
+                                skipRank = next;
+                                done();
+                                return;
+                            }
+                            if ((fFilterCheckCount % 100) == 0) {
+                                refreshTable();
+                            }
+                            fFilterCheckCount++;
+                            return;
+                        }
+                        boolean refresh = false;
+                        if (compiledFilter.matches(event)) {
+                            if (collapseFilter == null || collapseFilter.matches(event)) {
+                                final long rank = fFilterCheckCount;
+                                final int index = (int) fFilterMatchCount;
+                                fFilterMatchCount++;
+                                fCache.storeEvent(event, rank, index);
+                            } else if (collapseFilter != null) {
+                                fCache.updateCollapsedEvent((int) fFilterMatchCount - 1);
+                            }
+                            refresh = true;
                         }
-                        refresh = true;
-                    }
 
-                    if (refresh || (fFilterCheckCount % 100) == 0) {
-                        refreshTable();
+                        if (refresh || (fFilterCheckCount % 100) == 0) {
+                            refreshTable();
+                        }
+                        fFilterCheckCount++;
                     }
-                    fFilterCheckCount++;
+                };
+                ((ITmfEventProvider) fTrace).sendRequest(request);
+                try {
+                    request.waitForCompletion();
+                } catch (final InterruptedException e) {
+                    break;
                 }
-            };
-            ((ITmfEventProvider) fTrace).sendRequest(request);
-            try {
-                request.waitForCompletion();
-            } catch (final InterruptedException e) {
-            }
+                if (skipRank >= 0) {
+                    fFilterCheckCount = skipRank;
+                }
+            } while (skipRank >= 0 && !request.isCancelled());
             refreshTable();
             synchronized (fFilterSyncObj) {
                 fFilterThread = null;
@@ -2324,12 +2370,13 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
      */
     protected class SearchThread extends Job {
 
-        private ITmfFilterTreeNode searchFilter;
-        private ITmfFilterTreeNode eventFilter;
+        private ITmfFilter searchFilter;
+        private ITmfFilter eventFilter;
         private int startIndex;
         private int direction;
         private long rank;
         private long foundRank = -1;
+        private long jumpRank = -1;
         private TmfEventRequest request;
         private ITmfTimestamp foundTimestamp = null;
 
@@ -2351,8 +2398,8 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
                 final ITmfFilterTreeNode eventFilter, final int startIndex,
                 final long currentRank, final int direction) {
             super(Messages.TmfEventsTable_SearchingJobName);
-            this.searchFilter = searchFilter;
-            this.eventFilter = eventFilter;
+            this.searchFilter = TmfCompiledFilter.compile(searchFilter);
+            this.eventFilter = TmfCompiledFilter.compile(eventFilter);
             this.startIndex = startIndex;
             this.rank = currentRank;
             this.direction = direction;
@@ -2408,7 +2455,12 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
             }
             final int startRank = (int) rank;
             boolean wrapped = false;
+            final TmfEventSearchIndex.Query query = createSearchIndexQuery(trace, searchFilter);
             while (!monitor.isCanceled() && (foundRank == -1)) {
+                if (query != null && direction == Direction.BACKWARD) {
+                    /* Skip backwards to the last event that may match */
+                    rank = Math.max(0, query.previousCandidate(rank));
+                }
                 int nbRequested = (direction == Direction.FORWARD ? Integer.MAX_VALUE : Math.min((int) rank + 1, trace.getCacheSize()));
                 if (direction == Direction.BACKWARD) {
                     rank = Math.max(0, rank - trace.getCacheSize() + 1);
@@ -2420,6 +2472,17 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
                     @Override
                     public void handleData(final ITmfEvent event) {
                         super.handleData(event);
+                        if (query != null && !query.isCandidate(currentRank)) {
+                            long next = query.nextCandidate(currentRank);
+                            if (direction == Direction.FORWARD && next - currentRank > trace.getCacheSize()) {
+                                /* Restart the request at the next event that may match */
+                                jumpRank = next;
+                                done();
+                                return;
+                            }
+                            currentRank++;
+                            return;
+                        }
                         if (searchFilter.matches(event) && ((eventFilter == null) || eventFilter.matches(event))) {
                             foundRank = currentRank;
                             foundTimestamp = event.getTimestamp();
@@ -2443,9 +2506,14 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
                     }
                     return Status.OK_STATUS;
                 }
+                if (jumpRank >= 0) {
+                    rank = jumpRank;
+                    jumpRank = -1;
+                    continue;
+                }
                 if (foundRank == -1) {
                     if (direction == Direction.FORWARD) {
-                        if (rank == 0) {
+                        if (startRank == 0 || wrapped) {
                             synchronized (fSearchSyncObj) {
                                 fSearchThread = null;
                             }